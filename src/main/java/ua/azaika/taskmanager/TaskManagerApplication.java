@@ -2,8 +2,11 @@ package ua.azaika.taskmanager;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import ua.azaika.taskmanager.config.ApiRuntimeHints;
 
 @SpringBootApplication
+@ImportRuntimeHints(ApiRuntimeHints.class)
 public class TaskManagerApplication {
 
     public static void main(String[] args) {
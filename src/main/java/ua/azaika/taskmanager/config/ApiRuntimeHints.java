@@ -0,0 +1,46 @@
+package ua.azaika.taskmanager.config;
+
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import ua.azaika.taskmanager.dto.ReplicatedUserDTO;
+import ua.azaika.taskmanager.dto.ReplicationEventDTO;
+import ua.azaika.taskmanager.dto.TaskPostRequestDTO;
+import ua.azaika.taskmanager.dto.TaskResponseDTO;
+import ua.azaika.taskmanager.dto.UserBatchRequestDTO;
+import ua.azaika.taskmanager.dto.UserBatchResultDTO;
+import ua.azaika.taskmanager.dto.UserChangeEventDTO;
+import ua.azaika.taskmanager.dto.UserListDTO;
+import ua.azaika.taskmanager.dto.UserPageDTO;
+import ua.azaika.taskmanager.dto.UserPostRequestDTO;
+import ua.azaika.taskmanager.dto.UserResponseDTO;
+
+/**
+ * Reflection hints for every DTO that Jackson reads or writes, for native images.
+ * <p>
+ * Spring derives hints from controller signatures on its own, but not through
+ * {@code CompletableFuture} return types, and not for bodies written outside of message
+ * converters, such as the change stream's events and the NDJSON export. Listing the DTOs
+ * here covers them all. Record components are followed, so nested DTOs and enums come
+ * along, and so are custom serializers such as the one for user lists.
+ */
+public class ApiRuntimeHints implements RuntimeHintsRegistrar {
+    static final Class<?>[] DTO_TYPES = {
+            UserPostRequestDTO.class,
+            UserResponseDTO.class,
+            UserListDTO.class,
+            UserPageDTO.class,
+            UserBatchRequestDTO.class,
+            UserBatchResultDTO.class,
+            UserChangeEventDTO.class,
+            ReplicationEventDTO.class,
+            ReplicatedUserDTO.class,
+            TaskPostRequestDTO.class,
+            TaskResponseDTO.class
+    };
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(), DTO_TYPES);
+    }
+}
@@ -0,0 +1,22 @@
+package ua.azaika.taskmanager.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.time.ZoneId;
+
+/**
+ * Deadline scheduler settings. A task becomes overdue at the start of the day after its
+ * due date in {@code zone}, and is reported as upcoming {@code reminderLead} before that.
+ */
+@ConfigurationProperties("taskmanager.deadlines")
+public record DeadlineProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("UTC") ZoneId zone,
+        @DefaultValue("24h") Duration reminderLead,
+        @DefaultValue("1s") Duration tick,
+        @DefaultValue("2") int listenerThreads,
+        @DefaultValue("10000") int listenerQueueCapacity
+) {
+}
@@ -0,0 +1,34 @@
+package ua.azaika.taskmanager.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ua.azaika.taskmanager.scheduler.DeadlineListener;
+import ua.azaika.taskmanager.scheduler.DeadlineScheduler;
+import ua.azaika.taskmanager.service.TaskService;
+
+import java.time.Clock;
+
+/**
+ * Creates the {@link DeadlineScheduler} and, when {@code taskmanager.deadlines.enabled} is
+ * set, connects it to the task store and every {@link DeadlineListener} bean.
+ */
+@Configuration
+@EnableConfigurationProperties(DeadlineProperties.class)
+public class DeadlineSchedulerConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public DeadlineScheduler deadlineScheduler(DeadlineProperties properties, TaskService taskService,
+                                               ObjectProvider<DeadlineListener> listeners) {
+        DeadlineScheduler scheduler = new DeadlineScheduler(properties.zone(), properties.reminderLead(),
+                properties.tick(), properties.listenerThreads(), properties.listenerQueueCapacity(),
+                Clock.systemUTC());
+        if (properties.enabled()) {
+            listeners.orderedStream().forEach(scheduler::addListener);
+            taskService.addChangeListener(scheduler);
+            scheduler.start();
+        }
+        return scheduler;
+    }
+}
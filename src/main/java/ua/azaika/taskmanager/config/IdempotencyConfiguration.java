@@ -0,0 +1,26 @@
+package ua.azaika.taskmanager.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.ResponseEntity;
+import ua.azaika.taskmanager.dto.UserResponseDTO;
+import ua.azaika.taskmanager.idempotency.IdempotencyStore;
+
+@Configuration
+@EnableConfigurationProperties(IdempotencyProperties.class)
+public class IdempotencyConfiguration {
+
+    @Bean
+    public IdempotencyStore<ResponseEntity<UserResponseDTO>> userCreationIdempotencyStore(
+            IdempotencyProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+        IdempotencyStore<ResponseEntity<UserResponseDTO>> store =
+                new IdempotencyStore<>(properties.maximumKeys(), properties.ttl());
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null) CaffeineCacheMetrics.monitor(registry, store.cache(), "users.idempotency");
+        return store;
+    }
+}
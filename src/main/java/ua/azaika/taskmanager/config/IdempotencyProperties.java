@@ -0,0 +1,17 @@
+package ua.azaika.taskmanager.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Idempotency keys accepted on {@code POST /api/users}. At most {@code maximumKeys} are
+ * remembered, each for {@code ttl} after its first request.
+ */
+@ConfigurationProperties("taskmanager.idempotency")
+public record IdempotencyProperties(
+        @DefaultValue("100000") long maximumKeys,
+        @DefaultValue("24h") Duration ttl
+) {
+}
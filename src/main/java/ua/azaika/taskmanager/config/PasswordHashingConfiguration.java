@@ -0,0 +1,19 @@
+package ua.azaika.taskmanager.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import ua.azaika.taskmanager.security.PasswordHasher;
+
+@Configuration
+@EnableConfigurationProperties(PasswordHashingProperties.class)
+public class PasswordHashingConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public PasswordHasher passwordHasher(PasswordHashingProperties properties) {
+        int threads = properties.threads() > 0 ? properties.threads() : Runtime.getRuntime().availableProcessors();
+        return new PasswordHasher(new BCryptPasswordEncoder(properties.bcryptStrength()), threads,
+                properties.queueCapacity());
+    }
+}
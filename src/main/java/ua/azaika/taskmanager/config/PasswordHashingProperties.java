@@ -0,0 +1,17 @@
+package ua.azaika.taskmanager.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Password hashing settings. {@code bcryptStrength} is the BCrypt log rounds, so each step
+ * doubles the cost of a hash. {@code threads} of 0 means one hashing thread per core;
+ * batches get half as many threads again, in a pool of their own.
+ */
+@ConfigurationProperties("taskmanager.passwords")
+public record PasswordHashingProperties(
+        @DefaultValue("10") int bcryptStrength,
+        @DefaultValue("0") int threads,
+        @DefaultValue("1000") int queueCapacity
+) {
+}
@@ -0,0 +1,17 @@
+package ua.azaika.taskmanager.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@ConfigurationProperties("taskmanager.persistence")
+public record PersistenceProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("data") Path directory,
+        @DefaultValue("5m") Duration snapshotInterval,
+        @DefaultValue("64MB") DataSize snapshotLogSize
+) {
+}
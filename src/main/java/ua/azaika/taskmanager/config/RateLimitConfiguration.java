@@ -0,0 +1,38 @@
+package ua.azaika.taskmanager.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ua.azaika.taskmanager.ratelimit.RateLimitInterceptor;
+
+/**
+ * Puts a {@link RateLimitInterceptor} in front of the user API when rate limiting or the
+ * concurrency limit is enabled. The change feed and the NDJSON export are left out: they
+ * hold their connection open for as long as the client reads, which would pin a
+ * concurrency slot and skew the latency the limit adapts to.
+ */
+@Configuration
+@EnableConfigurationProperties(RateLimitProperties.class)
+public class RateLimitConfiguration {
+
+    @Bean
+    public RateLimitInterceptor rateLimitInterceptor(RateLimitProperties properties) {
+        return new RateLimitInterceptor(properties, System::nanoTime);
+    }
+
+    @Bean
+    public WebMvcConfigurer rateLimitWebMvcConfigurer(RateLimitInterceptor rateLimitInterceptor,
+                                                      RateLimitProperties properties) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                if (!properties.enabled() && !properties.concurrency().enabled()) return;
+                registry.addInterceptor(rateLimitInterceptor)
+                        .addPathPatterns("/api/users", "/api/users/**")
+                        .excludePathPatterns("/api/users/changes", "/api/users/stream");
+            }
+        };
+    }
+}
@@ -0,0 +1,57 @@
+package ua.azaika.taskmanager.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Request admission settings for the user API. Each entry in {@code endpoints} names a
+ * method and a mapping pattern, such as {@code GET /api/users/{id}}, and sets a rate and
+ * burst for every client and for all clients together; a rate of 0 leaves that limit off.
+ * <p>
+ * Client limits need a way to tell clients apart. Requests carrying {@code clientHeader},
+ * when it is set, are grouped by its value. Other requests are grouped by remote address
+ * only if {@code clientByRemoteAddress} is set, and skip the client limits otherwise. Behind
+ * a load balancer or reverse proxy the remote address is the proxy's, so every caller would
+ * share one bucket; set the flag only when clients connect directly, or when
+ * {@code server.forward-headers-strategy} makes the remote address the one the proxy
+ * forwarded. Global limits apply either way. At most {@code maxClients} client buckets are
+ * kept per endpoint, and idle ones are dropped after {@code clientIdleTimeout}.
+ */
+@ConfigurationProperties("taskmanager.rate-limit")
+public record RateLimitProperties(
+        @DefaultValue("true") boolean enabled,
+        String clientHeader,
+        @DefaultValue("false") boolean clientByRemoteAddress,
+        @DefaultValue("100000") long maxClients,
+        @DefaultValue("10m") Duration clientIdleTimeout,
+        @DefaultValue List<Endpoint> endpoints,
+        @DefaultValue Concurrency concurrency
+) {
+
+    public record Endpoint(
+            String method,
+            String path,
+            @DefaultValue("0") double clientRate,
+            @DefaultValue("1") int clientBurst,
+            @DefaultValue("0") double globalRate,
+            @DefaultValue("1") int globalBurst
+    ) {
+    }
+
+    /**
+     * Adaptive concurrency limit applied to each endpoint separately, so that a slow endpoint
+     * cannot shrink the limit of a fast one.
+     */
+    public record Concurrency(
+            @DefaultValue("true") boolean enabled,
+            @DefaultValue("20") int initialLimit,
+            @DefaultValue("4") int minLimit,
+            @DefaultValue("1000") int maxLimit,
+            @DefaultValue("2.0") double tolerance,
+            @DefaultValue("100ms") Duration window
+    ) {
+    }
+}
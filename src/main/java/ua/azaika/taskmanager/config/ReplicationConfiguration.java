@@ -0,0 +1,54 @@
+package ua.azaika.taskmanager.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ua.azaika.taskmanager.mapper.UserMapper;
+import ua.azaika.taskmanager.replication.ReplicaInterceptor;
+import ua.azaika.taskmanager.replication.ReplicationFollower;
+import ua.azaika.taskmanager.service.ReplicaUserService;
+import ua.azaika.taskmanager.service.UserServiceImpl;
+
+/**
+ * Creates the follower side of replication and, when {@code taskmanager.replication.role}
+ * is {@code follower}, starts it and puts a {@link ReplicaInterceptor} in front of the user
+ * API. The leader side is the replication controller, which only answers on a leader.
+ */
+@Configuration
+@EnableConfigurationProperties(ReplicationProperties.class)
+public class ReplicationConfiguration {
+
+    @Bean
+    public ReplicaUserService replicaUserService(UserServiceImpl store) {
+        return new ReplicaUserService(store);
+    }
+
+    @Bean(destroyMethod = "close")
+    public ReplicationFollower replicationFollower(ReplicaUserService replicaUserService, UserMapper userMapper,
+                                                   ObjectMapper objectMapper, ReplicationProperties properties) {
+        boolean follower = properties.role() == ReplicationProperties.Role.FOLLOWER;
+        if (follower && properties.leaderUrl() == null) {
+            throw new IllegalStateException("taskmanager.replication.leader-url is required for followers");
+        }
+        ReplicationFollower replicationFollower = new ReplicationFollower(properties.leaderUrl(), replicaUserService,
+                userMapper, objectMapper, properties.heartbeat(), properties.maxStaleness());
+        if (follower) replicationFollower.start();
+        return replicationFollower;
+    }
+
+    @Bean
+    public WebMvcConfigurer replicationWebMvcConfigurer(ReplicationFollower replicationFollower,
+                                                        ReplicationProperties properties) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                if (properties.role() != ReplicationProperties.Role.FOLLOWER) return;
+                registry.addInterceptor(new ReplicaInterceptor(replicationFollower, properties.leaderUrl()))
+                        .addPathPatterns("/api/users", "/api/users/**");
+            }
+        };
+    }
+}
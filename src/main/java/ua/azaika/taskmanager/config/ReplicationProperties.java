@@ -0,0 +1,36 @@
+package ua.azaika.taskmanager.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.net.URI;
+import java.time.Duration;
+
+/**
+ * Replication settings. A follower copies users from the leader at {@code leaderUrl}, the
+ * leader's base URL such as {@code http://leader:8080}. The leader sends a heartbeat every
+ * {@code heartbeat}. A follower refuses reads once it may be more than
+ * {@code maxStaleness} behind.
+ */
+@ConfigurationProperties("taskmanager.replication")
+public record ReplicationProperties(
+        @DefaultValue("standalone") Role role,
+        URI leaderUrl,
+        @DefaultValue("1s") Duration heartbeat,
+        @DefaultValue("5s") Duration maxStaleness
+) {
+    public enum Role {
+        /**
+         * Neither serves nor follows a replication log.
+         */
+        STANDALONE,
+        /**
+         * Serves its users and their changes to followers.
+         */
+        LEADER,
+        /**
+         * Holds a read-only copy of the leader's users; writes are redirected to the leader.
+         */
+        FOLLOWER
+    }
+}
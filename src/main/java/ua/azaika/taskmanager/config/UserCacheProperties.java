@@ -0,0 +1,18 @@
+package ua.azaika.taskmanager.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Read-through cache in front of the user store. A {@code ttl} of zero keeps entries until
+ * they are evicted by size or invalidated by a write.
+ */
+@ConfigurationProperties("taskmanager.users.cache")
+public record UserCacheProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("100000") long maximumSize,
+        @DefaultValue("0s") Duration ttl
+) {
+}
@@ -0,0 +1,32 @@
+package ua.azaika.taskmanager.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.ContextClosedEvent;
+import ua.azaika.taskmanager.feed.UserChangeFeed;
+import ua.azaika.taskmanager.service.UserService;
+
+@Configuration
+@EnableConfigurationProperties(UserChangeFeedProperties.class)
+public class UserChangeFeedConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public UserChangeFeed userChangeFeed(UserService userService, UserChangeFeedProperties properties) {
+        UserChangeFeed feed = new UserChangeFeed(properties.historySize(), properties.subscriberBufferSize(),
+                properties.maxSubscribers());
+        userService.addChangeListener(feed);
+        return feed;
+    }
+
+    /**
+     * Ends open event streams as soon as the context starts closing. Graceful shutdown of the
+     * web server waits for in-flight requests, and a stream would otherwise stay open until
+     * its timeout.
+     */
+    @Bean
+    public ApplicationListener<ContextClosedEvent> userChangeFeedCloser(UserChangeFeed userChangeFeed) {
+        return event -> userChangeFeed.close();
+    }
+}
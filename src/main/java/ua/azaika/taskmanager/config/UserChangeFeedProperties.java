@@ -0,0 +1,21 @@
+package ua.azaika.taskmanager.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * User change feed settings. {@code historySize} is how many recent events a reconnecting
+ * client can resume from; {@code subscriberBufferSize} is how far one client may fall
+ * behind before it is told to resync.
+ */
+@ConfigurationProperties("taskmanager.users.changes")
+public record UserChangeFeedProperties(
+        @DefaultValue("10000") int historySize,
+        @DefaultValue("1000") int subscriberBufferSize,
+        @DefaultValue("256") int maxSubscribers,
+        @DefaultValue("30m") Duration timeout,
+        @DefaultValue("15s") Duration heartbeat
+) {
+}
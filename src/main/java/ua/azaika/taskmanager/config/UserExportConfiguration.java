@@ -0,0 +1,29 @@
+package ua.azaika.taskmanager.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ua.azaika.taskmanager.export.UserExporter;
+import ua.azaika.taskmanager.service.UserService;
+
+import java.io.IOException;
+
+/**
+ * Creates the {@link UserExporter} and, when {@code taskmanager.users.export.enabled} is
+ * set, connects it to the user store and starts it.
+ */
+@Configuration
+@EnableConfigurationProperties(UserExportProperties.class)
+public class UserExportConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public UserExporter userExporter(UserService userService, UserExportProperties properties) throws IOException {
+        UserExporter exporter = new UserExporter(userService, properties.directory(), properties.queueCapacity(),
+                properties.batchSize(), properties.maxFileSize().toBytes(), properties.maxFileAge());
+        if (properties.enabled()) {
+            userService.addChangeListener(exporter);
+            exporter.start();
+        }
+        return exporter;
+    }
+}
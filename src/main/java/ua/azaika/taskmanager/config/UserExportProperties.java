@@ -0,0 +1,24 @@
+package ua.azaika.taskmanager.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * User export settings. A changes file is sealed once it reaches {@code maxFileSize} on disk
+ * or is {@code maxFileAge} old; {@code queueCapacity} is how many changes may wait for the
+ * exporter before it gives up on them and writes a new snapshot instead.
+ */
+@ConfigurationProperties("taskmanager.users.export")
+public record UserExportProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("export") Path directory,
+        @DefaultValue("10000") int queueCapacity,
+        @DefaultValue("1000") int batchSize,
+        @DefaultValue("64MB") DataSize maxFileSize,
+        @DefaultValue("1m") Duration maxFileAge
+) {
+}
@@ -0,0 +1,90 @@
+package ua.azaika.taskmanager.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import ua.azaika.taskmanager.service.CachingUserService;
+import ua.azaika.taskmanager.service.CompactUserService;
+import ua.azaika.taskmanager.service.MeteredUserService;
+import ua.azaika.taskmanager.service.PersistentUserService;
+import ua.azaika.taskmanager.service.ReplicaUserService;
+import ua.azaika.taskmanager.service.ShardedUserService;
+import ua.azaika.taskmanager.service.UserService;
+import ua.azaika.taskmanager.service.UserServiceImpl;
+
+import java.io.IOException;
+
+/**
+ * Assembles the {@link UserService} the controllers use: the store selected by
+ * {@code taskmanager.users.storage}, wrapped by the optional layers that are enabled, and
+ * measured by a {@link MeteredUserService} on the outside whenever a meter registry exists.
+ * On a replication follower the store is a {@link ReplicaUserService} instead.
+ * <p>
+ * The bean's inferred destroy method is the outermost layer's {@code close()}. Every layer
+ * passes it on, so a {@link PersistentUserService} underneath still drains its snapshotter
+ * and closes its log on shutdown.
+ */
+@Configuration
+@EnableConfigurationProperties({UserStorageProperties.class, PersistenceProperties.class, UserCacheProperties.class,
+        ReplicationProperties.class})
+public class UserServiceConfiguration {
+
+    @Bean
+    @Primary
+    public UserService userService(UserServiceImpl store, ReplicaUserService replica, UserStorageProperties storage,
+                                   PersistenceProperties persistence, UserCacheProperties cache,
+                                   ReplicationProperties replication,
+                                   ObjectProvider<MeterRegistry> meterRegistry) throws IOException {
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        UserService userService = replication.role() == ReplicationProperties.Role.FOLLOWER
+                ? replicaStore(replica, storage, persistence)
+                : backingStore(store, storage, persistence);
+        if (cache.enabled()) {
+            CachingUserService cached = new CachingUserService(userService, cache.maximumSize(), cache.ttl(),
+                    storage.caseInsensitiveEmail());
+            if (registry != null) {
+                CaffeineCacheMetrics.monitor(registry, cached.byIdCache(), "users.byId");
+                CaffeineCacheMetrics.monitor(registry, cached.byEmailCache(), "users.byEmail");
+            }
+            userService = cached;
+        }
+        if (registry == null) return userService;
+        return new MeteredUserService(userService, registry);
+    }
+
+    /**
+     * A follower holds the leader's users in a heap store and never writes on its own.
+     */
+    private static UserService replicaStore(ReplicaUserService replica, UserStorageProperties storage,
+                                            PersistenceProperties persistence) {
+        if (storage.storage() != UserStorageProperties.Storage.HEAP || persistence.enabled()) {
+            throw new IllegalStateException(
+                    "Replication followers require taskmanager.users.storage=heap without taskmanager.persistence");
+        }
+        return replica;
+    }
+
+    private static UserService backingStore(UserServiceImpl store, UserStorageProperties storage,
+                                            PersistenceProperties persistence) throws IOException {
+        if (storage.storage() == UserStorageProperties.Storage.COMPACT) {
+            if (persistence.enabled()) {
+                throw new IllegalStateException("taskmanager.persistence requires taskmanager.users.storage=heap");
+            }
+            return new CompactUserService(storage.caseInsensitiveEmail());
+        }
+        if (storage.storage() == UserStorageProperties.Storage.SHARDED) {
+            if (persistence.enabled()) {
+                throw new IllegalStateException("taskmanager.persistence requires taskmanager.users.storage=heap");
+            }
+            int shards = storage.shards() > 0 ? storage.shards() : Runtime.getRuntime().availableProcessors();
+            return new ShardedUserService(shards, storage.caseInsensitiveEmail());
+        }
+        if (!persistence.enabled()) return store;
+        return new PersistentUserService(store, persistence.directory(),
+                persistence.snapshotInterval(), persistence.snapshotLogSize().toBytes());
+    }
+}
@@ -0,0 +1,30 @@
+package ua.azaika.taskmanager.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * {@code shards} only applies to {@link Storage#SHARDED}; 0 means one shard per core.
+ */
+@ConfigurationProperties("taskmanager.users")
+public record UserStorageProperties(
+        @DefaultValue("heap") Storage storage,
+        @DefaultValue("false") boolean caseInsensitiveEmail,
+        @DefaultValue("0") int shards
+) {
+    public enum Storage {
+        /**
+         * {@link ua.azaika.taskmanager.service.UserServiceImpl}: concurrent maps of user objects.
+         */
+        HEAP,
+        /**
+         * {@link ua.azaika.taskmanager.service.CompactUserService}: off-heap records and primitive indexes.
+         */
+        COMPACT,
+        /**
+         * {@link ua.azaika.taskmanager.service.ShardedUserService}: heap stores split by id range,
+         * for writes from many cores.
+         */
+        SHARDED
+    }
+}
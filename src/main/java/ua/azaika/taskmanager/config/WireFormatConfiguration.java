@@ -0,0 +1,36 @@
+package ua.azaika.taskmanager.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Binary alternatives to JSON for clients that ask for them with {@code Accept} or send
+ * them with {@code Content-Type}: CBOR ({@code application/cbor}) and Smile
+ * ({@code application/x-jackson-smile}). Both carry the same DTOs as the JSON API.
+ * <p>
+ * The mappers come from the application's {@link Jackson2ObjectMapperBuilder}, a fresh one
+ * per injection point, so {@code spring.jackson.*} settings and registered modules apply to
+ * every format alike. JSON stays the first converter and therefore the default for clients
+ * that accept anything.
+ * <p>
+ * Because the body now depends on {@code Accept}, user responses say {@code Vary: Accept}.
+ * Their entity tags are weak, so every format of a version shares one tag.
+ */
+@Configuration
+public class WireFormatConfiguration {
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+}
@@ -0,0 +1,155 @@
+package ua.azaika.taskmanager.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ua.azaika.taskmanager.config.ReplicationProperties;
+import ua.azaika.taskmanager.config.UserChangeFeedProperties;
+import ua.azaika.taskmanager.dto.ReplicationEventDTO;
+import ua.azaika.taskmanager.feed.UserChangeEvent;
+import ua.azaika.taskmanager.feed.UserChangeFeed;
+import ua.azaika.taskmanager.mapper.UserMapper;
+import ua.azaika.taskmanager.model.User;
+import ua.azaika.taskmanager.service.UserService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * The leader side of replication, answering only when {@code taskmanager.replication.role}
+ * is {@code leader}. Both endpoints write newline-delimited {@link ReplicationEventDTO}s.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/replication")
+@RequiredArgsConstructor
+public class ReplicationController {
+    private static final int SNAPSHOT_CHUNK_SIZE = 1000;
+
+    private final UserService userService;
+    private final UserChangeFeed userChangeFeed;
+    private final UserMapper userMapper;
+    private final ObjectMapper objectMapper;
+    private final ReplicationProperties replication;
+    private final UserChangeFeedProperties feed;
+
+    /**
+     * Streams every user, between a header naming the log position to continue from and an
+     * end marker. A change is published to the feed while it is being written to the store,
+     * so the position is taken a little before the current sequence: a change that was not
+     * visible to the snapshot yet is then sent again by the log, and replaying one that was
+     * is harmless because followers skip copies that are not newer than their own.
+     */
+    @GetMapping(value = "/snapshot", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> snapshot() {
+        if (!isLeader()) return ResponseEntity.notFound().build();
+        long margin = Math.min(SNAPSHOT_CHUNK_SIZE, feed.historySize() / 2);
+        long sequence = Math.max(0, userChangeFeed.currentSequence() - margin);
+        StreamingResponseBody body = outputStream -> {
+            write(outputStream, new ReplicationEventDTO(ReplicationEventDTO.SNAPSHOT, sequence,
+                    userChangeFeed.epoch(), null, null));
+            Integer after = null;
+            List<User> page;
+            do {
+                page = userService.getPage(after, SNAPSHOT_CHUNK_SIZE);
+                for (User user : page) {
+                    write(outputStream, new ReplicationEventDTO(ReplicationEventDTO.USER, null, null, user.getId(),
+                            userMapper.toReplicatedUserDTO(user)));
+                }
+                outputStream.flush();
+                if (!page.isEmpty()) after = page.getLast().getId();
+            } while (page.size() == SNAPSHOT_CHUNK_SIZE);
+            write(outputStream, new ReplicationEventDTO(ReplicationEventDTO.END, null, null, null, null));
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    /**
+     * Streams every change after {@code after} of {@code epoch}, with a heartbeat carrying
+     * the latest sequence at least every {@code taskmanager.replication.heartbeat}. A
+     * {@code RESYNC} line, after which the stream ends, means the follower must load a new
+     * snapshot: the epoch is not this leader's, or the changes it needs are gone.
+     */
+    @GetMapping(value = "/log", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> log(@RequestParam String epoch, @RequestParam long after) {
+        if (!isLeader()) return ResponseEntity.notFound().build();
+        boolean sameEpoch = userChangeFeed.epoch().equals(epoch);
+        UserChangeFeed.Subscription subscription = sameEpoch ? userChangeFeed.subscribe(after) : null;
+        if (sameEpoch && subscription == null) return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(feed.timeout().toMillis());
+        if (subscription != null) {
+            emitter.onCompletion(subscription::close);
+            emitter.onTimeout(subscription::close);
+            emitter.onError(error -> subscription.close());
+        }
+        Thread.ofVirtual().name("replication-log-sender").start(() -> send(subscription, emitter));
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(emitter);
+    }
+
+    private void send(UserChangeFeed.Subscription subscription, ResponseBodyEmitter emitter) {
+        try {
+            if (subscription == null) {
+                send(emitter, resync());
+                emitter.complete();
+                return;
+            }
+            try (subscription) {
+                long heartbeatNanos = replication.heartbeat().toNanos();
+                long nextHeartbeat = System.nanoTime();
+                while (!subscription.isClosed()) {
+                    if (System.nanoTime() - nextHeartbeat >= 0) {
+                        send(emitter, new ReplicationEventDTO(ReplicationEventDTO.HEARTBEAT,
+                                userChangeFeed.currentSequence(), null, null, null));
+                        nextHeartbeat = System.nanoTime() + heartbeatNanos;
+                    }
+                    UserChangeEvent event = subscription.poll(replication.heartbeat());
+                    if (event == null) continue;
+                    if (event.type() == UserChangeEvent.Type.RESYNC) {
+                        send(emitter, resync());
+                        break;
+                    }
+                    send(emitter, new ReplicationEventDTO(event.type().name(), event.sequence(), null,
+                            event.userId(), event.user() == null ? null : userMapper.toReplicatedUserDTO(event.user())));
+                }
+            }
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Replication follower went away: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            emitter.complete();
+        }
+    }
+
+    private void send(ResponseBodyEmitter emitter, ReplicationEventDTO line) throws IOException {
+        emitter.send(objectMapper.writeValueAsString(line) + "\n", MediaType.APPLICATION_NDJSON);
+    }
+
+    private void write(OutputStream outputStream, ReplicationEventDTO line) throws IOException {
+        outputStream.write(objectMapper.writeValueAsBytes(line));
+        outputStream.write('\n');
+    }
+
+    private ReplicationEventDTO resync() {
+        return new ReplicationEventDTO(ReplicationEventDTO.RESYNC, null, userChangeFeed.epoch(), null, null);
+    }
+
+    private boolean isLeader() {
+        return replication.role() == ReplicationProperties.Role.LEADER;
+    }
+}
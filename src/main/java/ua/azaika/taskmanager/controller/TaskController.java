@@ -0,0 +1,85 @@
+package ua.azaika.taskmanager.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import ua.azaika.taskmanager.dto.TaskPostRequestDTO;
+import ua.azaika.taskmanager.dto.TaskResponseDTO;
+import ua.azaika.taskmanager.mapper.TaskMapper;
+import ua.azaika.taskmanager.model.Task;
+import ua.azaika.taskmanager.model.TaskStatus;
+import ua.azaika.taskmanager.service.TaskService;
+import ua.azaika.taskmanager.service.UserService;
+
+import java.net.URI;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/users/{userId}/tasks")
+@RequiredArgsConstructor
+public class TaskController {
+
+    private final TaskService taskService;
+    private final UserService userService;
+    private final TaskMapper taskMapper;
+
+    @PostMapping
+    public ResponseEntity<TaskResponseDTO> post(@PathVariable Integer userId,
+                                                @RequestBody TaskPostRequestDTO taskPostRequestDTO) {
+        if (userService.findById(userId) == null) return ResponseEntity.notFound().build();
+        Task inputTask = taskMapper.toTask(taskPostRequestDTO);
+        inputTask.setOwnerId(userId);
+        Task savedTask = taskService.save(inputTask);
+        if (savedTask == null) return ResponseEntity.notFound().build();
+        URI uri = ServletUriComponentsBuilder
+                .fromCurrentRequest()
+                .path("/{taskId}")
+                .buildAndExpand(savedTask.getId())
+                .toUri();
+        return ResponseEntity.created(uri).body(taskMapper.toResponseDTO(savedTask));
+    }
+
+    /**
+     * Lists the user's tasks ordered by due date, undated ones last, optionally only those
+     * with the given status.
+     */
+    @GetMapping
+    public ResponseEntity<List<TaskResponseDTO>> getAll(@PathVariable Integer userId,
+                                                        @RequestParam(required = false) TaskStatus status) {
+        if (userService.findById(userId) == null) return ResponseEntity.notFound().build();
+        List<TaskResponseDTO> responseDTOS = taskService.findByOwner(userId, status).stream()
+                .map(taskMapper::toResponseDTO)
+                .toList();
+        return ResponseEntity.ok(responseDTOS);
+    }
+
+    @GetMapping("/{taskId}")
+    public ResponseEntity<TaskResponseDTO> getById(@PathVariable Integer userId, @PathVariable Integer taskId) {
+        Task task = findOwnedTask(userId, taskId);
+        if (task == null) return ResponseEntity.notFound().build();
+        return ResponseEntity.ok(taskMapper.toResponseDTO(task));
+    }
+
+    @PutMapping("/{taskId}")
+    public ResponseEntity<TaskResponseDTO> put(@PathVariable Integer userId, @PathVariable Integer taskId,
+                                               @RequestBody TaskPostRequestDTO taskPostRequestDTO) {
+        if (findOwnedTask(userId, taskId) == null) return ResponseEntity.notFound().build();
+        Task updatedTask = taskService.update(taskId, taskMapper.toTask(taskPostRequestDTO));
+        if (updatedTask == null) return ResponseEntity.notFound().build();
+        return ResponseEntity.ok(taskMapper.toResponseDTO(updatedTask));
+    }
+
+    @DeleteMapping("/{taskId}")
+    public ResponseEntity<Void> delete(@PathVariable Integer userId, @PathVariable Integer taskId) {
+        if (findOwnedTask(userId, taskId) != null) {
+            taskService.deleteById(taskId);
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    private Task findOwnedTask(Integer userId, Integer taskId) {
+        Task task = taskService.findById(taskId);
+        return task != null && userId.equals(task.getOwnerId()) ? task : null;
+    }
+}
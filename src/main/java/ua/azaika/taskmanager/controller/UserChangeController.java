@@ -0,0 +1,105 @@
+package ua.azaika.taskmanager.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ua.azaika.taskmanager.config.UserChangeFeedProperties;
+import ua.azaika.taskmanager.dto.UserChangeEventDTO;
+import ua.azaika.taskmanager.feed.UserChangeEvent;
+import ua.azaika.taskmanager.feed.UserChangeFeed;
+import ua.azaika.taskmanager.mapper.UserMapper;
+
+import java.io.IOException;
+import java.util.Locale;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/users/changes")
+@RequiredArgsConstructor
+public class UserChangeController {
+
+    private final UserChangeFeed userChangeFeed;
+    private final UserMapper userMapper;
+    private final UserChangeFeedProperties properties;
+
+    /**
+     * Streams user changes as Server-Sent Events, each with {@code epoch:sequence} as the
+     * event id. A client resumes with {@code Last-Event-ID}, which browsers send on
+     * reconnect, or with {@code ?after=} and the same id. A {@code resync} event means
+     * changes were skipped, or the id is from before a restart of the server, and the client
+     * should reload {@code GET /api/users} before applying the events that follow.
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribe(@RequestParam(required = false) String after,
+                                                @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        String resumeFrom = lastEventId != null ? lastEventId : after;
+        UserChangeFeed.Subscription subscription;
+        if (resumeFrom == null) {
+            subscription = userChangeFeed.subscribe(null);
+        } else {
+            int separator = resumeFrom.lastIndexOf(':');
+            long sequence;
+            try {
+                sequence = Long.parseLong(resumeFrom.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                return ResponseEntity.badRequest().build();
+            }
+            String epoch = separator < 0 ? null : resumeFrom.substring(0, separator);
+            subscription = userChangeFeed.subscribe(epoch, sequence);
+        }
+        if (subscription == null) return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+
+        SseEmitter emitter = new SseEmitter(properties.timeout().toMillis());
+        emitter.onCompletion(subscription::close);
+        emitter.onTimeout(subscription::close);
+        emitter.onError(error -> subscription.close());
+        Thread.ofVirtual().name("user-changes-sender").start(() -> send(subscription, emitter));
+        return ResponseEntity.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(emitter);
+    }
+
+    /**
+     * Copies events from the subscription's buffer to the client. An opening comment commits
+     * the response right away, and another follows every {@code heartbeat} so that dead
+     * connections are noticed even when nothing changes.
+     */
+    private void send(UserChangeFeed.Subscription subscription, SseEmitter emitter) {
+        try (subscription) {
+            emitter.send(SseEmitter.event().comment("subscribed"));
+            while (!subscription.isClosed()) {
+                UserChangeEvent event = subscription.poll(properties.heartbeat());
+                if (event == null) {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                } else {
+                    emitter.send(SseEmitter.event()
+                            .id(userChangeFeed.epoch() + ":" + event.sequence())
+                            .name(event.type().name().toLowerCase(Locale.ROOT))
+                            .data(toDTO(event), MediaType.APPLICATION_JSON));
+                }
+            }
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            log.debug("User change subscriber went away: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            emitter.complete();
+        }
+    }
+
+    private UserChangeEventDTO toDTO(UserChangeEvent event) {
+        return new UserChangeEventDTO(
+                event.sequence(),
+                event.type().name(),
+                event.userId() == null ? null : String.valueOf(event.userId()),
+                event.user() == null ? null : userMapper.toResponseDTO(event.user()));
+    }
+}
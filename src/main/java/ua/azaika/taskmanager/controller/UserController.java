@@ -1,58 +1,301 @@
 package ua.azaika.taskmanager.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
+import ua.azaika.taskmanager.dto.UserBatchOperationDTO;
+import ua.azaika.taskmanager.dto.UserBatchRequestDTO;
+import ua.azaika.taskmanager.dto.UserBatchResultDTO;
+import ua.azaika.taskmanager.dto.UserField;
+import ua.azaika.taskmanager.dto.UserListDTO;
+import ua.azaika.taskmanager.dto.UserPageDTO;
 import ua.azaika.taskmanager.dto.UserPostRequestDTO;
 import ua.azaika.taskmanager.dto.UserResponseDTO;
+import ua.azaika.taskmanager.idempotency.IdempotencyKeyReusedException;
+import ua.azaika.taskmanager.idempotency.IdempotencyStore;
+import ua.azaika.taskmanager.mapper.UserJsonWriter;
 import ua.azaika.taskmanager.mapper.UserMapper;
 import ua.azaika.taskmanager.model.User;
+import ua.azaika.taskmanager.security.PasswordHasher;
 import ua.azaika.taskmanager.service.UserService;
+import ua.azaika.taskmanager.service.VersionConflictException;
 
-import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/users")
 @RequiredArgsConstructor
 public class UserController {
+    static final int MAX_PAGE_SIZE = 1000;
+    static final int MAX_BATCH_SIZE = 10_000;
+    static final int MAX_SEARCH_RESULTS = 100;
+    static final int MAX_SEARCH_QUERY_LENGTH = 100;
+    static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+    static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+    private static final int STREAM_CHUNK_SIZE = 500;
+
     private final UserService userService;
     private final UserMapper userMapper;
+    private final ObjectMapper objectMapper;
+    private final PasswordHasher passwordHasher;
+    private final IdempotencyStore<ResponseEntity<UserResponseDTO>> idempotencyStore;
+    private final AsyncTaskExecutor applicationTaskExecutor;
+    private final VersionTags versionTags = new VersionTags();
 
+    /**
+     * Hashes the password on the {@link PasswordHasher} pool and saves the user on the MVC
+     * async executor when the hash is ready, so a slow log sync never holds a hashing
+     * thread; the request thread is released in the meantime. The location is taken from
+     * the request up front, because the request is no longer bound once the hash completes.
+     * <p>
+     * With an {@code Idempotency-Key}, a repeated request returns the response of the first
+     * one, marked with {@code Idempotent-Replayed: true}, instead of creating another user.
+     * A repeat that arrives while the first is still running waits for it. Reusing a key
+     * with a different body is a 422.
+     */
     @PostMapping
-    public ResponseEntity<UserResponseDTO> post(@RequestBody UserPostRequestDTO userPostRequestDTO) {
-        User inputUser = userMapper.toUser(userPostRequestDTO);
-        User savedUser = userService.save(inputUser);
-        URI uri = ServletUriComponentsBuilder
+    public CompletableFuture<ResponseEntity<UserResponseDTO>> post(
+            @RequestBody UserPostRequestDTO userPostRequestDTO,
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        UriComponentsBuilder location = ServletUriComponentsBuilder
                 .fromCurrentRequest()
-                .path("/{id}")
-                .buildAndExpand(savedUser.getId())
-                .toUri();
-        return ResponseEntity.created(uri).body(userMapper.toResponseDTO(savedUser));
+                .path("/{id}");
+        if (idempotencyKey == null) return create(userPostRequestDTO, location);
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        byte[] fingerprint = IdempotencyStore.fingerprint(userPostRequestDTO.userName(), userPostRequestDTO.email(),
+                userPostRequestDTO.password());
+        return idempotencyStore.execute(idempotencyKey, fingerprint, () -> create(userPostRequestDTO, location),
+                UserController::replayed);
+    }
+
+    private CompletableFuture<ResponseEntity<UserResponseDTO>> create(UserPostRequestDTO userPostRequestDTO,
+                                                                      UriComponentsBuilder location) {
+        User inputUser = userMapper.toUser(userPostRequestDTO);
+        return passwordHasher.hash(inputUser.getPassword()).thenApplyAsync(hashedPassword -> {
+            inputUser.setPassword(hashedPassword);
+            User savedUser = userService.save(inputUser);
+            return ResponseEntity.created(location.buildAndExpand(savedUser.getId()).toUri())
+                    .varyBy(HttpHeaders.ACCEPT)
+                    .eTag(versionTags.of(savedUser.getVersion()))
+                    .body(userMapper.toResponseDTO(savedUser));
+        }, applicationTaskExecutor);
     }
 
+    /**
+     * Applies a batch of create, update and delete operations and reports one result per
+     * operation, in request order. Creates are applied first, then updates, then deletes,
+     * each group through a single batched service call, once all their passwords are hashed.
+     * Hashing a full batch takes minutes of CPU, so {@code spring.mvc.async.request-timeout}
+     * must leave room for it.
+     */
+    @PostMapping("/batch")
+    public CompletableFuture<ResponseEntity<List<UserBatchResultDTO>>> batch(@RequestBody UserBatchRequestDTO batchRequestDTO) {
+        List<UserBatchOperationDTO> operations = batchRequestDTO.operations();
+        if (operations == null || operations.size() > MAX_BATCH_SIZE) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+
+        UserBatchResultDTO[] results = new UserBatchResultDTO[operations.size()];
+        List<Integer> createIndexes = new ArrayList<>();
+        List<User> creates = new ArrayList<>();
+        List<Integer> updateIndexes = new ArrayList<>();
+        List<User> updates = new ArrayList<>();
+        List<Integer> deleteIds = new ArrayList<>();
+
+        for (int i = 0; i < operations.size(); i++) {
+            UserBatchOperationDTO operation = operations.get(i);
+            UserBatchOperationDTO.Type type = operation == null ? null : operation.type();
+            if (type == UserBatchOperationDTO.Type.CREATE && operation.user() != null) {
+                createIndexes.add(i);
+                creates.add(userMapper.toUser(operation.user()));
+            } else if (type == UserBatchOperationDTO.Type.UPDATE && operation.id() != null && operation.user() != null) {
+                User update = userMapper.toUser(operation.user());
+                update.setId(operation.id());
+                updateIndexes.add(i);
+                updates.add(update);
+            } else if (type == UserBatchOperationDTO.Type.DELETE && operation.id() != null) {
+                deleteIds.add(operation.id());
+                results[i] = new UserBatchResultDTO(i, HttpStatus.NO_CONTENT.value(), null);
+            } else {
+                results[i] = new UserBatchResultDTO(i, HttpStatus.BAD_REQUEST.value(), null);
+            }
+        }
+
+        List<User> usersToHash = new ArrayList<>(creates);
+        usersToHash.addAll(updates);
+        List<String> passwords = usersToHash.stream().map(User::getPassword).toList();
+        return passwordHasher.hashAll(passwords).thenApplyAsync(hashedPasswords -> {
+            for (int i = 0; i < usersToHash.size(); i++) {
+                usersToHash.get(i).setPassword(hashedPasswords.get(i));
+            }
+            applyBatch(results, createIndexes, creates, updateIndexes, updates, deleteIds);
+            return ResponseEntity.ok()
+                    .varyBy(HttpHeaders.ACCEPT)
+                    .body(Arrays.asList(results));
+        }, applicationTaskExecutor);
+    }
+
+    private void applyBatch(UserBatchResultDTO[] results, List<Integer> createIndexes, List<User> creates,
+                            List<Integer> updateIndexes, List<User> updates, List<Integer> deleteIds) {
+        List<User> created = userService.saveAll(creates);
+        for (int i = 0; i < created.size(); i++) {
+            int index = createIndexes.get(i);
+            results[index] = new UserBatchResultDTO(index, HttpStatus.CREATED.value(), userMapper.toResponseDTO(created.get(i)));
+        }
+        List<User> updated = userService.updateAll(updates);
+        for (int i = 0; i < updated.size(); i++) {
+            int index = updateIndexes.get(i);
+            User user = updated.get(i);
+            results[index] = user == null
+                    ? new UserBatchResultDTO(index, HttpStatus.NOT_FOUND.value(), null)
+                    : new UserBatchResultDTO(index, HttpStatus.OK.value(), userMapper.toResponseDTO(user));
+        }
+        userService.deleteAllById(deleteIds);
+    }
+
+    /**
+     * Tagged with the user's version; a matching {@code If-None-Match} gets 304 without the
+     * user being mapped or serialized.
+     */
     @GetMapping("/{id}")
-    public ResponseEntity<UserResponseDTO> getById(@PathVariable Integer id) {
+    public ResponseEntity<UserResponseDTO> getById(@PathVariable Integer id, WebRequest request) {
         User user = userService.findById(id);
         if (user == null) return ResponseEntity.notFound().build();
-        return ResponseEntity.ok(userMapper.toResponseDTO(user));
+        String eTag = versionTags.of(user.getVersion());
+        if (request.checkNotModified(eTag)) return notModified(eTag);
+        return ResponseEntity.ok()
+                .varyBy(HttpHeaders.ACCEPT)
+                .eTag(eTag)
+                .body(userMapper.toResponseDTO(user));
     }
 
+    /**
+     * Tagged with the collection version, which is read before the users, so the tag is
+     * never newer than the body. A matching {@code If-None-Match} skips the scan entirely.
+     * <p>
+     * Like every list endpoint, it takes {@code ?fields=} to return only some fields of each
+     * user, for example {@code ?fields=id,email}. Lists are written straight from the users,
+     * without a {@link UserResponseDTO} per user; see {@link UserJsonWriter}.
+     */
     @GetMapping
-    public ResponseEntity<List<UserResponseDTO>> getAll() {
-        List<UserResponseDTO> responseDTOS = userService.getAll().stream()
-                .map(userMapper::toResponseDTO)
-                .toList();
-        return ResponseEntity.ok(responseDTOS);
+    public ResponseEntity<UserListDTO> getAll(@RequestParam(required = false) String fields, WebRequest request) {
+        Set<UserField> projection = UserField.parse(fields);
+        if (projection == null) return ResponseEntity.badRequest().build();
+        String eTag = versionTags.of(userService.collectionVersion());
+        if (request.checkNotModified(eTag)) return notModified(eTag);
+        return ResponseEntity.ok()
+                .varyBy(HttpHeaders.ACCEPT)
+                .eTag(eTag)
+                .body(new UserListDTO(userService.getAll(), projection));
     }
 
+    @GetMapping(params = "limit")
+    public ResponseEntity<UserPageDTO> getPage(@RequestParam(required = false) Integer after,
+                                               @RequestParam int limit,
+                                               @RequestParam(required = false) String fields) {
+        Set<UserField> projection = UserField.parse(fields);
+        if (limit < 1 || projection == null) return ResponseEntity.badRequest().build();
+        int pageSize = Math.min(limit, MAX_PAGE_SIZE);
+        List<User> users = userService.getPage(after, pageSize);
+        String nextCursor = users.size() < pageSize ? null : String.valueOf(users.getLast().getId());
+        return ResponseEntity.ok()
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(new UserPageDTO(new UserListDTO(users, projection), nextCursor));
+    }
+
+    /**
+     * Autocomplete over user names and emails: prefix matches first, then substring matches,
+     * ignoring case. See {@link UserService#search(String, int)}.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<UserListDTO> search(@RequestParam String q,
+                                              @RequestParam(defaultValue = "10") int limit,
+                                              @RequestParam(required = false) String fields) {
+        Set<UserField> projection = UserField.parse(fields);
+        if (q.isBlank() || q.length() > MAX_SEARCH_QUERY_LENGTH || limit < 1 || projection == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<User> users = userService.search(q, Math.min(limit, MAX_SEARCH_RESULTS));
+        return ResponseEntity.ok()
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(new UserListDTO(users, projection));
+    }
+
+    /**
+     * Streams every user as newline-delimited JSON, fetching them page by page so memory
+     * use does not grow with the number of users.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> stream(@RequestParam(required = false) String fields) {
+        Set<UserField> projection = UserField.parse(fields);
+        if (projection == null) return ResponseEntity.badRequest().build();
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.setRootValueSeparator(null);
+                UserJsonWriter writer = new UserJsonWriter(projection);
+                Integer after = null;
+                List<User> page;
+                do {
+                    page = userService.getPage(after, STREAM_CHUNK_SIZE);
+                    for (User user : page) {
+                        writer.write(generator, user);
+                        generator.writeRaw('\n');
+                    }
+                    generator.flush();
+                    if (!page.isEmpty()) after = page.getLast().getId();
+                } while (page.size() == STREAM_CHUNK_SIZE);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    /**
+     * With {@code If-Match}, the update applies only while the user still has one of the
+     * listed tags, checked atomically with the write; otherwise the answer is 412 with the
+     * current tag, and the client should fetch the user again before retrying.
+     * <p>
+     * A missing user or a stale tag is answered before the password is hashed. The update
+     * itself runs once the hash is ready, like {@link #post(UserPostRequestDTO, String)}.
+     */
     @PutMapping("/{id}")
-    public ResponseEntity<UserResponseDTO> put(@PathVariable Integer id, @RequestBody UserPostRequestDTO userPostRequestDTO) {
+    public CompletableFuture<ResponseEntity<UserResponseDTO>> put(@PathVariable Integer id,
+                                                                  @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                                  @RequestBody UserPostRequestDTO userPostRequestDTO) {
+        User currentUser = userService.findById(id);
+        if (currentUser == null) {
+            return CompletableFuture.completedFuture(ifMatch == null
+                    ? ResponseEntity.notFound().build()
+                    : ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build());
+        }
+        if (ifMatch != null && !versionTags.matches(ifMatch, currentUser.getVersion())) {
+            return CompletableFuture.completedFuture(preconditionFailed(currentUser.getVersion()));
+        }
+        Long expectedVersion = ifMatch == null ? null : currentUser.getVersion();
         User inputUser = userMapper.toUser(userPostRequestDTO);
-        User updatedUser = userService.update(id, inputUser);
-        if (updatedUser == null) return ResponseEntity.notFound().build();
-        return ResponseEntity.ok(userMapper.toResponseDTO(updatedUser));
+        return passwordHasher.hash(inputUser.getPassword()).thenApplyAsync(hashedPassword -> {
+            inputUser.setPassword(hashedPassword);
+            return update(id, inputUser, expectedVersion);
+        }, applicationTaskExecutor);
     }
 
     @DeleteMapping("/{id}")
@@ -61,4 +304,59 @@ public class UserController {
         return ResponseEntity.noContent().build();
     }
 
+    /**
+     * The hashing pool's queue is full: ask the client to come back instead of queueing
+     * without bound.
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<Void> hashingOverloaded() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .build();
+    }
+
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    public ResponseEntity<Void> idempotencyKeyReused() {
+        return ResponseEntity.unprocessableEntity().build();
+    }
+
+    private static ResponseEntity<UserResponseDTO> replayed(ResponseEntity<UserResponseDTO> original) {
+        return ResponseEntity.status(original.getStatusCode())
+                .headers(original.getHeaders())
+                .header(IDEMPOTENT_REPLAYED, "true")
+                .body(original.getBody());
+    }
+
+    private ResponseEntity<UserResponseDTO> update(Integer id, User inputUser, Long expectedVersion) {
+        User updatedUser;
+        if (expectedVersion == null) {
+            updatedUser = userService.update(id, inputUser);
+            if (updatedUser == null) return ResponseEntity.notFound().build();
+        } else {
+            try {
+                updatedUser = userService.update(id, inputUser, expectedVersion);
+            } catch (VersionConflictException e) {
+                return preconditionFailed(e.getCurrentVersion());
+            }
+            if (updatedUser == null) return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
+        return ResponseEntity.ok()
+                .varyBy(HttpHeaders.ACCEPT)
+                .eTag(versionTags.of(updatedUser.getVersion()))
+                .body(userMapper.toResponseDTO(updatedUser));
+    }
+
+    private static <T> ResponseEntity<T> notModified(String eTag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .varyBy(HttpHeaders.ACCEPT)
+                .eTag(eTag)
+                .build();
+    }
+
+    private <T> ResponseEntity<T> preconditionFailed(long currentVersion) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                .varyBy(HttpHeaders.ACCEPT)
+                .eTag(versionTags.of(currentVersion))
+                .build();
+    }
 }
@@ -0,0 +1,30 @@
+package ua.azaika.taskmanager.controller;
+
+import org.springframework.http.ETag;
+
+/**
+ * Entity tags made from store versions. Versions start over when an in-memory store is
+ * created again, so every tag also carries the time this instance was created; a tag handed
+ * out before a restart never matches afterwards.
+ * <p>
+ * Tags are weak. The same version is sent as JSON, CBOR or Smile, gzip-compressed or not, so
+ * the bytes differ while the user does not; Tomcat also refuses to compress any response
+ * with a strong tag. A tag still names exactly one version, so {@code If-Match} compares the
+ * tag values and ignores the weakness that {@code If-None-Match} ignores anyway.
+ */
+final class VersionTags {
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+    String of(long version) {
+        return "W/\"" + epoch + "-" + version + "\"";
+    }
+
+    /**
+     * Evaluates an {@code If-Match} header against the current version.
+     */
+    boolean matches(String ifMatch, long version) {
+        String current = epoch + "-" + version;
+        return ETag.parse(ifMatch).stream()
+                .anyMatch(tag -> tag.isWildcard() || current.equals(tag.tag()));
+    }
+}
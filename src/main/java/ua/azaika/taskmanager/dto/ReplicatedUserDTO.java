@@ -0,0 +1,9 @@
+package ua.azaika.taskmanager.dto;
+
+public record ReplicatedUserDTO(
+        Integer id,
+        String userName,
+        String email,
+        long version
+) {
+}
@@ -0,0 +1,38 @@
+package ua.azaika.taskmanager.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One line of the replication snapshot or log. {@code type} is one of {@link #SNAPSHOT},
+ * {@link #USER}, {@link #END}, {@link #HEARTBEAT}, {@link #RESYNC}, or a change type of the
+ * user change feed. {@code user} is {@code null} for deletes.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ReplicationEventDTO(
+        String type,
+        Long sequence,
+        String epoch,
+        Integer id,
+        ReplicatedUserDTO user
+) {
+    /**
+     * Opens a snapshot: the log continues after {@code sequence} of {@code epoch}.
+     */
+    public static final String SNAPSHOT = "SNAPSHOT";
+    /**
+     * One user of a snapshot.
+     */
+    public static final String USER = "USER";
+    /**
+     * Closes a complete snapshot.
+     */
+    public static final String END = "END";
+    /**
+     * Sent by the leader while the log is open; {@code sequence} is the leader's latest.
+     */
+    public static final String HEARTBEAT = "HEARTBEAT";
+    /**
+     * The log cannot continue from the requested position; load a snapshot.
+     */
+    public static final String RESYNC = "RESYNC";
+}
@@ -0,0 +1,14 @@
+package ua.azaika.taskmanager.dto;
+
+import ua.azaika.taskmanager.model.TaskPriority;
+import ua.azaika.taskmanager.model.TaskStatus;
+
+import java.time.LocalDate;
+
+public record TaskPostRequestDTO(
+        String title,
+        TaskStatus status,
+        TaskPriority priority,
+        LocalDate dueDate
+) {
+}
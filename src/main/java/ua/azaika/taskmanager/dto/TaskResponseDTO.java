@@ -0,0 +1,16 @@
+package ua.azaika.taskmanager.dto;
+
+import ua.azaika.taskmanager.model.TaskPriority;
+import ua.azaika.taskmanager.model.TaskStatus;
+
+import java.time.LocalDate;
+
+public record TaskResponseDTO(
+        String id,
+        String ownerId,
+        String title,
+        TaskStatus status,
+        TaskPriority priority,
+        LocalDate dueDate
+) {
+}
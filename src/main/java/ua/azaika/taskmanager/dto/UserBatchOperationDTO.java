@@ -0,0 +1,13 @@
+package ua.azaika.taskmanager.dto;
+
+public record UserBatchOperationDTO(
+        Type type,
+        Integer id,
+        UserPostRequestDTO user
+) {
+    public enum Type {
+        CREATE,
+        UPDATE,
+        DELETE
+    }
+}
@@ -0,0 +1,8 @@
+package ua.azaika.taskmanager.dto;
+
+import java.util.List;
+
+public record UserBatchRequestDTO(
+        List<UserBatchOperationDTO> operations
+) {
+}
@@ -0,0 +1,8 @@
+package ua.azaika.taskmanager.dto;
+
+public record UserBatchResultDTO(
+        int index,
+        int status,
+        UserResponseDTO user
+) {
+}
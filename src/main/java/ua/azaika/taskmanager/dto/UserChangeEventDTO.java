@@ -0,0 +1,9 @@
+package ua.azaika.taskmanager.dto;
+
+public record UserChangeEventDTO(
+        long sequence,
+        String type,
+        String id,
+        UserResponseDTO user
+) {
+}
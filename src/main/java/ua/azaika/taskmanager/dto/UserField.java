@@ -0,0 +1,60 @@
+package ua.azaika.taskmanager.dto;
+
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The fields of a user that a list response can be limited to with {@code ?fields=}.
+ */
+public enum UserField {
+    ID("id"),
+    USER_NAME("userName"),
+    EMAIL("email");
+
+    public static final Set<UserField> ALL = Set.copyOf(EnumSet.allOf(UserField.class));
+
+    private final String jsonName;
+    private final SerializableString serializedName;
+
+    UserField(String jsonName) {
+        this.jsonName = jsonName;
+        this.serializedName = new SerializedString(jsonName);
+    }
+
+    public String jsonName() {
+        return jsonName;
+    }
+
+    /**
+     * The field name with its encodings computed once, so generators do not encode it again
+     * for every user.
+     */
+    public SerializableString serializedName() {
+        return serializedName;
+    }
+
+    /**
+     * Parses a comma-separated list of field names, such as {@code id,email}. A missing list
+     * means every field. Returns {@code null} if the list is empty or names an unknown field.
+     */
+    public static Set<UserField> parse(String fields) {
+        if (fields == null) return ALL;
+        EnumSet<UserField> parsed = EnumSet.noneOf(UserField.class);
+        for (String name : fields.split(",")) {
+            UserField field = byJsonName(name.strip());
+            if (field == null) return null;
+            parsed.add(field);
+        }
+        return parsed;
+    }
+
+    private static UserField byJsonName(String name) {
+        for (UserField field : values()) {
+            if (field.jsonName.equals(name)) return field;
+        }
+        return null;
+    }
+}
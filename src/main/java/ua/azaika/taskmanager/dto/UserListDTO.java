@@ -0,0 +1,20 @@
+package ua.azaika.taskmanager.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import ua.azaika.taskmanager.mapper.UserListSerializer;
+import ua.azaika.taskmanager.model.User;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A list of users as a response body, limited to {@code fields}. It is written as an array
+ * of the same objects as {@link UserResponseDTO}, straight from the users; see
+ * {@link UserListSerializer}.
+ */
+@JsonSerialize(using = UserListSerializer.class)
+public record UserListDTO(
+        List<User> users,
+        Set<UserField> fields
+) {
+}
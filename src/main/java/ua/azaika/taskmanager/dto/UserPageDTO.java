@@ -0,0 +1,7 @@
+package ua.azaika.taskmanager.dto;
+
+public record UserPageDTO(
+        UserListDTO users,
+        String nextCursor
+) {
+}
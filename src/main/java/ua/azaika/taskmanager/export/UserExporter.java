@@ -0,0 +1,400 @@
+package ua.azaika.taskmanager.export;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import ua.azaika.taskmanager.dto.UserField;
+import ua.azaika.taskmanager.feed.UserChangeEvent;
+import ua.azaika.taskmanager.mapper.UserJsonWriter;
+import ua.azaika.taskmanager.model.User;
+import ua.azaika.taskmanager.service.UserChangeListener;
+import ua.azaika.taskmanager.service.UserService;
+
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes users to gzip-compressed NDJSON files in a local directory, for reporting jobs
+ * that need a full dump without reading it from the API.
+ * <p>
+ * The exporter starts with a snapshot file holding every user, and then follows the store
+ * as a {@link UserChangeListener}, writing each change to a changes file shaped like the
+ * change feed's events. A changes file is sealed after {@code maxFileBytes} compressed
+ * bytes or {@code maxFileAge}, whichever comes first. Files are numbered in the order they
+ * were written, and are only renamed to their final name once complete. So the current
+ * users are the latest snapshot with every later changes file applied in order. Deleting
+ * files that a newer snapshot makes obsolete is left to their consumers.
+ * <p>
+ * The listener callbacks only put the change on a queue of {@code queueCapacity}. A single
+ * background thread takes changes off it in batches of up to {@code batchSize} and does all
+ * the I/O, so writers never wait for the disk. When the queue is full, the exporter drops
+ * the oldest queued change to make room instead of blocking the writer, and starts over
+ * with a new snapshot.
+ * A failed write is handled the same way, after a pause.
+ * <p>
+ * As a {@link MeterBinder} it publishes {@code users.export.lag}: the age of the oldest change
+ * that is not yet in a sealed file. It also publishes {@code users.export.queue.depth},
+ * {@code users.export.records} and {@code users.export.resyncs}.
+ */
+@Slf4j
+public class UserExporter implements UserChangeListener, MeterBinder, Closeable {
+    private static final Pattern FILE_NAME = Pattern.compile("users-(\\d+)-(snapshot|changes)\\.ndjson\\.gz");
+    private static final String PART_SUFFIX = ".part";
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long RETRY_MILLIS = 1000;
+    private static final int SNAPSHOT_PAGE_SIZE = 1000;
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final UserService userService;
+    private final Path directory;
+    private final int batchSize;
+    private final long maxFileBytes;
+    private final long maxFileAgeNanos;
+    private final BlockingQueue<Change> queue;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final UserJsonWriter userWriter = new UserJsonWriter(UserField.ALL);
+    private final long snapshotMargin;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong lastDropped = new AtomicLong();
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong resyncs = new AtomicLong();
+    private final Thread worker;
+    private volatile boolean running = true;
+    private volatile boolean resyncRequested = true;
+    private volatile long oldestUnsealedNanos = NONE;
+    private long snapshotSequence;
+    private long fileNumber;
+    private ExportFile changesFile;
+
+    public UserExporter(UserService userService, Path directory, int queueCapacity, int batchSize,
+                        long maxFileBytes, Duration maxFileAge) {
+        if (queueCapacity < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Queue capacity and batch size must be positive");
+        }
+        this.userService = userService;
+        this.directory = directory;
+        this.batchSize = batchSize;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFileAgeNanos = maxFileAge.toNanos();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.snapshotMargin = Math.min(SNAPSHOT_PAGE_SIZE, queueCapacity / 2);
+        this.worker = Thread.ofPlatform().name("user-exporter").daemon().unstarted(this::run);
+    }
+
+    /**
+     * Removes files left incomplete by an earlier run and starts exporting, beginning with a
+     * snapshot. Register the exporter as a change listener first, so no change is missed.
+     */
+    public void start() throws IOException {
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(PART_SUFFIX)) {
+                    Files.delete(file);
+                    continue;
+                }
+                Matcher matcher = FILE_NAME.matcher(name);
+                if (matcher.matches()) fileNumber = Math.max(fileNumber, Long.parseLong(matcher.group(1)));
+            }
+        }
+        worker.start();
+    }
+
+    @Override
+    public void onSave(User user) {
+        enqueue(UserChangeEvent.Type.SAVED, user.getId(), user);
+    }
+
+    @Override
+    public void onUpdate(User previous, User current) {
+        enqueue(UserChangeEvent.Type.UPDATED, current.getId(), current);
+    }
+
+    @Override
+    public void onDelete(User removed) {
+        enqueue(UserChangeEvent.Type.DELETED, removed.getId(), null);
+    }
+
+    /**
+     * Nanoseconds since the oldest change that is not yet in a sealed file was made, or 0 if
+     * the files are up to date.
+     */
+    public long lagNanos() {
+        long oldest = oldestUnsealedNanos;
+        if (oldest == NONE) {
+            Change head = queue.peek();
+            if (head == null) return 0;
+            oldest = head.madeNanos();
+        }
+        return Math.max(0, System.nanoTime() - oldest);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        TimeGauge.builder("users.export.lag", this, TimeUnit.NANOSECONDS, UserExporter::lagNanos)
+                .description("Age of the oldest user change not yet in a sealed export file")
+                .register(registry);
+        Gauge.builder("users.export.queue.depth", queue, BlockingQueue::size)
+                .description("User changes waiting for the exporter")
+                .register(registry);
+        FunctionCounter.builder("users.export.records", records, AtomicLong::get)
+                .description("Users and user changes written to export files")
+                .register(registry);
+        FunctionCounter.builder("users.export.resyncs", resyncs, AtomicLong::get)
+                .description("Times the exporter fell behind and started over with a snapshot")
+                .register(registry);
+    }
+
+    /**
+     * Writes the changes still queued, seals the open file and stops the exporter.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(10));
+            if (worker.isAlive()) {
+                worker.interrupt();
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs inside the store's critical section, so changes to one user are queued in the
+     * order they were made. The new change itself is never the one dropped: the store has not
+     * applied it yet, so the next snapshot may miss it and only the queue can bring it back.
+     */
+    private void enqueue(UserChangeEvent.Type type, Integer userId, User user) {
+        Change change = new Change(sequence.incrementAndGet(), type, userId, user, System.nanoTime());
+        while (!queue.offer(change)) {
+            Change dropped = queue.poll();
+            if (dropped == null) continue;
+            lastDropped.accumulateAndGet(dropped.sequence(), Math::max);
+            if (!resyncRequested) {
+                resyncRequested = true;
+                resyncs.incrementAndGet();
+            }
+        }
+    }
+
+    private void run() {
+        List<Change> batch = new ArrayList<>(batchSize);
+        while (running || resyncRequested || !queue.isEmpty()) {
+            try {
+                if (resyncRequested) {
+                    // The queue may have overflowed again while the snapshot was written.
+                    writeSnapshot();
+                    continue;
+                }
+                Change first = queue.poll(POLL_NANOS, TimeUnit.NANOSECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    writeChanges(batch);
+                    batch.clear();
+                }
+                if (changesFile != null && changesFile.isDue()) sealChangesFile();
+            } catch (InterruptedException e) {
+                break;
+            } catch (IOException | UncheckedIOException e) {
+                log.error("User export to {} failed, starting over with a snapshot", directory, e);
+                batch.clear();
+                abandonChangesFile();
+                resyncRequested = true;
+                if (!pause()) break;
+            }
+        }
+        try {
+            if (changesFile != null) sealChangesFile();
+        } catch (IOException e) {
+            log.error("Failed to seal the last user export file in {}", directory, e);
+            abandonChangesFile();
+        }
+    }
+
+    /**
+     * Writes every user to a new snapshot file, and drops the queued changes it already
+     * contains. A change is queued while the store is still applying it, so a snapshot read
+     * right after may not see the newest ones yet. The changes of the last
+     * {@code snapshotMargin} sequences are therefore kept and written again after the
+     * snapshot, where applying one the snapshot already has changes nothing. The margin stops
+     * at the newest change the full queue dropped: replaying an older change to that user
+     * would undo the dropped one. Dropped changes are the oldest in the queue, so they are
+     * normally older than the margin anyway, and applied long before the snapshot reads them.
+     */
+    private void writeSnapshot() throws IOException {
+        resyncRequested = false;
+        snapshotSequence = Math.max(Math.max(0, sequence.get() - snapshotMargin), lastDropped.get());
+        Change head = queue.peek();
+        markUnsealed(head == null ? System.nanoTime() : head.madeNanos());
+        queue.removeIf(change -> change.sequence() <= snapshotSequence);
+        if (changesFile != null) sealChangesFile();
+
+        ExportFile snapshot = openFile("snapshot");
+        try {
+            Integer after = null;
+            List<User> page;
+            do {
+                page = userService.getPage(after, SNAPSHOT_PAGE_SIZE);
+                for (User user : page) {
+                    userWriter.write(snapshot.generator, user);
+                    snapshot.generator.writeRaw('\n');
+                }
+                records.addAndGet(page.size());
+                if (!page.isEmpty()) after = page.getLast().getId();
+            } while (page.size() == SNAPSHOT_PAGE_SIZE);
+            snapshot.seal();
+        } catch (IOException | RuntimeException e) {
+            snapshot.abandon();
+            throw e;
+        }
+        oldestUnsealedNanos = NONE;
+    }
+
+    private void writeChanges(List<Change> batch) throws IOException {
+        for (Change change : batch) {
+            // Already part of the latest snapshot.
+            if (change.sequence() <= snapshotSequence) continue;
+            if (changesFile == null) changesFile = openFile("changes");
+            JsonGenerator generator = changesFile.generator;
+            generator.writeStartObject();
+            generator.writeNumberField("sequence", change.sequence());
+            generator.writeStringField("type", change.type().name());
+            generator.writeStringField("id", String.valueOf(change.userId()));
+            generator.writeFieldName("user");
+            if (change.user() == null) {
+                generator.writeNull();
+            } else {
+                userWriter.write(generator, change.user());
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            records.incrementAndGet();
+            markUnsealed(change.madeNanos());
+        }
+    }
+
+    private void sealChangesFile() throws IOException {
+        ExportFile file = changesFile;
+        changesFile = null;
+        file.seal();
+        oldestUnsealedNanos = NONE;
+    }
+
+    private void abandonChangesFile() {
+        if (changesFile == null) return;
+        changesFile.abandon();
+        changesFile = null;
+    }
+
+    private void markUnsealed(long madeNanos) {
+        if (oldestUnsealedNanos == NONE) oldestUnsealedNanos = madeNanos;
+    }
+
+    private ExportFile openFile(String kind) throws IOException {
+        Path target = directory.resolve("users-%06d-%s.ndjson.gz".formatted(++fileNumber, kind));
+        return new ExportFile(target);
+    }
+
+    /**
+     * @return {@code false} if the exporter was stopped while waiting
+     */
+    private boolean pause() {
+        try {
+            Thread.sleep(RETRY_MILLIS);
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    private record Change(long sequence, UserChangeEvent.Type type, Integer userId, User user, long madeNanos) {
+    }
+
+    /**
+     * A file being written under a temporary name, and renamed once it is complete.
+     */
+    private final class ExportFile {
+        private final Path target;
+        private final Path part;
+        private final CountingOutputStream compressed;
+        private final JsonGenerator generator;
+        private final long openedNanos = System.nanoTime();
+
+        ExportFile(Path target) throws IOException {
+            this.target = target;
+            this.part = target.resolveSibling(target.getFileName() + PART_SUFFIX);
+            this.compressed = new CountingOutputStream(Files.newOutputStream(part));
+            this.generator = jsonFactory.createGenerator(new GZIPOutputStream(compressed, 64 * 1024));
+            this.generator.setRootValueSeparator(null);
+        }
+
+        boolean isDue() {
+            return compressed.count >= maxFileBytes || System.nanoTime() - openedNanos >= maxFileAgeNanos;
+        }
+
+        void seal() throws IOException {
+            generator.close();
+            Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        void abandon() {
+            try {
+                generator.close();
+            } catch (IOException ignored) {
+                // The file is deleted anyway.
+            }
+            try {
+                Files.deleteIfExists(part);
+            } catch (IOException e) {
+                log.warn("Failed to delete incomplete user export file {}", part, e);
+            }
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package ua.azaika.taskmanager.feed;
+
+import ua.azaika.taskmanager.model.User;
+
+/**
+ * One entry of the user change feed. {@code user} is the state after the change, and is
+ * {@code null} for deletes and resyncs.
+ */
+public record UserChangeEvent(
+        long sequence,
+        Type type,
+        Integer userId,
+        User user
+) {
+    public enum Type {
+        SAVED,
+        UPDATED,
+        DELETED,
+        /**
+         * Events were lost for this subscriber. It must reload the full user list; every
+         * change with a sequence above this event's follows.
+         */
+        RESYNC
+    }
+
+    static UserChangeEvent resync(long sequence) {
+        return new UserChangeEvent(sequence, Type.RESYNC, null, null);
+    }
+}
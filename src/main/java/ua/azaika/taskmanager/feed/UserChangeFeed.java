@@ -0,0 +1,256 @@
+package ua.azaika.taskmanager.feed;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import ua.azaika.taskmanager.model.User;
+import ua.azaika.taskmanager.service.UserChangeListener;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sequenced feed of every change to the user store, for clients that want to follow the
+ * store instead of polling it.
+ * <p>
+ * As a {@link UserChangeListener}, the feed numbers each change from an atomic counter and
+ * stores it in its slot of a fixed-size history ring. Publishing takes no lock and does not
+ * touch subscribers, so writers to different users never wait for each other here, however
+ * many subscribers there are. Changes to one user are numbered in the order the store
+ * applied them, because the store reports them one at a time.
+ * <p>
+ * Each {@link Subscription} is a cursor into the history and reads events in sequence
+ * order, waiting for a slot whose number has been taken but whose event is not stored yet.
+ * So every subscriber sees the same strictly increasing order. A subscriber that falls more
+ * than {@code subscriberBufferSize} events behind, or whose next event has already been
+ * overwritten, gets a {@link UserChangeEvent.Type#RESYNC} marker and continues from the
+ * newest change, so a slow client never blocks writers. Resuming from a sequence that has
+ * already left the history gets the same marker.
+ * <p>
+ * Waiting subscribers park on a shared latch. A writer only releases it when someone is
+ * waiting, and releasing wakes one thread, which wakes the next.
+ */
+public class UserChangeFeed implements UserChangeListener, MeterBinder, Closeable {
+    private final AtomicReferenceArray<UserChangeEvent> history;
+    private final AtomicLong sequence = new AtomicLong();
+    private final int subscriberBufferSize;
+    private final int maxSubscribers;
+    /**
+     * Only guards opening subscriptions against closing the feed; never taken by writers.
+     */
+    private final ReentrantLock subscribeLock = new ReentrantLock();
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final AtomicReference<CountDownLatch> published = new AtomicReference<>(new CountDownLatch(1));
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong resyncs = new AtomicLong();
+    private final String epoch = UUID.randomUUID().toString();
+    private volatile boolean closed;
+
+    public UserChangeFeed(int historySize, int subscriberBufferSize, int maxSubscribers) {
+        if (historySize < 1 || subscriberBufferSize < 2) {
+            throw new IllegalArgumentException("History needs at least 1 slot and subscriber buffers at least 2");
+        }
+        this.history = new AtomicReferenceArray<>(historySize);
+        this.subscriberBufferSize = subscriberBufferSize;
+        this.maxSubscribers = maxSubscribers;
+    }
+
+    @Override
+    public void onSave(User user) {
+        publish(UserChangeEvent.Type.SAVED, user.getId(), user);
+    }
+
+    @Override
+    public void onUpdate(User previous, User current) {
+        publish(UserChangeEvent.Type.UPDATED, current.getId(), current);
+    }
+
+    @Override
+    public void onDelete(User removed) {
+        publish(UserChangeEvent.Type.DELETED, removed.getId(), null);
+    }
+
+    /**
+     * Opens a subscription that receives every change after {@code afterSequence}, or only
+     * future changes when it is {@code null}.
+     *
+     * @return the subscription, or {@code null} if {@code maxSubscribers} are already open or
+     * the feed is closed
+     */
+    public Subscription subscribe(Long afterSequence) {
+        return subscribe(epoch, afterSequence);
+    }
+
+    /**
+     * Like {@link #subscribe(Long)}, for a position read from an earlier feed: a sequence
+     * of another epoch means nothing here, so the subscription starts with a
+     * {@link UserChangeEvent.Type#RESYNC} marker instead.
+     */
+    public Subscription subscribe(String afterEpoch, Long afterSequence) {
+        subscribeLock.lock();
+        try {
+            if (closed || subscriptions.size() >= maxSubscribers) return null;
+            long latest = sequence.get();
+            Subscription subscription;
+            if (afterSequence != null && !epoch.equals(afterEpoch)) {
+                subscription = new Subscription(latest + 1, UserChangeEvent.resync(latest));
+            } else if (afterSequence == null || afterSequence == latest) {
+                subscription = new Subscription(latest + 1, null);
+            } else {
+                long oldest = Math.max(1, latest - history.length() + 1);
+                subscription = afterSequence < oldest - 1 || afterSequence > latest
+                        ? new Subscription(latest + 1, UserChangeEvent.resync(latest))
+                        : new Subscription(afterSequence + 1, null);
+            }
+            subscriptions.add(subscription);
+            return subscription;
+        } finally {
+            subscribeLock.unlock();
+        }
+    }
+
+    /**
+     * Identifies this feed's sequence numbers. They start over with every new feed, after a
+     * restart for example, so a sequence is only meaningful together with its epoch.
+     */
+    public String epoch() {
+        return epoch;
+    }
+
+    /**
+     * The newest sequence handed out. The change it numbers may still be on its way into
+     * the history, so subscribers can receive it shortly after this returns.
+     */
+    public long currentSequence() {
+        return sequence.get();
+    }
+
+    /**
+     * Ends every open subscription; consumers waiting in {@link Subscription#poll} wake up.
+     * Later subscriptions are refused, so clients that reconnect right away cannot hold up
+     * the shutdown.
+     */
+    @Override
+    public void close() {
+        subscribeLock.lock();
+        try {
+            closed = true;
+        } finally {
+            subscribeLock.unlock();
+        }
+        subscriptions.forEach(Subscription::close);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("users.changes.subscribers", subscriptions, Set::size)
+                .description("Open subscriptions to the user change feed")
+                .register(registry);
+        FunctionCounter.builder("users.changes.resyncs", resyncs, AtomicLong::get)
+                .description("Subscribers that fell behind and were told to resync")
+                .register(registry);
+    }
+
+    private void publish(UserChangeEvent.Type type, Integer userId, User user) {
+        long eventSequence = sequence.incrementAndGet();
+        history.set(slot(eventSequence), new UserChangeEvent(eventSequence, type, userId, user));
+        if (waiting.get() > 0) wakeUp();
+    }
+
+    private void wakeUp() {
+        published.getAndSet(new CountDownLatch(1)).countDown();
+    }
+
+    private int slot(long eventSequence) {
+        return (int) (eventSequence % history.length());
+    }
+
+    /**
+     * A consumer's cursor into the feed. Events are taken with {@link #poll(Duration)} by one
+     * thread at a time; closing the subscription, from any thread, removes it from the feed.
+     */
+    public final class Subscription implements AutoCloseable {
+        private long next;
+        private UserChangeEvent pendingResync;
+        private volatile boolean closed;
+
+        private Subscription(long next, UserChangeEvent pendingResync) {
+            this.next = next;
+            this.pendingResync = pendingResync;
+        }
+
+        /**
+         * Waits up to {@code timeout} for the next event.
+         *
+         * @return the event, or {@code null} if none arrived in time or the subscription
+         * was closed
+         */
+        public UserChangeEvent poll(Duration timeout) throws InterruptedException {
+            long deadline = System.nanoTime() + timeout.toNanos();
+            while (true) {
+                if (closed) return null;
+                UserChangeEvent event = tryNext();
+                if (event != null) return event;
+                CountDownLatch latch = published.get();
+                waiting.incrementAndGet();
+                try {
+                    // Checked again after announcing the wait, so a writer that stored the
+                    // event before seeing the announcement is never missed.
+                    event = tryNext();
+                    if (event != null || closed) return event;
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) return null;
+                    latch.await(remaining, TimeUnit.NANOSECONDS);
+                } finally {
+                    waiting.decrementAndGet();
+                }
+            }
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            subscriptions.remove(this);
+            wakeUp();
+        }
+
+        /**
+         * @return the next event, or {@code null} if its number has not been taken yet or
+         * its writer has not stored it yet
+         */
+        private UserChangeEvent tryNext() {
+            if (pendingResync != null) {
+                UserChangeEvent resync = pendingResync;
+                pendingResync = null;
+                return resync;
+            }
+            long latest = sequence.get();
+            if (next > latest) return null;
+            UserChangeEvent event = history.get(slot(next));
+            if (latest - next >= subscriberBufferSize || event != null && event.sequence() > next) {
+                resyncs.incrementAndGet();
+                next = latest + 1;
+                return UserChangeEvent.resync(latest);
+            }
+            if (event == null || event.sequence() < next) return null;
+            next++;
+            return event;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package ua.azaika.taskmanager.idempotency;
+
+/**
+ * Thrown when an idempotency key arrives with a request other than the one it was first
+ * used for.
+ */
+public class IdempotencyKeyReusedException extends RuntimeException {
+
+    public IdempotencyKeyReusedException(String key) {
+        super("Idempotency key " + key + " was already used for another request");
+    }
+}
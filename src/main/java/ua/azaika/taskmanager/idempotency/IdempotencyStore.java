@@ -0,0 +1,103 @@
+package ua.azaika.taskmanager.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Remembers the outcome of requests sent with an {@code Idempotency-Key}, so that a client
+ * retrying a request gets the original response instead of running it again.
+ * <p>
+ * Each key maps to the future of its first execution. A duplicate that arrives while the
+ * first one is still running gets the same future and completes with it, so concurrent
+ * duplicates wait for the first execution instead of racing it, without holding a thread.
+ * An execution that fails is forgotten, so the client may retry it under the same key.
+ * <p>
+ * Keys are held in a Caffeine cache with a maximum size and an expiry counted from the
+ * first request, so memory stays bounded however many clients send keys. A key evicted
+ * under size pressure before its expiry is simply executed again. Every key remembers a
+ * fingerprint of its request, and reusing a key for a different request is refused.
+ */
+public class IdempotencyStore<V> {
+    private final Cache<String, Entry<V>> entries;
+
+    public IdempotencyStore(long maximumKeys, Duration ttl) {
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maximumKeys)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Runs {@code action} unless {@code key} has been seen before, in which case the first
+     * execution's result is returned, once it is available, after passing it through
+     * {@code replayed}.
+     *
+     * @param fingerprint identifies the request, see {@link #fingerprint(String...)}
+     * @throws IdempotencyKeyReusedException if the key was first used for another request
+     */
+    public CompletableFuture<V> execute(String key, byte[] fingerprint, Supplier<CompletableFuture<V>> action,
+                                        UnaryOperator<V> replayed) {
+        ConcurrentMap<String, Entry<V>> map = entries.asMap();
+        Entry<V> entry = new Entry<>(fingerprint, new CompletableFuture<>());
+        Entry<V> existing = map.putIfAbsent(key, entry);
+        if (existing != null) {
+            if (!MessageDigest.isEqual(existing.fingerprint(), fingerprint)) throw new IdempotencyKeyReusedException(key);
+            return existing.result().thenApply(replayed);
+        }
+        CompletableFuture<V> execution;
+        try {
+            execution = action.get();
+        } catch (RuntimeException e) {
+            map.remove(key, entry);
+            entry.result().completeExceptionally(e);
+            throw e;
+        }
+        execution.whenComplete((value, error) -> {
+            if (error != null) {
+                map.remove(key, entry);
+                entry.result().completeExceptionally(error);
+            } else {
+                entry.result().complete(value);
+            }
+        });
+        return execution;
+    }
+
+    /**
+     * Returns a SHA-256 digest of the given request fields. Only the digest is kept, so
+     * request contents such as passwords are never stored.
+     */
+    public static byte[] fingerprint(String... fields) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (String field : fields) {
+            byte[] bytes = field == null ? null : field.getBytes(StandardCharsets.UTF_8);
+            // Length-prefixed, so that "ab", "c" and "a", "bc" differ and null differs from "".
+            int length = bytes == null ? -1 : bytes.length;
+            digest.update(new byte[]{(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length});
+            if (bytes != null) digest.update(bytes);
+        }
+        return digest.digest();
+    }
+
+    public Cache<String, ?> cache() {
+        return entries;
+    }
+
+    private record Entry<V>(byte[] fingerprint, CompletableFuture<V> result) {
+    }
+}
@@ -0,0 +1,21 @@
+package ua.azaika.taskmanager.mapper;
+
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import ua.azaika.taskmanager.dto.TaskPostRequestDTO;
+import ua.azaika.taskmanager.dto.TaskResponseDTO;
+import ua.azaika.taskmanager.model.Task;
+
+import static org.mapstruct.MappingConstants.ComponentModel;
+
+@Mapper(componentModel = ComponentModel.SPRING)
+public interface TaskMapper {
+    /**
+     * The id and owner are set by the server.
+     */
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "ownerId", ignore = true)
+    Task toTask(TaskPostRequestDTO taskPostRequestDTO);
+
+    TaskResponseDTO toResponseDTO(Task task);
+}
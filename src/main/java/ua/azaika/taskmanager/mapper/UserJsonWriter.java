@@ -0,0 +1,71 @@
+package ua.azaika.taskmanager.mapper;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import ua.azaika.taskmanager.dto.UserField;
+import ua.azaika.taskmanager.dto.UserResponseDTO;
+import ua.azaika.taskmanager.model.User;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Writes users to a {@link JsonGenerator} as the same objects that {@link UserResponseDTO}
+ * serializes to, limited to a set of {@link UserField fields}, without creating a DTO per
+ * user. Field names are pre-encoded, and the id is formatted into a reused buffer instead of
+ * a new string. Works with every format that has a Jackson generator, so CBOR and Smile too.
+ * <p>
+ * Not thread-safe: create one per response.
+ */
+public final class UserJsonWriter {
+    private final boolean id;
+    private final boolean userName;
+    private final boolean email;
+    private final char[] digits = new char[11];
+
+    public UserJsonWriter(Set<UserField> fields) {
+        this.id = fields.contains(UserField.ID);
+        this.userName = fields.contains(UserField.USER_NAME);
+        this.email = fields.contains(UserField.EMAIL);
+    }
+
+    public void write(JsonGenerator generator, User user) throws IOException {
+        generator.writeStartObject(user);
+        if (id) {
+            generator.writeFieldName(UserField.ID.serializedName());
+            Integer userId = user.getId();
+            if (userId == null) {
+                generator.writeNull();
+            } else {
+                int start = format(userId);
+                generator.writeString(digits, start, digits.length - start);
+            }
+        }
+        if (userName) writeString(generator, UserField.USER_NAME, user.getUserName());
+        if (email) writeString(generator, UserField.EMAIL, user.getEmail());
+        generator.writeEndObject();
+    }
+
+    private static void writeString(JsonGenerator generator, UserField field, String value) throws IOException {
+        generator.writeFieldName(field.serializedName());
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeString(value);
+        }
+    }
+
+    /**
+     * Formats {@code value} into the end of {@link #digits} and returns where it starts.
+     */
+    private int format(int value) {
+        int position = digits.length;
+        // Work with the negative value, which also covers Integer.MIN_VALUE.
+        int remaining = value < 0 ? value : -value;
+        do {
+            digits[--position] = (char) ('0' - remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        if (value < 0) digits[--position] = '-';
+        return position;
+    }
+}
@@ -0,0 +1,26 @@
+package ua.azaika.taskmanager.mapper;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import ua.azaika.taskmanager.dto.UserListDTO;
+import ua.azaika.taskmanager.model.User;
+
+import java.io.IOException;
+
+public class UserListSerializer extends StdSerializer<UserListDTO> {
+
+    public UserListSerializer() {
+        super(UserListDTO.class);
+    }
+
+    @Override
+    public void serialize(UserListDTO value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        UserJsonWriter writer = new UserJsonWriter(value.fields());
+        generator.writeStartArray(value, value.users().size());
+        for (User user : value.users()) {
+            writer.write(generator, user);
+        }
+        generator.writeEndArray();
+    }
+}
@@ -1,6 +1,8 @@
 package ua.azaika.taskmanager.mapper;
 
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import ua.azaika.taskmanager.dto.ReplicatedUserDTO;
 import ua.azaika.taskmanager.dto.UserPostRequestDTO;
 import ua.azaika.taskmanager.dto.UserResponseDTO;
 import ua.azaika.taskmanager.model.User;
@@ -9,7 +11,20 @@ import static org.mapstruct.MappingConstants.ComponentModel;
 
 @Mapper(componentModel = ComponentModel.SPRING)
 public interface UserMapper {
+    /**
+     * The store assigns the id and version.
+     */
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "version", ignore = true)
     User toUser(UserPostRequestDTO userPostRequestDTO);
 
     UserResponseDTO toResponseDTO(User user);
+
+    ReplicatedUserDTO toReplicatedUserDTO(User user);
+
+    /**
+     * Password hashes are not replicated.
+     */
+    @Mapping(target = "password", ignore = true)
+    User toUser(ReplicatedUserDTO replicatedUserDTO);
 }
@@ -0,0 +1,21 @@
+package ua.azaika.taskmanager.model;
+
+import lombok.*;
+
+import java.time.LocalDate;
+
+@EqualsAndHashCode
+@ToString
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class Task {
+    private Integer id;
+    private Integer ownerId;
+    private String title;
+    private TaskStatus status;
+    private TaskPriority priority;
+    private LocalDate dueDate;
+}
@@ -0,0 +1,7 @@
+package ua.azaika.taskmanager.model;
+
+public enum TaskPriority {
+    LOW,
+    MEDIUM,
+    HIGH
+}
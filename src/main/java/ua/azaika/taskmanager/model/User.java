@@ -14,4 +14,5 @@ public class User {
     private String userName;
     private String email;
     private String password;
+    private long version;
 }
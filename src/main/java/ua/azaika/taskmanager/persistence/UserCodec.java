@@ -0,0 +1,61 @@
+package ua.azaika.taskmanager.persistence;
+
+import ua.azaika.taskmanager.model.User;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary encoding of {@link User} shared by the write-ahead log and snapshots.
+ * Strings are written as a length-prefixed UTF-8 byte sequence, with length -1 for null.
+ * The version comes last, so records written before users had one still decode, with
+ * version 0.
+ */
+public final class UserCodec {
+
+    private UserCodec() {
+    }
+
+    public static void write(User user, DataOutput out) throws IOException {
+        out.writeInt(user.getId());
+        writeString(user.getUserName(), out);
+        writeString(user.getEmail(), out);
+        writeString(user.getPassword(), out);
+        out.writeLong(user.getVersion());
+    }
+
+    /**
+     * Decodes a user from the buffer's current position up to its limit, which must be the
+     * end of the record. Callers sharing a buffer between threads should pass each reader
+     * its own {@link ByteBuffer#slice() slice}.
+     */
+    public static User read(ByteBuffer buffer) {
+        return User.builder()
+                .id(buffer.getInt())
+                .userName(readString(buffer))
+                .email(readString(buffer))
+                .password(readString(buffer))
+                .version(buffer.remaining() >= Long.BYTES ? buffer.getLong() : 0)
+                .build();
+    }
+
+    private static void writeString(String value, DataOutput out) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
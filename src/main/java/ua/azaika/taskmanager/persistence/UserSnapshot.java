@@ -0,0 +1,248 @@
+package ua.azaika.taskmanager.persistence;
+
+import ua.azaika.taskmanager.model.User;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Point-in-time copy of every user, covering all log segments below {@code generation},
+ * stored in a binary layout that is memory-mapped rather than parsed.
+ * <pre>
+ * header  magic, version, generation, lastAssignedId, count, indexOffset, header CRC32C
+ * records [length][CRC32C][user] ... in id order
+ * index   [id][record offset] ... count entries, sorted by id
+ * </pre>
+ * Opening a snapshot only checks the header, so it costs the same for a thousand users
+ * as for millions. {@link #get(int)} binary-searches the index and decodes a single
+ * record. Each record is checked against its own CRC when it is materialized.
+ * <p>
+ * Snapshots are written to a temporary file and atomically renamed, so a crash while
+ * writing one leaves the previous snapshot in place. A mapped file is limited to 2 GB.
+ */
+public class UserSnapshot implements Closeable {
+    private static final int MAGIC = 0x55534e50;
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 32;
+    private static final int RECORD_HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int INDEX_ENTRY_BYTES = 2 * Integer.BYTES;
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d+)\\.bin");
+
+    private final Path file;
+    private final long generation;
+    private final int lastAssignedId;
+    private final int count;
+    private final int indexOffset;
+    private volatile MappedByteBuffer buffer;
+
+    private UserSnapshot(Path file, MappedByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Bad snapshot header");
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(0, HEADER_BYTES - Integer.BYTES));
+        if ((int) crc.getValue() != buffer.getInt(HEADER_BYTES - Integer.BYTES)) {
+            throw new IOException("Snapshot header checksum mismatch");
+        }
+        this.generation = buffer.getLong(8);
+        this.lastAssignedId = buffer.getInt(16);
+        this.count = buffer.getInt(20);
+        this.indexOffset = buffer.getInt(24);
+        if ((long) indexOffset + (long) count * INDEX_ENTRY_BYTES > buffer.capacity()) {
+            throw new IOException("Snapshot index is truncated");
+        }
+    }
+
+    /**
+     * Writes {@code users}, which must be in ascending id order, as snapshot
+     * {@code generation}.
+     */
+    public static Path write(Path directory, long generation, int lastAssignedId, Collection<User> users) throws IOException {
+        Files.createDirectories(directory);
+        Path target = directory.resolve(String.format("snapshot-%016d.bin", generation));
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        int[] ids = new int[users.size()];
+        int[] offsets = new int[users.size()];
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.write(new byte[HEADER_BYTES]);
+            ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(128);
+            DataOutputStream record = new DataOutputStream(recordBytes);
+            CRC32C crc = new CRC32C();
+            int i = 0;
+            for (User user : users) {
+                if (i > 0 && user.getId() <= ids[i - 1]) {
+                    throw new IllegalArgumentException("Users must be in ascending id order");
+                }
+                recordBytes.reset();
+                UserCodec.write(user, record);
+                crc.reset();
+                crc.update(recordBytes.toByteArray());
+                ids[i] = user.getId();
+                offsets[i] = checkedOffset(out.size());
+                out.writeInt(recordBytes.size());
+                out.writeInt((int) crc.getValue());
+                recordBytes.writeTo(out);
+                i++;
+            }
+            int indexOffset = checkedOffset(out.size());
+            for (int j = 0; j < i; j++) {
+                out.writeInt(ids[j]);
+                out.writeInt(offsets[j]);
+            }
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                    .putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putLong(generation)
+                    .putInt(lastAssignedId)
+                    .putInt(i)
+                    .putInt(indexOffset);
+            crc.reset();
+            crc.update(header.array(), 0, header.position());
+            header.putInt((int) crc.getValue()).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return target;
+    }
+
+    /**
+     * Maps the newest snapshot in {@code directory}. A damaged newest snapshot fails with an
+     * {@link IOException} instead of falling back to an older one: the log segments written
+     * between the two are deleted once the newer snapshot exists, so the older one would
+     * silently lose every change they held.
+     */
+    public static Optional<UserSnapshot> openLatest(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) return Optional.empty();
+        List<Path> snapshots = listSnapshots(directory);
+        if (snapshots.isEmpty()) return Optional.empty();
+        Path file = snapshots.getLast();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return Optional.of(new UserSnapshot(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())));
+        } catch (IOException e) {
+            throw new IOException("Unreadable snapshot " + file.getFileName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    public static void deleteOlderThan(Path directory, long generation) throws IOException {
+        for (Path file : listSnapshots(directory)) {
+            if (generationOf(file) < generation) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    public long generation() {
+        return generation;
+    }
+
+    public int lastAssignedId() {
+        return lastAssignedId;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Materializes the user with {@code id}, or returns {@code null} if the snapshot has none.
+     */
+    public User get(int id) {
+        MappedByteBuffer mapped = mapped();
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int entry = indexOffset + middle * INDEX_ENTRY_BYTES;
+            int middleId = mapped.getInt(entry);
+            if (middleId < id) {
+                low = middle + 1;
+            } else if (middleId > id) {
+                high = middle - 1;
+            } else {
+                return readRecord(mapped, mapped.getInt(entry + Integer.BYTES));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Materializes every user in id order.
+     */
+    public void forEach(Consumer<User> consumer) {
+        MappedByteBuffer mapped = mapped();
+        for (int i = 0; i < count; i++) {
+            consumer.accept(readRecord(mapped, mapped.getInt(indexOffset + i * INDEX_ENTRY_BYTES + Integer.BYTES)));
+        }
+    }
+
+    /**
+     * Drops the mapping; the pages are released once the buffer is garbage collected.
+     */
+    @Override
+    public void close() {
+        buffer = null;
+    }
+
+    private MappedByteBuffer mapped() {
+        MappedByteBuffer mapped = buffer;
+        if (mapped == null) throw new IllegalStateException("Snapshot " + file.getFileName() + " is closed");
+        return mapped;
+    }
+
+    private User readRecord(MappedByteBuffer mapped, int offset) {
+        int length = mapped.getInt(offset);
+        int checksum = mapped.getInt(offset + Integer.BYTES);
+        ByteBuffer record = mapped.slice(offset + RECORD_HEADER_BYTES, length);
+        CRC32C crc = new CRC32C();
+        crc.update(record.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            throw new UncheckedIOException(new IOException(
+                    "Corrupt record at offset " + offset + " in snapshot " + file.getFileName()));
+        }
+        return UserCodec.read(record);
+    }
+
+    private static int checkedOffset(int offset) throws IOException {
+        if (offset < 0 || offset == Integer.MAX_VALUE) throw new IOException("Snapshot exceeds 2 GB");
+        return offset;
+    }
+
+    private static List<Path> listSnapshots(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> SNAPSHOT_NAME.matcher(file.getFileName().toString()).matches())
+                    .sorted(Comparator.comparingLong(UserSnapshot::generationOf))
+                    .toList();
+        }
+    }
+
+    private static long generationOf(Path file) {
+        Matcher matcher = SNAPSHOT_NAME.matcher(file.getFileName().toString());
+        if (!matcher.matches()) throw new IllegalArgumentException("Not a snapshot: " + file);
+        return Long.parseLong(matcher.group(1));
+    }
+}
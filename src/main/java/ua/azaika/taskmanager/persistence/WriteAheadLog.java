@@ -0,0 +1,326 @@
+package ua.azaika.taskmanager.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of opaque records, split into numbered segment files.
+ * <p>
+ * {@link #append(byte[])} only copies a record into an in-memory buffer. Durability
+ * comes from {@link #sync()}, which uses group commit: the first caller to find unsynced
+ * records writes the whole buffer and forces the channel, while the callers queued
+ * behind it find their records already durable when it finishes. So N concurrent
+ * writers usually share one fsync instead of paying for N.
+ * <p>
+ * Every record is framed as {@code [length][CRC32C][payload]}. On recovery, a torn or
+ * corrupt tail left by a crash is detected by its checksum and cut off.
+ * <p>
+ * A write or fsync that fails leaves the segment in an unknown state: part of the batch
+ * may be on disk, and a failed fsync may have dropped dirty pages that a retry would not
+ * rewrite. Anything appended after it would land behind a record that recovery cuts off,
+ * so the log fails for good instead, and every later {@link #append(byte[])},
+ * {@link #sync()} and {@link #rotate()} throws {@link IllegalStateException}.
+ * <p>
+ * {@link #append(byte[])} runs inside the store's per-user critical section, so
+ * {@link #appendLock} only ever guards memory: syncing, rotating and closing swap the
+ * buffer and the segment under it and do their I/O afterwards, under {@link #flushLock}
+ * alone.
+ */
+@Slf4j
+public class WriteAheadLog implements Closeable {
+    private static final Pattern SEGMENT_NAME = Pattern.compile("wal-(\\d+)\\.log");
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+
+    private final Path directory;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long appendedBytes;
+    private volatile long durableBytes;
+    private FileChannel channel;
+    private long generation;
+    private volatile long segmentBytes;
+    private volatile IOException failure;
+    private boolean closed;
+
+    public WriteAheadLog(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Replays every record in segments numbered {@code fromGeneration} or higher, deletes
+     * older segments, and opens a fresh segment for new appends.
+     *
+     * @return the number of records replayed
+     */
+    public long recover(long fromGeneration, Consumer<byte[]> replayer) throws IOException {
+        Files.createDirectories(directory);
+        long replayed = 0;
+        long lastGeneration = fromGeneration - 1;
+        for (Path segment : listSegments()) {
+            long segmentGeneration = generationOf(segment);
+            if (segmentGeneration < fromGeneration) {
+                Files.delete(segment);
+                continue;
+            }
+            replayed += replaySegment(segment, replayer);
+            lastGeneration = segmentGeneration;
+        }
+        openSegment(lastGeneration + 1);
+        return replayed;
+    }
+
+    public void append(byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                .putInt(payload.length)
+                .putInt((int) crc.getValue());
+        appendLock.lock();
+        try {
+            ensureWritable();
+            pending.write(header.array(), 0, HEADER_BYTES);
+            pending.write(payload, 0, payload.length);
+            appendedBytes += HEADER_BYTES + payload.length;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until every record appended before this call is on disk.
+     */
+    public void sync() {
+        long target;
+        appendLock.lock();
+        try {
+            ensureWritable();
+            target = appendedBytes;
+        } finally {
+            appendLock.unlock();
+        }
+        if (durableBytes >= target) return;
+
+        flushLock.lock();
+        try {
+            if (durableBytes >= target) return;
+            FileChannel current;
+            Batch batch;
+            appendLock.lock();
+            try {
+                ensureWritable();
+                batch = takePending();
+                current = channel;
+            } finally {
+                appendLock.unlock();
+            }
+            write(current, batch);
+            segmentBytes += batch.bytes().length;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Starts a new segment and flushes the old one. Records appended afterwards go to the
+     * returned generation, so everything older can be dropped once a snapshot covers it.
+     */
+    public long rotate() throws IOException {
+        flushLock.lock();
+        try {
+            ensureHealthy();
+            // Only changed under both locks, so holding the flush lock is enough to read it.
+            if (closed) throw new IllegalStateException("Write-ahead log is closed");
+            long newGeneration = generation + 1;
+            FileChannel newChannel = openChannel(newGeneration);
+            FileChannel oldChannel;
+            Batch batch;
+            appendLock.lock();
+            try {
+                batch = takePending();
+                oldChannel = channel;
+                channel = newChannel;
+                generation = newGeneration;
+                segmentBytes = 0;
+            } finally {
+                appendLock.unlock();
+            }
+            try (oldChannel) {
+                write(oldChannel, batch);
+            }
+            return newGeneration;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public void deleteSegmentsBefore(long generationToKeep) throws IOException {
+        for (Path segment : listSegments()) {
+            if (generationOf(segment) < generationToKeep) {
+                Files.deleteIfExists(segment);
+            }
+        }
+    }
+
+    public long currentSegmentBytes() {
+        return segmentBytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flushLock.lock();
+        try {
+            FileChannel oldChannel;
+            Batch batch;
+            appendLock.lock();
+            try {
+                if (closed) return;
+                closed = true;
+                batch = takePending();
+                oldChannel = channel;
+                channel = null;
+            } finally {
+                appendLock.unlock();
+            }
+            if (oldChannel == null) return;
+            try (oldChannel) {
+                if (failure == null) write(oldChannel, batch);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Must be called with {@link #appendLock} held.
+     */
+    private void ensureWritable() {
+        ensureHealthy();
+        if (closed) throw new IllegalStateException("Write-ahead log is closed");
+        if (channel == null) throw new IllegalStateException("Write-ahead log is not recovered yet");
+    }
+
+    private void ensureHealthy() {
+        IOException failed = failure;
+        if (failed != null) throw new IllegalStateException("Write-ahead log failed earlier and accepts no more records", failed);
+    }
+
+    /**
+     * Must be called with {@link #appendLock} held.
+     */
+    private Batch takePending() {
+        byte[] bytes = pending.toByteArray();
+        pending = new ByteArrayOutputStream(Math.max(32, bytes.length));
+        return new Batch(bytes, appendedBytes);
+    }
+
+    /**
+     * Writes and forces a batch taken by {@link #takePending()}; must be called with
+     * {@link #flushLock} held. A failure fails the whole log.
+     */
+    private void write(FileChannel target, Batch batch) {
+        if (batch.bytes().length == 0) {
+            durableBytes = batch.end();
+            return;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(batch.bytes());
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+            target.force(false);
+        } catch (IOException e) {
+            failure = e;
+            log.error("Write-ahead log failed; no further writes will be accepted", e);
+            throw new UncheckedIOException("Failed to sync write-ahead log", e);
+        }
+        durableBytes = batch.end();
+    }
+
+    private void openSegment(long newGeneration) throws IOException {
+        channel = openChannel(newGeneration);
+        generation = newGeneration;
+        segmentBytes = 0;
+    }
+
+    private FileChannel openChannel(long segmentGeneration) throws IOException {
+        return FileChannel.open(segmentPath(segmentGeneration),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private long replaySegment(Path segment, Consumer<byte[]> replayer) throws IOException {
+        long records = 0;
+        try (FileChannel in = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = in.size();
+            long position = 0;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (position + HEADER_BYTES <= size) {
+                header.clear();
+                readFully(in, header, position);
+                int length = header.getInt(0);
+                int checksum = header.getInt(Integer.BYTES);
+                if (length < 0 || position + HEADER_BYTES + length > size) break;
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                readFully(in, payload, position + HEADER_BYTES);
+                CRC32C crc = new CRC32C();
+                crc.update(payload.array());
+                if ((int) crc.getValue() != checksum) break;
+                replayer.accept(payload.array());
+                records++;
+                position += HEADER_BYTES + length;
+            }
+            if (position < size) {
+                log.warn("Truncating {} at byte {}: {} trailing bytes are torn or corrupt",
+                        segment.getFileName(), position, size - position);
+                in.truncate(position);
+                in.force(true);
+            }
+        }
+        return records;
+    }
+
+    private static void readFully(FileChannel in, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of segment");
+            }
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> SEGMENT_NAME.matcher(file.getFileName().toString()).matches())
+                    .sorted((a, b) -> Long.compare(generationOf(a), generationOf(b)))
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(long segmentGeneration) {
+        return directory.resolve(String.format("wal-%016d.log", segmentGeneration));
+    }
+
+    private static long generationOf(Path segment) {
+        Matcher matcher = SEGMENT_NAME.matcher(segment.getFileName().toString());
+        if (!matcher.matches()) throw new IllegalArgumentException("Not a log segment: " + segment);
+        return Long.parseLong(matcher.group(1));
+    }
+
+    private record Batch(byte[] bytes, long end) {
+    }
+}
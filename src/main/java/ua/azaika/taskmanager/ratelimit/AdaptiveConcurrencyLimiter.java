@@ -0,0 +1,110 @@
+package ua.azaika.taskmanager.ratelimit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps the number of requests in flight at a limit that follows latency.
+ * <p>
+ * Latencies are summed per window of {@code windowNanos}. When a window closes, its average
+ * is compared with a slow moving average over about {@value #LONG_WINDOWS} windows. While the
+ * recent average stays within {@code tolerance} times the long one, the limit grows by
+ * about its square root per window, but only if the window actually used more than half of
+ * it. Once requests start queueing, the recent average rises and the limit shrinks in
+ * proportion, by at most half per window. Each step is smoothed, and the limit stays
+ * between {@code minLimit} and {@code maxLimit}.
+ * <p>
+ * A request costs an increment and a decrement of the in-flight counter plus two
+ * {@link LongAdder} updates. Only the thread that closes a window, chosen by a
+ * compare-and-set on its end time, recomputes the limit, so the fields it keeps are never
+ * written concurrently.
+ */
+public final class AdaptiveConcurrencyLimiter {
+    private static final int LONG_WINDOWS = 20;
+    private static final int MIN_SAMPLES = 10;
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final long windowNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder windowLatencyNanos = new LongAdder();
+    private final LongAdder windowSamples = new LongAdder();
+    private final AtomicLong windowEnd;
+    private volatile int limit;
+    private volatile boolean busy;
+    private double estimatedLimit;
+    private double longLatencyNanos;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance,
+                                      long windowNanos, long nowNanos) {
+        if (minLimit < 1 || maxLimit < minLimit || tolerance < 1) throw new IllegalArgumentException("Invalid limits");
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.windowNanos = windowNanos;
+        this.estimatedLimit = Math.clamp(initialLimit, minLimit, maxLimit);
+        this.limit = (int) estimatedLimit;
+        this.windowEnd = new AtomicLong(nowNanos + windowNanos);
+    }
+
+    /**
+     * @return {@code true} if the request may proceed, in which case {@link #release} must
+     * follow
+     */
+    public boolean tryAcquire() {
+        int current = inFlight.incrementAndGet();
+        int currentLimit = limit;
+        if (current > currentLimit) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+        if (!busy && current * 2 > currentLimit) busy = true;
+        return true;
+    }
+
+    /**
+     * Ends a request admitted at {@code startNanos} and records its latency.
+     */
+    public void release(long startNanos, long nowNanos) {
+        inFlight.decrementAndGet();
+        windowLatencyNanos.add(nowNanos - startNanos);
+        windowSamples.increment();
+        long end = windowEnd.get();
+        if (nowNanos - end >= 0 && windowSamples.sum() >= MIN_SAMPLES
+                && windowEnd.compareAndSet(end, nowNanos + windowNanos)) {
+            adjust();
+        }
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    private void adjust() {
+        long samples = windowSamples.sumThenReset();
+        long latency = windowLatencyNanos.sumThenReset();
+        if (samples == 0) return;
+        double shortLatency = Math.max(1, latency / (double) samples);
+        if (longLatencyNanos == 0) {
+            longLatencyNanos = shortLatency;
+        } else {
+            longLatencyNanos += (shortLatency - longLatencyNanos) / LONG_WINDOWS;
+            // After a slow spell the long average would keep limits low for many windows;
+            // let it fall faster once latency is clearly back down.
+            if (longLatencyNanos > 2 * shortLatency) longLatencyNanos *= 0.95;
+        }
+        double gradient = Math.clamp(tolerance * longLatencyNanos / shortLatency, 0.5, 1.0);
+        double target = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        if (!busy) target = Math.min(target, estimatedLimit);
+        busy = false;
+        estimatedLimit = Math.clamp(estimatedLimit * (1 - SMOOTHING) + target * SMOOTHING, minLimit, maxLimit);
+        limit = (int) estimatedLimit;
+    }
+}
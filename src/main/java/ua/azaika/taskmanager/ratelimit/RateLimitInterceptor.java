@@ -0,0 +1,208 @@
+package ua.azaika.taskmanager.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import ua.azaika.taskmanager.config.RateLimitProperties;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Admits or rejects each request before it reaches a controller.
+ * <p>
+ * Requests are grouped by method and mapping pattern. An endpoint configured in
+ * {@link RateLimitProperties} first checks the calling client's {@link TokenBucket}, if the
+ * client can be told apart, so a client flooding it is turned away without touching the
+ * shared bucket, and then the bucket shared by all clients. Either refusal is a 429 with {@code Retry-After} set to when a token
+ * will be available. Every endpoint, configured or not, then has its own
+ * {@link AdaptiveConcurrencyLimiter}; a request beyond its limit gets a 503 with
+ * {@code Retry-After: 1}.
+ * <p>
+ * An admitted request holds its concurrency slot until it completes, including any async
+ * processing: the slot is released in {@link #afterCompletion}, which Spring calls after
+ * the async dispatch rather than after the first one.
+ * <p>
+ * As a {@link MeterBinder} it publishes the {@code api.requests.rejected} counter, tagged
+ * with the endpoint and the reason, and the {@code api.concurrency.limit} and
+ * {@code api.concurrency.in.flight} gauges for every endpoint.
+ */
+public class RateLimitInterceptor implements AsyncHandlerInterceptor, MeterBinder {
+    private static final String PERMIT = RateLimitInterceptor.class.getName() + ".permit";
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final RateLimitProperties properties;
+    private final LongSupplier nanoClock;
+    private final Map<String, Map<String, EndpointLimits>> endpoints = new ConcurrentHashMap<>();
+    private volatile MeterRegistry registry;
+
+    public RateLimitInterceptor(RateLimitProperties properties, LongSupplier nanoClock) {
+        this.properties = properties;
+        this.nanoClock = nanoClock;
+        for (RateLimitProperties.Endpoint endpoint : properties.endpoints()) {
+            String method = endpoint.method().toUpperCase(Locale.ROOT);
+            endpoints.computeIfAbsent(method, key -> new ConcurrentHashMap<>())
+                    .put(endpoint.path(), new EndpointLimits(method + " " + endpoint.path(), endpoint));
+        }
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() != DispatcherType.REQUEST) return true;
+        EndpointLimits endpoint = endpointFor(request);
+        long now = nanoClock.getAsLong();
+        long wait = endpoint.tryAcquireRate(clientOf(request), now);
+        if (wait > 0) {
+            reject(response, HttpStatus.TOO_MANY_REQUESTS, Math.ceilDiv(wait, NANOS_PER_SECOND));
+            return false;
+        }
+        AdaptiveConcurrencyLimiter concurrency = endpoint.concurrency;
+        if (concurrency == null) return true;
+        if (!concurrency.tryAcquire()) {
+            endpoint.count(endpoint.concurrencyRejections);
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, 1);
+            return false;
+        }
+        request.setAttribute(PERMIT, new Permit(concurrency, now));
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        if (!(request.getAttribute(PERMIT) instanceof Permit permit)) return;
+        request.removeAttribute(PERMIT);
+        permit.limiter().release(permit.startNanos(), nanoClock.getAsLong());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        endpoints.values().forEach(byPattern -> byPattern.values().forEach(endpoint -> endpoint.bindTo(registry)));
+    }
+
+    private EndpointLimits endpointFor(HttpServletRequest request) {
+        String method = request.getMethod();
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String path = pattern == null ? "/**" : pattern.toString();
+        Map<String, EndpointLimits> byPattern = endpoints.get(method);
+        EndpointLimits endpoint = byPattern == null ? null : byPattern.get(path);
+        if (endpoint != null) return endpoint;
+        return endpoints.computeIfAbsent(method, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(path, key -> new EndpointLimits(method + " " + path, null));
+    }
+
+    /**
+     * Returns the key of the calling client, or {@code null} if client limits cannot apply.
+     */
+    private String clientOf(HttpServletRequest request) {
+        String header = properties.clientHeader();
+        if (header != null && !header.isEmpty()) {
+            String client = request.getHeader(header);
+            if (client != null) return client;
+        }
+        return properties.clientByRemoteAddress() ? request.getRemoteAddr() : null;
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, long retryAfterSeconds) {
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, retryAfterSeconds)));
+    }
+
+    private record Permit(AdaptiveConcurrencyLimiter limiter, long startNanos) {
+    }
+
+    private final class EndpointLimits {
+        private final String name;
+        private final TokenBucket global;
+        private final Cache<String, TokenBucket> clients;
+        private final Function<String, TokenBucket> newClientBucket;
+        private final AdaptiveConcurrencyLimiter concurrency;
+        private volatile Counter clientRejections;
+        private volatile Counter globalRejections;
+        private volatile Counter concurrencyRejections;
+
+        EndpointLimits(String name, RateLimitProperties.Endpoint limits) {
+            this.name = name;
+            boolean rateLimited = properties.enabled() && limits != null;
+            this.global = rateLimited && limits.globalRate() > 0
+                    ? new TokenBucket(limits.globalRate(), limits.globalBurst()) : null;
+            if (rateLimited && limits.clientRate() > 0) {
+                this.clients = Caffeine.newBuilder()
+                        .maximumSize(properties.maxClients())
+                        .expireAfterAccess(properties.clientIdleTimeout())
+                        .build();
+                this.newClientBucket = client -> new TokenBucket(limits.clientRate(), limits.clientBurst());
+            } else {
+                this.clients = null;
+                this.newClientBucket = null;
+            }
+            RateLimitProperties.Concurrency settings = properties.concurrency();
+            this.concurrency = settings.enabled()
+                    ? new AdaptiveConcurrencyLimiter(settings.initialLimit(), settings.minLimit(), settings.maxLimit(),
+                    settings.tolerance(), settings.window().toNanos(), nanoClock.getAsLong())
+                    : null;
+            MeterRegistry current = registry;
+            if (current != null) bindTo(current);
+        }
+
+        long tryAcquireRate(String client, long nowNanos) {
+            if (clients != null && client != null) {
+                long wait = clients.get(client, newClientBucket).tryAcquire(nowNanos);
+                if (wait > 0) {
+                    count(clientRejections);
+                    return wait;
+                }
+            }
+            if (global != null) {
+                long wait = global.tryAcquire(nowNanos);
+                if (wait > 0) {
+                    count(globalRejections);
+                    return wait;
+                }
+            }
+            return 0;
+        }
+
+        void count(Counter counter) {
+            if (counter != null) counter.increment();
+        }
+
+        void bindTo(MeterRegistry registry) {
+            clientRejections = rejections(registry, "client_rate");
+            globalRejections = rejections(registry, "global_rate");
+            concurrencyRejections = rejections(registry, "concurrency");
+            if (concurrency == null) return;
+            Gauge.builder("api.concurrency.limit", concurrency, AdaptiveConcurrencyLimiter::limit)
+                    .description("Adaptive limit on requests in flight")
+                    .tag("endpoint", name)
+                    .register(registry);
+            Gauge.builder("api.concurrency.in.flight", concurrency, AdaptiveConcurrencyLimiter::inFlight)
+                    .description("Requests in flight")
+                    .tag("endpoint", name)
+                    .register(registry);
+        }
+
+        private Counter rejections(MeterRegistry registry, String reason) {
+            return Counter.builder("api.requests.rejected")
+                    .description("Requests turned away before reaching a controller")
+                    .tag("endpoint", name)
+                    .tag("reason", reason)
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package ua.azaika.taskmanager.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket refilled at {@code ratePerSecond} and holding up to {@code burst}
+ * tokens.
+ * <p>
+ * The bucket is implemented as the generic cell rate algorithm. Instead of a token count
+ * and a refill time it keeps one number: the theoretical time at which the bucket would be
+ * full again if nothing else were taken. Taking a token pushes that time one interval into
+ * the future, and a request is refused while the time is more than {@code burst - 1}
+ * intervals ahead of now. The whole state is one {@link AtomicLong}, so a grant is a single
+ * compare-and-set and a refusal is a plain read, which means a client flooding an empty
+ * bucket adds no write contention for the others.
+ */
+public final class TokenBucket {
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong fullAt = new AtomicLong(Long.MIN_VALUE);
+
+    public TokenBucket(double ratePerSecond, int burst) {
+        if (ratePerSecond <= 0 || burst < 1) throw new IllegalArgumentException("Rate and burst must be positive");
+        this.intervalNanos = Math.max(1, Math.round(1_000_000_000 / ratePerSecond));
+        this.toleranceNanos = (burst - 1) * intervalNanos;
+    }
+
+    /**
+     * Takes a token at {@code nowNanos}, a {@link System#nanoTime()} reading.
+     *
+     * @return 0 if a token was taken, otherwise the nanoseconds until one will be available
+     */
+    public long tryAcquire(long nowNanos) {
+        while (true) {
+            long current = fullAt.get();
+            long start = Math.max(current, nowNanos);
+            long wait = start - nowNanos - toleranceNanos;
+            if (wait > 0) return wait;
+            if (fullAt.compareAndSet(current, start + intervalNanos)) return 0;
+        }
+    }
+}
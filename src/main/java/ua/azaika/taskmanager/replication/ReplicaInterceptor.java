@@ -0,0 +1,50 @@
+package ua.azaika.taskmanager.replication;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.net.URI;
+
+/**
+ * Guards the user API of a replication follower.
+ * <p>
+ * Writes are answered with a 307 to the same path on the leader, so clients that follow
+ * redirects repeat them there with the same method and body. Reads are served from the
+ * follower's copy while {@link ReplicationFollower#isFresh()} holds; once the copy may be
+ * older than {@code maxStaleness}, they get a 503 with {@code Retry-After: 1}, rather than
+ * answers of unknown age.
+ */
+public class ReplicaInterceptor implements HandlerInterceptor {
+    private final ReplicationFollower follower;
+    private final String leaderUrl;
+
+    public ReplicaInterceptor(ReplicationFollower follower, URI leaderUrl) {
+        this.follower = follower;
+        String url = leaderUrl.toString();
+        this.leaderUrl = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() != DispatcherType.REQUEST) return true;
+        String method = request.getMethod();
+        if (!HttpMethod.GET.matches(method) && !HttpMethod.HEAD.matches(method)) {
+            String query = request.getQueryString();
+            response.setStatus(HttpStatus.TEMPORARY_REDIRECT.value());
+            response.setHeader(HttpHeaders.LOCATION,
+                    leaderUrl + request.getRequestURI() + (query == null ? "" : "?" + query));
+            return false;
+        }
+        if (!follower.isFresh()) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            return false;
+        }
+        return true;
+    }
+}
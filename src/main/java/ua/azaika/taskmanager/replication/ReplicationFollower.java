@@ -0,0 +1,292 @@
+package ua.azaika.taskmanager.replication;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import ua.azaika.taskmanager.dto.ReplicationEventDTO;
+import ua.azaika.taskmanager.feed.UserChangeEvent;
+import ua.azaika.taskmanager.mapper.UserMapper;
+import ua.azaika.taskmanager.service.ReplicaUserService;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a {@link ReplicaUserService} in step with a replication leader over HTTP.
+ * <p>
+ * The follower first loads the leader's snapshot, then reads the leader's change log from
+ * the snapshot's position, one change per line, and applies each change in order. When the
+ * connection drops, it reconnects and continues from the last change it applied. When the
+ * leader can no longer continue from there, because that change has left its history or
+ * the leader restarted, the follower loads a new snapshot. A connection that stays silent
+ * for three heartbeats is dropped and opened again.
+ * <p>
+ * Staleness is measured with the leader's heartbeats, which carry the leader's latest
+ * sequence. Once every change up to a heartbeat's sequence is applied, the follower was up
+ * to date as of that heartbeat's arrival. {@link #isFresh()} tells whether that was at most
+ * {@code maxStaleness} ago, which is how reads are bounded.
+ * <p>
+ * As a {@link MeterBinder} it publishes {@code users.replication.lag}, the time since the
+ * follower was last known to be up to date, along with {@code users.replication.lag.events}
+ * and {@code users.replication.snapshots}.
+ */
+@Slf4j
+public class ReplicationFollower implements MeterBinder, Closeable {
+    private static final long RETRY_MILLIS = 1000;
+    private static final int MAX_PENDING_HEARTBEATS = 64;
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final URI leaderUrl;
+    private final ReplicaUserService replica;
+    private final UserMapper userMapper;
+    private final ObjectMapper objectMapper;
+    private final Duration heartbeat;
+    private final long maxStalenessNanos;
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final Thread worker;
+    private final ScheduledExecutorService watchdog;
+    /**
+     * Heartbeats whose sequence is not applied yet, as {sequence, arrival nanos}.
+     * Only the worker thread touches it.
+     */
+    private final ArrayDeque<long[]> pendingHeartbeats = new ArrayDeque<>();
+    private final AtomicLong snapshots = new AtomicLong();
+    private volatile boolean running = true;
+    private volatile String epoch;
+    private volatile long appliedSequence;
+    private volatile long leaderSequence;
+    private volatile long upToDateNanos = NONE;
+    private volatile long lastReadNanos;
+    private volatile InputStream openLog;
+
+    public ReplicationFollower(URI leaderUrl, ReplicaUserService replica, UserMapper userMapper,
+                               ObjectMapper objectMapper, Duration heartbeat, Duration maxStaleness) {
+        this.leaderUrl = leaderUrl;
+        this.replica = replica;
+        this.userMapper = userMapper;
+        this.objectMapper = objectMapper;
+        this.heartbeat = heartbeat;
+        this.maxStalenessNanos = maxStaleness.toNanos();
+        this.worker = Thread.ofPlatform().name("replication-follower").daemon().unstarted(this::run);
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("replication-watchdog")
+                .daemon()
+                .factory());
+    }
+
+    public void start() {
+        worker.start();
+        long checkMillis = heartbeat.toMillis();
+        watchdog.scheduleAtFixedRate(this::dropSilentLog, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Nanoseconds since the follower was last known to hold every change the leader had, or
+     * {@link Long#MAX_VALUE} before the first snapshot is loaded.
+     */
+    public long stalenessNanos() {
+        long upToDate = upToDateNanos;
+        return upToDate == NONE ? Long.MAX_VALUE : Math.max(0, System.nanoTime() - upToDate);
+    }
+
+    /**
+     * Whether the follower was up to date at most {@code maxStaleness} ago.
+     */
+    public boolean isFresh() {
+        return stalenessNanos() <= maxStalenessNanos;
+    }
+
+    public long appliedSequence() {
+        return appliedSequence;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        TimeGauge.builder("users.replication.lag", this, TimeUnit.NANOSECONDS, follower -> {
+                    long staleness = follower.stalenessNanos();
+                    return staleness == Long.MAX_VALUE ? Double.NaN : staleness;
+                })
+                .description("Time since this follower was last known to hold every change of the leader")
+                .register(registry);
+        Gauge.builder("users.replication.lag.events", this,
+                        follower -> Math.max(0, follower.leaderSequence - follower.appliedSequence))
+                .description("Changes of the leader's latest heartbeat not yet applied by this follower")
+                .register(registry);
+        FunctionCounter.builder("users.replication.snapshots", snapshots, AtomicLong::get)
+                .description("Snapshots this follower loaded from the leader")
+                .register(registry);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        watchdog.shutdownNow();
+        worker.interrupt();
+        closeOpenLog();
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                if (epoch == null) loadSnapshot();
+                followLog();
+            } catch (InterruptedException e) {
+                break;
+            } catch (IOException | UncheckedIOException | IllegalStateException e) {
+                if (!running) break;
+                log.warn("Replication from {} interrupted, retrying: {}", leaderUrl, e.toString());
+                if (!pause()) break;
+            }
+        }
+    }
+
+    /**
+     * Applies the leader's snapshot and removes every user it does not contain. The snapshot
+     * holds at least the leader's state from when it was requested, so the follower was up
+     * to date at that moment.
+     */
+    private void loadSnapshot() throws IOException, InterruptedException {
+        long requestedNanos = System.nanoTime();
+        try (BufferedReader reader = open("/api/replication/snapshot")) {
+            ReplicationEventDTO header = read(reader);
+            if (header == null || !ReplicationEventDTO.SNAPSHOT.equals(header.type())) {
+                throw new IllegalStateException("Snapshot does not start with a header");
+            }
+            Set<Integer> ids = new HashSet<>();
+            for (ReplicationEventDTO line = read(reader); ; line = read(reader)) {
+                if (line == null) throw new IOException("Snapshot ended before it was complete");
+                if (ReplicationEventDTO.END.equals(line.type())) break;
+                replica.apply(userMapper.toUser(line.user()), true);
+                ids.add(line.user().id());
+            }
+            replica.retainOnly(ids);
+            appliedSequence = header.sequence();
+            leaderSequence = Math.max(leaderSequence, header.sequence());
+            epoch = header.epoch();
+            pendingHeartbeats.clear();
+            upToDateNanos = requestedNanos;
+            snapshots.incrementAndGet();
+            log.info("Loaded snapshot of {} users from {}", ids.size(), leaderUrl);
+        }
+    }
+
+    /**
+     * Applies changes from the leader's log until the connection ends or the leader asks for
+     * a new snapshot.
+     */
+    private void followLog() throws IOException, InterruptedException {
+        String path = "/api/replication/log?epoch=" + URLEncoder.encode(epoch, StandardCharsets.UTF_8)
+                + "&after=" + appliedSequence;
+        try (BufferedReader reader = open(path)) {
+            for (ReplicationEventDTO line = read(reader); line != null && running; line = read(reader)) {
+                switch (line.type()) {
+                    case ReplicationEventDTO.HEARTBEAT -> {
+                        leaderSequence = Math.max(leaderSequence, line.sequence());
+                        if (pendingHeartbeats.size() == MAX_PENDING_HEARTBEATS) pendingHeartbeats.poll();
+                        pendingHeartbeats.add(new long[]{line.sequence(), System.nanoTime()});
+                    }
+                    case ReplicationEventDTO.RESYNC -> {
+                        epoch = null;
+                        return;
+                    }
+                    default -> apply(line);
+                }
+                while (!pendingHeartbeats.isEmpty() && pendingHeartbeats.peek()[0] <= appliedSequence) {
+                    upToDateNanos = pendingHeartbeats.poll()[1];
+                }
+            }
+        } finally {
+            openLog = null;
+        }
+    }
+
+    private void apply(ReplicationEventDTO change) {
+        if (UserChangeEvent.Type.DELETED.name().equals(change.type())) {
+            replica.applyDeletion(change.id());
+        } else {
+            replica.apply(userMapper.toUser(change.user()), false);
+        }
+        appliedSequence = change.sequence();
+    }
+
+    private BufferedReader open(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(leaderUrl.resolve(path))
+                .timeout(heartbeat.multipliedBy(10))
+                .GET()
+                .build();
+        HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() != 200) {
+            response.body().close();
+            throw new IOException("Leader answered " + response.statusCode() + " to " + path);
+        }
+        lastReadNanos = System.nanoTime();
+        openLog = response.body();
+        return new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8));
+    }
+
+    private ReplicationEventDTO read(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        lastReadNanos = System.nanoTime();
+        return line == null ? null : objectMapper.readValue(line, ReplicationEventDTO.class);
+    }
+
+    /**
+     * Closes a response the leader has stopped writing to, so that the worker reconnects
+     * instead of waiting on a dead connection.
+     */
+    private void dropSilentLog() {
+        if (openLog != null && System.nanoTime() - lastReadNanos > heartbeat.multipliedBy(3).toNanos()) {
+            log.warn("No heartbeat from {}, reconnecting", leaderUrl);
+            closeOpenLog();
+        }
+    }
+
+    private void closeOpenLog() {
+        InputStream body = openLog;
+        if (body == null) return;
+        try {
+            body.close();
+        } catch (IOException ignored) {
+            // Closing only aborts the read.
+        }
+    }
+
+    /**
+     * @return {@code false} if the follower was stopped while waiting
+     */
+    private boolean pause() {
+        try {
+            Thread.sleep(RETRY_MILLIS);
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+}
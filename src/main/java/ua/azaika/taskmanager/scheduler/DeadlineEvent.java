@@ -0,0 +1,25 @@
+package ua.azaika.taskmanager.scheduler;
+
+import java.time.Instant;
+
+/**
+ * A task deadline that has come up. {@code deadline} is when the event was due; the
+ * listener runs shortly after it.
+ */
+public record DeadlineEvent(
+        Type type,
+        int taskId,
+        int ownerId,
+        Instant deadline
+) {
+    public enum Type {
+        /**
+         * The task is due within the configured reminder lead time.
+         */
+        UPCOMING,
+        /**
+         * The task's due date has passed and it is not done.
+         */
+        OVERDUE
+    }
+}
@@ -0,0 +1,10 @@
+package ua.azaika.taskmanager.scheduler;
+
+/**
+ * Receives deadline events on the scheduler's listener pool. Any Spring bean implementing
+ * this interface is registered automatically.
+ */
+public interface DeadlineListener {
+
+    void onDeadline(DeadlineEvent event);
+}
@@ -0,0 +1,216 @@
+package ua.azaika.taskmanager.scheduler;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import ua.azaika.taskmanager.model.Task;
+import ua.azaika.taskmanager.model.TaskStatus;
+import ua.azaika.taskmanager.service.TaskChangeListener;
+
+import java.io.Closeable;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fires {@link DeadlineEvent}s for task due dates without ever scanning the tasks.
+ * <p>
+ * The scheduler follows the task store as a {@link TaskChangeListener}. Each open task with
+ * a due date has an upcoming and an overdue timeout in a {@link TimingWheel}, so saving,
+ * rescheduling or completing a task costs O(1) however many deadlines are pending. A
+ * single ticker thread advances the wheel every {@code tick} and hands expired deadlines
+ * to a bounded listener pool. When that pool's queue is full, the ticker delivers the event
+ * itself, so events are never dropped; a slow listener shows up as timer lag instead.
+ * <p>
+ * As a {@link MeterBinder} it publishes {@code deadlines.pending}, {@code deadlines.queue.depth}
+ * and the {@code deadlines.lag} timer, which measures how late each event was handed out.
+ */
+@Slf4j
+public class DeadlineScheduler implements TaskChangeListener, MeterBinder, Closeable {
+    private final Clock clock;
+    private final ZoneId zone;
+    private final Duration reminderLead;
+    private final Duration tick;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final TimingWheel<Key> wheel;
+    private final List<DeadlineListener> listeners = new CopyOnWriteArrayList<>();
+    private final ThreadPoolExecutor listenerPool;
+    private final ScheduledExecutorService ticker;
+    private volatile int pending;
+    private volatile Timer lagTimer;
+
+    public DeadlineScheduler(ZoneId zone, Duration reminderLead, Duration tick, int listenerThreads,
+                             int listenerQueueCapacity, Clock clock) {
+        this.clock = clock;
+        this.zone = zone;
+        this.reminderLead = reminderLead;
+        this.tick = tick;
+        this.wheel = new TimingWheel<>(tick.toMillis(), 8, 4, clock.millis());
+        this.listenerPool = new ThreadPoolExecutor(listenerThreads, listenerThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(listenerQueueCapacity),
+                Thread.ofPlatform().name("deadline-listener-", 0).daemon().factory(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.ticker = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("deadline-ticker")
+                .daemon()
+                .factory());
+    }
+
+    public void addListener(DeadlineListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Starts advancing the wheel every tick.
+     */
+    public void start() {
+        long tickMillis = tick.toMillis();
+        ticker.scheduleAtFixedRate(this::fireDueQuietly, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Advances the wheel to the current time and dispatches every deadline that has passed.
+     *
+     * @return the number of events dispatched
+     */
+    public int fireDue() {
+        long now = clock.millis();
+        List<DeadlineEvent> due = new ArrayList<>();
+        lock.lock();
+        try {
+            wheel.advance(now, (key, deadline) -> due.add(
+                    new DeadlineEvent(key.type(), key.taskId(), key.ownerId(), Instant.ofEpochMilli(deadline))));
+            pending = wheel.size();
+        } finally {
+            lock.unlock();
+        }
+        Timer lag = lagTimer;
+        for (DeadlineEvent event : due) {
+            if (lag != null) lag.record(Math.max(0, now - event.deadline().toEpochMilli()), TimeUnit.MILLISECONDS);
+            listenerPool.execute(() -> deliver(event));
+        }
+        return due.size();
+    }
+
+    public int pendingDeadlines() {
+        return pending;
+    }
+
+    @Override
+    public void onSave(Task task) {
+        schedule(task);
+    }
+
+    @Override
+    public void onUpdate(Task previous, Task current) {
+        if (Objects.equals(previous.getDueDate(), current.getDueDate())
+                && isOpen(previous) == isOpen(current)) return;
+        schedule(current);
+    }
+
+    @Override
+    public void onDelete(Task removed) {
+        lock.lock();
+        try {
+            wheel.cancel(Key.of(removed, DeadlineEvent.Type.UPCOMING));
+            wheel.cancel(Key.of(removed, DeadlineEvent.Type.OVERDUE));
+            pending = wheel.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("deadlines.pending", this, DeadlineScheduler::pendingDeadlines)
+                .description("Task deadlines waiting in the timing wheel")
+                .register(registry);
+        Gauge.builder("deadlines.queue.depth", listenerPool, pool -> pool.getQueue().size())
+                .description("Deadline events waiting for a listener thread")
+                .register(registry);
+        lagTimer = Timer.builder("deadlines.lag")
+                .description("Delay between a deadline and the dispatch of its event")
+                .publishPercentiles(0.5, 0.99)
+                .register(registry);
+    }
+
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+        listenerPool.shutdown();
+        try {
+            listenerPool.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Replaces the task's timeouts with ones for its current due date, or removes them
+     * when it has none or is done. An upcoming event whose time has already passed fires on
+     * the next tick, unless the task is already overdue.
+     */
+    private void schedule(Task task) {
+        Key upcoming = Key.of(task, DeadlineEvent.Type.UPCOMING);
+        Key overdue = Key.of(task, DeadlineEvent.Type.OVERDUE);
+        lock.lock();
+        try {
+            if (!isOpen(task) || task.getDueDate() == null) {
+                wheel.cancel(upcoming);
+                wheel.cancel(overdue);
+            } else {
+                long overdueAt = task.getDueDate().plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+                wheel.schedule(overdue, overdueAt);
+                if (overdueAt > clock.millis()) {
+                    wheel.schedule(upcoming, overdueAt - reminderLead.toMillis());
+                } else {
+                    wheel.cancel(upcoming);
+                }
+            }
+            pending = wheel.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void deliver(DeadlineEvent event) {
+        for (DeadlineListener listener : listeners) {
+            try {
+                listener.onDeadline(event);
+            } catch (RuntimeException e) {
+                log.error("Deadline listener failed for {}", event, e);
+            }
+        }
+    }
+
+    private void fireDueQuietly() {
+        try {
+            fireDue();
+        } catch (RuntimeException e) {
+            log.error("Deadline tick failed", e);
+        }
+    }
+
+    private static boolean isOpen(Task task) {
+        return task.getStatus() != TaskStatus.DONE;
+    }
+
+    private record Key(int taskId, int ownerId, DeadlineEvent.Type type) {
+        static Key of(Task task, DeadlineEvent.Type type) {
+            return new Key(task.getId(), task.getOwnerId(), type);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package ua.azaika.taskmanager.scheduler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Hierarchical timing wheel: keyed timeouts with O(1) schedule, reschedule and cancel,
+ * however many are pending.
+ * <p>
+ * Time is cut into ticks of {@code tickMillis}. Level 0 has one slot per tick, and each
+ * higher level has slots {@code 2^bits} times wider than the one below. A timeout goes to
+ * the lowest level whose slot still separates it from the current tick. When time enters a
+ * new slot at some level, the timeouts in that slot are moved down, so each timeout moves
+ * at most once per level before it expires. Slots are intrusive doubly-linked lists, and a
+ * key map points at each timeout's node, so cancelling never searches.
+ * <p>
+ * Timeouts never fire early; they fire on the first {@link #advance} that reaches the tick
+ * containing their deadline. Deadlines beyond the wheel's range wait in the first top-level
+ * slot and are placed again each time the wheel completes a full turn. Not thread-safe; callers serialize access.
+ *
+ * @param <K> key identifying a timeout; scheduling an existing key replaces its timeout
+ */
+public class TimingWheel<K> {
+    private final long tickMillis;
+    private final int bits;
+    private final int levels;
+    private final int mask;
+    private final Slot<K>[][] slots;
+    private final Map<K, Timeout<K>> timeouts = new HashMap<>();
+    private final List<Timeout<K>> expiredBatch = new ArrayList<>();
+    private long currentTick;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, int bits, int levels, long startMillis) {
+        if (tickMillis <= 0 || bits <= 0 || levels <= 0 || (long) bits * levels >= Long.SIZE - 1) {
+            throw new IllegalArgumentException("Invalid wheel geometry");
+        }
+        this.tickMillis = tickMillis;
+        this.bits = bits;
+        this.levels = levels;
+        this.mask = (1 << bits) - 1;
+        this.slots = new Slot[levels][1 << bits];
+        for (Slot<K>[] level : slots) {
+            for (int i = 0; i < level.length; i++) {
+                level[i] = new Slot<>();
+            }
+        }
+        this.currentTick = Math.floorDiv(startMillis, tickMillis);
+    }
+
+    /**
+     * Schedules {@code key} to expire at {@code deadlineMillis}, replacing any timeout
+     * already pending for it. A deadline at or before the current tick expires on the next tick.
+     */
+    public void schedule(K key, long deadlineMillis) {
+        Timeout<K> timeout = timeouts.get(key);
+        if (timeout == null) {
+            timeout = new Timeout<>(key);
+            timeouts.put(key, timeout);
+        } else {
+            timeout.slot.unlink(timeout);
+        }
+        timeout.deadlineMillis = deadlineMillis;
+        timeout.deadlineTick = Math.max(ceilDiv(deadlineMillis, tickMillis), currentTick + 1);
+        place(timeout);
+    }
+
+    /**
+     * @return {@code true} if a timeout was pending for {@code key}
+     */
+    public boolean cancel(K key) {
+        Timeout<K> timeout = timeouts.remove(key);
+        if (timeout == null) return false;
+        timeout.slot.unlink(timeout);
+        return true;
+    }
+
+    public boolean contains(K key) {
+        return timeouts.containsKey(key);
+    }
+
+    public int size() {
+        return timeouts.size();
+    }
+
+    /**
+     * Moves the wheel forward to {@code nowMillis} and hands every expired key, with its
+     * deadline, to {@code expired}, one tick at a time. The callback may schedule again.
+     *
+     * @return the number of expired timeouts
+     */
+    public int advance(long nowMillis, BiConsumer<K, Long> expired) {
+        long targetTick = Math.floorDiv(nowMillis, tickMillis);
+        int count = 0;
+        while (currentTick < targetTick) {
+            currentTick++;
+            cascade();
+            Slot<K> due = slots[0][(int) (currentTick & mask)];
+            for (Timeout<K> timeout = due.clear(); timeout != null; ) {
+                Timeout<K> next = timeout.next;
+                timeout.next = null;
+                timeout.previous = null;
+                timeout.slot = null;
+                timeouts.remove(timeout.key);
+                expiredBatch.add(timeout);
+                timeout = next;
+            }
+            // The whole tick is detached before any callback runs, so callbacks can freely
+            // schedule or cancel other keys.
+            for (Timeout<K> timeout : expiredBatch) {
+                expired.accept(timeout.key, timeout.deadlineMillis);
+            }
+            count += expiredBatch.size();
+            expiredBatch.clear();
+        }
+        return count;
+    }
+
+    /**
+     * Empties the slots that the current tick has just entered at levels 1 and up,
+     * placing their timeouts again relative to the current tick.
+     */
+    private void cascade() {
+        int boundary = 0;
+        while (boundary + 1 < levels && (currentTick & ((1L << (bits * (boundary + 1))) - 1)) == 0) {
+            boundary++;
+        }
+        for (int level = boundary; level >= 1; level--) {
+            Slot<K> slot = slots[level][(int) ((currentTick >>> (bits * level)) & mask)];
+            for (Timeout<K> timeout = slot.clear(); timeout != null; ) {
+                Timeout<K> next = timeout.next;
+                timeout.next = null;
+                timeout.previous = null;
+                place(timeout);
+                timeout = next;
+            }
+        }
+    }
+
+    private void place(Timeout<K> timeout) {
+        long deadlineTick = timeout.deadlineTick;
+        for (int level = 0; level < levels; level++) {
+            int shift = bits * (level + 1);
+            if ((deadlineTick >>> shift) == (currentTick >>> shift)) {
+                slots[level][(int) ((deadlineTick >>> (bits * level)) & mask)].link(timeout);
+                return;
+            }
+        }
+        // Beyond the wheel's range. Top slot 0 is entered next when the wheel starts its next
+        // full turn, which is exactly when this timeout may come within range.
+        slots[levels - 1][0].link(timeout);
+    }
+
+    private static long ceilDiv(long dividend, long divisor) {
+        return -Math.floorDiv(-dividend, divisor);
+    }
+
+    private static final class Timeout<K> {
+        private final K key;
+        private long deadlineMillis;
+        private long deadlineTick;
+        private Slot<K> slot;
+        private Timeout<K> previous;
+        private Timeout<K> next;
+
+        private Timeout(K key) {
+            this.key = key;
+        }
+    }
+
+    private static final class Slot<K> {
+        private Timeout<K> head;
+
+        void link(Timeout<K> timeout) {
+            timeout.slot = this;
+            timeout.previous = null;
+            timeout.next = head;
+            if (head != null) head.previous = timeout;
+            head = timeout;
+        }
+
+        void unlink(Timeout<K> timeout) {
+            if (timeout.previous != null) {
+                timeout.previous.next = timeout.next;
+            } else if (head == timeout) {
+                head = timeout.next;
+            }
+            if (timeout.next != null) timeout.next.previous = timeout.previous;
+            timeout.previous = null;
+            timeout.next = null;
+            timeout.slot = null;
+        }
+
+        /**
+         * Detaches and returns the whole chain.
+         */
+        Timeout<K> clear() {
+            Timeout<K> chain = head;
+            head = null;
+            return chain;
+        }
+    }
+}
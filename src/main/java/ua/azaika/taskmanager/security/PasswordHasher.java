@@ -0,0 +1,126 @@
+package ua.azaika.taskmanager.security;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashes passwords on a dedicated pool, so that the CPU-bound work of a slow
+ * {@link PasswordEncoder} never runs on request threads.
+ * <p>
+ * The pool has a fixed number of threads, normally one per core, and a bounded queue. When
+ * the queue is full, {@link #hash(String)} and {@link #hashAll(List)} throw
+ * {@link RejectedExecutionException} straight away instead of queueing without limit, so a
+ * burst of registrations degrades into fast rejections rather than unbounded latency and
+ * memory. {@code null} passwords stay {@code null}.
+ * <p>
+ * Batches run on a second pool with half as many threads, at least one, so that a batch of
+ * thousands of passwords, which takes minutes, never holds the threads that single
+ * passwords are waiting for. Single hashes slow down while a batch runs, because both pools
+ * share the cores, but they do not queue behind it.
+ * <p>
+ * As a {@link MeterBinder} it publishes {@code passwords.hash.queue.depth},
+ * {@code passwords.hash.active} and the {@code passwords.hash} timer, each covering both
+ * pools.
+ */
+public class PasswordHasher implements MeterBinder, Closeable {
+    private final PasswordEncoder encoder;
+    private final ThreadPoolExecutor pool;
+    private final ThreadPoolExecutor batchPool;
+    private volatile Timer hashTimer;
+
+    public PasswordHasher(PasswordEncoder encoder, int threads, int queueCapacity) {
+        this.encoder = encoder;
+        this.pool = newPool(threads, queueCapacity, "password-hasher-");
+        this.batchPool = newPool(Math.max(1, threads / 2), queueCapacity, "password-batch-hasher-");
+    }
+
+    /**
+     * Hashes one password. The returned future completes on a hashing thread.
+     *
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public CompletableFuture<String> hash(String rawPassword) {
+        if (rawPassword == null) return CompletableFuture.completedFuture(null);
+        return CompletableFuture.supplyAsync(() -> encode(rawPassword), pool);
+    }
+
+    /**
+     * Hashes a batch of passwords on the batch pool, keeping their order. The batch is cut
+     * into one slice per batch thread, so even a large batch takes only a few queue slots.
+     *
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public CompletableFuture<List<String>> hashAll(List<String> rawPasswords) {
+        if (rawPasswords.isEmpty()) return CompletableFuture.completedFuture(List.of());
+        String[] hashes = new String[rawPasswords.size()];
+        int sliceSize = Math.ceilDiv(rawPasswords.size(), batchPool.getMaximumPoolSize());
+        List<CompletableFuture<Void>> slices = new ArrayList<>();
+        for (int from = 0; from < hashes.length; from += sliceSize) {
+            int start = from;
+            int end = Math.min(from + sliceSize, hashes.length);
+            slices.add(CompletableFuture.runAsync(() -> {
+                for (int i = start; i < end; i++) {
+                    String rawPassword = rawPasswords.get(i);
+                    hashes[i] = rawPassword == null ? null : encode(rawPassword);
+                }
+            }, batchPool));
+        }
+        return CompletableFuture.allOf(slices.toArray(CompletableFuture[]::new))
+                .thenApply(done -> Arrays.asList(hashes));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("passwords.hash.queue.depth", this,
+                        hasher -> hasher.pool.getQueue().size() + hasher.batchPool.getQueue().size())
+                .description("Passwords and batch slices waiting for a hashing thread")
+                .register(registry);
+        Gauge.builder("passwords.hash.active", this,
+                        hasher -> hasher.pool.getActiveCount() + hasher.batchPool.getActiveCount())
+                .description("Hashing threads currently busy")
+                .register(registry);
+        hashTimer = Timer.builder("passwords.hash")
+                .description("Time spent hashing one password")
+                .register(registry);
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+        batchPool.shutdown();
+        try {
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+            batchPool.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ThreadPoolExecutor newPool(int threads, int queueCapacity, String namePrefix) {
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name(namePrefix, 0).daemon().factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private String encode(String rawPassword) {
+        long start = System.nanoTime();
+        String hash = encoder.encode(rawPassword);
+        Timer timer = hashTimer;
+        if (timer != null) timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return hash;
+    }
+}
@@ -0,0 +1,206 @@
+package ua.azaika.taskmanager.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import ua.azaika.taskmanager.model.User;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache in front of a slower {@link UserService}, for {@link #findById(Integer)}
+ * and {@link #findByEmail(String)}.
+ * <p>
+ * Both caches are Caffeine caches: size-bounded with W-TinyLFU eviction, optionally
+ * expiring entries {@code ttl} after they were loaded, and recording hit, miss and eviction
+ * statistics. A lookup that misses loads through {@link Cache#get}, so concurrent misses on
+ * the same key wait for a single load instead of all hitting the backing store.
+ * <p>
+ * Invalidation is driven by a {@link UserChangeListener} on the delegate, which sees the
+ * previous and the new state of every changed user. The affected keys are invalidated
+ * straight away, and once more after the write returns. A reader that missed in the window
+ * before the delegate published the change could otherwise cache the old value again.
+ */
+public class CachingUserService implements UserService, Closeable {
+    private final UserService delegate;
+    private final Cache<Integer, User> byId;
+    private final Cache<String, List<User>> byEmail;
+    private final ThreadLocal<List<Object>> keysChangedByCurrentWrite = new ThreadLocal<>();
+    private final boolean caseInsensitiveEmail;
+
+    public CachingUserService(UserService delegate, long maximumSize, Duration ttl, boolean caseInsensitiveEmail) {
+        this.delegate = delegate;
+        this.caseInsensitiveEmail = caseInsensitiveEmail;
+        this.byId = newCache(maximumSize, ttl);
+        this.byEmail = newCache(maximumSize, ttl);
+        delegate.addChangeListener(new Invalidator());
+    }
+
+    @Override
+    public User save(User user) {
+        return write(() -> delegate.save(user));
+    }
+
+    @Override
+    public List<User> saveAll(List<User> users) {
+        return write(() -> delegate.saveAll(users));
+    }
+
+    @Override
+    public List<User> getAll() {
+        return delegate.getAll();
+    }
+
+    @Override
+    public List<User> getPage(Integer afterId, int limit) {
+        return delegate.getPage(afterId, limit);
+    }
+
+    @Override
+    public User findById(Integer id) {
+        if (id == null) return null;
+        return byId.get(id, delegate::findById);
+    }
+
+    @Override
+    public List<User> findByUserName(String userName) {
+        return delegate.findByUserName(userName);
+    }
+
+    @Override
+    public List<User> findByEmail(String email) {
+        if (email == null) return List.of();
+        return byEmail.get(emailKey(email), key -> delegate.findByEmail(email));
+    }
+
+    @Override
+    public List<User> search(String query, int limit) {
+        return delegate.search(query, limit);
+    }
+
+    @Override
+    public User update(Integer id, User user) {
+        return write(() -> delegate.update(id, user));
+    }
+
+    @Override
+    public User update(Integer id, User user, long expectedVersion) {
+        return write(() -> delegate.update(id, user, expectedVersion));
+    }
+
+    @Override
+    public List<User> updateAll(List<User> updates) {
+        return write(() -> delegate.updateAll(updates));
+    }
+
+    @Override
+    public void deleteById(Integer id) {
+        write(() -> {
+            delegate.deleteById(id);
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteAllById(Collection<Integer> ids) {
+        write(() -> {
+            delegate.deleteAllById(ids);
+            return null;
+        });
+    }
+
+    @Override
+    public long count() {
+        return delegate.count();
+    }
+
+    @Override
+    public long collectionVersion() {
+        return delegate.collectionVersion();
+    }
+
+    @Override
+    public void addChangeListener(UserChangeListener listener) {
+        delegate.addChangeListener(listener);
+    }
+
+    /**
+     * Passes the close on to the delegate when it has anything to close.
+     */
+    @Override
+    public void close() throws IOException {
+        if (delegate instanceof Closeable closeable) closeable.close();
+    }
+
+    public Cache<Integer, User> byIdCache() {
+        return byId;
+    }
+
+    public Cache<String, List<User>> byEmailCache() {
+        return byEmail;
+    }
+
+    private <T> T write(Supplier<T> mutation) {
+        List<Object> changedKeys = new ArrayList<>();
+        keysChangedByCurrentWrite.set(changedKeys);
+        try {
+            return mutation.get();
+        } finally {
+            keysChangedByCurrentWrite.remove();
+            for (Object key : changedKeys) {
+                if (key instanceof Integer id) byId.invalidate(id);
+                else byEmail.invalidate((String) key);
+            }
+        }
+    }
+
+    private void invalidate(User user) {
+        List<Object> changedKeys = keysChangedByCurrentWrite.get();
+        byId.invalidate(user.getId());
+        if (changedKeys != null) changedKeys.add(user.getId());
+        if (user.getEmail() != null) {
+            String emailKey = emailKey(user.getEmail());
+            byEmail.invalidate(emailKey);
+            if (changedKeys != null) changedKeys.add(emailKey);
+        }
+    }
+
+    private String emailKey(String email) {
+        return caseInsensitiveEmail ? email.toLowerCase(Locale.ROOT) : email;
+    }
+
+    private static <K, V> Cache<K, V> newCache(long maximumSize, Duration ttl) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats();
+        if (ttl != null && ttl.isPositive()) {
+            builder.expireAfterWrite(ttl);
+        }
+        return builder.build();
+    }
+
+    private class Invalidator implements UserChangeListener {
+
+        @Override
+        public void onSave(User user) {
+            invalidate(user);
+        }
+
+        @Override
+        public void onUpdate(User previous, User current) {
+            invalidate(previous);
+            invalidate(current);
+        }
+
+        @Override
+        public void onDelete(User removed) {
+            invalidate(removed);
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package ua.azaika.taskmanager.service;
+
+import ua.azaika.taskmanager.model.User;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * {@link UserService} that keeps users out of the object heap.
+ * <p>
+ * Records live as UTF-8 bytes in an off-heap {@link RecordSlab}. Ids map to record
+ * addresses through a primitive {@link IntLongHashMap}, user names and emails are indexed
+ * by hash code in {@link IntChainIndex chains} and by trigram in a {@link UserSearchIndex}, and a {@link BitSet} of live ids drives
+ * id-ordered scans and keyset pagination. A {@link User} is only materialized when a
+ * caller asks for one, so the heap holds a few primitive arrays instead of one object graph
+ * per user, and the garbage collector has almost nothing to mark.
+ * <p>
+ * The primitive structures are not concurrent. A read-write lock guards them, so readers
+ * run in parallel while writers are serialized. Listeners are called under the write lock.
+ * When more than half of the slab is released space, live records are copied into a
+ * fresh slab.
+ */
+public class CompactUserService implements UserService {
+    private static final Comparator<User> BY_ID = Comparator.comparing(User::getId);
+    private static final long ANY_VERSION = -1;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock readLock = lock.readLock();
+    private final Lock writeLock = lock.writeLock();
+    private final IntLongHashMap addresses = new IntLongHashMap(1024);
+    private final BitSet liveIds = new BitSet();
+    private final IntChainIndex userNameIndex = new IntChainIndex();
+    private final IntChainIndex emailIndex = new IntChainIndex();
+    private final UserSearchIndex searchIndex = new UserSearchIndex();
+    private final List<UserChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final boolean caseInsensitiveEmail;
+    private RecordSlab slab = new RecordSlab();
+    private int lastAssignedId;
+    private volatile long collectionVersion;
+
+    public CompactUserService() {
+        this(false);
+    }
+
+    public CompactUserService(boolean caseInsensitiveEmail) {
+        this.caseInsensitiveEmail = caseInsensitiveEmail;
+    }
+
+    @Override
+    public User save(User user) {
+        writeLock.lock();
+        try {
+            insert(user);
+            return user;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public List<User> saveAll(List<User> users) {
+        writeLock.lock();
+        try {
+            users.forEach(this::insert);
+            return users;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public List<User> getAll() {
+        readLock.lock();
+        try {
+            List<User> users = new ArrayList<>(addresses.size());
+            for (int id = liveIds.nextSetBit(0); id >= 0; id = liveIds.nextSetBit(id + 1)) {
+                users.add(slab.read(addresses.get(id)));
+            }
+            return users;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<User> getPage(Integer afterId, int limit) {
+        readLock.lock();
+        try {
+            List<User> page = new ArrayList<>(Math.min(limit, 1024));
+            int from = afterId == null ? 0 : Math.max(0, afterId + 1);
+            for (int id = liveIds.nextSetBit(from); id >= 0 && page.size() < limit; id = liveIds.nextSetBit(id + 1)) {
+                page.add(slab.read(addresses.get(id)));
+            }
+            return page;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public User findById(Integer id) {
+        if (id == null) return null;
+        readLock.lock();
+        try {
+            long address = addresses.get(id);
+            return address == IntLongHashMap.MISSING ? null : slab.read(address);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<User> findByUserName(String userName) {
+        if (userName == null) return List.of();
+        readLock.lock();
+        try {
+            List<User> found = new ArrayList<>(1);
+            userNameIndex.forEach(userName.hashCode(), id -> {
+                User user = slab.read(addresses.get(id));
+                if (userName.equals(user.getUserName())) found.add(user);
+            });
+            found.sort(BY_ID);
+            return found;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<User> findByEmail(String email) {
+        if (email == null) return List.of();
+        readLock.lock();
+        try {
+            List<User> found = new ArrayList<>(1);
+            emailIndex.forEach(normalizeEmail(email).hashCode(), id -> {
+                User user = slab.read(addresses.get(id));
+                boolean matches = caseInsensitiveEmail ? email.equalsIgnoreCase(user.getEmail()) : email.equals(user.getEmail());
+                if (matches) found.add(user);
+            });
+            found.sort(BY_ID);
+            return found;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<User> search(String query, int limit) {
+        readLock.lock();
+        try {
+            return searchIndex.search(query, limit, id -> {
+                long address = addresses.get(id);
+                return address == IntLongHashMap.MISSING ? null : slab.read(address);
+            });
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public User update(Integer id, User updates) {
+        if (id == null) return null;
+        writeLock.lock();
+        try {
+            return replace(id, updates, ANY_VERSION);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public User update(Integer id, User updates, long expectedVersion) {
+        if (id == null) return null;
+        writeLock.lock();
+        try {
+            return replace(id, updates, expectedVersion);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public List<User> updateAll(List<User> updates) {
+        writeLock.lock();
+        try {
+            List<User> updatedUsers = new ArrayList<>(updates.size());
+            for (User user : updates) {
+                updatedUsers.add(user.getId() == null ? null : replace(user.getId(), user, ANY_VERSION));
+            }
+            return updatedUsers;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteById(Integer id) {
+        if (id == null) return;
+        writeLock.lock();
+        try {
+            delete(id);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteAllById(Collection<Integer> ids) {
+        writeLock.lock();
+        try {
+            for (Integer id : ids) {
+                if (id != null) delete(id);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public long count() {
+        readLock.lock();
+        try {
+            return addresses.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public long collectionVersion() {
+        return collectionVersion;
+    }
+
+    @Override
+    public void addChangeListener(UserChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Off-heap bytes reserved for records plus heap bytes of the primitive indexes.
+     */
+    public long footprintBytes() {
+        readLock.lock();
+        try {
+            return slab.capacityBytes() + addresses.footprintBytes() + userNameIndex.footprintBytes()
+                    + emailIndex.footprintBytes() + searchIndex.footprintBytes() + liveIds.size() / 8;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Estimated heap bytes of the search index, which {@link #footprintBytes()} includes.
+     */
+    public long searchIndexFootprintBytes() {
+        return searchIndex.footprintBytes();
+    }
+
+    private void insert(User user) {
+        user.setId(++lastAssignedId);
+        user.setVersion(1);
+        addresses.put(user.getId(), slab.append(user));
+        liveIds.set(user.getId());
+        index(user);
+        collectionVersion++;
+        listeners.forEach(listener -> listener.onSave(user));
+    }
+
+    private User replace(int id, User updates, long expectedVersion) {
+        long address = addresses.get(id);
+        if (address == IntLongHashMap.MISSING) return null;
+        User previous = slab.read(address);
+        if (expectedVersion != ANY_VERSION && previous.getVersion() != expectedVersion) {
+            throw new VersionConflictException(id, expectedVersion, previous.getVersion());
+        }
+        updates.setId(id);
+        updates.setVersion(previous.getVersion() + 1);
+        slab.release(address);
+        addresses.put(id, slab.append(updates));
+        unindex(previous);
+        index(updates);
+        collectionVersion++;
+        listeners.forEach(listener -> listener.onUpdate(previous, updates));
+        compactIfWasteful();
+        return updates;
+    }
+
+    private void delete(int id) {
+        long address = addresses.remove(id);
+        if (address == IntLongHashMap.MISSING) return;
+        User removed = slab.read(address);
+        slab.release(address);
+        liveIds.clear(id);
+        unindex(removed);
+        collectionVersion++;
+        listeners.forEach(listener -> listener.onDelete(removed));
+        compactIfWasteful();
+    }
+
+    private void index(User user) {
+        if (user.getUserName() != null) userNameIndex.add(user.getUserName().hashCode(), user.getId());
+        if (user.getEmail() != null) emailIndex.add(normalizeEmail(user.getEmail()).hashCode(), user.getId());
+        searchIndex.add(user);
+    }
+
+    private void unindex(User user) {
+        if (user.getUserName() != null) userNameIndex.remove(user.getUserName().hashCode(), user.getId());
+        if (user.getEmail() != null) emailIndex.remove(normalizeEmail(user.getEmail()).hashCode(), user.getId());
+        searchIndex.remove(user);
+    }
+
+    private String normalizeEmail(String email) {
+        return caseInsensitiveEmail ? email.toLowerCase(Locale.ROOT) : email;
+    }
+
+    private void compactIfWasteful() {
+        if (slab.releasedBytes() < RecordSlab.CHUNK_BYTES || slab.releasedBytes() < slab.liveBytes()) return;
+        RecordSlab compacted = new RecordSlab();
+        for (int id = liveIds.nextSetBit(0); id >= 0; id = liveIds.nextSetBit(id + 1)) {
+            addresses.put(id, compacted.copy(slab, addresses.get(id)));
+        }
+        slab = compacted;
+    }
+}
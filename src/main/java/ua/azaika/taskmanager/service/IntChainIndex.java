@@ -0,0 +1,49 @@
+package ua.azaika.taskmanager.service;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Secondary index from a key's hash code to user ids, stored as intrusive chains in two
+ * {@link IntLongHashMap}s: one maps a hash to the newest id carrying it, the other maps
+ * each id to the next id in the same chain. Ids sharing a hash (duplicates or collisions)
+ * are all returned; callers re-check the actual key.
+ * <p>
+ * Not thread-safe; callers guard it with their own lock.
+ */
+final class IntChainIndex {
+    private final IntLongHashMap heads = new IntLongHashMap(1024);
+    private final IntLongHashMap next = new IntLongHashMap(1024);
+
+    void add(int hash, int id) {
+        long previousHead = heads.put(hash, id);
+        if (previousHead != IntLongHashMap.MISSING) next.put(id, previousHead);
+    }
+
+    void remove(int hash, int id) {
+        long previous = IntLongHashMap.MISSING;
+        long current = heads.get(hash);
+        while (current != IntLongHashMap.MISSING && current != id) {
+            previous = current;
+            current = next.get((int) current);
+        }
+        if (current == IntLongHashMap.MISSING) return;
+        long successor = next.remove(id);
+        if (previous == IntLongHashMap.MISSING) {
+            if (successor == IntLongHashMap.MISSING) heads.remove(hash);
+            else heads.put(hash, successor);
+        } else {
+            if (successor == IntLongHashMap.MISSING) next.remove((int) previous);
+            else next.put((int) previous, successor);
+        }
+    }
+
+    void forEach(int hash, IntConsumer consumer) {
+        for (long id = heads.get(hash); id != IntLongHashMap.MISSING; id = next.get((int) id)) {
+            consumer.accept((int) id);
+        }
+    }
+
+    long footprintBytes() {
+        return heads.footprintBytes() + next.footprintBytes();
+    }
+}
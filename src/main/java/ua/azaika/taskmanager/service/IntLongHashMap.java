@@ -0,0 +1,103 @@
+package ua.azaika.taskmanager.service;
+
+/**
+ * Open-addressing hash map from primitive {@code int} to primitive {@code long}, with linear
+ * probing and backward-shift deletion. No boxing and no per-entry objects: three parallel
+ * arrays hold all entries.
+ * <p>
+ * Not thread-safe; callers guard it with their own lock.
+ */
+final class IntLongHashMap {
+    static final long MISSING = Long.MIN_VALUE;
+    private static final float MAX_LOAD = 0.7f;
+
+    private int[] keys;
+    private long[] values;
+    private boolean[] used;
+    private int mask;
+    private int size;
+
+    IntLongHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / MAX_LOAD)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    long get(int key) {
+        for (int slot = slot(key); used[slot]; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) return values[slot];
+        }
+        return MISSING;
+    }
+
+    long put(int key, long value) {
+        int slot = slot(key);
+        for (; used[slot]; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                long previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+        }
+        used[slot] = true;
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > MAX_LOAD * keys.length) resize();
+        return MISSING;
+    }
+
+    long remove(int key) {
+        int slot = slot(key);
+        for (; used[slot]; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) break;
+        }
+        if (!used[slot]) return MISSING;
+        long previous = values[slot];
+        int hole = slot;
+        for (int next = (hole + 1) & mask; used[next]; next = (next + 1) & mask) {
+            int home = slot(keys[next]);
+            boolean reachable = hole <= next ? (home <= hole || home > next) : (home <= hole && home > next);
+            if (reachable) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        used[hole] = false;
+        size--;
+        return previous;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Heap taken by the backing arrays, excluding array headers.
+     */
+    long footprintBytes() {
+        return (long) keys.length * (Integer.BYTES + Long.BYTES + 1);
+    }
+
+    private int slot(int key) {
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private void resize() {
+        int[] oldKeys = keys;
+        long[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(oldKeys.length << 1);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) put(oldKeys[i], oldValues[i]);
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new long[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+}
@@ -0,0 +1,272 @@
+package ua.azaika.taskmanager.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import ua.azaika.taskmanager.model.User;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decorator that measures every call into a {@link UserService}.
+ * <p>
+ * Each method has its own {@code users.service} timer tagged with the method name. Lookups
+ * by id, user name and email also count into {@code users.index.lookups}, tagged with the
+ * index and whether anything was found, and {@code users.size} gauges the number of stored
+ * users. Histogram buckets come from the registry's distribution configuration for
+ * {@code users.service}; percentiles are left to the scraper, because client-side
+ * percentiles cost another clock read and histogram update on every call and cannot be
+ * aggregated across instances.
+ * <p>
+ * All meters are registered up front and kept in fields, so recording builds no tags, looks
+ * up no meters and allocates nothing. What remains is two clock reads and a timer update,
+ * about 300 ns per call on the benchmark host. For writes and scans that is noise, but a
+ * lookup by key takes 20 to 120 ns, and on a store larger than the CPU cache the clock reads
+ * also stop consecutive lookups from overlapping their cache misses, which pushes the
+ * overhead to about 600 ns. The three point lookups are therefore timed on one call in
+ * {@value #LOOKUP_SAMPLE_RATE}, picked at random so the sample is unbiased, and their
+ * throughput comes from the lookup counters, which see every call. Their timers' counts are
+ * sample sizes, not call counts; every other timer's count is its call count.
+ */
+public class MeteredUserService implements UserService, Closeable {
+    private static final String TIMER = "users.service";
+    private static final String LOOKUPS = "users.index.lookups";
+    static final int LOOKUP_SAMPLE_RATE = 16;
+
+    private final UserService delegate;
+    private final Timer saveTimer;
+    private final Timer saveAllTimer;
+    private final Timer getAllTimer;
+    private final Timer getPageTimer;
+    private final Timer findByIdTimer;
+    private final Timer findByUserNameTimer;
+    private final Timer findByEmailTimer;
+    private final Timer searchTimer;
+    private final Timer updateTimer;
+    private final Timer updateAllTimer;
+    private final Timer deleteByIdTimer;
+    private final Timer deleteAllByIdTimer;
+    private final Counter idHits;
+    private final Counter idMisses;
+    private final Counter userNameHits;
+    private final Counter userNameMisses;
+    private final Counter emailHits;
+    private final Counter emailMisses;
+
+    public MeteredUserService(UserService delegate, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.saveTimer = timer(registry, "save");
+        this.saveAllTimer = timer(registry, "saveAll");
+        this.getAllTimer = timer(registry, "getAll");
+        this.getPageTimer = timer(registry, "getPage");
+        this.findByIdTimer = timer(registry, "findById");
+        this.findByUserNameTimer = timer(registry, "findByUserName");
+        this.findByEmailTimer = timer(registry, "findByEmail");
+        this.searchTimer = timer(registry, "search");
+        this.updateTimer = timer(registry, "update");
+        this.updateAllTimer = timer(registry, "updateAll");
+        this.deleteByIdTimer = timer(registry, "deleteById");
+        this.deleteAllByIdTimer = timer(registry, "deleteAllById");
+        this.idHits = lookupCounter(registry, "id", "hit");
+        this.idMisses = lookupCounter(registry, "id", "miss");
+        this.userNameHits = lookupCounter(registry, "userName", "hit");
+        this.userNameMisses = lookupCounter(registry, "userName", "miss");
+        this.emailHits = lookupCounter(registry, "email", "hit");
+        this.emailMisses = lookupCounter(registry, "email", "miss");
+        Gauge.builder("users.size", delegate, UserService::count)
+                .description("Users in the store")
+                .register(registry);
+    }
+
+    @Override
+    public User save(User user) {
+        long start = System.nanoTime();
+        try {
+            return delegate.save(user);
+        } finally {
+            record(saveTimer, start);
+        }
+    }
+
+    @Override
+    public List<User> saveAll(List<User> users) {
+        long start = System.nanoTime();
+        try {
+            return delegate.saveAll(users);
+        } finally {
+            record(saveAllTimer, start);
+        }
+    }
+
+    @Override
+    public List<User> getAll() {
+        long start = System.nanoTime();
+        try {
+            return delegate.getAll();
+        } finally {
+            record(getAllTimer, start);
+        }
+    }
+
+    @Override
+    public List<User> getPage(Integer afterId, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getPage(afterId, limit);
+        } finally {
+            record(getPageTimer, start);
+        }
+    }
+
+    @Override
+    public User findById(Integer id) {
+        boolean sampled = sampled();
+        long start = sampled ? System.nanoTime() : 0;
+        try {
+            User found = delegate.findById(id);
+            (found == null ? idMisses : idHits).increment();
+            return found;
+        } finally {
+            if (sampled) record(findByIdTimer, start);
+        }
+    }
+
+    @Override
+    public List<User> findByUserName(String userName) {
+        boolean sampled = sampled();
+        long start = sampled ? System.nanoTime() : 0;
+        try {
+            List<User> found = delegate.findByUserName(userName);
+            (found.isEmpty() ? userNameMisses : userNameHits).increment();
+            return found;
+        } finally {
+            if (sampled) record(findByUserNameTimer, start);
+        }
+    }
+
+    @Override
+    public List<User> findByEmail(String email) {
+        boolean sampled = sampled();
+        long start = sampled ? System.nanoTime() : 0;
+        try {
+            List<User> found = delegate.findByEmail(email);
+            (found.isEmpty() ? emailMisses : emailHits).increment();
+            return found;
+        } finally {
+            if (sampled) record(findByEmailTimer, start);
+        }
+    }
+
+    @Override
+    public List<User> search(String query, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.search(query, limit);
+        } finally {
+            record(searchTimer, start);
+        }
+    }
+
+    @Override
+    public User update(Integer id, User user) {
+        long start = System.nanoTime();
+        try {
+            return delegate.update(id, user);
+        } finally {
+            record(updateTimer, start);
+        }
+    }
+
+    @Override
+    public User update(Integer id, User user, long expectedVersion) {
+        long start = System.nanoTime();
+        try {
+            return delegate.update(id, user, expectedVersion);
+        } finally {
+            record(updateTimer, start);
+        }
+    }
+
+    @Override
+    public List<User> updateAll(List<User> updates) {
+        long start = System.nanoTime();
+        try {
+            return delegate.updateAll(updates);
+        } finally {
+            record(updateAllTimer, start);
+        }
+    }
+
+    @Override
+    public void deleteById(Integer id) {
+        long start = System.nanoTime();
+        try {
+            delegate.deleteById(id);
+        } finally {
+            record(deleteByIdTimer, start);
+        }
+    }
+
+    @Override
+    public void deleteAllById(Collection<Integer> ids) {
+        long start = System.nanoTime();
+        try {
+            delegate.deleteAllById(ids);
+        } finally {
+            record(deleteAllByIdTimer, start);
+        }
+    }
+
+    @Override
+    public long count() {
+        return delegate.count();
+    }
+
+    @Override
+    public long collectionVersion() {
+        return delegate.collectionVersion();
+    }
+
+    @Override
+    public void addChangeListener(UserChangeListener listener) {
+        delegate.addChangeListener(listener);
+    }
+
+    /**
+     * Closes the delegate if it holds resources, so that a {@link PersistentUserService}
+     * behind this layer still flushes and closes its log on shutdown.
+     */
+    @Override
+    public void close() throws IOException {
+        if (delegate instanceof Closeable closeable) closeable.close();
+    }
+
+    private static boolean sampled() {
+        return ThreadLocalRandom.current().nextInt(LOOKUP_SAMPLE_RATE) == 0;
+    }
+
+    private static void record(Timer timer, long start) {
+        timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private static Timer timer(MeterRegistry registry, String method) {
+        return Timer.builder(TIMER)
+                .description("Latency of user store calls")
+                .tag("method", method)
+                .register(registry);
+    }
+
+    private static Counter lookupCounter(MeterRegistry registry, String index, String result) {
+        return Counter.builder(LOOKUPS)
+                .description("Lookups by id, user name and email, by outcome")
+                .tag("index", index)
+                .tag("result", result)
+                .register(registry);
+    }
+}
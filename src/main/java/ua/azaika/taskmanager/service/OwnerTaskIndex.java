@@ -0,0 +1,104 @@
+package ua.azaika.taskmanager.service;
+
+import ua.azaika.taskmanager.model.Task;
+import ua.azaika.taskmanager.model.TaskStatus;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The tasks of one owner, sorted by due date: one map for all of them and one per status,
+ * so a filtered listing walks only the matching tasks, already in order.
+ * <p>
+ * A read-write lock guards the maps. Listings of the same owner run in parallel and only
+ * wait for writes to that owner, so users never contend with each other. Once
+ * {@link #close() closed}, an index accepts no more tasks; writers that raced with the
+ * close treat the owner as deleted.
+ */
+class OwnerTaskIndex {
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<Key, Task> all = new TreeMap<>();
+    private final Map<TaskStatus, NavigableMap<Key, Task>> byStatus = new EnumMap<>(TaskStatus.class);
+    private boolean closed;
+
+    OwnerTaskIndex() {
+        for (TaskStatus status : TaskStatus.values()) {
+            byStatus.put(status, new TreeMap<>());
+        }
+    }
+
+    Lock writeLock() {
+        return lock.writeLock();
+    }
+
+    /**
+     * Must be called with the write lock held.
+     */
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Must be called with the write lock held.
+     */
+    void add(Task task) {
+        Key key = Key.of(task);
+        all.put(key, task);
+        byStatus.get(task.getStatus()).put(key, task);
+    }
+
+    /**
+     * Must be called with the write lock held.
+     */
+    void remove(Task task) {
+        Key key = Key.of(task);
+        all.remove(key);
+        byStatus.get(task.getStatus()).remove(key);
+    }
+
+    /**
+     * Every task, or those in {@code status} when it is not {@code null}, in due date order.
+     */
+    List<Task> list(TaskStatus status) {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>((status == null ? all : byStatus.get(status)).values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Empties the index and returns the tasks it held. Must be called with the write lock held.
+     */
+    List<Task> close() {
+        closed = true;
+        List<Task> removed = new ArrayList<>(all.values());
+        all.clear();
+        byStatus.values().forEach(Map::clear);
+        return removed;
+    }
+
+    private record Key(LocalDate dueDate, int id) implements Comparable<Key> {
+        private static final Comparator<Key> ORDER = Comparator
+                .comparing(Key::dueDate, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparingInt(Key::id);
+
+        static Key of(Task task) {
+            return new Key(task.getDueDate(), task.getId());
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            return ORDER.compare(this, other);
+        }
+    }
+}
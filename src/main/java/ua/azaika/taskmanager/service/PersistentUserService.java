@@ -0,0 +1,375 @@
+package ua.azaika.taskmanager.service;
+
+import lombok.extern.slf4j.Slf4j;
+import ua.azaika.taskmanager.model.User;
+import ua.azaika.taskmanager.persistence.UserCodec;
+import ua.azaika.taskmanager.persistence.UserSnapshot;
+import ua.azaika.taskmanager.persistence.WriteAheadLog;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Durable {@link UserService} that keeps serving reads from a {@link UserServiceImpl} and
+ * records every change in a {@link WriteAheadLog} before acknowledging it.
+ * <p>
+ * The in-memory store reports each change to a listener that appends it to the log while
+ * the user's lock is still held, so per-user log order always matches memory order.
+ * Writers then call {@link WriteAheadLog#sync()} outside any lock, which lets concurrent
+ * writers share one fsync.
+ * <p>
+ * Snapshots are taken every {@code snapshotInterval}, or sooner when the current log
+ * segment grows past {@code snapshotLogBytes}. The log is rotated first, then the store
+ * is copied, then the older segments are deleted. Replaying records that the snapshot
+ * already reflects is harmless, because every record carries the full user state.
+ * <p>
+ * Recovery maps the newest {@link UserSnapshot} without reading it and replays the log tail
+ * into the store, so the service is ready once the tail is applied, however many users
+ * the snapshot holds. A background thread then copies the snapshot into the store.
+ * Until it finishes, {@link #findById(Integer)} and writes materialize single users from
+ * the mapped file on demand, and only the scans and index lookups wait for it. Ids deleted
+ * since the snapshot are kept as tombstones during that window, so hydration never
+ * resurrects them.
+ */
+@Slf4j
+public class PersistentUserService implements UserService, Closeable {
+    private static final byte UPSERT = 1;
+    private static final byte DELETE = 2;
+
+    private final UserServiceImpl store;
+    private final Path directory;
+    private final long snapshotLogBytes;
+    private final WriteAheadLog writeAheadLog;
+    /**
+     * Writers share the read side; a snapshot takes the write side only while it rotates
+     * the log, so it never sees a change whose record went into the old segment before the
+     * change itself reached the store.
+     */
+    private final ReadWriteLock rotationLock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService snapshotter;
+    private final AtomicBoolean snapshotPending = new AtomicBoolean();
+    private final Set<Integer> tombstones = ConcurrentHashMap.newKeySet();
+    private final CompletableFuture<Void> hydration = new CompletableFuture<>();
+    private volatile boolean hydrated;
+    private volatile UserSnapshot recoveredSnapshot;
+    private final Duration recoveryTime;
+
+    public PersistentUserService(UserServiceImpl store, Path directory, Duration snapshotInterval,
+                                 long snapshotLogBytes) throws IOException {
+        this.store = store;
+        this.directory = directory;
+        this.snapshotLogBytes = snapshotLogBytes;
+        this.writeAheadLog = new WriteAheadLog(directory);
+        this.recoveryTime = recover();
+        store.addChangeListener(new LogAppender());
+        Thread.ofPlatform().name("user-hydrator").daemon().start(this::hydrate);
+        this.snapshotter = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("user-snapshotter")
+                .daemon()
+                .factory());
+        long intervalMillis = snapshotInterval.toMillis();
+        snapshotter.scheduleWithFixedDelay(this::snapshotQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public User save(User user) {
+        return write(() -> store.save(user));
+    }
+
+    @Override
+    public List<User> saveAll(List<User> users) {
+        return write(() -> store.saveAll(users));
+    }
+
+    @Override
+    public List<User> getAll() {
+        awaitHydration();
+        return store.getAll();
+    }
+
+    @Override
+    public List<User> getPage(Integer afterId, int limit) {
+        awaitHydration();
+        return store.getPage(afterId, limit);
+    }
+
+    @Override
+    public User findById(Integer id) {
+        ensureLoaded(id);
+        return store.findById(id);
+    }
+
+    @Override
+    public List<User> findByUserName(String userName) {
+        awaitHydration();
+        return store.findByUserName(userName);
+    }
+
+    @Override
+    public List<User> findByEmail(String email) {
+        awaitHydration();
+        return store.findByEmail(email);
+    }
+
+    @Override
+    public List<User> search(String query, int limit) {
+        awaitHydration();
+        return store.search(query, limit);
+    }
+
+    @Override
+    public User update(Integer id, User user) {
+        ensureLoaded(id);
+        return write(() -> store.update(id, user));
+    }
+
+    @Override
+    public User update(Integer id, User user, long expectedVersion) {
+        ensureLoaded(id);
+        return write(() -> store.update(id, user, expectedVersion));
+    }
+
+    @Override
+    public List<User> updateAll(List<User> updates) {
+        updates.forEach(update -> ensureLoaded(update.getId()));
+        return write(() -> store.updateAll(updates));
+    }
+
+    @Override
+    public void deleteById(Integer id) {
+        markDeleted(id);
+        write(() -> {
+            store.deleteById(id);
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteAllById(Collection<Integer> ids) {
+        ids.forEach(this::markDeleted);
+        write(() -> {
+            store.deleteAllById(ids);
+            return null;
+        });
+    }
+
+    /**
+     * Does not wait for hydration, so that metrics scrapes never block; until the snapshot
+     * is loaded, only the users already in memory are counted.
+     */
+    @Override
+    public long count() {
+        return store.count();
+    }
+
+    @Override
+    public long collectionVersion() {
+        return store.collectionVersion();
+    }
+
+    @Override
+    public void addChangeListener(UserChangeListener listener) {
+        store.addChangeListener(listener);
+    }
+
+    /**
+     * How long the last startup took to load the snapshot and replay the log.
+     */
+    public Duration getRecoveryTime() {
+        return recoveryTime;
+    }
+
+    /**
+     * Blocks until the snapshot loaded at startup has been fully copied into memory.
+     */
+    public void awaitHydration() {
+        if (hydrated) return;
+        try {
+            hydration.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading users", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Loading users from snapshot failed", e.getCause());
+        }
+    }
+
+    /**
+     * Rotates the log, writes a snapshot of the whole store and drops the log segments it
+     * covers.
+     */
+    public void snapshot() throws IOException {
+        awaitHydration();
+        long generation;
+        rotationLock.writeLock().lock();
+        try {
+            generation = writeAheadLog.rotate();
+        } finally {
+            rotationLock.writeLock().unlock();
+        }
+        List<User> users = store.getAll();
+        int lastAssignedId = store.lastAssignedId();
+        UserSnapshot.write(directory, generation, lastAssignedId, users);
+        writeAheadLog.deleteSegmentsBefore(generation);
+        UserSnapshot.deleteOlderThan(directory, generation);
+        log.info("Wrote snapshot {} with {} users", generation, users.size());
+    }
+
+    @Override
+    public void close() throws IOException {
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writeAheadLog.close();
+    }
+
+    private <T> T write(Supplier<T> mutation) {
+        T result;
+        rotationLock.readLock().lock();
+        try {
+            result = mutation.get();
+        } finally {
+            rotationLock.readLock().unlock();
+        }
+        writeAheadLog.sync();
+        if (writeAheadLog.currentSegmentBytes() > snapshotLogBytes && snapshotPending.compareAndSet(false, true)) {
+            snapshotter.execute(this::snapshotQuietly);
+        }
+        return result;
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            log.error("Snapshot failed", e);
+        } finally {
+            snapshotPending.set(false);
+        }
+    }
+
+    private Duration recover() throws IOException {
+        long start = System.nanoTime();
+        recoveredSnapshot = UserSnapshot.openLatest(directory).orElse(null);
+        long fromGeneration = 0;
+        if (recoveredSnapshot != null) {
+            store.restoreIdSequence(recoveredSnapshot.lastAssignedId());
+            fromGeneration = recoveredSnapshot.generation();
+        }
+        long replayed = writeAheadLog.recover(fromGeneration, this::replay);
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        log.info("Mapped snapshot of {} users and replayed {} log records in {} ms",
+                recoveredSnapshot == null ? 0 : recoveredSnapshot.size(), replayed, elapsed.toMillis());
+        return elapsed;
+    }
+
+    private void hydrate() {
+        long start = System.nanoTime();
+        try {
+            if (recoveredSnapshot != null) {
+                recoveredSnapshot.forEach(user -> store.restoreIfAbsent(user, tombstones::contains));
+                log.info("Loaded {} users from snapshot into memory in {} ms", recoveredSnapshot.size(),
+                        Duration.ofNanos(System.nanoTime() - start).toMillis());
+                recoveredSnapshot.close();
+            }
+            hydrated = true;
+            tombstones.clear();
+            hydration.complete(null);
+        } catch (RuntimeException e) {
+            log.error("Loading users from snapshot failed", e);
+            hydration.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Makes sure a user still only present in the mapped snapshot is in the store, so that
+     * reads see it and writes to it are logged.
+     */
+    private void ensureLoaded(Integer id) {
+        if (hydrated || id == null || tombstones.contains(id) || store.findById(id) != null) return;
+        UserSnapshot snapshot = recoveredSnapshot;
+        if (snapshot == null) return;
+        User user;
+        try {
+            user = snapshot.get(id);
+        } catch (IllegalStateException closed) {
+            awaitHydration();
+            return;
+        }
+        if (user != null) {
+            store.restoreIfAbsent(user, tombstones::contains);
+        }
+    }
+
+    private void markDeleted(Integer id) {
+        if (hydrated) return;
+        ensureLoaded(id);
+        tombstones.add(id);
+    }
+
+    private void replay(byte[] record) {
+        ByteBuffer in = ByteBuffer.wrap(record);
+        byte type = in.get();
+        if (type == UPSERT) {
+            store.restore(UserCodec.read(in));
+        } else if (type == DELETE) {
+            int id = in.getInt();
+            tombstones.add(id);
+            store.restoreDeletion(id);
+        } else {
+            throw new UncheckedIOException(new IOException("Unknown log record type " + type));
+        }
+    }
+
+    private static byte[] encode(byte type, User user) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(type);
+            if (type == UPSERT) {
+                UserCodec.write(user, out);
+            } else {
+                out.writeInt(user.getId());
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private class LogAppender implements UserChangeListener {
+
+        @Override
+        public void onSave(User user) {
+            writeAheadLog.append(encode(UPSERT, user));
+        }
+
+        @Override
+        public void onUpdate(User previous, User current) {
+            writeAheadLog.append(encode(UPSERT, current));
+        }
+
+        @Override
+        public void onDelete(User removed) {
+            writeAheadLog.append(encode(DELETE, removed));
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package ua.azaika.taskmanager.service;
+
+import java.util.Arrays;
+
+/**
+ * Sorted set of non-negative ids, laid out like a roaring bitmap. Ids sharing their upper
+ * 16 bits go into one container, which is a sorted {@code char} array while it holds at most
+ * {@value #ARRAY_LIMIT} ids and a 65536-bit bitmap beyond that. Rare keys therefore cost
+ * two bytes per id, and a key that half the users share costs about one bit per user, while
+ * adds and removes stay cheap because they only ever touch one container.
+ * <p>
+ * Not thread-safe; callers guard it with their own lock.
+ */
+final class PostingList {
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    private char[] keys = new char[1];
+    private Container[] containers = new Container[1];
+    private int size;
+    private int cardinality;
+
+    void add(int id) {
+        char high = (char) (id >>> 16);
+        int index = Arrays.binarySearch(keys, 0, size, high);
+        if (index < 0) {
+            index = -index - 1;
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                containers = Arrays.copyOf(containers, size * 2);
+            }
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+            System.arraycopy(containers, index, containers, index + 1, size - index);
+            keys[index] = high;
+            containers[index] = new Container();
+            size++;
+        }
+        if (containers[index].add((char) id)) cardinality++;
+    }
+
+    void remove(int id) {
+        int index = Arrays.binarySearch(keys, 0, size, (char) (id >>> 16));
+        if (index < 0 || !containers[index].remove((char) id)) return;
+        cardinality--;
+        if (containers[index].cardinality == 0) {
+            System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+            System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+            containers[--size] = null;
+        }
+    }
+
+    /**
+     * Returns the smallest id in the set that is at least {@code id}, or {@code -1} if there
+     * is none.
+     */
+    int nextAtLeast(int id) {
+        return cursor().seek(id);
+    }
+
+    /**
+     * Returns a cursor for walking the set in ascending order. It is only valid until the
+     * set is next changed.
+     */
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    int cardinality() {
+        return cardinality;
+    }
+
+    boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    long footprintBytes() {
+        long bytes = 32 + 16 + keys.length * 2L + 16 + containers.length * 4L;
+        for (int i = 0; i < size; i++) {
+            bytes += containers[i].footprintBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Seeks forward only, resuming from where the previous seek stopped, so a sequence of
+     * ascending seeks costs about one pass over the set, not one search per seek.
+     */
+    final class Cursor {
+        private int container;
+        private int position;
+
+        private Cursor() {
+        }
+
+        /**
+         * Returns the smallest id that is at least {@code id}, or {@code -1} if there is none.
+         * Each call must pass an id no smaller than the id the previous call returned.
+         */
+        int seek(int id) {
+            int from = Math.max(id, 0);
+            char high = (char) (from >>> 16);
+            while (container < size && keys[container] < high) {
+                container++;
+                position = 0;
+            }
+            if (container == size) return -1;
+            if (keys[container] == high) {
+                position = containers[container].seek(position, from & 0xFFFF);
+                int low = containers[container].valueAt(position);
+                if (low >= 0) return high << 16 | low;
+                if (++container == size) return -1;
+            }
+            position = containers[container].seek(0, 0);
+            return keys[container] << 16 | containers[container].valueAt(position);
+        }
+    }
+
+    private static final class Container {
+        private char[] values = new char[4];
+        private long[] bits;
+        private int cardinality;
+
+        boolean add(char low) {
+            if (bits != null) {
+                long mask = 1L << low;
+                if ((bits[low >>> 6] & mask) != 0) return false;
+                bits[low >>> 6] |= mask;
+                cardinality++;
+                return true;
+            }
+            int index = Arrays.binarySearch(values, 0, cardinality, low);
+            if (index >= 0) return false;
+            if (cardinality == ARRAY_LIMIT) {
+                toBitmap();
+                return add(low);
+            }
+            index = -index - 1;
+            if (cardinality == values.length) values = Arrays.copyOf(values, Math.min(cardinality * 2, ARRAY_LIMIT));
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = low;
+            cardinality++;
+            return true;
+        }
+
+        boolean remove(char low) {
+            if (bits != null) {
+                long mask = 1L << low;
+                if ((bits[low >>> 6] & mask) == 0) return false;
+                bits[low >>> 6] &= ~mask;
+                // Converting back below half the limit, not at it, keeps an id hovering
+                // around the limit from flipping the layout on every write.
+                if (--cardinality < ARRAY_LIMIT / 2) toArray();
+                return true;
+            }
+            int index = Arrays.binarySearch(values, 0, cardinality, low);
+            if (index < 0) return false;
+            System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+            cardinality--;
+            return true;
+        }
+
+        /**
+         * Returns the position of the smallest value that is at least {@code low}, looking no
+         * further back than {@code from}. Array positions are found by galloping from
+         * {@code from}; in a bitmap the position is the value itself.
+         */
+        int seek(int from, int low) {
+            if (bits != null) {
+                int word = low >>> 6;
+                long remaining = bits[word] & (-1L << low);
+                while (remaining == 0) {
+                    if (++word == BITMAP_WORDS) return -1;
+                    remaining = bits[word];
+                }
+                return word << 6 | Long.numberOfTrailingZeros(remaining);
+            }
+            if (from >= cardinality || values[from] >= low) return from;
+            int step = 1;
+            int bound = from + step;
+            while (bound < cardinality && values[bound] < low) {
+                from = bound;
+                step <<= 1;
+                bound = from + step;
+            }
+            int index = Arrays.binarySearch(values, from + 1, Math.min(bound + 1, cardinality), (char) low);
+            return index < 0 ? -index - 1 : index;
+        }
+
+        /**
+         * Returns the value at a position returned by {@link #seek}, or {@code -1} past the end.
+         */
+        int valueAt(int position) {
+            if (bits != null) return position;
+            return position >= 0 && position < cardinality ? values[position] : -1;
+        }
+
+        long footprintBytes() {
+            return 24 + (bits != null ? 16 + bits.length * 8L : 16 + values.length * 2L);
+        }
+
+        private void toBitmap() {
+            bits = new long[BITMAP_WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                bits[values[i] >>> 6] |= 1L << values[i];
+            }
+            values = null;
+        }
+
+        private void toArray() {
+            values = new char[ARRAY_LIMIT];
+            int count = 0;
+            for (int word = 0; word < BITMAP_WORDS; word++) {
+                for (long remaining = bits[word]; remaining != 0; remaining &= remaining - 1) {
+                    values[count++] = (char) (word << 6 | Long.numberOfTrailingZeros(remaining));
+                }
+            }
+            bits = null;
+        }
+    }
+}
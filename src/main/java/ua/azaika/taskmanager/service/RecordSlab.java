@@ -0,0 +1,145 @@
+package ua.azaika.taskmanager.service;
+
+import ua.azaika.taskmanager.model.User;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only storage of user records in off-heap chunks. A record is addressed by a
+ * {@code long} packing its chunk number and offset, and laid out as
+ * {@code [record length][id][version][userName][email][password]}, each string as a length-prefixed
+ * UTF-8 byte sequence (length -1 for null).
+ * <p>
+ * Updates append a new record and {@link #release(long) release} the old one; the space
+ * is reclaimed by copying the live records into a fresh slab.
+ * <p>
+ * Not thread-safe; callers guard it with their own lock. Reads use absolute positions only,
+ * so concurrent readers under a shared lock are fine.
+ */
+final class RecordSlab {
+    static final int CHUNK_BYTES = 1 << 20;
+
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private ByteBuffer current;
+    private long liveBytes;
+    private long releasedBytes;
+
+    long append(User user) {
+        byte[] userName = encode(user.getUserName());
+        byte[] email = encode(user.getEmail());
+        byte[] password = encode(user.getPassword());
+        int length = 5 * Integer.BYTES + Long.BYTES + length(userName) + length(email) + length(password);
+        ByteBuffer chunk = reserve(length);
+        int offset = chunk.position();
+        chunk.putInt(length).putInt(user.getId()).putLong(user.getVersion());
+        put(chunk, userName);
+        put(chunk, email);
+        put(chunk, password);
+        liveBytes += length;
+        return address(chunks.size() - 1, offset);
+    }
+
+    /**
+     * Copies the record at {@code address} of another slab into this one.
+     */
+    long copy(RecordSlab source, long address) {
+        ByteBuffer from = source.chunk(address);
+        int offset = offset(address);
+        int length = from.getInt(offset);
+        ByteBuffer chunk = reserve(length);
+        int target = chunk.position();
+        chunk.put(target, from, offset, length);
+        chunk.position(target + length);
+        liveBytes += length;
+        return address(chunks.size() - 1, target);
+    }
+
+    User read(long address) {
+        ByteBuffer chunk = chunk(address);
+        int position = offset(address) + Integer.BYTES;
+        int id = chunk.getInt(position);
+        position += Integer.BYTES;
+        long version = chunk.getLong(position);
+        position += Long.BYTES;
+        String userName = readString(chunk, position);
+        position += Integer.BYTES + Math.max(0, chunk.getInt(position));
+        String email = readString(chunk, position);
+        position += Integer.BYTES + Math.max(0, chunk.getInt(position));
+        String password = readString(chunk, position);
+        return User.builder()
+                .id(id)
+                .userName(userName)
+                .email(email)
+                .password(password)
+                .version(version)
+                .build();
+    }
+
+    void release(long address) {
+        int length = chunk(address).getInt(offset(address));
+        liveBytes -= length;
+        releasedBytes += length;
+    }
+
+    long liveBytes() {
+        return liveBytes;
+    }
+
+    long releasedBytes() {
+        return releasedBytes;
+    }
+
+    /**
+     * Off-heap memory reserved by all chunks.
+     */
+    long capacityBytes() {
+        return chunks.stream().mapToLong(ByteBuffer::capacity).sum();
+    }
+
+    private ByteBuffer reserve(int length) {
+        if (current == null || current.remaining() < length) {
+            current = ByteBuffer.allocateDirect(Math.max(CHUNK_BYTES, length));
+            chunks.add(current);
+        }
+        return current;
+    }
+
+    private ByteBuffer chunk(long address) {
+        return chunks.get((int) (address >>> 32));
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    private static long address(int chunk, int offset) {
+        return ((long) chunk << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    private static byte[] encode(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static void put(ByteBuffer chunk, byte[] bytes) {
+        if (bytes == null) {
+            chunk.putInt(-1);
+            return;
+        }
+        chunk.putInt(bytes.length).put(bytes);
+    }
+
+    private static String readString(ByteBuffer chunk, int position) {
+        int length = chunk.getInt(position);
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        chunk.get(position + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
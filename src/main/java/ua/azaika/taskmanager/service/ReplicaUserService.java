@@ -0,0 +1,130 @@
+package ua.azaika.taskmanager.service;
+
+import ua.azaika.taskmanager.model.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Read-only {@link UserService} of a replication follower. Users arrive from the leader
+ * through {@link #apply(User, boolean)} and {@link #applyDeletion(Integer)}, keeping the
+ * leader's ids and versions, and every write method refuses with
+ * {@link UnsupportedOperationException}.
+ * <p>
+ * Applied changes notify change listeners like local writes do, so the change feed, caches
+ * and the export work on a follower as they do on the leader.
+ */
+public class ReplicaUserService implements UserService {
+    private final UserServiceImpl store;
+
+    public ReplicaUserService(UserServiceImpl store) {
+        this.store = store;
+    }
+
+    /**
+     * Stores the leader's copy of a user. Unless {@code force} is set, a copy that is not
+     * newer than the stored one is ignored.
+     */
+    public void apply(User user, boolean force) {
+        store.replicate(user, force);
+    }
+
+    public void applyDeletion(Integer id) {
+        store.replicateDeletion(id);
+    }
+
+    /**
+     * Removes every user whose id is not in {@code ids}, after a snapshot from the leader
+     * has been applied.
+     */
+    public void retainOnly(Set<Integer> ids) {
+        for (User user : store.getAll()) {
+            if (!ids.contains(user.getId())) store.replicateDeletion(user.getId());
+        }
+    }
+
+    @Override
+    public User save(User user) {
+        throw readOnly();
+    }
+
+    @Override
+    public List<User> saveAll(List<User> users) {
+        throw readOnly();
+    }
+
+    @Override
+    public List<User> getAll() {
+        return store.getAll();
+    }
+
+    @Override
+    public List<User> getPage(Integer afterId, int limit) {
+        return store.getPage(afterId, limit);
+    }
+
+    @Override
+    public User findById(Integer id) {
+        return store.findById(id);
+    }
+
+    @Override
+    public List<User> findByUserName(String userName) {
+        return store.findByUserName(userName);
+    }
+
+    @Override
+    public List<User> findByEmail(String email) {
+        return store.findByEmail(email);
+    }
+
+    @Override
+    public List<User> search(String query, int limit) {
+        return store.search(query, limit);
+    }
+
+    @Override
+    public User update(Integer id, User user) {
+        throw readOnly();
+    }
+
+    @Override
+    public User update(Integer id, User user, long expectedVersion) {
+        throw readOnly();
+    }
+
+    @Override
+    public List<User> updateAll(List<User> updates) {
+        throw readOnly();
+    }
+
+    @Override
+    public void deleteById(Integer id) {
+        throw readOnly();
+    }
+
+    @Override
+    public void deleteAllById(Collection<Integer> ids) {
+        throw readOnly();
+    }
+
+    @Override
+    public long count() {
+        return store.count();
+    }
+
+    @Override
+    public long collectionVersion() {
+        return store.collectionVersion();
+    }
+
+    @Override
+    public void addChangeListener(UserChangeListener listener) {
+        store.addChangeListener(listener);
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Replication followers are read-only; write to the leader");
+    }
+}
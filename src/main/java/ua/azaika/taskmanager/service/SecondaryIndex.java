@@ -0,0 +1,38 @@
+package ua.azaika.taskmanager.service;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps a lookup key (user name, email) to the ids of the users carrying it.
+ * <p>
+ * Entries only point at ids, never at {@code User} instances, so callers must resolve
+ * the ids against the primary store and re-check the key. That way a reader racing
+ * with an update or delete can at worst miss a user, never see a stale one.
+ */
+class SecondaryIndex {
+    private final Map<String, Set<Integer>> idsByKey = new ConcurrentHashMap<>();
+
+    void add(String key, Integer id) {
+        if (key == null) return;
+        idsByKey.compute(key, (k, ids) -> {
+            Set<Integer> result = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+            result.add(id);
+            return result;
+        });
+    }
+
+    void remove(String key, Integer id) {
+        if (key == null) return;
+        idsByKey.computeIfPresent(key, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    Set<Integer> get(String key) {
+        if (key == null) return Set.of();
+        return idsByKey.getOrDefault(key, Set.of());
+    }
+}
@@ -0,0 +1,325 @@
+package ua.azaika.taskmanager.service;
+
+import ua.azaika.taskmanager.model.User;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * User store split into independent {@link UserServiceImpl} shards, so that writes from
+ * different cores touch different maps, id orders and search indexes.
+ * <p>
+ * A thread always writes new users to the same shard, picked from its thread id. Each
+ * shard hands out ids from its own range of {@value #BLOCK_SIZE} consecutive ids, with a
+ * compare-and-set on a shard-local counter, and claims a new range from a global block
+ * counter only when the range runs out. A table of which shard owns which range routes
+ * every lookup and write by id straight to its shard. Within one thread ids stay
+ * consecutive, as they are in {@link UserServiceImpl}, and a batch keeps a contiguous range.
+ * <p>
+ * User names and emails go into a directory of {@link SecondaryIndex secondary indexes}
+ * that all shards share and update inside their own critical sections, so a lookup by
+ * either is one index read plus one read per match. Reads spanning all users, such as
+ * {@link #getAll()}, {@link #getPage(Integer, int)} and {@link #search(String, int)}, ask
+ * every shard and merge the results in id order. The collection version is the sum of the
+ * shards' versions, so it still grows with every write without a counter they all share.
+ */
+public class ShardedUserService implements UserService {
+    static final int BLOCK_SIZE = 1024;
+    private static final Comparator<User> BY_ID = Comparator.comparing(User::getId);
+
+    private final UserServiceImpl[] shards;
+    private final IdRange[] idRanges;
+    private final SecondaryIndex userNameDirectory = new SecondaryIndex();
+    private final SecondaryIndex emailDirectory = new SecondaryIndex();
+    private final ReentrantLock blockLock = new ReentrantLock();
+    private final boolean caseInsensitiveEmail;
+    private volatile short[] blockOwners = new short[64];
+    private int nextBlock;
+
+    public ShardedUserService(int shardCount, boolean caseInsensitiveEmail) {
+        if (shardCount < 1 || shardCount > Short.MAX_VALUE) throw new IllegalArgumentException("Invalid shard count");
+        this.caseInsensitiveEmail = caseInsensitiveEmail;
+        this.shards = new UserServiceImpl[shardCount];
+        this.idRanges = new IdRange[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            IdRange ids = new IdRange(i);
+            idRanges[i] = ids;
+            shards[i] = new UserServiceImpl(caseInsensitiveEmail, ids::reserve, userNameDirectory, emailDirectory);
+        }
+    }
+
+    @Override
+    public User save(User user) {
+        return localShard().save(user);
+    }
+
+    @Override
+    public List<User> saveAll(List<User> users) {
+        return localShard().saveAll(users);
+    }
+
+    @Override
+    public List<User> getAll() {
+        List<List<User>> perShard = new ArrayList<>(shards.length);
+        for (UserServiceImpl shard : shards) {
+            perShard.add(shard.getAll());
+        }
+        return mergeById(perShard, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<User> getPage(Integer afterId, int limit) {
+        List<List<User>> perShard = new ArrayList<>(shards.length);
+        for (UserServiceImpl shard : shards) {
+            perShard.add(shard.getPage(afterId, limit));
+        }
+        return mergeById(perShard, limit);
+    }
+
+    @Override
+    public User findById(Integer id) {
+        UserServiceImpl shard = shardOf(id);
+        return shard == null ? null : shard.findById(id);
+    }
+
+    @Override
+    public List<User> findByUserName(String userName) {
+        return resolve(userNameDirectory, userName, user -> Objects.equals(user.getUserName(), userName));
+    }
+
+    @Override
+    public List<User> findByEmail(String email) {
+        if (email == null) return List.of();
+        if (caseInsensitiveEmail) {
+            return resolve(emailDirectory, email.toLowerCase(Locale.ROOT), user -> email.equalsIgnoreCase(user.getEmail()));
+        }
+        return resolve(emailDirectory, email, user -> email.equals(user.getEmail()));
+    }
+
+    /**
+     * Each shard returns its own best {@code limit} matches, prefix matches first. The
+     * global best are among them: a shard whose prefix matches alone fill its limit holds
+     * enough of them to push every substring match out of the result.
+     */
+    @Override
+    public List<User> search(String query, int limit) {
+        if (query == null || query.isEmpty() || limit <= 0) return List.of();
+        String needle = query.toLowerCase(Locale.ROOT);
+        List<List<User>> prefixMatches = new ArrayList<>(shards.length);
+        List<List<User>> substringMatches = new ArrayList<>(shards.length);
+        for (UserServiceImpl shard : shards) {
+            List<User> found = shard.search(query, limit);
+            int prefixCount = 0;
+            while (prefixCount < found.size() && UserSearchIndex.startsWith(found.get(prefixCount), needle)) {
+                prefixCount++;
+            }
+            prefixMatches.add(found.subList(0, prefixCount));
+            substringMatches.add(found.subList(prefixCount, found.size()));
+        }
+        List<User> result = new ArrayList<>(mergeById(prefixMatches, limit));
+        if (result.size() < limit) result.addAll(mergeById(substringMatches, limit - result.size()));
+        return result;
+    }
+
+    @Override
+    public User update(Integer id, User user) {
+        UserServiceImpl shard = shardOf(id);
+        return shard == null ? null : shard.update(id, user);
+    }
+
+    @Override
+    public User update(Integer id, User user, long expectedVersion) {
+        UserServiceImpl shard = shardOf(id);
+        return shard == null ? null : shard.update(id, user, expectedVersion);
+    }
+
+    @Override
+    public List<User> updateAll(List<User> updates) {
+        List<User> updatedUsers = new ArrayList<>(updates.size());
+        for (User user : updates) {
+            updatedUsers.add(update(user.getId(), user));
+        }
+        return updatedUsers;
+    }
+
+    @Override
+    public void deleteById(Integer id) {
+        UserServiceImpl shard = shardOf(id);
+        if (shard != null) shard.deleteById(id);
+    }
+
+    @Override
+    public void deleteAllById(Collection<Integer> ids) {
+        ids.forEach(this::deleteById);
+    }
+
+    @Override
+    public long count() {
+        long count = 0;
+        for (UserServiceImpl shard : shards) {
+            count += shard.count();
+        }
+        return count;
+    }
+
+    @Override
+    public long collectionVersion() {
+        long version = 0;
+        for (UserServiceImpl shard : shards) {
+            version += shard.collectionVersion();
+        }
+        return version;
+    }
+
+    @Override
+    public void addChangeListener(UserChangeListener listener) {
+        for (UserServiceImpl shard : shards) {
+            shard.addChangeListener(listener);
+        }
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Estimated heap bytes of the shards' search indexes.
+     */
+    public long searchIndexFootprintBytes() {
+        long bytes = 0;
+        for (UserServiceImpl shard : shards) {
+            bytes += shard.searchIndexFootprintBytes();
+        }
+        return bytes;
+    }
+
+    private UserServiceImpl localShard() {
+        return shards[(int) (Thread.currentThread().threadId() % shards.length)];
+    }
+
+    private UserServiceImpl shardOf(Integer id) {
+        if (id == null || id < 1) return null;
+        int block = (id - 1) / BLOCK_SIZE;
+        short[] owners = blockOwners;
+        int owner = block < owners.length ? owners[block] : 0;
+        return owner == 0 ? null : shards[owner - 1];
+    }
+
+    /**
+     * Claims {@code blocks} consecutive unused blocks for {@code shard} and returns the
+     * first id of the first one.
+     */
+    private int claimBlocks(int shard, int blocks) {
+        blockLock.lock();
+        try {
+            if (nextBlock > (Integer.MAX_VALUE - 1) / BLOCK_SIZE - blocks) throw new IllegalStateException("Out of user ids");
+            int first = nextBlock;
+            nextBlock += blocks;
+            short[] owners = blockOwners;
+            if (nextBlock > owners.length) owners = Arrays.copyOf(owners, Math.max(nextBlock, owners.length * 2));
+            Arrays.fill(owners, first, nextBlock, (short) (shard + 1));
+            blockOwners = owners;
+            return first * BLOCK_SIZE + 1;
+        } finally {
+            blockLock.unlock();
+        }
+    }
+
+    private List<User> resolve(SecondaryIndex directory, String key, Predicate<User> stillMatches) {
+        return directory.get(key).stream()
+                .map(this::findById)
+                .filter(Objects::nonNull)
+                .filter(stillMatches)
+                .sorted(BY_ID)
+                .toList();
+    }
+
+    /**
+     * Merges lists that are each in id order into one list in id order, stopping at
+     * {@code limit} users.
+     */
+    private static List<User> mergeById(List<List<User>> sortedLists, int limit) {
+        List<List<User>> nonEmpty = sortedLists.stream().filter(list -> !list.isEmpty()).toList();
+        if (nonEmpty.isEmpty()) return List.of();
+        if (nonEmpty.size() == 1) {
+            List<User> only = nonEmpty.getFirst();
+            return only.size() <= limit ? only : only.subList(0, limit);
+        }
+        int total = nonEmpty.stream().mapToInt(List::size).sum();
+        List<User> merged = new ArrayList<>(Math.min(total, limit));
+        PriorityQueue<Cursor> heads = new PriorityQueue<>(nonEmpty.size(), Comparator.comparing(Cursor::headId));
+        for (List<User> list : nonEmpty) {
+            heads.add(new Cursor(list));
+        }
+        while (merged.size() < limit && !heads.isEmpty()) {
+            Cursor cursor = heads.poll();
+            merged.add(cursor.list.get(cursor.position++));
+            if (cursor.position < cursor.list.size()) heads.add(cursor);
+        }
+        return merged;
+    }
+
+    private static final class Cursor {
+        private final List<User> list;
+        private int position;
+
+        Cursor(List<User> list) {
+            this.list = list;
+        }
+
+        int headId() {
+            return list.get(position).getId();
+        }
+    }
+
+    /**
+     * The range of ids a shard is currently handing out, packed as the next id in the upper
+     * half and the end of the range in the lower half.
+     */
+    private final class IdRange {
+        private final int shard;
+        private final AtomicLong range = new AtomicLong();
+        private final ReentrantLock refillLock = new ReentrantLock();
+
+        IdRange(int shard) {
+            this.shard = shard;
+        }
+
+        int reserve(int count) {
+            while (true) {
+                long current = range.get();
+                int next = (int) (current >>> 32);
+                int end = (int) current;
+                if (end - next >= count) {
+                    if (range.compareAndSet(current, pack(next + count, end))) return next;
+                    continue;
+                }
+                refillLock.lock();
+                try {
+                    // Another thread may have refilled the range while this one waited.
+                    if (range.get() != current) continue;
+                    int blocks = Math.ceilDiv(count, BLOCK_SIZE);
+                    int first = claimBlocks(shard, blocks);
+                    // What is left of the old range stays unused, so a batch is always contiguous.
+                    range.set(pack(first + count, first + blocks * BLOCK_SIZE));
+                    return first;
+                } finally {
+                    refillLock.unlock();
+                }
+            }
+        }
+
+        private static long pack(int next, int end) {
+            return (long) next << 32 | end & 0xFFFFFFFFL;
+        }
+    }
+}
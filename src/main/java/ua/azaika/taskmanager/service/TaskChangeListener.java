@@ -0,0 +1,23 @@
+package ua.azaika.taskmanager.service;
+
+import ua.azaika.taskmanager.model.Task;
+
+/**
+ * Receives every change applied to a task store, including the deletes that cascade from
+ * a deleted user.
+ * <p>
+ * Callbacks run while the store holds the owner's write lock, so changes to one task are
+ * always observed in the order they were applied. Implementations must be fast and must
+ * never block.
+ */
+public interface TaskChangeListener {
+
+    default void onSave(Task task) {
+    }
+
+    default void onUpdate(Task previous, Task current) {
+    }
+
+    default void onDelete(Task removed) {
+    }
+}
@@ -0,0 +1,38 @@
+package ua.azaika.taskmanager.service;
+
+import ua.azaika.taskmanager.model.Task;
+import ua.azaika.taskmanager.model.TaskStatus;
+
+import java.util.List;
+
+public interface TaskService {
+    /**
+     * Stores a new task for {@code task.getOwnerId()}. A missing status defaults to
+     * {@link TaskStatus#TODO} and a missing priority to {@code MEDIUM}. Returns
+     * {@code null} if the owner has been deleted, even while the task was being stored.
+     */
+    Task save(Task task);
+
+    Task findById(Integer id);
+
+    /**
+     * Returns the owner's tasks, only those in {@code status} unless it is {@code null},
+     * ordered by due date with undated tasks last, then by id.
+     */
+    List<Task> findByOwner(Integer ownerId, TaskStatus status);
+
+    /**
+     * Replaces the task's fields, keeping its id and owner. Returns {@code null} if no task
+     * with {@code id} exists.
+     */
+    Task update(Integer id, Task task);
+
+    void deleteById(Integer id);
+
+    void deleteAllByOwner(Integer ownerId);
+
+    /**
+     * Registers a listener that is notified of every subsequent change.
+     */
+    void addChangeListener(TaskChangeListener listener);
+}
@@ -0,0 +1,164 @@
+package ua.azaika.taskmanager.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import ua.azaika.taskmanager.model.Task;
+import ua.azaika.taskmanager.model.TaskPriority;
+import ua.azaika.taskmanager.model.TaskStatus;
+import ua.azaika.taskmanager.model.User;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory task store organized around the owner, since every query is scoped to one user.
+ * <p>
+ * Tasks are keyed by id in a {@link ConcurrentHashMap} for direct lookups. Each owner also
+ * has an {@link OwnerTaskIndex} holding their tasks sorted by due date, overall and per
+ * status, so listing a user's tasks by status costs the number of tasks returned, not the
+ * number stored. Writes hold the owner's write lock while they change both structures and
+ * notify {@link TaskChangeListener}s, which keeps a task's index position and every
+ * listener in step with its state.
+ * <p>
+ * Deleting a user drops its whole index and removes the tasks listed in it, without
+ * touching other owners. When constructed by Spring, the store registers for user deletes
+ * through {@link UserService#addChangeListener(UserChangeListener)} and remembers every
+ * deleted owner, since user ids are never reused. A save for a deleted owner fails, whether
+ * it reaches the dropped index or would create a fresh one after the delete; either way it
+ * would otherwise keep a task for an owner that is gone.
+ */
+@Service
+public class TaskServiceImpl implements TaskService {
+    private final Map<Integer, Task> tasks = new ConcurrentHashMap<>();
+    private final Map<Integer, OwnerTaskIndex> owners = new ConcurrentHashMap<>();
+    private final Set<Integer> deletedOwners = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger idSequence = new AtomicInteger();
+    private final List<TaskChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    public TaskServiceImpl() {
+    }
+
+    @Autowired
+    public TaskServiceImpl(UserService userService) {
+        userService.addChangeListener(new OwnerCascade());
+    }
+
+    @Override
+    public Task save(Task task) {
+        applyDefaults(task);
+        OwnerTaskIndex index = owners.computeIfAbsent(task.getOwnerId(), owner -> new OwnerTaskIndex());
+        index.writeLock().lock();
+        try {
+            if (index.isClosed()) return null;
+            if (deletedOwners.contains(task.getOwnerId())) {
+                // The index may have been created for this save alone; no task belongs in it.
+                owners.remove(task.getOwnerId(), index);
+                index.close();
+                return null;
+            }
+            task.setId(idSequence.incrementAndGet());
+            index.add(task);
+            tasks.put(task.getId(), task);
+            listeners.forEach(listener -> listener.onSave(task));
+            return task;
+        } finally {
+            index.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Task findById(Integer id) {
+        if (id == null) return null;
+        return tasks.get(id);
+    }
+
+    @Override
+    public List<Task> findByOwner(Integer ownerId, TaskStatus status) {
+        OwnerTaskIndex index = ownerId == null ? null : owners.get(ownerId);
+        if (index == null) return List.of();
+        return index.list(status);
+    }
+
+    @Override
+    public Task update(Integer id, Task updates) {
+        Task existingTask = findById(id);
+        if (existingTask == null) return null;
+        OwnerTaskIndex index = owners.get(existingTask.getOwnerId());
+        if (index == null) return null;
+        index.writeLock().lock();
+        try {
+            Task previous = tasks.get(id);
+            if (previous == null) return null;
+            updates.setId(id);
+            updates.setOwnerId(previous.getOwnerId());
+            applyDefaults(updates);
+            index.remove(previous);
+            index.add(updates);
+            tasks.put(id, updates);
+            listeners.forEach(listener -> listener.onUpdate(previous, updates));
+            return updates;
+        } finally {
+            index.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteById(Integer id) {
+        Task existingTask = findById(id);
+        if (existingTask == null) return;
+        OwnerTaskIndex index = owners.get(existingTask.getOwnerId());
+        if (index == null) return;
+        index.writeLock().lock();
+        try {
+            Task removed = tasks.remove(id);
+            if (removed == null) return;
+            index.remove(removed);
+            listeners.forEach(listener -> listener.onDelete(removed));
+        } finally {
+            index.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteAllByOwner(Integer ownerId) {
+        if (ownerId == null) return;
+        OwnerTaskIndex index = owners.remove(ownerId);
+        if (index == null) return;
+        index.writeLock().lock();
+        try {
+            for (Task removed : index.close()) {
+                tasks.remove(removed.getId());
+                listeners.forEach(listener -> listener.onDelete(removed));
+            }
+        } finally {
+            index.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void addChangeListener(TaskChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    private static void applyDefaults(Task task) {
+        if (task.getStatus() == null) task.setStatus(TaskStatus.TODO);
+        if (task.getPriority() == null) task.setPriority(TaskPriority.MEDIUM);
+    }
+
+    private class OwnerCascade implements UserChangeListener {
+
+        /**
+         * Marks the owner deleted before dropping its index, so a save that creates a new
+         * index afterwards finds the mark under that index's lock.
+         */
+        @Override
+        public void onDelete(User removed) {
+            deletedOwners.add(removed.getId());
+            deleteAllByOwner(removed.getId());
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package ua.azaika.taskmanager.service;
+
+import ua.azaika.taskmanager.model.User;
+
+/**
+ * Receives every change applied to a user store.
+ * <p>
+ * Callbacks run while the store holds the changed user's lock, so changes to one user
+ * are always observed in the order they were applied. Implementations must therefore be
+ * fast and must never block; anything slow belongs on another thread.
+ */
+public interface UserChangeListener {
+
+    default void onSave(User user) {
+    }
+
+    default void onUpdate(User previous, User current) {
+    }
+
+    default void onDelete(User removed) {
+    }
+}
@@ -0,0 +1,211 @@
+package ua.azaika.taskmanager.service;
+
+import ua.azaika.taskmanager.model.User;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntFunction;
+
+/**
+ * Trigram index over user names and emails for prefix and substring search.
+ * <p>
+ * Each field is lower-cased and padded with two start markers, and every three-character
+ * window of the result maps to a {@link PostingList} of the ids containing it. The padding
+ * lets prefixes of any length be looked up: {@code "al"} becomes the trigrams
+ * {@code "^^a"} and {@code "^al"}. A query is answered by intersecting the posting lists of
+ * its trigrams in id order, rarest first, so the work grows with the shorter lists and
+ * the number of results wanted, not with the number of users.
+ * <p>
+ * Like {@link SecondaryIndex}, entries only point at ids. Callers resolve them against
+ * the primary store and the index re-checks the match, so trigrams shared by accident, or
+ * a reader racing with an update, can at worst cost a lookup, never return a wrong user.
+ * Writers and readers share a read-write lock; readers hold it only while they collect a
+ * batch of candidate ids and release it before resolving them.
+ */
+final class UserSearchIndex {
+    private static final char START = '\u0001';
+    private static final Comparator<PostingList> RAREST_FIRST = Comparator.comparingInt(PostingList::cardinality);
+
+    private final Map<Long, PostingList> postings = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock readLock = lock.readLock();
+    private final Lock writeLock = lock.writeLock();
+
+    void add(User user) {
+        long[] trigrams = trigrams(user);
+        writeLock.lock();
+        try {
+            for (long trigram : trigrams) {
+                postings.computeIfAbsent(trigram, key -> new PostingList()).add(user.getId());
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    void remove(User user) {
+        long[] trigrams = trigrams(user);
+        writeLock.lock();
+        try {
+            for (long trigram : trigrams) {
+                PostingList ids = postings.get(trigram);
+                if (ids == null) continue;
+                ids.remove(user.getId());
+                if (ids.isEmpty()) postings.remove(trigram);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} users whose user name or email starts with {@code query},
+     * in id order, followed, if there is room, by users containing it elsewhere. Case is
+     * ignored. Substring matches need at least three characters.
+     *
+     * @param users resolves an id to the stored user, or {@code null} if it is gone
+     */
+    List<User> search(String query, int limit, IntFunction<User> users) {
+        List<User> found = new ArrayList<>(Math.min(limit, 64));
+        if (query == null || query.isEmpty() || limit <= 0) return found;
+        String needle = query.toLowerCase(Locale.ROOT);
+        collect(windows(START + "" + START + needle), needle, true, limit, users, found);
+        if (found.size() < limit && needle.length() >= 3) {
+            collect(windows(needle), needle, false, limit, users, found);
+        }
+        return found;
+    }
+
+    /**
+     * Estimated heap bytes of the posting lists and the map holding them.
+     */
+    long footprintBytes() {
+        readLock.lock();
+        try {
+            long bytes = 16 + postings.size() * 64L;
+            for (PostingList ids : postings.values()) {
+                bytes += ids.footprintBytes();
+            }
+            return bytes;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private void collect(long[] trigrams, String needle, boolean prefix, int limit,
+                         IntFunction<User> users, List<User> found) {
+        int[] batch = new int[Math.min(Math.max(limit * 2, 16), 1024)];
+        int after = 0;
+        while (found.size() < limit) {
+            int count;
+            readLock.lock();
+            try {
+                count = intersect(trigrams, after, batch);
+            } finally {
+                readLock.unlock();
+            }
+            for (int i = 0; i < count && found.size() < limit; i++) {
+                User user = users.apply(batch[i]);
+                if (user == null) continue;
+                // The substring pass skips prefix matches, which the first pass already took.
+                if (prefix ? startsWith(user, needle) : !startsWith(user, needle) && contains(user, needle)) {
+                    found.add(user);
+                }
+            }
+            if (count < batch.length || batch[count - 1] == Integer.MAX_VALUE) return;
+            after = batch[count - 1];
+        }
+    }
+
+    /**
+     * Fills {@code batch} with the ids greater than {@code after} that appear in every
+     * posting list, leapfrogging from the rarest list through the others.
+     */
+    private int intersect(long[] trigrams, int after, int[] batch) {
+        PostingList[] lists = new PostingList[trigrams.length];
+        for (int i = 0; i < trigrams.length; i++) {
+            lists[i] = postings.get(trigrams[i]);
+            if (lists[i] == null) return 0;
+        }
+        Arrays.sort(lists, RAREST_FIRST);
+        PostingList.Cursor[] cursors = new PostingList.Cursor[lists.length];
+        for (int i = 0; i < lists.length; i++) {
+            cursors[i] = lists[i].cursor();
+        }
+        int count = 0;
+        int candidate = cursors[0].seek(after + 1);
+        while (candidate >= 0 && count < batch.length) {
+            int agreed = 1;
+            while (agreed < cursors.length) {
+                int next = cursors[agreed].seek(candidate);
+                if (next != candidate) {
+                    candidate = next < 0 ? -1 : cursors[0].seek(next);
+                    break;
+                }
+                agreed++;
+            }
+            if (agreed == cursors.length) {
+                batch[count++] = candidate;
+                candidate = candidate == Integer.MAX_VALUE ? -1 : cursors[0].seek(candidate + 1);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Tells whether the user name or email starts with {@code needle}, which must be lower case.
+     */
+    static boolean startsWith(User user, String needle) {
+        return lower(user.getUserName()).startsWith(needle) || lower(user.getEmail()).startsWith(needle);
+    }
+
+    private static boolean contains(User user, String needle) {
+        return lower(user.getUserName()).contains(needle) || lower(user.getEmail()).contains(needle);
+    }
+
+    private static String lower(String field) {
+        return field == null ? "" : field.toLowerCase(Locale.ROOT);
+    }
+
+    private static long[] trigrams(User user) {
+        long[] userName = fieldTrigrams(user.getUserName());
+        long[] email = fieldTrigrams(user.getEmail());
+        long[] all = Arrays.copyOf(userName, userName.length + email.length);
+        System.arraycopy(email, 0, all, userName.length, email.length);
+        return distinct(all);
+    }
+
+    private static long[] fieldTrigrams(String field) {
+        if (field == null || field.isEmpty()) return new long[0];
+        return windows(START + "" + START + field.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Returns the distinct three-character windows of {@code text}, each packed into a long.
+     */
+    private static long[] windows(String text) {
+        if (text.length() < 3) return new long[0];
+        long[] trigrams = new long[text.length() - 2];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = (long) text.charAt(i) << 32 | (long) text.charAt(i + 1) << 16 | text.charAt(i + 2);
+        }
+        return distinct(trigrams);
+    }
+
+    private static long[] distinct(long[] values) {
+        if (values.length < 2) return values;
+        Arrays.sort(values);
+        int count = 1;
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] != values[count - 1]) values[count++] = values[i];
+        }
+        return count == values.length ? values : Arrays.copyOf(values, count);
+    }
+}
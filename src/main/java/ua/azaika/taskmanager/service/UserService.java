@@ -2,21 +2,79 @@ package ua.azaika.taskmanager.service;
 
 import ua.azaika.taskmanager.model.User;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface UserService {
+    /**
+     * Stores a new user under a fresh id, at version 1.
+     */
     User save(User user);
 
+    /**
+     * Saves all users in one pass, reserving a contiguous id range for the whole batch.
+     */
+    List<User> saveAll(List<User> users);
+
     List<User> getAll();
 
+    /**
+     * Returns up to {@code limit} users with ids greater than {@code afterId}, in id order.
+     * A {@code null} {@code afterId} starts from the first user.
+     */
+    List<User> getPage(Integer afterId, int limit);
+
     User findById(Integer id);
 
     List<User> findByUserName(String userName);
 
     List<User> findByEmail(String email);
 
+    /**
+     * Returns up to {@code limit} users whose user name or email starts with {@code query},
+     * in id order, followed by users whose user name or email contains it, when there is
+     * room left. Case is ignored. Queries shorter than three characters only match prefixes.
+     */
+    List<User> search(String query, int limit);
+
+    /**
+     * Replaces the user with {@code id}, keeping its id and incrementing its version.
+     * Returns {@code null} if no such user exists.
+     */
     User update(Integer id, User user);
 
+    /**
+     * Like {@link #update(Integer, User)}, but only while the stored user is still at
+     * {@code expectedVersion}. The check and the write are atomic.
+     *
+     * @throws VersionConflictException if the stored user has another version
+     */
+    User update(Integer id, User user, long expectedVersion);
+
+    /**
+     * Applies each update to the user with the update's own id. The result has one entry
+     * per update, {@code null} where no user with that id exists.
+     */
+    List<User> updateAll(List<User> updates);
+
     void deleteById(Integer id);
 
+    void deleteAllById(Collection<Integer> ids);
+
+    /**
+     * Returns the number of stored users.
+     */
+    long count();
+
+    /**
+     * Returns a number that grows with every save, update and delete, for telling whether
+     * the collection changed. It starts over when the store is created again.
+     */
+    long collectionVersion();
+
+    /**
+     * Registers a listener notified of every save, update and delete from now on.
+     */
+    void addChangeListener(UserChangeListener listener);
+
 }
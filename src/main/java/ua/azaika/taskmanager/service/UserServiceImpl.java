@@ -1,63 +1,403 @@
 package ua.azaika.taskmanager.service;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import ua.azaika.taskmanager.model.User;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Predicate;
 
+/**
+ * In-memory user store safe for concurrent use by request threads.
+ * <p>
+ * Users are keyed by id in a {@link ConcurrentHashMap}, so lookups are O(1) and take no
+ * lock. Writes to different ids only share a per-id lock when their ids fall on the same
+ * stripe, but every write briefly takes the search index's single write lock, so writers
+ * do serialize for the few posting list updates it guards. Ids come from a lock-free
+ * {@link AtomicInteger} sequence and are never reused, even after a delete.
+ * <p>
+ * User names and emails are kept in {@link SecondaryIndex secondary indexes}. Every
+ * write updates them while holding the lock of the affected id, so all changes to one
+ * user are applied in order; registered {@link UserChangeListener}s are called inside
+ * the same critical section. A sorted set of ids backs keyset pagination in
+ * {@link #getPage(Integer, int)}. When {@code caseInsensitiveEmail} is set, emails
+ * are indexed lower-cased and {@link #findByEmail(String)} ignores case. Both fields are
+ * also kept in a {@link UserSearchIndex} for {@link #search(String, int)}.
+ * <p>
+ * Each user's version is bumped in the same critical section, so a version check in
+ * {@link #update(Integer, User, long)} cannot interleave with another write to that user.
+ * The collection version is a single counter bumped by every write.
+ * <p>
+ * The per-id locks are {@link ReentrantLock}s striped over a fixed array, and the map is
+ * only touched with plain {@code get}, {@code put} and {@code remove}. Nothing runs inside
+ * {@link ConcurrentHashMap#compute}, whose bin monitor would pin a virtual thread to its
+ * carrier while listeners wait for their own locks. A new user or value becomes visible in
+ * the map only after the listeners have returned, so a listener that throws leaves the
+ * stored user unchanged.
+ */
 @Service
 public class UserServiceImpl implements UserService {
-    private final List<User> users = new ArrayList<>();
+    private static final int LOCK_STRIPES = 256;
+
+    private final Map<Integer, User> users = new ConcurrentHashMap<>();
+    private final NavigableSet<Integer> orderedIds = new ConcurrentSkipListSet<>();
+    private final AtomicInteger idSequence = new AtomicInteger();
+    private final AtomicLong collectionVersion = new AtomicLong();
+    private final SecondaryIndex userNameIndex;
+    private final SecondaryIndex emailIndex;
+    private final UserSearchIndex searchIndex = new UserSearchIndex();
+    private final List<UserChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final boolean caseInsensitiveEmail;
+    private final IntUnaryOperator idReservation;
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    public UserServiceImpl() {
+        this(false);
+    }
+
+    @Autowired
+    public UserServiceImpl(@Value("${taskmanager.users.case-insensitive-email:false}") boolean caseInsensitiveEmail) {
+        this(caseInsensitiveEmail, null, new SecondaryIndex(), new SecondaryIndex());
+    }
+
+    /**
+     * Creates one shard of a {@link ShardedUserService}. {@code idReservation} returns the
+     * first of the given number of consecutive unused ids, and user names and emails go into
+     * indexes that all shards share. The shard's own lookups only return its own users.
+     */
+    UserServiceImpl(boolean caseInsensitiveEmail, IntUnaryOperator idReservation,
+                    SecondaryIndex userNameIndex, SecondaryIndex emailIndex) {
+        this.caseInsensitiveEmail = caseInsensitiveEmail;
+        this.idReservation = idReservation;
+        this.userNameIndex = userNameIndex;
+        this.emailIndex = emailIndex;
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
 
     @Override
     public User save(User user) {
-        user.setId(users.size() + 1);
-        users.add(user);
+        user.setId(reserveIds(1));
+        insert(user);
         return user;
     }
 
+    @Override
+    public List<User> saveAll(List<User> usersToSave) {
+        if (usersToSave.isEmpty()) return usersToSave;
+        int nextId = reserveIds(usersToSave.size());
+        for (User user : usersToSave) {
+            user.setId(nextId++);
+            insert(user);
+        }
+        return usersToSave;
+    }
+
     @Override
     public List<User> getAll() {
-        return new ArrayList<>(users);
+        return orderedIds.stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    @Override
+    public List<User> getPage(Integer afterId, int limit) {
+        NavigableSet<Integer> tail = afterId == null ? orderedIds : orderedIds.tailSet(afterId, false);
+        List<User> page = new ArrayList<>(Math.min(limit, 1024));
+        for (Integer id : tail) {
+            if (page.size() >= limit) break;
+            User user = users.get(id);
+            if (user != null) page.add(user);
+        }
+        return page;
     }
 
     @Override
     public User findById(Integer id) {
-        return users.stream()
-                .filter(user -> user.getId().equals(id))
-                .findFirst()
-                .orElse(null);
+        return users.get(id);
     }
 
     @Override
     public List<User> findByUserName(String userName) {
-        return users.stream()
-                .filter(user -> user.getUserName().equals(userName))
-                .toList();
+        return resolve(userNameIndex, userName, user -> Objects.equals(user.getUserName(), userName));
     }
 
     @Override
     public List<User> findByEmail(String email) {
-        return users.stream()
-                .filter(user -> user.getEmail().equals(email))
-                .toList();
+        if (email == null) return List.of();
+        if (caseInsensitiveEmail) {
+            return resolve(emailIndex, normalizeEmail(email), user -> email.equalsIgnoreCase(user.getEmail()));
+        }
+        return resolve(emailIndex, email, user -> email.equals(user.getEmail()));
+    }
+
+    @Override
+    public List<User> search(String query, int limit) {
+        return searchIndex.search(query, limit, users::get);
     }
 
     @Override
     public User update(Integer id, User updates) {
-        User existingUser = findById(id);
-        int index = users.indexOf(existingUser);
-        updates.setId(id);
-        users.set(index, updates);
-        return updates;
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        try {
+            User existingUser = users.get(id);
+            return existingUser == null ? null : replace(existingUser, updates);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public User update(Integer id, User updates, long expectedVersion) {
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        try {
+            User existingUser = users.get(id);
+            if (existingUser == null) return null;
+            if (existingUser.getVersion() != expectedVersion) {
+                throw new VersionConflictException(id, expectedVersion, existingUser.getVersion());
+            }
+            return replace(existingUser, updates);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<User> updateAll(List<User> updates) {
+        List<User> updatedUsers = new ArrayList<>(updates.size());
+        for (User user : updates) {
+            updatedUsers.add(update(user.getId(), user));
+        }
+        return updatedUsers;
     }
 
     @Override
     public void deleteById(Integer id) {
-        users.stream()
-                .filter(u -> u.getId().equals(id))
-                .findFirst()
-                .ifPresent(users::remove);
+        remove(id, true);
+    }
+
+    @Override
+    public void deleteAllById(Collection<Integer> ids) {
+        ids.forEach(this::deleteById);
+    }
+
+    @Override
+    public long count() {
+        return users.size();
+    }
+
+    @Override
+    public long collectionVersion() {
+        return collectionVersion.get();
+    }
+
+    @Override
+    public void addChangeListener(UserChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Estimated heap bytes of the search index.
+     */
+    public long searchIndexFootprintBytes() {
+        return searchIndex.footprintBytes();
+    }
+
+    /**
+     * Puts a user back under its existing id without notifying listeners, replacing any
+     * user already stored there. Used to rebuild the store from persisted state.
+     */
+    void restore(User user) {
+        idSequence.accumulateAndGet(user.getId(), Math::max);
+        ReentrantLock lock = lockFor(user.getId());
+        lock.lock();
+        try {
+            User existingUser = users.get(user.getId());
+            if (existingUser != null) {
+                unindex(existingUser);
+            }
+            orderedIds.add(user.getId());
+            index(user);
+            collectionVersion.incrementAndGet();
+            users.put(user.getId(), user);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Like {@link #restore(User)}, but keeps a user already stored under the same id and
+     * skips ids for which {@code deleted} holds. The check runs under the id's lock, so it
+     * cannot interleave with a concurrent delete of that id.
+     */
+    void restoreIfAbsent(User user, Predicate<Integer> deleted) {
+        idSequence.accumulateAndGet(user.getId(), Math::max);
+        ReentrantLock lock = lockFor(user.getId());
+        lock.lock();
+        try {
+            if (users.containsKey(user.getId()) || deleted.test(user.getId())) return;
+            orderedIds.add(user.getId());
+            index(user);
+            collectionVersion.incrementAndGet();
+            users.put(user.getId(), user);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a user without notifying listeners. The id still counts as used, so it is
+     * never handed out again.
+     */
+    void restoreDeletion(Integer id) {
+        idSequence.accumulateAndGet(id, Math::max);
+        remove(id, false);
+    }
+
+    /**
+     * Stores a user under its existing id and version, as received from a replication
+     * leader, and notifies listeners as a save or update would. Unless {@code force} is set,
+     * a copy that is not newer than the stored user is ignored, so replaying a change twice
+     * or out of date does no harm.
+     */
+    void replicate(User user, boolean force) {
+        idSequence.accumulateAndGet(user.getId(), Math::max);
+        ReentrantLock lock = lockFor(user.getId());
+        lock.lock();
+        try {
+            User existingUser = users.get(user.getId());
+            if (existingUser == null) {
+                orderedIds.add(user.getId());
+                index(user);
+                collectionVersion.incrementAndGet();
+                listeners.forEach(listener -> listener.onSave(user));
+                users.put(user.getId(), user);
+                return;
+            }
+            if (!force && existingUser.getVersion() >= user.getVersion()) return;
+            unindex(existingUser);
+            index(user);
+            collectionVersion.incrementAndGet();
+            listeners.forEach(listener -> listener.onUpdate(existingUser, user));
+            users.put(user.getId(), user);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a user deleted on a replication leader and notifies listeners as a delete would.
+     */
+    void replicateDeletion(Integer id) {
+        idSequence.accumulateAndGet(id, Math::max);
+        remove(id, true);
+    }
+
+    void restoreIdSequence(int lastAssignedId) {
+        idSequence.accumulateAndGet(lastAssignedId, Math::max);
+    }
+
+    int lastAssignedId() {
+        return idSequence.get();
+    }
+
+    private int reserveIds(int count) {
+        return idReservation != null ? idReservation.applyAsInt(count) : idSequence.getAndAdd(count) + 1;
+    }
+
+    private ReentrantLock lockFor(Integer id) {
+        return locks[id & (LOCK_STRIPES - 1)];
+    }
+
+    private void insert(User user) {
+        ReentrantLock lock = lockFor(user.getId());
+        lock.lock();
+        try {
+            user.setVersion(1);
+            orderedIds.add(user.getId());
+            index(user);
+            collectionVersion.incrementAndGet();
+            listeners.forEach(listener -> listener.onSave(user));
+            users.put(user.getId(), user);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces a stored user; the caller holds the id's lock.
+     */
+    private User replace(User existingUser, User updates) {
+        updates.setId(existingUser.getId());
+        updates.setVersion(existingUser.getVersion() + 1);
+        unindex(existingUser);
+        index(updates);
+        collectionVersion.incrementAndGet();
+        listeners.forEach(listener -> listener.onUpdate(existingUser, updates));
+        users.put(existingUser.getId(), updates);
+        return updates;
+    }
+
+    private void remove(Integer id, boolean notify) {
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        try {
+            User existingUser = users.get(id);
+            if (existingUser == null) return;
+            unindex(existingUser);
+            orderedIds.remove(id);
+            collectionVersion.incrementAndGet();
+            if (notify) {
+                listeners.forEach(listener -> listener.onDelete(existingUser));
+            }
+            users.remove(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void index(User user) {
+        userNameIndex.add(user.getUserName(), user.getId());
+        emailIndex.add(normalizeEmail(user.getEmail()), user.getId());
+        searchIndex.add(user);
+    }
+
+    private void unindex(User user) {
+        userNameIndex.remove(user.getUserName(), user.getId());
+        emailIndex.remove(normalizeEmail(user.getEmail()), user.getId());
+        searchIndex.remove(user);
+    }
+
+    private String normalizeEmail(String email) {
+        if (email == null || !caseInsensitiveEmail) return email;
+        return email.toLowerCase(Locale.ROOT);
+    }
+
+    private List<User> resolve(SecondaryIndex index, String key, Predicate<User> stillMatches) {
+        return index.get(key).stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .filter(stillMatches)
+                .sorted(Comparator.comparing(User::getId))
+                .toList();
     }
 }
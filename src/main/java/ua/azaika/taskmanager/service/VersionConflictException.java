@@ -0,0 +1,18 @@
+package ua.azaika.taskmanager.service;
+
+import lombok.Getter;
+import ua.azaika.taskmanager.model.User;
+
+/**
+ * Thrown by {@link UserService#update(Integer, User, long)} when the stored user is no longer
+ * at the version the caller based its changes on.
+ */
+@Getter
+public class VersionConflictException extends RuntimeException {
+    private final long currentVersion;
+
+    public VersionConflictException(Integer id, long expectedVersion, long currentVersion) {
+        super("User " + id + " is at version " + currentVersion + ", expected " + expectedVersion);
+        this.currentVersion = currentVersion;
+    }
+}
@@ -0,0 +1,95 @@
+package ua.azaika.taskmanager.benchmark;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import ua.azaika.taskmanager.model.User;
+import ua.azaika.taskmanager.service.MeteredUserService;
+import ua.azaika.taskmanager.service.UserService;
+import ua.azaika.taskmanager.service.UserServiceImpl;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of {@link MeteredUserService} on the cheapest store calls, with the same
+ * histogram buckets as {@code application.properties} configures. Compare
+ * {@code metered=false} and {@code true}; run with {@code -prof gc} to check that
+ * recording adds nothing to {@code gc.alloc.rate.norm}. The small store fits in the CPU
+ * cache and shows the cost of recording itself. The large one shows what timing does to
+ * lookups that miss the cache, which is why point lookups are only timed on a sample.
+ * <p>
+ * Run with {@code mvn test -Pbenchmark -Djmh.args="MeteredUserServiceBenchmark -prof gc"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class MeteredUserServiceBenchmark {
+        @Param({"false", "true"})
+    public boolean metered;
+
+    @Param({"1000", "100000"})
+    public int userCount;
+
+    private UserService userService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        UserService store = new UserServiceImpl();
+        for (int i = 0; i < userCount; i++) {
+            store.save(newUser(i));
+        }
+        userService = metered ? new MeteredUserService(store, newRegistry()) : store;
+    }
+
+    @Benchmark
+    public User findById() {
+        return userService.findById(randomIndex() + 1);
+    }
+
+    @Benchmark
+    public List<User> findByUserName() {
+        return userService.findByUserName("User" + randomIndex());
+    }
+
+    @Benchmark
+    public User update() {
+        int index = randomIndex();
+        return userService.update(index + 1, newUser(index));
+    }
+
+    private static PrometheusMeterRegistry newRegistry() {
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        registry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                return DistributionStatisticConfig.builder()
+                        .percentilesHistogram(true)
+                        .minimumExpectedValue((double) TimeUnit.MICROSECONDS.toNanos(1))
+                        .maximumExpectedValue((double) TimeUnit.SECONDS.toNanos(1))
+                        .build()
+                        .merge(config);
+            }
+        });
+        return registry;
+    }
+
+    private int randomIndex() {
+        return ThreadLocalRandom.current().nextInt(userCount);
+    }
+
+    private static User newUser(int i) {
+        return User.builder()
+                .userName("User" + i)
+                .email("user" + i + "@test.com")
+                .password("password" + i)
+                .build();
+    }
+}
@@ -0,0 +1,92 @@
+package ua.azaika.taskmanager.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+import ua.azaika.taskmanager.config.RateLimitProperties;
+import ua.azaika.taskmanager.ratelimit.AdaptiveConcurrencyLimiter;
+import ua.azaika.taskmanager.ratelimit.RateLimitInterceptor;
+import ua.azaika.taskmanager.ratelimit.TokenBucket;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cost of admitting a request with eight threads contending for the same limits: one shared
+ * token bucket that keeps granting, one that is empty and keeps refusing, the concurrency
+ * limiter, and the whole interceptor with a per-client bucket, a global bucket and the
+ * concurrency limiter on one endpoint. Each thread is its own client.
+ * <p>
+ * Run with {@code mvn test -Pbenchmark -Djmh.args=RateLimitBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class RateLimitBenchmark {
+
+    private TokenBucket grantingBucket;
+    private TokenBucket refusingBucket;
+    private AdaptiveConcurrencyLimiter limiter;
+    private RateLimitInterceptor interceptor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        grantingBucket = new TokenBucket(1e12, 1_000_000);
+        refusingBucket = new TokenBucket(1e-3, 1);
+        refusingBucket.tryAcquire(System.nanoTime());
+        limiter = new AdaptiveConcurrencyLimiter(1_000, 1_000, 1_000, 2.0,
+                TimeUnit.MILLISECONDS.toNanos(100), System.nanoTime());
+        RateLimitProperties properties = new RateLimitProperties(true, null, true, 100_000, Duration.ofMinutes(10),
+                List.of(new RateLimitProperties.Endpoint("GET", "/api/users/{id}", 1e12, 1_000_000, 1e12, 1_000_000)),
+                new RateLimitProperties.Concurrency(true, 1_000, 1_000, 1_000, 2.0, Duration.ofMillis(100)));
+        interceptor = new RateLimitInterceptor(properties, System::nanoTime);
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        private static final AtomicInteger CLIENTS = new AtomicInteger();
+
+        MockHttpServletRequest request;
+        MockHttpServletResponse response;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            request = new MockHttpServletRequest("GET", "/api/users/1");
+            request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/users/{id}");
+            request.setRemoteAddr("10.0.0." + CLIENTS.incrementAndGet());
+            response = new MockHttpServletResponse();
+        }
+    }
+
+    @Benchmark
+    public long sharedBucketGranting() {
+        return grantingBucket.tryAcquire(System.nanoTime());
+    }
+
+    @Benchmark
+    public long sharedBucketRefusing() {
+        return refusingBucket.tryAcquire(System.nanoTime());
+    }
+
+    @Benchmark
+    public boolean concurrencyLimiter() {
+        long start = System.nanoTime();
+        boolean admitted = limiter.tryAcquire();
+        if (admitted) limiter.release(start, System.nanoTime());
+        return admitted;
+    }
+
+    @Benchmark
+    public boolean interceptor(Client client) throws Exception {
+        boolean admitted = interceptor.preHandle(client.request, client.response, null);
+        interceptor.afterCompletion(client.request, client.response, null, null);
+        return admitted;
+    }
+}
@@ -0,0 +1,117 @@
+package ua.azaika.taskmanager.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarFile;
+
+/**
+ * Compares how long the packaged application takes to start and how much memory it holds
+ * once started, in each startup mode that has been built: the plain jar, the jar with
+ * Spring AOT initialization, the extracted jar with a CDS archive, and the native image.
+ * Startup is the wall-clock time from launching the process until Spring logs that the
+ * application has started; memory is the process's resident set size at that moment, read
+ * from {@code /proc}, so this only runs on Linux.
+ * <p>
+ * Build the modes first: {@code mvn package -Pcds} produces the AOT-processed jar and the
+ * CDS archive, and {@code mvn -Pnative native:compile} the native image, with GraalVM.
+ * Then run {@code mvn test-compile exec:exec@startup -Pbenchmark}. Each mode is started
+ * {@code -Dstartup.runs} times, five by default, and the medians are printed as CSV.
+ */
+public class StartupFootprint {
+    private static final String STARTED = "Started TaskManagerApplication";
+    private static final String AOT_INITIALIZER =
+            "BOOT-INF/classes/ua/azaika/taskmanager/TaskManagerApplication__ApplicationContextInitializer.class";
+
+    public static void main(String[] args) throws Exception {
+        Path target = Path.of(args[0]);
+        String finalName = args[1];
+        int runs = Integer.getInteger("startup.runs", 5);
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        Path jar = target.resolve(finalName + ".jar");
+        Path cdsJar = target.resolve("cds").resolve(finalName + ".jar");
+        Path cdsArchive = target.resolve("cds").resolve("application.jsa");
+        Path nativeImage = target.resolve("task-manager");
+
+        System.out.println("mode,runs,startupMillis,rssMegabytes");
+        measure("jvm", runs, java, "-jar", jar.toString());
+        if (hasAotInitializer(jar)) {
+            measure("aot", runs, java, "-Dspring.aot.enabled=true", "-jar", jar.toString());
+        }
+        if (Files.exists(cdsArchive)) {
+            measure("aot+cds", runs, java, "-XX:SharedArchiveFile=" + cdsArchive, "-Dspring.aot.enabled=true",
+                    "-jar", cdsJar.toString());
+        }
+        if (Files.isExecutable(nativeImage)) {
+            measure("native", runs, nativeImage.toString());
+        }
+    }
+
+    private static void measure(String mode, int runs, String... command) throws Exception {
+        long[] startupNanos = new long[runs];
+        long[] rssKilobytes = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            List<String> arguments = new ArrayList<>(Arrays.asList(command));
+            arguments.add("--server.port=0");
+            long start = System.nanoTime();
+            Process process = new ProcessBuilder(arguments).redirectErrorStream(true).start();
+            try {
+                awaitStarted(process);
+                startupNanos[i] = System.nanoTime() - start;
+                rssKilobytes[i] = rssKilobytes(process.pid());
+            } finally {
+                process.destroy();
+                if (!process.waitFor(30, TimeUnit.SECONDS)) process.destroyForcibly();
+            }
+        }
+        System.out.printf("%s,%d,%d,%.1f%n", mode, runs,
+                TimeUnit.NANOSECONDS.toMillis(median(startupNanos)), median(rssKilobytes) / 1024.0);
+    }
+
+    private static void awaitStarted(Process process) throws IOException {
+        BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        for (String line = output.readLine(); line != null; line = output.readLine()) {
+            if (line.contains(STARTED)) {
+                // Keep draining, so the process never blocks on a full pipe.
+                Thread.ofVirtual().start(() -> {
+                    try {
+                        output.transferTo(Writer.nullWriter());
+                    } catch (IOException ignored) {
+                        // The process was stopped.
+                    }
+                });
+                return;
+            }
+        }
+        throw new IllegalStateException("Application exited before it started");
+    }
+
+    private static long rssKilobytes(long pid) throws IOException {
+        for (String line : Files.readAllLines(Path.of("/proc", String.valueOf(pid), "status"))) {
+            if (line.startsWith("VmRSS:")) {
+                return Long.parseLong(line.replaceAll("\\D", ""));
+            }
+        }
+        throw new IllegalStateException("No VmRSS for process " + pid);
+    }
+
+    private static boolean hasAotInitializer(Path jar) throws IOException {
+        try (JarFile file = new JarFile(jar.toFile())) {
+            return file.getEntry(AOT_INITIALIZER) != null;
+        }
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
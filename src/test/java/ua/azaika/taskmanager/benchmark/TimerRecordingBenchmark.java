@@ -0,0 +1,59 @@
+package ua.azaika.taskmanager.benchmark;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits the cost {@link ua.azaika.taskmanager.service.MeteredUserService} adds to a call
+ * into its parts: the two clock reads, and recording into a Prometheus timer with and without
+ * the percentile histogram {@code application.properties} configures.
+ * <p>
+ * Run with {@code mvn test -Pbenchmark -Djmh.args="TimerRecordingBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimerRecordingBenchmark {
+
+    @Param({"none", "percentiles"})
+    public String histogram;
+
+    private Timer timer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        Timer.Builder builder = Timer.builder("benchmark");
+        if ("percentiles".equals(histogram)) {
+            builder.publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(1)))
+                    .maximumExpectedValue(Duration.ofSeconds(1));
+        }
+        timer = builder.register(registry);
+    }
+
+    @Benchmark
+    public long clockReads() {
+        long start = System.nanoTime();
+        return System.nanoTime() - start;
+    }
+
+    @Benchmark
+    public void record() {
+        timer.record(ThreadLocalRandom.current().nextInt(200, 5_000), TimeUnit.NANOSECONDS);
+    }
+
+    @Benchmark
+    public int baseline() {
+        return ThreadLocalRandom.current().nextInt(200, 5_000);
+    }
+}
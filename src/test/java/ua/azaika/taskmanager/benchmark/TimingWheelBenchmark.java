@@ -0,0 +1,58 @@
+package ua.azaika.taskmanager.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ua.azaika.taskmanager.scheduler.TimingWheel;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of scheduling, rescheduling and cancelling a deadline in the {@link TimingWheel} as
+ * the number of pending deadlines grows. Every operation should stay flat across sizes.
+ * <p>
+ * Deadlines are spread over a year at a one-second tick, so they land on every level of
+ * the wheel. Run with {@code mvn test -Pbenchmark -Djmh.args=TimingWheelBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class TimingWheelBenchmark {
+    private static final long TICK_MILLIS = 1_000;
+    private static final long HORIZON_MILLIS = TimeUnit.DAYS.toMillis(365);
+
+    @Param({"1000", "100000", "1000000", "4000000"})
+    public int pendingCount;
+
+    private TimingWheel<Integer> wheel;
+    private int nextKey;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        wheel = new TimingWheel<>(TICK_MILLIS, 8, 4, 0);
+        for (int key = 0; key < pendingCount; key++) {
+            wheel.schedule(key, randomDeadline());
+        }
+        nextKey = pendingCount;
+    }
+
+    @Benchmark
+    public boolean scheduleAndCancel() {
+        int key = nextKey++;
+        wheel.schedule(key, randomDeadline());
+        return wheel.cancel(key);
+    }
+
+    @Benchmark
+    public int reschedule() {
+        int key = ThreadLocalRandom.current().nextInt(pendingCount);
+        wheel.schedule(key, randomDeadline());
+        return key;
+    }
+
+    private static long randomDeadline() {
+        return 1 + ThreadLocalRandom.current().nextLong(HORIZON_MILLIS);
+    }
+}
@@ -0,0 +1,100 @@
+package ua.azaika.taskmanager.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.*;
+import ua.azaika.taskmanager.dto.UserField;
+import ua.azaika.taskmanager.dto.UserListDTO;
+import ua.azaika.taskmanager.dto.UserResponseDTO;
+import ua.azaika.taskmanager.mapper.UserMapper;
+import ua.azaika.taskmanager.model.User;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning users into response bodies: the MapStruct mapping alone, and mapping
+ * plus Jackson serialization of a whole list as {@code GET /api/users} used to do it.
+ * <p>
+ * The {@code write} benchmarks compare list serialization into a discarding stream, so the
+ * output buffer does not count: through a {@link UserResponseDTO} per user, straight from
+ * the users as {@link UserListDTO} writes them, and straight from the users limited to
+ * {@code ?fields=id,email}. Run them with the GC profiler to see allocation per list;
+ * {@code gc.alloc.rate.norm} divided by {@code listSize} is the allocation per user:
+ * {@code mvn test -Pbenchmark -Djmh.args="UserMappingBenchmark.write -prof gc"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserMappingBenchmark {
+
+    @Param({"1", "100", "10000"})
+    public int listSize;
+
+    private final UserMapper userMapper = Mappers.getMapper(UserMapper.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private List<User> users;
+    private final Set<UserField> idAndEmail = EnumSet.of(UserField.ID, UserField.EMAIL);
+    // Jackson closes the stream after each value, which OutputStream.nullOutputStream() refuses.
+    private final OutputStream sink = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+    private List<UserResponseDTO> responseDTOS;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        users = new ArrayList<>(listSize);
+        for (int i = 0; i < listSize; i++) {
+            users.add(User.builder()
+                    .id(i + 1)
+                    .userName("User" + i)
+                    .email("user" + i + "@test.com")
+                    .password("password" + i)
+                    .build());
+        }
+        responseDTOS = users.stream().map(userMapper::toResponseDTO).toList();
+    }
+
+    @Benchmark
+    public UserResponseDTO toResponseDTO() {
+        return userMapper.toResponseDTO(users.getFirst());
+    }
+
+    @Benchmark
+    public byte[] serializeResponseDTOs() throws Exception {
+        return objectMapper.writeValueAsBytes(responseDTOS);
+    }
+
+    @Benchmark
+    public byte[] mapAndSerializeUsers() throws Exception {
+        return objectMapper.writeValueAsBytes(users.stream().map(userMapper::toResponseDTO).toList());
+    }
+
+    @Benchmark
+    public void writeMappedUsers() throws Exception {
+        objectMapper.writeValue(sink, users.stream().map(userMapper::toResponseDTO).toList());
+    }
+
+    @Benchmark
+    public void writeUsersDirectly() throws Exception {
+        objectMapper.writeValue(sink, new UserListDTO(users, UserField.ALL));
+    }
+
+    @Benchmark
+    public void writeUsersProjected() throws Exception {
+        objectMapper.writeValue(sink, new UserListDTO(users, idAndEmail));
+    }
+}
@@ -0,0 +1,93 @@
+package ua.azaika.taskmanager.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ua.azaika.taskmanager.model.User;
+import ua.azaika.taskmanager.service.CompactUserService;
+import ua.azaika.taskmanager.service.UserService;
+import ua.azaika.taskmanager.service.UserServiceImpl;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of {@link UserService#search(String, int)} for top-10 autocomplete queries over a
+ * million users: a short prefix that matches everyone, a longer prefix that narrows to a
+ * few users, and substrings inside user names and emails. {@code saveThenDeleteById}
+ * shows what keeping the index up to date adds to a write.
+ * <p>
+ * Run with {@code mvn test -Pbenchmark -Djmh.args=UserSearchBenchmark}.
+ * {@link UserStoreFootprint} reports the index's memory per user.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class UserSearchBenchmark {
+    private static final int LIMIT = 10;
+
+    @Param({"heap", "compact"})
+    public String store;
+
+    @Param({"1000000"})
+    public int userCount;
+
+    private UserService userService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        userService = store.equals("compact") ? new CompactUserService() : new UserServiceImpl();
+        for (int i = 0; i < userCount; i++) {
+            userService.save(newUser(i));
+        }
+    }
+
+    @Benchmark
+    public List<User> shortPrefix() {
+        return userService.search("us", LIMIT);
+    }
+
+    @Benchmark
+    public List<User> narrowPrefix() {
+        return userService.search("user" + randomIndex() / 100, LIMIT);
+    }
+
+    @Benchmark
+    public List<User> userNameSubstring() {
+        return userService.search("er" + randomIndex(), LIMIT);
+    }
+
+    @Benchmark
+    public List<User> emailSubstring() {
+        return userService.search(randomIndex() % 1000 + "@te", LIMIT);
+    }
+
+    @Benchmark
+    public List<User> noMatch() {
+        return userService.search("zq" + randomIndex(), LIMIT);
+    }
+
+    /**
+     * Deletes a freshly saved user, so the store keeps its size however long the run is.
+     */
+    @Benchmark
+    public User saveThenDeleteById() {
+        User user = userService.save(newUser(ThreadLocalRandom.current().nextInt(userCount)));
+        userService.deleteById(user.getId());
+        return user;
+    }
+
+    private int randomIndex() {
+        return ThreadLocalRandom.current().nextInt(userCount);
+    }
+
+    private static User newUser(int index) {
+        return User.builder()
+                .userName("User" + index)
+                .email("user" + index + "@test.com")
+                .password("password" + index)
+                .build();
+    }
+}
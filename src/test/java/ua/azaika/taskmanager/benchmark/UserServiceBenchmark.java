@@ -0,0 +1,108 @@
+package ua.azaika.taskmanager.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ua.azaika.taskmanager.model.User;
+import ua.azaika.taskmanager.service.ShardedUserService;
+import ua.azaika.taskmanager.service.UserService;
+import ua.azaika.taskmanager.service.UserServiceImpl;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded cost of the {@link UserService} operations at different store sizes.
+ * {@link UserServiceMultiThreadedBenchmark} runs the same methods from several threads.
+ * The {@code sharded} store has one shard per core; seeding runs on one thread, so the
+ * seeded users all sit in one shard, while each benchmark thread writes to its own.
+ * <p>
+ * Run with {@code mvn test -Pbenchmark}; results are written to {@code target/jmh-result.json}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class UserServiceBenchmark {
+
+    @Param({"heap", "sharded"})
+    public String store;
+
+    @Param({"1000", "100000", "1000000"})
+    public int userCount;
+
+    private UserService userService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        userService = store.equals("sharded")
+                ? new ShardedUserService(Runtime.getRuntime().availableProcessors(), false)
+                : new UserServiceImpl();
+        for (int i = 0; i < userCount; i++) {
+            userService.save(newUser(i));
+        }
+    }
+
+    @Benchmark
+    public User save() {
+        return userService.save(newUser(ThreadLocalRandom.current().nextInt()));
+    }
+
+    @Benchmark
+    public User findById() {
+        return userService.findById(randomId());
+    }
+
+    @Benchmark
+    public List<User> findByUserName() {
+        return userService.findByUserName("User" + randomIndex());
+    }
+
+    @Benchmark
+    public List<User> findByEmail() {
+        return userService.findByEmail("user" + randomIndex() + "@test.com");
+    }
+
+    @Benchmark
+    public User update() {
+        int index = randomIndex();
+        return userService.update(index + 1, newUser(index));
+    }
+
+    /**
+     * Deletes a freshly saved user, so the store keeps its size however long the run is.
+     */
+    @Benchmark
+    public User saveThenDeleteById() {
+        User user = userService.save(newUser(ThreadLocalRandom.current().nextInt()));
+        userService.deleteById(user.getId());
+        return user;
+    }
+
+    @Benchmark
+    public List<User> getAll() {
+        return userService.getAll();
+    }
+
+    @Benchmark
+    public List<User> getPage() {
+        return userService.getPage(randomIndex(), 100);
+    }
+
+    private int randomIndex() {
+        return ThreadLocalRandom.current().nextInt(userCount);
+    }
+
+    private int randomId() {
+        return randomIndex() + 1;
+    }
+
+    private static User newUser(int i) {
+        return User.builder()
+                .userName("User" + i)
+                .email("user" + i + "@test.com")
+                .password("password" + i)
+                .build();
+    }
+}
@@ -0,0 +1,10 @@
+package ua.azaika.taskmanager.benchmark;
+
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * {@link UserServiceBenchmark} with every core hitting the same store concurrently.
+ */
+@Threads(Threads.MAX)
+public class UserServiceMultiThreadedBenchmark extends UserServiceBenchmark {
+}
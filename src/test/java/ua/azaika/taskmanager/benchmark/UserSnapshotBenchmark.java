@@ -0,0 +1,64 @@
+package ua.azaika.taskmanager.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ua.azaika.taskmanager.model.User;
+import ua.azaika.taskmanager.persistence.UserSnapshot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Time from opening a snapshot to serving the first user by id. It should stay flat as
+ * the snapshot grows, since opening maps the file without decoding it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class UserSnapshotBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int userCount;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("user-snapshot-benchmark");
+        List<User> users = new ArrayList<>(userCount);
+        for (int i = 1; i <= userCount; i++) {
+            users.add(User.builder()
+                    .id(i)
+                    .userName("User" + i)
+                    .email("user" + i + "@test.com")
+                    .password("password" + i)
+                    .build());
+        }
+        UserSnapshot.write(directory, 1, userCount, users);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public User openAndGetFirstUser() throws IOException {
+        try (UserSnapshot snapshot = UserSnapshot.openLatest(directory).orElseThrow()) {
+            return snapshot.get(1 + ThreadLocalRandom.current().nextInt(userCount));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package ua.azaika.taskmanager.benchmark;
+
+import ua.azaika.taskmanager.model.User;
+import ua.azaika.taskmanager.service.CompactUserService;
+import ua.azaika.taskmanager.service.UserService;
+import ua.azaika.taskmanager.service.UserServiceImpl;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.function.Supplier;
+
+/**
+ * Compares the memory each user store needs per user and how long a full collection takes
+ * with the store live, as a proxy for GC marking cost. The share of the heap bytes taken by
+ * the search index is reported separately from its own estimate.
+ * <p>
+ * Run with {@code mvn test-compile exec:exec@footprint -Pbenchmark}; the user count defaults
+ * to one million and can be changed with {@code -Dfootprint.users}. Each store is measured
+ * in a fresh heap state, and the results are printed as CSV.
+ */
+public class UserStoreFootprint {
+
+    public static void main(String[] args) {
+        int userCount = Integer.getInteger("footprint.users", 1_000_000);
+        System.out.println("store,users,heapBytesPerUser,offHeapBytesPerUser,searchIndexBytesPerUser,fullGcMillis");
+        measure("heap", UserServiceImpl::new, userCount);
+        measure("compact", CompactUserService::new, userCount);
+    }
+
+    private static void measure(String name, Supplier<UserService> storeFactory, int userCount) {
+        long heapBefore = settledHeapBytes();
+        long offHeapBefore = directBytes();
+        UserService store = storeFactory.get();
+        for (int i = 0; i < userCount; i++) {
+            store.save(User.builder()
+                    .userName("User" + i)
+                    .email("user" + i + "@test.com")
+                    .password("password" + i)
+                    .build());
+        }
+        long heapAfter = settledHeapBytes();
+        long offHeapAfter = directBytes();
+        long gcMillis = fullGcMillis();
+        long searchIndexBytes = switch (store) {
+            case UserServiceImpl heap -> heap.searchIndexFootprintBytes();
+            case CompactUserService compact -> compact.searchIndexFootprintBytes();
+            default -> 0;
+        };
+        System.out.printf("%s,%d,%.1f,%.1f,%.1f,%d%n", name, userCount,
+                (heapAfter - heapBefore) / (double) userCount,
+                (offHeapAfter - offHeapBefore) / (double) userCount,
+                searchIndexBytes / (double) userCount,
+                gcMillis);
+        if (store.findById(userCount) == null) throw new IllegalStateException("Store lost users");
+    }
+
+    private static long settledHeapBytes() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long directBytes() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> pool.getName().equals("direct"))
+                .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                .sum();
+    }
+
+    private static long fullGcMillis() {
+        long before = totalGcMillis();
+        System.gc();
+        return totalGcMillis() - before;
+    }
+
+    private static long totalGcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime)
+                .sum();
+    }
+}
@@ -0,0 +1,85 @@
+package ua.azaika.taskmanager.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.openjdk.jmh.annotations.*;
+import ua.azaika.taskmanager.dto.UserResponseDTO;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialization cost of the user API's response bodies in each wire format it offers: a
+ * single {@link UserResponseDTO} as {@code GET /api/users/{id}} returns it, and a list as
+ * {@code GET /api/users} does. {@code serializeGzipped} adds the compression the server
+ * applies to large responses. Payload sizes, plain and gzipped, are printed once per trial.
+ * <p>
+ * Run with {@code mvn test -Pbenchmark -Djmh.args=WireFormatBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+    private static final TypeReference<List<UserResponseDTO>> USER_LIST = new TypeReference<>() {
+    };
+
+    @Param({"json", "cbor", "smile"})
+    public String format;
+
+    @Param({"1", "1000"})
+    public int listSize;
+
+    private ObjectMapper mapper;
+    private Object body;
+    private byte[] payload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mapper = switch (format) {
+            case "cbor" -> new CBORMapper();
+            case "smile" -> new SmileMapper();
+            default -> new ObjectMapper();
+        };
+        List<UserResponseDTO> users = new ArrayList<>(listSize);
+        for (int i = 0; i < listSize; i++) {
+            users.add(new UserResponseDTO(String.valueOf(i + 1), "User" + i, "user" + i + "@test.com"));
+        }
+        body = listSize == 1 ? users.getFirst() : users;
+        payload = mapper.writeValueAsBytes(body);
+        System.out.printf("%n%s x%d: %d bytes, %d gzipped%n", format, listSize, payload.length, gzip(payload).length);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return mapper.writeValueAsBytes(body);
+    }
+
+    @Benchmark
+    public byte[] serializeGzipped() throws IOException {
+        return gzip(mapper.writeValueAsBytes(body));
+    }
+
+    @Benchmark
+    public Object deserialize() throws IOException {
+        return listSize == 1
+                ? mapper.readValue(payload, UserResponseDTO.class)
+                : mapper.readValue(payload, USER_LIST);
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,35 @@
+package ua.azaika.taskmanager.config;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+import ua.azaika.taskmanager.dto.UserBatchOperationDTO;
+import ua.azaika.taskmanager.dto.UserPostRequestDTO;
+import ua.azaika.taskmanager.dto.UserResponseDTO;
+import ua.azaika.taskmanager.mapper.UserListSerializer;
+
+class ApiRuntimeHintsTest {
+
+    @Test
+    void whenRegisterHints_ShouldLetJacksonConstructAndReadDTOs() throws Exception {
+        //given
+        RuntimeHints hints = new RuntimeHints();
+
+        //when
+        new ApiRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+        //then
+        Assertions.assertThat(RuntimeHintsPredicates.reflection()
+                .onConstructor(UserPostRequestDTO.class.getDeclaredConstructor(String.class, String.class, String.class)).invoke())
+                .accepts(hints);
+        Assertions.assertThat(RuntimeHintsPredicates.reflection()
+                .onMethod(UserResponseDTO.class.getMethod("userName")).invoke())
+                .accepts(hints);
+        Assertions.assertThat(RuntimeHintsPredicates.reflection().onType(UserBatchOperationDTO.class)).accepts(hints);
+        Assertions.assertThat(RuntimeHintsPredicates.reflection().onType(UserBatchOperationDTO.Type.class)).accepts(hints);
+        Assertions.assertThat(RuntimeHintsPredicates.reflection()
+                .onConstructor(UserListSerializer.class.getConstructor()).invoke())
+                .accepts(hints);
+    }
+}
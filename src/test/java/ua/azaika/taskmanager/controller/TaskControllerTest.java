@@ -0,0 +1,165 @@
+package ua.azaika.taskmanager.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import ua.azaika.taskmanager.dto.TaskPostRequestDTO;
+import ua.azaika.taskmanager.dto.TaskResponseDTO;
+import ua.azaika.taskmanager.mapper.TaskMapper;
+import ua.azaika.taskmanager.model.Task;
+import ua.azaika.taskmanager.model.TaskPriority;
+import ua.azaika.taskmanager.model.TaskStatus;
+import ua.azaika.taskmanager.model.User;
+import ua.azaika.taskmanager.service.TaskService;
+import ua.azaika.taskmanager.service.UserService;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(TaskController.class)
+class TaskControllerTest {
+    private static final LocalDate DUE_DATE = LocalDate.of(2025, 1, 10);
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockitoBean
+    private TaskService taskService;
+
+    @MockitoBean
+    private UserService userService;
+
+    @MockitoBean
+    private TaskMapper taskMapper;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Test
+    void givenExistingUser_whenPostTask_ShouldReturnCreatedTask() throws Exception {
+        //given
+        TaskPostRequestDTO postRequestDTO = new TaskPostRequestDTO("task", null, TaskPriority.HIGH, DUE_DATE);
+        Task savedTask = task(5, 1, TaskStatus.TODO);
+        Mockito.when(userService.findById(1)).thenReturn(User.builder().id(1).build());
+        Mockito.when(taskMapper.toTask(Mockito.any(TaskPostRequestDTO.class))).thenReturn(new Task());
+        Mockito.when(taskService.save(Mockito.any(Task.class))).thenReturn(savedTask);
+        Mockito.when(taskMapper.toResponseDTO(savedTask)).thenReturn(responseDTO(savedTask));
+
+        //when-then
+        mvc.perform(post("/api/users/1/tasks")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(postRequestDTO)))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Location", "http://localhost/api/users/1/tasks/5"))
+                .andExpect(jsonPath("$.id").value("5"))
+                .andExpect(jsonPath("$.ownerId").value("1"))
+                .andExpect(jsonPath("$.dueDate").value("2025-01-10"));
+        Mockito.verify(taskService).save(Mockito.argThat(task -> task.getOwnerId() == 1));
+    }
+
+    @Test
+    void givenNonExistingUser_whenPostTask_ShouldReturnNotFound() throws Exception {
+        //given
+        TaskPostRequestDTO postRequestDTO = new TaskPostRequestDTO("task", null, null, null);
+
+        //when-then
+        mvc.perform(post("/api/users/1/tasks")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(postRequestDTO)))
+                .andExpect(status().isNotFound());
+        Mockito.verifyNoInteractions(taskService);
+    }
+
+    @Test
+    void givenUserDeletedWhileSaving_whenPostTask_ShouldReturnNotFound() throws Exception {
+        //given
+        TaskPostRequestDTO postRequestDTO = new TaskPostRequestDTO("task", null, null, null);
+        Mockito.when(userService.findById(1)).thenReturn(User.builder().id(1).build());
+        Mockito.when(taskMapper.toTask(Mockito.any(TaskPostRequestDTO.class))).thenReturn(new Task());
+        Mockito.when(taskService.save(Mockito.any(Task.class))).thenReturn(null);
+
+        //when-then
+        mvc.perform(post("/api/users/1/tasks")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(postRequestDTO)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void givenStatus_whenGetAll_ShouldListOwnerTasksWithStatus() throws Exception {
+        //given
+        Task task = task(5, 1, TaskStatus.DONE);
+        Mockito.when(userService.findById(1)).thenReturn(User.builder().id(1).build());
+        Mockito.when(taskService.findByOwner(1, TaskStatus.DONE)).thenReturn(List.of(task));
+        Mockito.when(taskMapper.toResponseDTO(task)).thenReturn(responseDTO(task));
+
+        //when-then
+        mvc.perform(get("/api/users/1/tasks").param("status", "DONE"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].status").value("DONE"));
+    }
+
+    @Test
+    void givenTaskOfAnotherUser_whenGetById_ShouldReturnNotFound() throws Exception {
+        //given
+        Mockito.when(taskService.findById(5)).thenReturn(task(5, 2, TaskStatus.TODO));
+
+        //when-then
+        mvc.perform(get("/api/users/1/tasks/5"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void givenOwnedTask_whenPut_ShouldReturnUpdatedTask() throws Exception {
+        //given
+        TaskPostRequestDTO postRequestDTO = new TaskPostRequestDTO("task", TaskStatus.IN_PROGRESS, null, DUE_DATE);
+        Task updatedTask = task(5, 1, TaskStatus.IN_PROGRESS);
+        Mockito.when(taskService.findById(5)).thenReturn(task(5, 1, TaskStatus.TODO));
+        Mockito.when(taskMapper.toTask(Mockito.any(TaskPostRequestDTO.class))).thenReturn(new Task());
+        Mockito.when(taskService.update(Mockito.eq(5), Mockito.any(Task.class))).thenReturn(updatedTask);
+        Mockito.when(taskMapper.toResponseDTO(updatedTask)).thenReturn(responseDTO(updatedTask));
+
+        //when-then
+        mvc.perform(put("/api/users/1/tasks/5")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(postRequestDTO)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("IN_PROGRESS"));
+    }
+
+    @Test
+    void givenOwnedTask_whenDelete_ShouldReturnNoContent() throws Exception {
+        //given
+        Mockito.when(taskService.findById(5)).thenReturn(task(5, 1, TaskStatus.TODO));
+
+        //when-then
+        mvc.perform(delete("/api/users/1/tasks/5"))
+                .andExpect(status().isNoContent());
+        Mockito.verify(taskService).deleteById(5);
+    }
+
+    private static Task task(Integer id, Integer ownerId, TaskStatus status) {
+        return Task.builder()
+                .id(id)
+                .ownerId(ownerId)
+                .title("task")
+                .status(status)
+                .priority(TaskPriority.HIGH)
+                .dueDate(DUE_DATE)
+                .build();
+    }
+
+    private static TaskResponseDTO responseDTO(Task task) {
+        return new TaskResponseDTO(String.valueOf(task.getId()), String.valueOf(task.getOwnerId()), task.getTitle(),
+                task.getStatus(), task.getPriority(), task.getDueDate());
+    }
+}
@@ -0,0 +1,117 @@
+package ua.azaika.taskmanager.controller;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import ua.azaika.taskmanager.feed.UserChangeFeed;
+import ua.azaika.taskmanager.model.User;
+import ua.azaika.taskmanager.service.UserService;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class UserChangeControllerTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserChangeFeed userChangeFeed;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void givenSubscriber_whenUserSaved_ShouldStreamSavedEvent() throws Exception {
+        //given
+        HttpResponse<Stream<String>> response = client.send(request(null), HttpResponse.BodyHandlers.ofLines());
+
+        //when
+        User saved = userService.save(User.builder().userName("streamed").email("streamed@god.com").password("secret").build());
+
+        //then
+        try (Stream<String> lines = response.body()) {
+            Iterator<String> iterator = lines.iterator();
+            Assertions.assertThat(response.statusCode()).isEqualTo(200);
+            Assertions.assertThat(response.headers().firstValue("Content-Type")).hasValueSatisfying(
+                    type -> Assertions.assertThat(type).startsWith("text/event-stream"));
+            String id = nextField(iterator, "id:");
+            Assertions.assertThat(nextField(iterator, "event:")).isEqualTo("saved");
+            String data = nextField(iterator, "data:");
+            Assertions.assertThat(id).startsWith(userChangeFeed.epoch() + ":");
+            Assertions.assertThat(data).contains("\"sequence\":" + sequenceOf(id), "\"id\":\"" + saved.getId() + "\"", "streamed")
+                    .doesNotContain("secret");
+        }
+    }
+
+    @Test
+    void givenLastEventId_whenReconnecting_ShouldReplayLaterEvents() throws Exception {
+        //given
+        User user = userService.save(User.builder().userName("resumed").build());
+        HttpResponse<Stream<String>> first = client.send(request(null), HttpResponse.BodyHandlers.ofLines());
+        userService.deleteById(user.getId());
+        String deleteId;
+        try (Stream<String> lines = first.body()) {
+            deleteId = nextField(lines.iterator(), "id:");
+        }
+        String beforeDelete = userChangeFeed.epoch() + ":" + (sequenceOf(deleteId) - 1);
+
+        //when
+        HttpResponse<Stream<String>> resumed = client.send(request(beforeDelete), HttpResponse.BodyHandlers.ofLines());
+
+        //then
+        try (Stream<String> lines = resumed.body()) {
+            Iterator<String> iterator = lines.iterator();
+            Assertions.assertThat(nextField(iterator, "id:")).isEqualTo(deleteId);
+            Assertions.assertThat(nextField(iterator, "event:")).isEqualTo("deleted");
+        }
+    }
+
+    @Test
+    void givenIdFromAnotherEpoch_whenReconnecting_ShouldStartWithResync() throws Exception {
+        //given
+        userService.save(User.builder().userName("restarted").build());
+        String idBeforeRestart = "another-epoch:1";
+
+        //when
+        HttpResponse<Stream<String>> resumed = client.send(request(idBeforeRestart), HttpResponse.BodyHandlers.ofLines());
+
+        //then
+        try (Stream<String> lines = resumed.body()) {
+            Iterator<String> iterator = lines.iterator();
+            Assertions.assertThat(nextField(iterator, "id:"))
+                    .isEqualTo(userChangeFeed.epoch() + ":" + userChangeFeed.currentSequence());
+            Assertions.assertThat(nextField(iterator, "event:")).isEqualTo("resync");
+        }
+    }
+
+    private HttpRequest request(String lastEventId) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/users/changes"))
+                .header("Accept", "text/event-stream")
+                .timeout(Duration.ofSeconds(10));
+        if (lastEventId != null) builder.header("Last-Event-ID", lastEventId);
+        return builder.GET().build();
+    }
+
+    private static long sequenceOf(String eventId) {
+        return Long.parseLong(eventId.substring(eventId.lastIndexOf(':') + 1));
+    }
+
+    private static String nextField(Iterator<String> lines, String prefix) {
+        while (lines.hasNext()) {
+            String line = lines.next();
+            if (line.startsWith(prefix)) return line.substring(prefix.length()).trim();
+        }
+        throw new AssertionError("Stream ended before a " + prefix + " line");
+    }
+}
@@ -0,0 +1,63 @@
+package ua.azaika.taskmanager.controller;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import ua.azaika.taskmanager.model.User;
+import ua.azaika.taskmanager.service.UserService;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class UserCompressionTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserService userService;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void givenListLargerThanMinimumSize_whenGetAllAcceptingGzip_ShouldCompressTaggedResponse() throws Exception {
+        //given
+        for (int i = 0; i < 100; i++) {
+            userService.save(User.builder().userName("compressed" + i).email("compressed" + i + "@god.com")
+                    .password("password").build());
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/users"))
+                .header("Accept", "application/json")
+                .header("Accept-Encoding", "gzip")
+                .GET()
+                .build();
+
+        //when
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+
+        //then
+        Assertions.assertThat(response.statusCode()).isEqualTo(200);
+        Assertions.assertThat(response.headers().firstValue("Content-Encoding")).contains("gzip");
+        Assertions.assertThat(response.headers().firstValue("ETag")).hasValueSatisfying(
+                eTag -> Assertions.assertThat(eTag).startsWith("W/"));
+        String body = gunzip(response.body());
+        Assertions.assertThat(body.length()).isGreaterThan(2048);
+        Assertions.assertThat(body).contains("compressed99@god.com");
+    }
+
+    private static String gunzip(byte[] compressed) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
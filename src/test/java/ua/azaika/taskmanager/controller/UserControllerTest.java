@@ -1,25 +1,49 @@
 package ua.azaika.taskmanager.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.json.JsonCompareMode;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import ua.azaika.taskmanager.config.IdempotencyConfiguration;
+import ua.azaika.taskmanager.config.WireFormatConfiguration;
+import ua.azaika.taskmanager.dto.UserBatchOperationDTO;
+import ua.azaika.taskmanager.dto.UserBatchRequestDTO;
 import ua.azaika.taskmanager.dto.UserPostRequestDTO;
 import ua.azaika.taskmanager.dto.UserResponseDTO;
 import ua.azaika.taskmanager.mapper.UserMapper;
 import ua.azaika.taskmanager.model.User;
+import ua.azaika.taskmanager.security.PasswordHasher;
 import ua.azaika.taskmanager.service.UserService;
+import ua.azaika.taskmanager.service.VersionConflictException;
 
+import java.util.Arrays;
 import java.util.List;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(UserController.class)
+@Import({WireFormatConfiguration.class, IdempotencyConfiguration.class})
 class UserControllerTest {
 
     @Autowired
@@ -31,9 +55,22 @@ class UserControllerTest {
     @MockitoBean
     private UserMapper userMapper;
 
+    @MockitoBean
+    private PasswordHasher passwordHasher;
+
     @Autowired
     ObjectMapper objectMapper;
 
+    @BeforeEach
+    void setUp() {
+        Mockito.when(passwordHasher.hash(Mockito.any())).thenAnswer(invocation ->
+                CompletableFuture.completedFuture(hashed(invocation.getArgument(0))));
+        Mockito.when(passwordHasher.hashAll(Mockito.anyList())).thenAnswer(invocation -> {
+            List<String> passwords = invocation.getArgument(0);
+            return CompletableFuture.completedFuture(passwords.stream().map(UserControllerTest::hashed).toList());
+        });
+    }
+
     @Test
     void givenUser_whenPost_ShouldReturnResponseStatusCreated() throws Exception {
         //given
@@ -60,13 +97,40 @@ class UserControllerTest {
         Mockito.when(userMapper.toResponseDTO(Mockito.any(User.class))).thenReturn(responseDTO);
 
         //when-then
-        mvc.perform(post("/api/users")
+        performAsync(post("/api/users")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(postRequestDTO)))
                 .andExpect(status().isCreated());
 
     }
 
+    @Test
+    void givenHashCompletingOnHashingThread_whenPost_ShouldSaveOffThatThread() throws Exception {
+        //given
+        User savedUserEntity = User.builder().id(1).userName("User1").email("testMail@god.com").build();
+        Executor hashingThread = runnable -> Thread.ofPlatform().name("password-hasher-test").start(runnable);
+        Mockito.when(passwordHasher.hash(Mockito.any())).thenAnswer(invocation -> CompletableFuture.supplyAsync(
+                () -> hashed(invocation.getArgument(0)),
+                CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS, hashingThread)));
+        AtomicReference<String> savingThread = new AtomicReference<>();
+        Mockito.when(userService.save(Mockito.any(User.class))).thenAnswer(invocation -> {
+            savingThread.set(Thread.currentThread().getName());
+            return savedUserEntity;
+        });
+        Mockito.when(userMapper.toUser(Mockito.any(UserPostRequestDTO.class))).thenReturn(savedUserEntity);
+        Mockito.when(userMapper.toResponseDTO(Mockito.any(User.class)))
+                .thenReturn(new UserResponseDTO("1", "User1", "testMail@god.com"));
+
+        //when
+        performAsync(post("/api/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new UserPostRequestDTO("User1", "testMail@god.com", "password1"))))
+                .andExpect(status().isCreated());
+
+        //then
+        assertThat(savingThread.get()).isNotNull().isNotEqualTo("password-hasher-test");
+    }
+
     @Test
     void givenUser_whenPost_ShouldReturnResponseBodyUser() throws Exception {
         //given
@@ -93,7 +157,7 @@ class UserControllerTest {
         Mockito.when(userMapper.toResponseDTO(Mockito.any(User.class))).thenReturn(responseDTO);
 
         //when-then
-        mvc.perform(post("/api/users")
+        performAsync(post("/api/users")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(postRequestDTO)))
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
@@ -101,6 +165,101 @@ class UserControllerTest {
 
     }
 
+    @Test
+    void givenUser_whenPost_ShouldSaveHashedPassword() throws Exception {
+        //given
+        UserPostRequestDTO postRequestDTO = new UserPostRequestDTO("User1", "testMail@god.com", "password1");
+        Mockito.when(userMapper.toUser(Mockito.any(UserPostRequestDTO.class))).thenReturn(
+                User.builder().userName("User1").email("testMail@god.com").password("password1").build());
+        Mockito.when(userService.save(Mockito.any(User.class))).thenAnswer(invocation -> {
+            User user = invocation.getArgument(0);
+            user.setId(1);
+            return user;
+        });
+
+        //when
+        performAsync(post("/api/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(postRequestDTO)))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Location", "http://localhost/api/users/1"));
+
+        //then
+        Mockito.verify(userService).save(Mockito.argThat(user -> "hashed:password1".equals(user.getPassword())));
+    }
+
+    @Test
+    void givenFullHashingQueue_whenPost_ShouldReturnServiceUnavailable() throws Exception {
+        //given
+        UserPostRequestDTO postRequestDTO = new UserPostRequestDTO("User1", "testMail@god.com", "password1");
+        Mockito.when(userMapper.toUser(Mockito.any(UserPostRequestDTO.class))).thenReturn(new User());
+        Mockito.when(passwordHasher.hash(Mockito.any())).thenThrow(new RejectedExecutionException());
+
+        //when-then
+        mvc.perform(post("/api/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(postRequestDTO)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+        Mockito.verifyNoInteractions(userService);
+    }
+
+    @Test
+    void givenRepeatedIdempotencyKey_whenPost_ShouldReplayFirstResponseWithoutSavingAgain() throws Exception {
+        //given
+        UserPostRequestDTO postRequestDTO = new UserPostRequestDTO("User1", "testMail@god.com", "password1");
+        Mockito.when(userMapper.toUser(Mockito.any(UserPostRequestDTO.class))).thenAnswer(invocation -> new User());
+        Mockito.when(userService.save(Mockito.any(User.class))).thenAnswer(invocation -> {
+            User user = invocation.getArgument(0);
+            user.setId(7);
+            user.setVersion(1);
+            return user;
+        });
+        Mockito.when(userMapper.toResponseDTO(Mockito.any(User.class)))
+                .thenReturn(new UserResponseDTO("7", "User1", "testMail@god.com"));
+
+        //when-then
+        performAsync(post("/api/users")
+                        .header("Idempotency-Key", "replay-key")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(postRequestDTO)))
+                .andExpect(status().isCreated())
+                .andExpect(header().doesNotExist("Idempotent-Replayed"));
+        performAsync(post("/api/users")
+                        .header("Idempotency-Key", "replay-key")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(postRequestDTO)))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(header().string("Location", Matchers.endsWith("/api/users/7")))
+                .andExpect(jsonPath("$.id").value("7"));
+        Mockito.verify(userService, Mockito.times(1)).save(Mockito.any(User.class));
+    }
+
+    @Test
+    void givenReusedOrBlankIdempotencyKey_whenPost_ShouldRejectWithoutSaving() throws Exception {
+        //given
+        Mockito.when(userMapper.toUser(Mockito.any(UserPostRequestDTO.class))).thenAnswer(invocation -> new User());
+        Mockito.when(userService.save(Mockito.any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        performAsync(post("/api/users")
+                .header("Idempotency-Key", "reused-key")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new UserPostRequestDTO("User1", "testMail@god.com", "password1"))));
+
+        //when-then
+        mvc.perform(post("/api/users")
+                        .header("Idempotency-Key", "reused-key")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new UserPostRequestDTO("User2", "other@god.com", "password2"))))
+                .andExpect(status().isUnprocessableEntity());
+        performAsync(post("/api/users")
+                        .header("Idempotency-Key", " ")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new UserPostRequestDTO("User2", "other@god.com", "password2"))))
+                .andExpect(status().isBadRequest());
+        Mockito.verify(userService, Mockito.times(1)).save(Mockito.any(User.class));
+    }
+
     @Test
     void givenUserId_whenGetById_ShouldReturnUser() throws Exception {
         //given
@@ -129,6 +288,78 @@ class UserControllerTest {
                 .andExpect(jsonPath("$.email").value("testMail@god.com"));
     }
 
+    @Test
+    void givenAcceptCbor_whenGetById_ShouldReturnCborEncodedUser() throws Exception {
+        //given
+        User user = User.builder().id(1).userName("User1").email("testMail@god.com").password("password1").build();
+        UserResponseDTO responseDTO = new UserResponseDTO("1", "User1", "testMail@god.com");
+
+        Mockito.when(userService.findById(1)).thenReturn(user);
+        Mockito.when(userMapper.toResponseDTO(user)).thenReturn(responseDTO);
+
+        //when
+        MvcResult result = mvc.perform(get("/api/users/1").accept("application/cbor"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"))
+                .andReturn();
+
+        //then
+        UserResponseDTO decoded = new CBORMapper().readValue(result.getResponse().getContentAsByteArray(),
+                UserResponseDTO.class);
+        assertThat(decoded).isEqualTo(responseDTO);
+    }
+
+    @Test
+    void givenSameVersion_whenGetByIdAsJsonAndCbor_ShouldShareWeakTagAndVaryByAccept() throws Exception {
+        //given
+        User user = User.builder().id(1).userName("User1").email("testMail@god.com").version(3).build();
+        Mockito.when(userService.findById(1)).thenReturn(user);
+        Mockito.when(userMapper.toResponseDTO(user)).thenReturn(new UserResponseDTO("1", "User1", "testMail@god.com"));
+
+        //when
+        MvcResult json = mvc.perform(get("/api/users/1").accept(MediaType.APPLICATION_JSON))
+                .andExpect(header().string("Vary", Matchers.containsString("Accept")))
+                .andReturn();
+        MvcResult cbor = mvc.perform(get("/api/users/1").accept("application/cbor"))
+                .andExpect(header().string("Vary", Matchers.containsString("Accept")))
+                .andReturn();
+
+        //then
+        String jsonTag = json.getResponse().getHeader("ETag");
+        assertThat(jsonTag).startsWith("W/");
+        assertThat(cbor.getResponse().getHeader("ETag")).isEqualTo(jsonTag);
+        mvc.perform(get("/api/users/1").accept("application/cbor").header("If-None-Match", jsonTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("Vary", Matchers.containsString("Accept")));
+    }
+
+    @Test
+    void givenSmileBody_whenPost_ShouldReadItAndAnswerInSmile() throws Exception {
+        //given
+        SmileMapper smileMapper = new SmileMapper();
+        User savedUser = User.builder().id(1).userName("User1").email("testMail@god.com").password("hashed").build();
+        UserResponseDTO responseDTO = new UserResponseDTO("1", "User1", "testMail@god.com");
+
+        Mockito.when(userMapper.toUser(Mockito.any(UserPostRequestDTO.class))).thenReturn(savedUser);
+        Mockito.when(userService.save(Mockito.any(User.class))).thenReturn(savedUser);
+        Mockito.when(userMapper.toResponseDTO(savedUser)).thenReturn(responseDTO);
+
+        //when
+        MvcResult result = performAsync(post("/api/users")
+                        .contentType("application/x-jackson-smile")
+                        .accept("application/x-jackson-smile")
+                        .content(smileMapper.writeValueAsBytes(
+                                new UserPostRequestDTO("User1", "testMail@god.com", "password1"))))
+                .andExpect(status().isCreated())
+                .andExpect(content().contentType("application/x-jackson-smile"))
+                .andReturn();
+
+        //then
+        UserResponseDTO decoded = smileMapper.readValue(result.getResponse().getContentAsByteArray(),
+                UserResponseDTO.class);
+        assertThat(decoded).isEqualTo(responseDTO);
+    }
+
     @Test
     void givenNonExistingUserId_whenGetById_ShouldReturnNotFound() throws Exception {
         //given
@@ -156,12 +387,7 @@ class UserControllerTest {
                 .password("password2")
                 .build();
 
-        UserResponseDTO responseDTO1 = new UserResponseDTO("1", "User1", "user1@test.com");
-        UserResponseDTO responseDTO2 = new UserResponseDTO("2", "User2", "user2@test.com");
-
         Mockito.when(userService.getAll()).thenReturn(List.of(user1, user2));
-        Mockito.when(userMapper.toResponseDTO(user1)).thenReturn(responseDTO1);
-        Mockito.when(userMapper.toResponseDTO(user2)).thenReturn(responseDTO2);
 
         //when-then
         mvc.perform(get("/api/users"))
@@ -174,6 +400,28 @@ class UserControllerTest {
                 .andExpect(jsonPath("$[1].userName").value("User2"));
     }
 
+    @Test
+    void givenFields_whenGetAll_ShouldReturnOnlyThoseFields() throws Exception {
+        //given
+        User user = User.builder().id(2147483647).userName("User1").email("user1@test.com").password("password1").build();
+        Mockito.when(userService.getAll()).thenReturn(List.of(user));
+
+        //when-then
+        mvc.perform(get("/api/users").param("fields", "id,email"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"id\":\"2147483647\",\"email\":\"user1@test.com\"}]", JsonCompareMode.STRICT));
+    }
+
+    @Test
+    void givenUnknownField_whenGetAll_ShouldReturnBadRequestWithoutReadingUsers() throws Exception {
+        //when-then
+        mvc.perform(get("/api/users").param("fields", "id,password"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/api/users").param("fields", ""))
+                .andExpect(status().isBadRequest());
+        Mockito.verify(userService, Mockito.never()).getAll();
+    }
+
     @Test
     void givenUserIdAndUpdatedData_whenPut_ShouldReturnUpdatedUser() throws Exception {
         //given
@@ -202,12 +450,13 @@ class UserControllerTest {
                 "updated@test.com"
         );
 
+        Mockito.when(userService.findById(1)).thenReturn(User.builder().id(1).version(1).build());
         Mockito.when(userMapper.toUser(Mockito.any(UserPostRequestDTO.class))).thenReturn(inputUser);
         Mockito.when(userService.update(Mockito.eq(1), Mockito.any(User.class))).thenReturn(updatedUser);
         Mockito.when(userMapper.toResponseDTO(updatedUser)).thenReturn(responseDTO);
 
         //when-then
-        mvc.perform(put("/api/users/1")
+        performAsync(put("/api/users/1")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(putRequestDTO)))
                 .andExpect(status().isOk())
@@ -236,12 +485,136 @@ class UserControllerTest {
         Mockito.when(userService.update(Mockito.eq(999), Mockito.any(User.class))).thenReturn(null);
 
         //when-then
-        mvc.perform(put("/api/users/999")
+        performAsync(put("/api/users/999")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(putRequestDTO)))
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    void givenMatchingIfNoneMatch_whenGetById_ShouldReturnNotModifiedWithoutBody() throws Exception {
+        //given
+        User user = User.builder().id(1).userName("User1").email("testMail@god.com").version(3).build();
+        Mockito.when(userService.findById(1)).thenReturn(user);
+        Mockito.when(userMapper.toResponseDTO(user)).thenReturn(new UserResponseDTO("1", "User1", "testMail@god.com"));
+        String eTag = mvc.perform(get("/api/users/1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        //when-then
+        mvc.perform(get("/api/users/1").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", eTag))
+                .andExpect(content().string(""));
+        Mockito.verify(userMapper, Mockito.times(1)).toResponseDTO(user);
+    }
+
+    @Test
+    void givenUnchangedCollection_whenGetAllWithIfNoneMatch_ShouldNotReadUsers() throws Exception {
+        //given
+        Mockito.when(userService.collectionVersion()).thenReturn(7L);
+        Mockito.when(userService.getAll()).thenReturn(List.of());
+        String eTag = mvc.perform(get("/api/users"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        //when-then
+        mvc.perform(get("/api/users").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified());
+        Mockito.when(userService.collectionVersion()).thenReturn(8L);
+        mvc.perform(get("/api/users").header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", Matchers.not(eTag)));
+        Mockito.verify(userService, Mockito.times(2)).getAll();
+    }
+
+    @Test
+    void givenStaleIfMatch_whenPut_ShouldReturnPreconditionFailed() throws Exception {
+        //given
+        UserPostRequestDTO putRequestDTO = new UserPostRequestDTO("UpdatedUser", "updated@test.com", "newPassword");
+        Mockito.when(userMapper.toUser(Mockito.any(UserPostRequestDTO.class))).thenReturn(new User());
+        Mockito.when(userService.findById(1)).thenReturn(User.builder().id(1).version(2).build());
+
+        //when-then
+        performAsync(put("/api/users/1")
+                        .header("If-Match", "\"stale\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(putRequestDTO)))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(header().exists("ETag"));
+        Mockito.verify(userService, Mockito.never()).update(Mockito.any(), Mockito.any());
+        Mockito.verify(userService, Mockito.never()).update(Mockito.any(), Mockito.any(), Mockito.anyLong());
+    }
+
+    @Test
+    void givenCurrentIfMatch_whenPut_ShouldUpdateAtThatVersion() throws Exception {
+        //given
+        UserPostRequestDTO putRequestDTO = new UserPostRequestDTO("UpdatedUser", "updated@test.com", "newPassword");
+        User currentUser = User.builder().id(1).userName("User1").version(2).build();
+        User updatedUser = User.builder().id(1).userName("UpdatedUser").version(3).build();
+        Mockito.when(userService.findById(1)).thenReturn(currentUser);
+        Mockito.when(userMapper.toResponseDTO(currentUser)).thenReturn(new UserResponseDTO("1", "User1", null));
+        Mockito.when(userMapper.toUser(Mockito.any(UserPostRequestDTO.class))).thenReturn(new User());
+        Mockito.when(userService.update(Mockito.eq(1), Mockito.any(User.class), Mockito.eq(2L))).thenReturn(updatedUser);
+        Mockito.when(userMapper.toResponseDTO(updatedUser)).thenReturn(new UserResponseDTO("1", "UpdatedUser", null));
+        String eTag = mvc.perform(get("/api/users/1"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        //when-then
+        performAsync(put("/api/users/1")
+                        .header("If-Match", eTag)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(putRequestDTO)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", Matchers.not(eTag)))
+                .andExpect(jsonPath("$.userName").value("UpdatedUser"));
+    }
+
+    @Test
+    void givenWeakTagFromCborRead_whenPutJsonWithIfMatch_ShouldUpdate() throws Exception {
+        //given
+        UserPostRequestDTO putRequestDTO = new UserPostRequestDTO("UpdatedUser", "updated@test.com", "newPassword");
+        User currentUser = User.builder().id(1).userName("User1").version(2).build();
+        User updatedUser = User.builder().id(1).userName("UpdatedUser").version(3).build();
+        Mockito.when(userService.findById(1)).thenReturn(currentUser);
+        Mockito.when(userMapper.toResponseDTO(currentUser)).thenReturn(new UserResponseDTO("1", "User1", null));
+        Mockito.when(userMapper.toUser(Mockito.any(UserPostRequestDTO.class))).thenReturn(new User());
+        Mockito.when(userService.update(Mockito.eq(1), Mockito.any(User.class), Mockito.eq(2L))).thenReturn(updatedUser);
+        Mockito.when(userMapper.toResponseDTO(updatedUser)).thenReturn(new UserResponseDTO("1", "UpdatedUser", null));
+        String cborTag = mvc.perform(get("/api/users/1").accept("application/cbor"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        //when-then
+        performAsync(put("/api/users/1")
+                        .header("If-Match", cborTag)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(putRequestDTO)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.userName").value("UpdatedUser"));
+    }
+
+    @Test
+    void givenConcurrentUpdate_whenPutWithIfMatch_ShouldReturnPreconditionFailed() throws Exception {
+        //given
+        UserPostRequestDTO putRequestDTO = new UserPostRequestDTO("UpdatedUser", "updated@test.com", "newPassword");
+        User currentUser = User.builder().id(1).version(2).build();
+        Mockito.when(userService.findById(1)).thenReturn(currentUser);
+        Mockito.when(userMapper.toResponseDTO(currentUser)).thenReturn(new UserResponseDTO("1", null, null));
+        Mockito.when(userMapper.toUser(Mockito.any(UserPostRequestDTO.class))).thenReturn(new User());
+        Mockito.when(userService.update(Mockito.eq(1), Mockito.any(User.class), Mockito.eq(2L)))
+                .thenThrow(new VersionConflictException(1, 2, 3));
+        String eTag = mvc.perform(get("/api/users/1"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        //when-then
+        performAsync(put("/api/users/1")
+                        .header("If-Match", eTag)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(putRequestDTO)))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(header().string("ETag", Matchers.not(eTag)));
+    }
+
     @Test
     void givenUserId_whenDelete_ShouldReturnNoContent() throws Exception {
         //given
@@ -254,4 +627,155 @@ class UserControllerTest {
         Mockito.verify(userService, Mockito.times(1)).deleteById(1);
     }
 
-}
\ No newline at end of file
+    @Test
+    void givenLimit_whenGetPage_ShouldReturnUsersAndNextCursor() throws Exception {
+        //given
+        User user1 = User.builder().id(1).userName("User1").email("user1@test.com").password("password1").build();
+        User user2 = User.builder().id(2).userName("User2").email("user2@test.com").password("password2").build();
+
+        Mockito.when(userService.getPage(isNull(), Mockito.eq(2))).thenReturn(List.of(user1, user2));
+
+        //when-then
+        mvc.perform(get("/api/users").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users.length()").value(2))
+                .andExpect(jsonPath("$.users[1].id").value("2"))
+                .andExpect(jsonPath("$.nextCursor").value("2"));
+    }
+
+    @Test
+    void givenCursorAtLastUser_whenGetPage_ShouldReturnNoNextCursor() throws Exception {
+        //given
+        User user3 = User.builder().id(3).userName("User3").email("user3@test.com").password("password3").build();
+
+        Mockito.when(userService.getPage(2, 2)).thenReturn(List.of(user3));
+
+        //when-then
+        mvc.perform(get("/api/users").param("after", "2").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users.length()").value(1))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    void givenQuery_whenSearch_ShouldReturnMatchesCappedAtMaxResults() throws Exception {
+        //given
+        User user1 = User.builder().id(1).userName("User1").email("user1@test.com").password("password1").build();
+
+        Mockito.when(userService.search("use", UserController.MAX_SEARCH_RESULTS)).thenReturn(List.of(user1));
+
+        //when-then
+        mvc.perform(get("/api/users/search").param("q", "use").param("limit", "1000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].userName").value("User1"));
+    }
+
+    @Test
+    void givenBlankQuery_whenSearch_ShouldReturnBadRequest() throws Exception {
+        //when-then
+        mvc.perform(get("/api/users/search").param("q", " "))
+                .andExpect(status().isBadRequest());
+        Mockito.verify(userService, Mockito.never()).search(Mockito.anyString(), Mockito.anyInt());
+    }
+
+    @Test
+    void whenStream_ShouldWriteOneJsonLinePerUser() throws Exception {
+        //given
+        User user1 = User.builder().id(1).userName("User1").email("user1@test.com").password("password1").build();
+        User user2 = User.builder().id(2).userName("User2").email("user2@test.com").password("password2").build();
+
+        Mockito.when(userService.getPage(isNull(), Mockito.anyInt())).thenReturn(List.of(user1, user2));
+
+        //when
+        MvcResult result = mvc.perform(get("/api/users/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        //then
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(
+                        "{\"id\":\"1\",\"userName\":\"User1\",\"email\":\"user1@test.com\"}\n"
+                                + "{\"id\":\"2\",\"userName\":\"User2\",\"email\":\"user2@test.com\"}\n"));
+    }
+
+    @Test
+    void givenMixedBatch_whenPostBatch_ShouldReturnOneResultPerOperation() throws Exception {
+        //given
+        UserPostRequestDTO newUser = new UserPostRequestDTO("User1", "user1@test.com", "password1");
+        UserPostRequestDTO changedUser = new UserPostRequestDTO("User2", "user2@test.com", "password2");
+        UserBatchRequestDTO batchRequestDTO = new UserBatchRequestDTO(List.of(
+                new UserBatchOperationDTO(UserBatchOperationDTO.Type.CREATE, null, newUser),
+                new UserBatchOperationDTO(UserBatchOperationDTO.Type.UPDATE, 7, changedUser),
+                new UserBatchOperationDTO(UserBatchOperationDTO.Type.UPDATE, 999, changedUser),
+                new UserBatchOperationDTO(UserBatchOperationDTO.Type.DELETE, 3, null),
+                new UserBatchOperationDTO(UserBatchOperationDTO.Type.UPDATE, null, null)
+        ));
+
+        Mockito.when(userMapper.toUser(Mockito.any(UserPostRequestDTO.class))).thenAnswer(invocation -> {
+            UserPostRequestDTO dto = invocation.getArgument(0);
+            return User.builder().userName(dto.userName()).email(dto.email()).password(dto.password()).build();
+        });
+        Mockito.when(userMapper.toResponseDTO(Mockito.any(User.class))).thenAnswer(invocation -> {
+            User user = invocation.getArgument(0);
+            return new UserResponseDTO(String.valueOf(user.getId()), user.getUserName(), user.getEmail());
+        });
+        Mockito.when(userService.saveAll(Mockito.anyList())).thenAnswer(invocation -> {
+            List<User> users = invocation.getArgument(0);
+            users.forEach(user -> user.setId(10));
+            return users;
+        });
+        Mockito.when(userService.updateAll(Mockito.anyList())).thenAnswer(invocation -> {
+            List<User> users = invocation.getArgument(0);
+            return Arrays.asList(users.get(0), null);
+        });
+
+        //when-then
+        performAsync(post("/api/users/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batchRequestDTO)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(5))
+                .andExpect(jsonPath("$[0].status").value(201))
+                .andExpect(jsonPath("$[0].user.id").value("10"))
+                .andExpect(jsonPath("$[1].status").value(200))
+                .andExpect(jsonPath("$[1].user.id").value("7"))
+                .andExpect(jsonPath("$[2].status").value(404))
+                .andExpect(jsonPath("$[3].status").value(204))
+                .andExpect(jsonPath("$[4].status").value(400));
+
+        Mockito.verify(userService).deleteAllById(List.of(3));
+    }
+
+    @Test
+    void givenNullOperationInBatch_whenPostBatch_ShouldReportItAsInvalid() throws Exception {
+        //given
+        String batch = "{\"operations\":[null,{\"type\":\"DELETE\",\"id\":3}]}";
+        Mockito.when(userService.saveAll(Mockito.anyList())).thenReturn(List.of());
+        Mockito.when(userService.updateAll(Mockito.anyList())).thenReturn(List.of());
+
+        //when-then
+        performAsync(post("/api/users/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(batch))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].index").value(0))
+                .andExpect(jsonPath("$[0].status").value(400))
+                .andExpect(jsonPath("$[1].status").value(204));
+        Mockito.verify(userService).deleteAllById(List.of(3));
+    }
+
+    private ResultActions performAsync(MockHttpServletRequestBuilder requestBuilder) throws Exception {
+        MvcResult result = mvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mvc.perform(asyncDispatch(result));
+    }
+
+    private static String hashed(String password) {
+        return password == null ? null : "hashed:" + password;
+    }
+}
@@ -0,0 +1,235 @@
+package ua.azaika.taskmanager.export;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import ua.azaika.taskmanager.model.User;
+import ua.azaika.taskmanager.service.UserChangeListener;
+import ua.azaika.taskmanager.service.UserService;
+import ua.azaika.taskmanager.service.UserServiceImpl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+class UserExporterTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path directory;
+
+    private UserExporter exporter;
+
+    @AfterEach
+    void tearDown() {
+        if (exporter != null) exporter.close();
+    }
+
+    @Test
+    void givenUsers_whenExportingChanges_ShouldWriteSnapshotThenChangesWithoutPasswords() throws Exception {
+        //given
+        UserService userService = new UserServiceImpl();
+        User user1 = userService.save(newUser("user1"));
+        User user2 = userService.save(newUser("user2"));
+        exporter = start(userService, 10, Duration.ofMinutes(1));
+        waitFor(() -> files().size() == 1);
+
+        //when
+        userService.update(user1.getId(), newUser("renamed"));
+        userService.deleteById(user2.getId());
+        exporter.close();
+
+        //then
+        List<Path> files = files();
+        Assertions.assertThat(files).extracting(file -> file.getFileName().toString())
+                .containsExactly("users-000001-snapshot.ndjson.gz", "users-000002-changes.ndjson.gz");
+        List<JsonNode> snapshot = readLines(files.get(0));
+        Assertions.assertThat(snapshot).extracting(line -> line.get("userName").asText()).containsExactly("user1", "user2");
+        Assertions.assertThat(snapshot).noneMatch(line -> line.has("password"));
+        List<JsonNode> changes = readLines(files.get(1));
+        Assertions.assertThat(changes).extracting(line -> line.get("type").asText()).containsExactly("UPDATED", "DELETED");
+        Assertions.assertThat(changes.get(0).get("user").get("userName").asText()).isEqualTo("renamed");
+        Assertions.assertThat(changes.get(1).get("id").asText()).isEqualTo(String.valueOf(user2.getId()));
+        Assertions.assertThat(changes.get(1).get("user").isNull()).isTrue();
+        Assertions.assertThat(changes.get(0).get("sequence").asLong()).isLessThan(changes.get(1).get("sequence").asLong());
+        Assertions.assertThat(exporter.lagNanos()).isZero();
+    }
+
+    @Test
+    void givenMaxFileAge_whenChangesArrive_ShouldSealFileWithoutClosingAndReportNoLag() throws Exception {
+        //given
+        UserService userService = new UserServiceImpl();
+        exporter = start(userService, 10, Duration.ofMillis(50));
+        waitFor(() -> files().size() == 1);
+
+        //when
+        userService.save(newUser("user1"));
+
+        //then
+        waitFor(() -> files().size() == 2);
+        Assertions.assertThat(readLines(files().get(1))).extracting(line -> line.get("type").asText())
+                .containsExactly("SAVED");
+        Assertions.assertThat(exporter.lagNanos()).isZero();
+    }
+
+    @Test
+    void givenFullQueue_whenUsersChange_ShouldNotBlockAndStartOverWithSnapshot() throws Exception {
+        //given
+        UserService userService = Mockito.spy(new UserServiceImpl());
+        CountDownLatch snapshotStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> {
+            snapshotStarted.countDown();
+            release.await();
+            return invocation.callRealMethod();
+        }).doCallRealMethod().when(userService).getPage(Mockito.any(), Mockito.anyInt());
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        exporter = start(userService, 2, Duration.ofMinutes(1));
+        exporter.bindTo(registry);
+        snapshotStarted.await();
+
+        //when
+        for (int i = 0; i < 5; i++) {
+            userService.save(newUser("user" + i));
+        }
+        double queueDepth = registry.get("users.export.queue.depth").gauge().value();
+        long lag = exporter.lagNanos();
+        release.countDown();
+        exporter.close();
+
+        //then
+        Assertions.assertThat(queueDepth).isEqualTo(2);
+        Assertions.assertThat(lag).isPositive();
+        Assertions.assertThat(registry.get("users.export.resyncs").functionCounter().count()).isEqualTo(1);
+        List<Path> files = files();
+        Assertions.assertThat(files).extracting(file -> file.getFileName().toString())
+                .containsExactly("users-000001-snapshot.ndjson.gz", "users-000002-snapshot.ndjson.gz",
+                        "users-000003-changes.ndjson.gz");
+        Assertions.assertThat(readLines(files.get(1))).hasSize(5);
+        Assertions.assertThat(readLines(files.get(2))).extracting(line -> line.get("user").get("userName").asText())
+                .containsExactly("user4");
+    }
+
+    @Test
+    void givenQueueOverflowingDuringWrite_whenSnapshotMissesThatWrite_ShouldWriteItAfterSnapshot() throws Exception {
+        //given
+        UserService userService = new UserServiceImpl();
+        exporter = new UserExporter(userService, directory, 2, 10, Long.MAX_VALUE, Duration.ofMinutes(1));
+        userService.addChangeListener(exporter);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        userService.addChangeListener(new UserChangeListener() {
+            @Override
+            public void onSave(User user) {
+                if (!user.getUserName().equals("inFlight")) return;
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        userService.save(newUser("user1"));
+        userService.save(newUser("user2"));
+        Thread writer = Thread.ofPlatform().start(() -> userService.save(newUser("inFlight")));
+        writing.await();
+
+        //when
+        exporter.start();
+        waitFor(() -> files().size() == 1);
+        release.countDown();
+        writer.join();
+        exporter.close();
+
+        //then
+        List<Path> files = files();
+        Assertions.assertThat(files).extracting(file -> file.getFileName().toString())
+                .containsExactly("users-000001-snapshot.ndjson.gz", "users-000002-changes.ndjson.gz");
+        Assertions.assertThat(readLines(files.get(0))).extracting(line -> line.get("userName").asText())
+                .containsExactly("user1", "user2");
+        Assertions.assertThat(readLines(files.get(1))).extracting(line -> line.get("user").get("userName").asText())
+                .containsExactly("inFlight");
+    }
+
+    @Test
+    void givenChangeNotYetVisibleToSnapshot_whenStarting_ShouldWriteItAfterSnapshot() throws Exception {
+        //given
+        UserService userService = new UserServiceImpl();
+        exporter = new UserExporter(userService, directory, 10, 10, Long.MAX_VALUE, Duration.ofMinutes(1));
+        User inFlight = newUser("user1");
+        inFlight.setId(1);
+        exporter.onSave(inFlight);
+
+        //when
+        exporter.start();
+        exporter.close();
+
+        //then
+        List<Path> files = files();
+        Assertions.assertThat(files).extracting(file -> file.getFileName().toString())
+                .containsExactly("users-000001-snapshot.ndjson.gz", "users-000002-changes.ndjson.gz");
+        Assertions.assertThat(readLines(files.get(0))).isEmpty();
+        Assertions.assertThat(readLines(files.get(1))).extracting(line -> line.get("type").asText())
+                .containsExactly("SAVED");
+    }
+
+    private UserExporter start(UserService userService, int queueCapacity, Duration maxFileAge) throws IOException {
+        UserExporter started = new UserExporter(userService, directory, queueCapacity, 10, Long.MAX_VALUE, maxFileAge);
+        userService.addChangeListener(started);
+        started.start();
+        return started;
+    }
+
+    private List<Path> files() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> !file.getFileName().toString().endsWith(".part")).sorted().toList();
+        }
+    }
+
+    private List<JsonNode> readLines(Path file) throws IOException {
+        List<JsonNode> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lines.add(objectMapper.readTree(line));
+            }
+        }
+        return lines;
+    }
+
+    private static void waitFor(ThrowingBooleanSupplier condition) throws Exception {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) throw new AssertionError("Condition not met in time");
+            Thread.sleep(10);
+        }
+    }
+
+    private static User newUser(String userName) {
+        return User.builder()
+                .userName(userName)
+                .email(userName + "@test.com")
+                .password("password")
+                .build();
+    }
+
+    @FunctionalInterface
+    private interface ThrowingBooleanSupplier {
+        boolean getAsBoolean() throws Exception;
+    }
+}
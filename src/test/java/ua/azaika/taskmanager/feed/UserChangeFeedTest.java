@@ -0,0 +1,221 @@
+package ua.azaika.taskmanager.feed;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ua.azaika.taskmanager.model.User;
+import ua.azaika.taskmanager.service.UserService;
+import ua.azaika.taskmanager.service.UserServiceImpl;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+class UserChangeFeedTest {
+
+    private UserService userService;
+    private UserChangeFeed feed;
+
+    @BeforeEach
+    void setUp() {
+        userService = new UserServiceImpl();
+        feed = new UserChangeFeed(8, 4, 2);
+        userService.addChangeListener(feed);
+    }
+
+    @Test
+    void givenSubscriber_whenUsersChange_ShouldReceiveSequencedEvents() throws InterruptedException {
+        //given
+        UserChangeFeed.Subscription subscription = feed.subscribe(null);
+
+        //when
+        User user = userService.save(newUser("user1"));
+        userService.update(user.getId(), newUser("renamed"));
+        userService.deleteById(user.getId());
+
+        //then
+        List<UserChangeEvent> events = drain(subscription);
+        Assertions.assertThat(events).extracting(UserChangeEvent::sequence).containsExactly(1L, 2L, 3L);
+        Assertions.assertThat(events).extracting(UserChangeEvent::type).containsExactly(
+                UserChangeEvent.Type.SAVED, UserChangeEvent.Type.UPDATED, UserChangeEvent.Type.DELETED);
+        Assertions.assertThat(events.get(1).user().getUserName()).isEqualTo("renamed");
+        Assertions.assertThat(events.get(2).userId()).isEqualTo(user.getId());
+    }
+
+    @Test
+    void givenRecentSequence_whenSubscribed_ShouldReplayMissedEvents() throws InterruptedException {
+        //given
+        for (int i = 0; i < 5; i++) {
+            userService.save(newUser("user" + i));
+        }
+
+        //when
+        UserChangeFeed.Subscription subscription = feed.subscribe(3L);
+        userService.save(newUser("live"));
+
+        //then
+        Assertions.assertThat(drain(subscription)).extracting(UserChangeEvent::sequence).containsExactly(4L, 5L, 6L);
+    }
+
+    @Test
+    void givenSequenceOutsideHistory_whenSubscribed_ShouldStartWithResync() throws InterruptedException {
+        //given
+        for (int i = 0; i < 20; i++) {
+            userService.save(newUser("user" + i));
+        }
+
+        //when
+        UserChangeFeed.Subscription expired = feed.subscribe(2L);
+        UserChangeFeed.Subscription fromFuture = feed.subscribe(99L);
+
+        //then
+        Assertions.assertThat(drain(expired)).containsExactly(new UserChangeEvent(20, UserChangeEvent.Type.RESYNC, null, null));
+        Assertions.assertThat(drain(fromFuture)).extracting(UserChangeEvent::type).containsExactly(UserChangeEvent.Type.RESYNC);
+    }
+
+    @Test
+    void givenSlowSubscriber_whenBufferOverflows_ShouldDropBacklogAndResync() throws InterruptedException {
+        //given
+        UserChangeFeed.Subscription slow = feed.subscribe(null);
+
+        //when
+        for (int i = 0; i < 10; i++) {
+            userService.save(newUser("user" + i));
+        }
+
+        //then
+        List<UserChangeEvent> events = drain(slow);
+        Assertions.assertThat(events.getFirst().type()).isEqualTo(UserChangeEvent.Type.RESYNC);
+        Assertions.assertThat(events).hasSizeLessThanOrEqualTo(4);
+        Assertions.assertThat(events.getLast().sequence()).isEqualTo(10);
+        long resyncedAt = events.getFirst().sequence();
+        Assertions.assertThat(events.subList(1, events.size())).extracting(UserChangeEvent::sequence)
+                .containsExactly(LongStream.rangeClosed(resyncedAt + 1, 10).boxed().toArray(Long[]::new));
+    }
+
+    @Test
+    void givenMaxSubscribers_whenSubscribingAgain_ShouldRefuseUntilOneCloses() {
+        //given
+        UserChangeFeed.Subscription first = feed.subscribe(null);
+        feed.subscribe(null);
+
+        //when
+        UserChangeFeed.Subscription refused = feed.subscribe(null);
+        first.close();
+
+        //then
+        Assertions.assertThat(refused).isNull();
+        Assertions.assertThat(feed.subscribe(null)).isNotNull();
+    }
+
+    @Test
+    void givenClosedFeed_whenSubscribing_ShouldEndOpenSubscriptionsAndRefuseNewOnes() throws InterruptedException {
+        //given
+        UserChangeFeed.Subscription open = feed.subscribe(null);
+
+        //when
+        feed.close();
+
+        //then
+        Assertions.assertThat(open.isClosed()).isTrue();
+        Assertions.assertThat(open.poll(Duration.ofMillis(10))).isNull();
+        Assertions.assertThat(feed.subscribe(null)).isNull();
+    }
+
+    @Test
+    void givenConcurrentWriters_whenSubscribed_ShouldSeeStrictlyIncreasingSequences() throws Exception {
+        //given
+        UserChangeFeed bigFeed = new UserChangeFeed(16_384, 100_000, 1);
+        UserService store = new UserServiceImpl();
+        store.addChangeListener(bigFeed);
+        UserChangeFeed.Subscription subscription = bigFeed.subscribe(null);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        //when
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < 1_000; i++) {
+                        store.save(newUser("user"));
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        //then
+        List<UserChangeEvent> events = drain(subscription);
+        Assertions.assertThat(events).hasSize(8_000);
+        for (int i = 0; i < events.size(); i++) {
+            Assertions.assertThat(events.get(i).sequence()).isEqualTo(i + 1);
+        }
+    }
+
+    @Test
+    void givenWaitingSubscriber_whenWritersRace_ShouldReceiveEveryEventInOrder() throws Exception {
+        //given
+        UserChangeFeed bigFeed = new UserChangeFeed(16_384, 100_000, 1);
+        UserService store = new UserServiceImpl();
+        store.addChangeListener(bigFeed);
+        UserChangeFeed.Subscription subscription = bigFeed.subscribe(null);
+        ExecutorService executor = Executors.newFixedThreadPool(9);
+
+        //when
+        List<UserChangeEvent> events = new ArrayList<>();
+        try {
+            Future<?> reader = executor.submit(() -> {
+                while (events.size() < 8_000) {
+                    UserChangeEvent event = subscription.poll(Duration.ofSeconds(5));
+                    if (event == null) break;
+                    events.add(event);
+                }
+                return null;
+            });
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < 1_000; i++) {
+                        store.save(newUser("user"));
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get(30, TimeUnit.SECONDS);
+            }
+            reader.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        //then
+        Assertions.assertThat(events).extracting(UserChangeEvent::sequence)
+                .containsExactly(LongStream.rangeClosed(1, 8_000).boxed().toArray(Long[]::new));
+    }
+
+    private static List<UserChangeEvent> drain(UserChangeFeed.Subscription subscription) throws InterruptedException {
+        List<UserChangeEvent> events = new ArrayList<>();
+        UserChangeEvent event;
+        while ((event = subscription.poll(Duration.ZERO)) != null) {
+            events.add(event);
+        }
+        return events;
+    }
+
+    private static User newUser(String userName) {
+        return User.builder()
+                .userName(userName)
+                .email(userName + "@god.com")
+                .password("password")
+                .build();
+    }
+}
@@ -0,0 +1,76 @@
+package ua.azaika.taskmanager.idempotency;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class IdempotencyStoreTest {
+
+    private final IdempotencyStore<String> store = new IdempotencyStore<>(100, Duration.ofMinutes(1));
+    private final byte[] fingerprint = IdempotencyStore.fingerprint("User1", "user1@god.com", "password");
+
+    @Test
+    void givenRepeatedKey_whenExecute_ShouldRunOnceAndReplayFirstResult() {
+        //given
+        AtomicInteger executions = new AtomicInteger();
+
+        //when
+        String first = store.execute("key", fingerprint, () -> CompletableFuture.completedFuture("created-" + executions.incrementAndGet()),
+                result -> result + "-replayed").join();
+        String second = store.execute("key", fingerprint, () -> CompletableFuture.completedFuture("created-" + executions.incrementAndGet()),
+                result -> result + "-replayed").join();
+
+        //then
+        Assertions.assertThat(first).isEqualTo("created-1");
+        Assertions.assertThat(second).isEqualTo("created-1-replayed");
+        Assertions.assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void givenDuplicateWhileFirstIsRunning_whenExecute_ShouldWaitForFirstInsteadOfRunning() {
+        //given
+        CompletableFuture<String> running = new CompletableFuture<>();
+        store.execute("key", fingerprint, () -> running, result -> result + "-replayed");
+
+        //when
+        CompletableFuture<String> duplicate = store.execute("key", fingerprint,
+                () -> { throw new AssertionError("duplicate must not run"); }, result -> result + "-replayed");
+        boolean doneBeforeFirst = duplicate.isDone();
+        running.complete("created");
+
+        //then
+        Assertions.assertThat(doneBeforeFirst).isFalse();
+        Assertions.assertThat(duplicate.join()).isEqualTo("created-replayed");
+    }
+
+    @Test
+    void givenFailedExecution_whenRetriedWithSameKey_ShouldRunAgain() {
+        //given
+        CompletableFuture<String> failed = store.execute("key", fingerprint,
+                () -> CompletableFuture.failedFuture(new IllegalStateException("overloaded")), result -> result);
+
+        //when
+        String retried = store.execute("key", fingerprint, () -> CompletableFuture.completedFuture("created"),
+                result -> result + "-replayed").join();
+
+        //then
+        Assertions.assertThat(failed).isCompletedExceptionally();
+        Assertions.assertThat(retried).isEqualTo("created");
+    }
+
+    @Test
+    void givenKeyUsedForAnotherRequest_whenExecute_ShouldRefuse() {
+        //given
+        store.execute("key", fingerprint, () -> CompletableFuture.completedFuture("created"), result -> result);
+        byte[] otherRequest = IdempotencyStore.fingerprint("User1", "user1@god.com", "other");
+
+        //when-then
+        Assertions.assertThatThrownBy(() -> store.execute("key", otherRequest,
+                        () -> CompletableFuture.completedFuture("created"), result -> result))
+                .isInstanceOf(IdempotencyKeyReusedException.class);
+        Assertions.assertThat(IdempotencyStore.fingerprint("ab", "c")).isNotEqualTo(IdempotencyStore.fingerprint("a", "bc"));
+    }
+}
@@ -0,0 +1,209 @@
+package ua.azaika.taskmanager.load;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import ua.azaika.taskmanager.TaskManagerApplication;
+import ua.azaika.taskmanager.model.User;
+import ua.azaika.taskmanager.service.UserService;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Compares throughput and latency of the {@code /api/users} endpoints with Tomcat running
+ * on platform threads and on virtual threads, and checks how read latency holds up while a
+ * burst of registrations keeps the password hashing pool saturated.
+ * <p>
+ * Excluded from the regular build; run with {@code mvn test -Pload-test}. Concurrency and
+ * duration can be tuned with {@code -Dload.concurrency} and {@code -Dload.durationSeconds}.
+ * All load comes from one client, so rate limiting and the concurrency limit are turned off
+ * to measure the server itself.
+ */
+@Tag("load")
+class UserApiLoadTest {
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 400);
+    private static final Duration DURATION = Duration.ofSeconds(Integer.getInteger("load.durationSeconds", 10));
+    private static final Duration WARM_UP = Duration.ofSeconds(3);
+    private static final int SEEDED_USERS = 1_000;
+    private static final int REGISTRATION_CONCURRENCY = Integer.getInteger("load.registrationConcurrency", 200);
+    private static final AtomicLong REGISTRATIONS = new AtomicLong();
+
+    @Test
+    void comparePlatformAndVirtualThreads() throws Exception {
+        LoadResult platform = runAgainstServer(false);
+        LoadResult virtual = runAgainstServer(true);
+
+        System.out.printf("%-14s %12s %10s %10s %10s %8s%n", "mode", "requests/s", "p50 ms", "p99 ms", "max ms", "errors");
+        System.out.println(platform.format("platform"));
+        System.out.println(virtual.format("virtual"));
+
+        Assertions.assertThat(platform.errors()).isZero();
+        Assertions.assertThat(virtual.errors()).isZero();
+    }
+
+    /**
+     * Measures reads alone, then the same reads while {@code REGISTRATION_CONCURRENCY} clients
+     * register users as fast as they can. Hashing runs on its own pool, so the reads should
+     * keep their latency; registrations beyond the pool's queue are shed with 503.
+     */
+    @Test
+    void readLatencyDuringRegistrationBurst() throws Exception {
+        try (var context = startServer(false)) {
+            String baseUrl = "http://localhost:" + context.getWebServer().getPort() + "/api/users";
+            HttpClient client = newClient();
+            seedUsers(context);
+
+            runLoad(client, WARM_UP, CONCURRENCY, () -> readRequest(baseUrl));
+            LoadResult quiet = runLoad(client, DURATION, CONCURRENCY, () -> readRequest(baseUrl));
+            LoadResult registrations;
+            LoadResult busy;
+            try (ExecutorService burst = Executors.newVirtualThreadPerTaskExecutor()) {
+                Future<LoadResult> registering = burst.submit(() ->
+                        runLoad(client, DURATION, REGISTRATION_CONCURRENCY, () -> registrationRequest(baseUrl)));
+                busy = runLoad(client, DURATION, CONCURRENCY, () -> readRequest(baseUrl));
+                registrations = registering.get();
+            }
+
+            System.out.printf("%-14s %12s %10s %10s %10s %8s%n", "phase", "requests/s", "p50 ms", "p99 ms", "max ms", "errors");
+            System.out.println(quiet.format("reads"));
+            System.out.println(busy.format("reads+burst"));
+            System.out.println(registrations.format("registrations"));
+
+            Assertions.assertThat(quiet.errors()).isZero();
+            Assertions.assertThat(busy.errors()).isZero();
+        }
+    }
+
+    private LoadResult runAgainstServer(boolean virtualThreads) throws Exception {
+        try (var context = startServer(virtualThreads)) {
+            String baseUrl = "http://localhost:" + context.getWebServer().getPort() + "/api/users";
+            HttpClient client = newClient();
+            seedUsers(context);
+            runLoad(client, WARM_UP, CONCURRENCY, () -> nextRequest(baseUrl));
+            return runLoad(client, DURATION, CONCURRENCY, () -> nextRequest(baseUrl));
+        }
+    }
+
+    /**
+     * Settings are passed as command-line arguments because default properties would lose to
+     * {@code application.properties}.
+     */
+    private static ServletWebServerApplicationContext startServer(boolean virtualThreads) {
+        return (ServletWebServerApplicationContext) new SpringApplicationBuilder(TaskManagerApplication.class)
+                .run("--server.port=0", "--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--taskmanager.rate-limit.enabled=false", "--taskmanager.rate-limit.concurrency.enabled=false");
+    }
+
+    private static HttpClient newClient() {
+        return HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    /**
+     * Saves users straight through the service, so seeding does not pay for bcrypt.
+     */
+    private static void seedUsers(ServletWebServerApplicationContext context) {
+        List<User> users = new ArrayList<>(SEEDED_USERS);
+        for (int i = 0; i < SEEDED_USERS; i++) {
+            users.add(User.builder().userName("User" + i).email("user" + i + "@test.com").password("hash").build());
+        }
+        context.getBean(UserService.class).saveAll(users);
+    }
+
+    private LoadResult runLoad(HttpClient client, Duration duration, int concurrency,
+                               Supplier<HttpRequest> requests) throws Exception {
+        long deadline = System.nanoTime() + duration.toNanos();
+        AtomicLong errors = new AtomicLong();
+        List<Future<long[]>> workers = new ArrayList<>(concurrency);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                workers.add(executor.submit(() -> {
+                    long[] latencies = new long[1024];
+                    int count = 0;
+                    while (System.nanoTime() < deadline) {
+                        HttpRequest request = requests.get();
+                        long start = System.nanoTime();
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        long latency = System.nanoTime() - start;
+                        if (response.statusCode() >= 400) errors.incrementAndGet();
+                        if (count == latencies.length) latencies = Arrays.copyOf(latencies, count * 2);
+                        latencies[count++] = latency;
+                    }
+                    return Arrays.copyOf(latencies, count);
+                }));
+            }
+        }
+        List<long[]> perWorker = new ArrayList<>();
+        for (Future<long[]> worker : workers) {
+            perWorker.add(worker.get());
+        }
+        long[] all = perWorker.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        return new LoadResult(all, duration, errors.get());
+    }
+
+    private HttpRequest nextRequest(String baseUrl) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int roll = random.nextInt(100);
+        if (roll < 80) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/" + (1 + random.nextInt(SEEDED_USERS)))).build();
+        }
+        if (roll < 90) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "?limit=50&after=" + random.nextInt(SEEDED_USERS))).build();
+        }
+        return registrationRequest(baseUrl);
+    }
+
+    private HttpRequest readRequest(String baseUrl) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextInt(10) == 0) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "?limit=50&after=" + random.nextInt(SEEDED_USERS))).build();
+        }
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/" + (1 + random.nextInt(SEEDED_USERS)))).build();
+    }
+
+    private HttpRequest registrationRequest(String baseUrl) {
+        long n = REGISTRATIONS.incrementAndGet();
+        return jsonPost(baseUrl, "{\"userName\":\"BurstUser" + n + "\",\"email\":\"burst" + n + "@test.com\",\"password\":\"password\"}");
+    }
+
+    private static HttpRequest jsonPost(String url, String body) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private record LoadResult(long[] sortedLatencies, Duration duration, long errors) {
+
+        double throughput() {
+            return sortedLatencies.length / (double) duration.toSeconds();
+        }
+
+        double percentileMillis(double percentile) {
+            if (sortedLatencies.length == 0) return 0;
+            int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(index, 0)] / 1_000_000.0;
+        }
+
+        String format(String mode) {
+            return String.format("%-14s %12.0f %10.2f %10.2f %10.2f %8d", mode, throughput(),
+                    percentileMillis(0.50), percentileMillis(0.99), percentileMillis(1.0), errors);
+        }
+    }
+}
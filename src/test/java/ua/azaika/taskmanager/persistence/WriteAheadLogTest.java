@@ -0,0 +1,105 @@
+package ua.azaika.taskmanager.persistence;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void givenRecordsAroundRotation_whenRecovered_ShouldReplayAllInOrder() throws IOException {
+        //given
+        WriteAheadLog log = new WriteAheadLog(directory);
+        log.recover(0, record -> {
+        });
+        log.append(bytes("first"));
+        long generation = log.rotate();
+        log.append(bytes("second"));
+        log.sync();
+        log.close();
+
+        //when
+        List<String> replayed = new ArrayList<>();
+        WriteAheadLog reopened = new WriteAheadLog(directory);
+        long records = reopened.recover(0, record -> replayed.add(new String(record, StandardCharsets.UTF_8)));
+        reopened.close();
+
+        //then
+        Assertions.assertThat(generation).isEqualTo(1);
+        Assertions.assertThat(records).isEqualTo(2);
+        Assertions.assertThat(replayed).containsExactly("first", "second");
+    }
+
+    @Test
+    void givenClosedLog_whenAppendingOrSyncing_ShouldRefuse() throws IOException {
+        //given
+        WriteAheadLog log = new WriteAheadLog(directory);
+        log.recover(0, record -> {
+        });
+        log.close();
+
+        //when //then
+        Assertions.assertThatThrownBy(() -> log.append(bytes("late")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("closed");
+        Assertions.assertThatThrownBy(log::sync).isInstanceOf(IllegalStateException.class);
+        Assertions.assertThatThrownBy(log::rotate).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void givenConcurrentAppendsAndSyncs_whenRecovered_ShouldReplayEveryAcknowledgedRecord() throws Exception {
+        //given
+        WriteAheadLog log = new WriteAheadLog(directory);
+        log.recover(0, record -> {
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        //when
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int writer = t;
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < 2_000; i++) {
+                        log.append(bytes(writer + ":" + i + ":" + "x".repeat(500)));
+                        if (i % 4 == 0) log.sync();
+                    }
+                    log.sync();
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        log.close();
+
+        //then
+        Set<String> replayed = new HashSet<>();
+        WriteAheadLog reopened = new WriteAheadLog(directory);
+        long records = reopened.recover(0, record -> replayed.add(new String(record, StandardCharsets.UTF_8)));
+        reopened.close();
+        Assertions.assertThat(records).isEqualTo(16_000);
+        Assertions.assertThat(replayed).hasSize(16_000);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
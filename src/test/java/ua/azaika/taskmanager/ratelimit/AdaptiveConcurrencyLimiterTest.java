@@ -0,0 +1,90 @@
+package ua.azaika.taskmanager.ratelimit;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+class AdaptiveConcurrencyLimiterTest {
+    private static final long WINDOW = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void givenFullLimit_whenAcquire_ShouldRefuseUntilReleased() {
+        //given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, 2.0, WINDOW, 0);
+        limiter.tryAcquire();
+        limiter.tryAcquire();
+
+        //when
+        boolean refused = limiter.tryAcquire();
+        limiter.release(0, MILLIS);
+
+        //then
+        Assertions.assertThat(refused).isFalse();
+        Assertions.assertThat(limiter.tryAcquire()).isTrue();
+        Assertions.assertThat(limiter.inFlight()).isEqualTo(2);
+    }
+
+    @Test
+    void givenSteadyLatencyAndBusyWindows_whenWindowsClose_ShouldRaiseLimit() {
+        //given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 100, 2.0, WINDOW, 0);
+
+        //when
+        long now = runWindows(limiter, 0, 30, 30, MILLIS);
+
+        //then
+        Assertions.assertThat(now).isPositive();
+        Assertions.assertThat(limiter.limit()).isGreaterThan(20);
+    }
+
+    @Test
+    void givenRisingLatency_whenWindowsClose_ShouldShedByLoweringLimit() {
+        //given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(50, 4, 100, 2.0, WINDOW, 0);
+        long now = runWindows(limiter, 0, 20, 30, MILLIS);
+        int before = limiter.limit();
+
+        //when
+        runWindows(limiter, now, 10, 4, 20 * MILLIS);
+
+        //then
+        Assertions.assertThat(limiter.limit()).isLessThan(before * 2 / 3);
+        Assertions.assertThat(limiter.limit()).isGreaterThanOrEqualTo(4);
+    }
+
+    @Test
+    void givenIdleCapacity_whenWindowsClose_ShouldNotRaiseLimit() {
+        //given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(40, 1, 100, 2.0, WINDOW, 0);
+
+        //when
+        runWindows(limiter, 0, 30, 2, MILLIS);
+
+        //then
+        Assertions.assertThat(limiter.limit()).isEqualTo(40);
+    }
+
+    /**
+     * Runs {@code windows} windows of rounds in which up to {@code concurrent} requests are
+     * admitted at once and released {@code latency} later, and returns the time reached.
+     */
+    private static long runWindows(AdaptiveConcurrencyLimiter limiter, long now, int windows, int concurrent,
+                                   long latency) {
+        for (int window = 0; window < windows; window++) {
+            long windowStart = now;
+            while (now - windowStart <= WINDOW) {
+                int admitted = 0;
+                for (int i = 0; i < concurrent; i++) {
+                    if (limiter.tryAcquire()) admitted++;
+                }
+                now += latency;
+                for (int i = 0; i < admitted; i++) {
+                    limiter.release(now - latency, now);
+                }
+            }
+        }
+        return now;
+    }
+}
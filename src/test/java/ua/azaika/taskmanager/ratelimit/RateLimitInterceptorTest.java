@@ -0,0 +1,126 @@
+package ua.azaika.taskmanager.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.DispatcherType;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+import ua.azaika.taskmanager.config.RateLimitProperties;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+class RateLimitInterceptorTest {
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void givenClientOverItsRate_whenPreHandle_ShouldRejectOnlyThatClient() {
+        //given
+        RateLimitInterceptor interceptor = interceptor(new RateLimitProperties.Endpoint("POST", "/api/users", 1, 2, 0, 1), false);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        interceptor.bindTo(registry);
+        admit(interceptor, request("POST", "/api/users", "10.0.0.1"));
+        admit(interceptor, request("POST", "/api/users", "10.0.0.1"));
+
+        //when
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        boolean admitted = interceptor.preHandle(request("POST", "/api/users", "10.0.0.1"), rejected, null);
+
+        //then
+        Assertions.assertThat(admitted).isFalse();
+        Assertions.assertThat(rejected.getStatus()).isEqualTo(429);
+        Assertions.assertThat(rejected.getHeader("Retry-After")).isEqualTo("1");
+        Assertions.assertThat(interceptor.preHandle(request("POST", "/api/users", "10.0.0.2"),
+                new MockHttpServletResponse(), null)).isTrue();
+        Assertions.assertThat(interceptor.preHandle(request("GET", "/api/users", "10.0.0.1"),
+                new MockHttpServletResponse(), null)).isTrue();
+        Assertions.assertThat(registry.get("api.requests.rejected")
+                .tags("endpoint", "POST /api/users", "reason", "client_rate").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void givenRemoteAddressNotTrusted_whenPreHandle_ShouldLimitOnlyClientsSendingClientHeader() {
+        //given
+        RateLimitInterceptor interceptor = interceptor(new RateLimitProperties.Endpoint("POST", "/api/users", 1, 1, 0, 1),
+                false, "X-Client-Id", false);
+        MockHttpServletRequest identified = request("POST", "/api/users", "10.0.0.1");
+        identified.addHeader("X-Client-Id", "client-1");
+        admit(interceptor, identified);
+
+        //when
+        MockHttpServletRequest repeated = request("POST", "/api/users", "10.0.0.1");
+        repeated.addHeader("X-Client-Id", "client-1");
+        boolean repeatedAdmitted = interceptor.preHandle(repeated, new MockHttpServletResponse(), null);
+
+        //then
+        Assertions.assertThat(repeatedAdmitted).isFalse();
+        admit(interceptor, request("POST", "/api/users", "10.0.0.1"));
+        admit(interceptor, request("POST", "/api/users", "10.0.0.1"));
+    }
+
+    @Test
+    void givenGlobalRateUsedUp_whenPreHandle_ShouldRejectEveryClient() {
+        //given
+        RateLimitInterceptor interceptor = interceptor(new RateLimitProperties.Endpoint("GET", "/api/users", 0, 1, 1, 1), false);
+        admit(interceptor, request("GET", "/api/users", "10.0.0.1"));
+
+        //when
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        boolean admitted = interceptor.preHandle(request("GET", "/api/users", "10.0.0.2"), rejected, null);
+        clock.addAndGet(Duration.ofSeconds(1).toNanos());
+
+        //then
+        Assertions.assertThat(admitted).isFalse();
+        Assertions.assertThat(rejected.getStatus()).isEqualTo(429);
+        Assertions.assertThat(interceptor.preHandle(request("GET", "/api/users", "10.0.0.2"),
+                new MockHttpServletResponse(), null)).isTrue();
+    }
+
+    @Test
+    void givenConcurrencyLimitReached_whenPreHandle_ShouldShedUntilAsyncRequestCompletes() throws Exception {
+        //given
+        RateLimitInterceptor interceptor = interceptor(new RateLimitProperties.Endpoint("GET", "/api/users", 0, 1, 0, 1), true);
+        MockHttpServletRequest running = request("GET", "/api/users", "10.0.0.1");
+        admit(interceptor, running);
+        interceptor.afterConcurrentHandlingStarted(running, new MockHttpServletResponse(), null);
+
+        //when
+        MockHttpServletResponse shed = new MockHttpServletResponse();
+        boolean admitted = interceptor.preHandle(request("GET", "/api/users", "10.0.0.2"), shed, null);
+        running.setDispatcherType(DispatcherType.ASYNC);
+        Assertions.assertThat(interceptor.preHandle(running, new MockHttpServletResponse(), null)).isTrue();
+        interceptor.afterCompletion(running, new MockHttpServletResponse(), null, null);
+
+        //then
+        Assertions.assertThat(admitted).isFalse();
+        Assertions.assertThat(shed.getStatus()).isEqualTo(503);
+        Assertions.assertThat(interceptor.preHandle(request("GET", "/api/users", "10.0.0.2"),
+                new MockHttpServletResponse(), null)).isTrue();
+    }
+
+    private RateLimitInterceptor interceptor(RateLimitProperties.Endpoint endpoint, boolean concurrencyLimited) {
+        return interceptor(endpoint, concurrencyLimited, null, true);
+    }
+
+    private RateLimitInterceptor interceptor(RateLimitProperties.Endpoint endpoint, boolean concurrencyLimited,
+                                             String clientHeader, boolean clientByRemoteAddress) {
+        RateLimitProperties properties = new RateLimitProperties(true, clientHeader, clientByRemoteAddress, 1_000,
+                Duration.ofMinutes(1), List.of(endpoint),
+                new RateLimitProperties.Concurrency(concurrencyLimited, 1, 1, 1, 2.0, Duration.ofMillis(100)));
+        return new RateLimitInterceptor(properties, clock::get);
+    }
+
+    private static void admit(RateLimitInterceptor interceptor, MockHttpServletRequest request) {
+        Assertions.assertThat(interceptor.preHandle(request, new MockHttpServletResponse(), null)).isTrue();
+    }
+
+    private static MockHttpServletRequest request(String method, String pattern, String client) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, pattern);
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, pattern);
+        request.setRemoteAddr(client);
+        return request;
+    }
+}
@@ -0,0 +1,79 @@
+package ua.azaika.taskmanager.ratelimit;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class TokenBucketTest {
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void givenFullBucket_whenBurstIsUsed_ShouldRefuseUntilRefilled() {
+        //given
+        TokenBucket bucket = new TokenBucket(10, 3);
+        long now = 1_000 * MILLIS;
+
+        //when
+        long first = bucket.tryAcquire(now);
+        long second = bucket.tryAcquire(now);
+        long third = bucket.tryAcquire(now);
+        long refused = bucket.tryAcquire(now);
+
+        //then
+        Assertions.assertThat(first).isZero();
+        Assertions.assertThat(second).isZero();
+        Assertions.assertThat(third).isZero();
+        Assertions.assertThat(refused).isEqualTo(100 * MILLIS);
+        Assertions.assertThat(bucket.tryAcquire(now + 99 * MILLIS)).isPositive();
+        Assertions.assertThat(bucket.tryAcquire(now + 100 * MILLIS)).isZero();
+    }
+
+    @Test
+    void givenIdleBucket_whenTimePasses_ShouldRefillNoMoreThanBurst() {
+        //given
+        TokenBucket bucket = new TokenBucket(10, 2);
+        long now = 0;
+        bucket.tryAcquire(now);
+        bucket.tryAcquire(now);
+
+        //when
+        long later = now + 10_000 * MILLIS;
+        int granted = 0;
+        while (bucket.tryAcquire(later) == 0) {
+            granted++;
+        }
+
+        //then
+        Assertions.assertThat(granted).isEqualTo(2);
+    }
+
+    @Test
+    void givenConcurrentTakers_whenTimeStandsStill_ShouldGrantExactlyBurst() throws Exception {
+        //given
+        TokenBucket bucket = new TokenBucket(1, 1_000);
+        AtomicInteger granted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        //when
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int thread = 0; thread < 8; thread++) {
+                executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 1_000; i++) {
+                        if (bucket.tryAcquire(42) == 0) granted.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+        }
+
+        //then
+        Assertions.assertThat(granted.get()).isEqualTo(1_000);
+    }
+}
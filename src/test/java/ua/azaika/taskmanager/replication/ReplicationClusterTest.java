@@ -0,0 +1,155 @@
+package ua.azaika.taskmanager.replication;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import ua.azaika.taskmanager.TaskManagerApplication;
+import ua.azaika.taskmanager.model.User;
+import ua.azaika.taskmanager.service.UserService;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a leader and two followers in one JVM, each on its own port, and checks what clients
+ * of the followers see.
+ */
+class ReplicationClusterTest {
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final List<ServletWebServerApplicationContext> nodes = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        nodes.forEach(ServletWebServerApplicationContext::close);
+    }
+
+    @Test
+    void givenLeaderWithUsers_whenLeaderChanges_ShouldServeChangesFromFollowers() throws Exception {
+        //given
+        ServletWebServerApplicationContext leader = start("--taskmanager.replication.role=leader");
+        UserService leaderUsers = leader.getBean(UserService.class);
+        User user1 = leaderUsers.save(newUser("user1"));
+        User user2 = leaderUsers.save(newUser("user2"));
+        List<String> followers = List.of(startFollower(leader), startFollower(leader));
+        for (String follower : followers) {
+            waitForStatus(follower + "/api/users/" + user2.getId(), 200);
+        }
+
+        //when
+        leaderUsers.update(user1.getId(), newUser("renamed"));
+        leaderUsers.deleteById(user2.getId());
+        User user3 = leaderUsers.save(newUser("user3"));
+
+        //then
+        for (String follower : followers) {
+            waitForStatus(follower + "/api/users/" + user2.getId(), 404);
+            waitForStatus(follower + "/api/users/" + user3.getId(), 200);
+            Assertions.assertThat(get(follower + "/api/users/" + user1.getId()).body()).contains("renamed");
+        }
+        Assertions.assertThat(nodes.get(1).getBean(ReplicationFollower.class).appliedSequence())
+                .isEqualTo(nodes.get(2).getBean(ReplicationFollower.class).appliedSequence());
+    }
+
+    @Test
+    void givenFollower_whenWriting_ShouldRedirectToLeader() throws Exception {
+        //given
+        ServletWebServerApplicationContext leader = start("--taskmanager.replication.role=leader");
+        String follower = startFollower(leader);
+        HttpRequest post = HttpRequest.newBuilder(URI.create(follower + "/api/users?source=test"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"userName\":\"user1\",\"email\":\"user1@test.com\",\"password\":\"password\"}"))
+                .build();
+
+        //when
+        HttpResponse<String> response = client.send(post, HttpResponse.BodyHandlers.ofString());
+
+        //then
+        Assertions.assertThat(response.statusCode()).isEqualTo(307);
+        Assertions.assertThat(response.headers().firstValue("Location"))
+                .contains(baseUrl(leader) + "/api/users?source=test");
+        Assertions.assertThat(leader.getBean(UserService.class).count()).isZero();
+    }
+
+    @Test
+    void givenStoppedLeader_whenStalenessExceedsBound_ShouldRefuseReads() throws Exception {
+        //given
+        ServletWebServerApplicationContext leader = start("--taskmanager.replication.role=leader");
+        String follower = startFollower(leader);
+        waitForStatus(follower + "/api/users", 200);
+
+        //when
+        leader.close();
+
+        //then
+        HttpResponse<String> response = waitForStatus(follower + "/api/users", 503);
+        Assertions.assertThat(response.headers().firstValue("Retry-After")).contains("1");
+    }
+
+    @Test
+    void givenStandaloneNode_whenRequestingSnapshot_ShouldNotServeReplication() throws Exception {
+        //given
+        ServletWebServerApplicationContext standalone = start();
+
+        //when
+        HttpResponse<String> response = get(baseUrl(standalone) + "/api/replication/snapshot");
+
+        //then
+        Assertions.assertThat(response.statusCode()).isEqualTo(404);
+    }
+
+    private String startFollower(ServletWebServerApplicationContext leader) {
+        return baseUrl(start("--taskmanager.replication.role=follower",
+                "--taskmanager.replication.leader-url=" + baseUrl(leader)));
+    }
+
+    /**
+     * Settings are passed as command-line arguments because default properties would lose to
+     * {@code application.properties}.
+     */
+    private ServletWebServerApplicationContext start(String... settings) {
+        List<String> args = new ArrayList<>(List.of("--server.port=0",
+                "--taskmanager.rate-limit.enabled=false", "--taskmanager.rate-limit.concurrency.enabled=false",
+                "--taskmanager.replication.heartbeat=100ms", "--taskmanager.replication.max-staleness=1s"));
+        args.addAll(List.of(settings));
+        ServletWebServerApplicationContext context = (ServletWebServerApplicationContext)
+                new SpringApplicationBuilder(TaskManagerApplication.class).run(args.toArray(String[]::new));
+        nodes.add(context);
+        return context;
+    }
+
+    private HttpResponse<String> waitForStatus(String url, int status) throws Exception {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (true) {
+            HttpResponse<String> response = get(url);
+            if (response.statusCode() == status) return response;
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Expected " + status + " from " + url + " but got " + response.statusCode());
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    private HttpResponse<String> get(String url) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create(url)).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static String baseUrl(ServletWebServerApplicationContext context) {
+        return "http://localhost:" + context.getWebServer().getPort();
+    }
+
+    private static User newUser(String userName) {
+        return User.builder()
+                .userName(userName)
+                .email(userName + "@test.com")
+                .password("password")
+                .build();
+    }
+}
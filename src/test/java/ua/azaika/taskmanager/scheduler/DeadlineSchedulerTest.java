@@ -0,0 +1,161 @@
+package ua.azaika.taskmanager.scheduler;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ua.azaika.taskmanager.model.Task;
+import ua.azaika.taskmanager.model.TaskStatus;
+import ua.azaika.taskmanager.service.TaskService;
+import ua.azaika.taskmanager.service.TaskServiceImpl;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+class DeadlineSchedulerTest {
+    private static final Instant START = Instant.parse("2025-01-10T12:00:00Z");
+    private static final LocalDate TOMORROW = LocalDate.of(2025, 1, 11);
+
+    private final MutableClock clock = new MutableClock(START);
+    private final BlockingQueue<DeadlineEvent> events = new LinkedBlockingQueue<>();
+    private DeadlineScheduler scheduler;
+    private TaskService taskService;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new DeadlineScheduler(ZoneOffset.UTC, Duration.ofHours(24), Duration.ofSeconds(1), 1, 100, clock);
+        scheduler.addListener(events::add);
+        taskService = new TaskServiceImpl();
+        taskService.addChangeListener(scheduler);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.close();
+    }
+
+    @Test
+    void givenTaskDueTomorrow_whenTimePasses_ShouldFireUpcomingThenOverdue() throws InterruptedException {
+        //given
+        Task task = taskService.save(newTask(TOMORROW));
+
+        //when
+        clock.advance(Duration.ofHours(1));
+        int firedEarly = scheduler.fireDue();
+        clock.set(Instant.parse("2025-01-11T00:00:00Z"));
+        scheduler.fireDue();
+        DeadlineEvent upcoming = events.poll(5, TimeUnit.SECONDS);
+        clock.set(Instant.parse("2025-01-12T00:00:00Z"));
+        scheduler.fireDue();
+        DeadlineEvent overdue = events.poll(5, TimeUnit.SECONDS);
+
+        //then
+        Assertions.assertThat(firedEarly).isZero();
+        Assertions.assertThat(upcoming).isEqualTo(new DeadlineEvent(DeadlineEvent.Type.UPCOMING, task.getId(), 1,
+                Instant.parse("2025-01-11T00:00:00Z")));
+        Assertions.assertThat(overdue).isEqualTo(new DeadlineEvent(DeadlineEvent.Type.OVERDUE, task.getId(), 1,
+                Instant.parse("2025-01-12T00:00:00Z")));
+        Assertions.assertThat(scheduler.pendingDeadlines()).isZero();
+    }
+
+    @Test
+    void givenScheduledTask_whenDueDateMovedOrTaskDone_ShouldReschedule() throws InterruptedException {
+        //given
+        Task moved = taskService.save(newTask(TOMORROW.plusDays(10)));
+        Task done = taskService.save(newTask(TOMORROW.plusDays(10)));
+
+        //when
+        taskService.update(moved.getId(), newTask(TOMORROW.plusDays(20)));
+        Task completed = newTask(TOMORROW.plusDays(10));
+        completed.setStatus(TaskStatus.DONE);
+        taskService.update(done.getId(), completed);
+        clock.set(Instant.parse("2025-01-22T00:00:00Z"));
+
+        //then
+        Assertions.assertThat(scheduler.fireDue()).isZero();
+        Assertions.assertThat(scheduler.pendingDeadlines()).isEqualTo(2);
+        clock.set(Instant.parse("2025-02-01T00:00:00Z"));
+        Assertions.assertThat(scheduler.fireDue()).isEqualTo(2);
+        Assertions.assertThat(events.poll(5, TimeUnit.SECONDS).taskId()).isEqualTo(moved.getId());
+    }
+
+    @Test
+    void givenScheduledTask_whenDeleted_ShouldCancelDeadlines() {
+        //given
+        Task task = taskService.save(newTask(TOMORROW));
+
+        //when
+        taskService.deleteById(task.getId());
+        clock.set(Instant.parse("2025-01-13T00:00:00Z"));
+
+        //then
+        Assertions.assertThat(scheduler.pendingDeadlines()).isZero();
+        Assertions.assertThat(scheduler.fireDue()).isZero();
+    }
+
+    @Test
+    void givenMeterRegistry_whenEventsFire_ShouldRecordPendingAndLag() {
+        //given
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        scheduler.bindTo(registry);
+        taskService.save(newTask(TOMORROW));
+        taskService.save(newTask(null));
+
+        //when
+        double pending = registry.get("deadlines.pending").gauge().value();
+        clock.set(Instant.parse("2025-01-12T00:00:05Z"));
+        scheduler.fireDue();
+
+        //then
+        Assertions.assertThat(pending).isEqualTo(2);
+        Assertions.assertThat(registry.get("deadlines.lag").timer().count()).isEqualTo(2);
+        Assertions.assertThat(registry.get("deadlines.lag").timer().max(TimeUnit.SECONDS)).isGreaterThanOrEqualTo(5);
+    }
+
+    private static Task newTask(LocalDate dueDate) {
+        return Task.builder()
+                .ownerId(1)
+                .title("task")
+                .dueDate(dueDate)
+                .build();
+    }
+
+    private static class MutableClock extends Clock {
+        private volatile Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void set(Instant instant) {
+            now = instant;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
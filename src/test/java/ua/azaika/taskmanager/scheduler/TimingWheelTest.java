@@ -0,0 +1,115 @@
+package ua.azaika.taskmanager.scheduler;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+class TimingWheelTest {
+
+    @Test
+    void givenDeadlinesAcrossAllLevels_whenAdvanced_ShouldFireEachOnItsTickAndNeverEarly() {
+        //given
+        TimingWheel<Integer> wheel = new TimingWheel<>(10, 2, 3, 0);
+        Random random = new Random(42);
+        Map<Integer, Long> deadlines = new HashMap<>();
+        for (int key = 0; key < 2_000; key++) {
+            long deadline = 1 + random.nextInt(5_000);
+            deadlines.put(key, deadline);
+            wheel.schedule(key, deadline);
+        }
+
+        //when
+        Map<Integer, Long> firedAt = new HashMap<>();
+        for (long now = 0; now <= 5_010; now += 10) {
+            long time = now;
+            wheel.advance(now, (key, deadline) -> firedAt.put(key, time));
+        }
+
+        //then
+        Assertions.assertThat(firedAt).hasSameSizeAs(deadlines);
+        Assertions.assertThat(wheel.size()).isZero();
+        deadlines.forEach((key, deadline) -> Assertions.assertThat(firedAt.get(key))
+                .isGreaterThanOrEqualTo(deadline)
+                .isLessThan(deadline + 10));
+    }
+
+    @Test
+    void givenDeadlineBeyondWheelRange_whenAdvanced_ShouldFireOnTime() {
+        //given
+        TimingWheel<String> wheel = new TimingWheel<>(1, 2, 2, 0);
+        wheel.schedule("far", 100);
+
+        //when
+        List<Long> firedAt = new ArrayList<>();
+        for (long now = 1; now <= 120; now++) {
+            long time = now;
+            wheel.advance(now, (key, deadline) -> firedAt.add(time));
+        }
+
+        //then
+        Assertions.assertThat(firedAt).containsExactly(100L);
+    }
+
+    @Test
+    void givenScheduledKey_whenRescheduledOrCancelled_ShouldFireOnlyTheLatestTimeout() {
+        //given
+        TimingWheel<String> wheel = new TimingWheel<>(1, 4, 3, 0);
+        wheel.schedule("moved", 50);
+        wheel.schedule("cancelled", 60);
+
+        //when
+        wheel.schedule("moved", 200);
+        boolean cancelled = wheel.cancel("cancelled");
+        List<String> fired = new ArrayList<>();
+        wheel.advance(100, (key, deadline) -> fired.add(key));
+        int firedLater = wheel.advance(200, (key, deadline) -> fired.add(key + "@" + deadline));
+
+        //then
+        Assertions.assertThat(cancelled).isTrue();
+        Assertions.assertThat(wheel.cancel("cancelled")).isFalse();
+        Assertions.assertThat(firedLater).isEqualTo(1);
+        Assertions.assertThat(fired).containsExactly("moved@200");
+    }
+
+    @Test
+    void givenPastDeadline_whenScheduled_ShouldFireOnNextTick() {
+        //given
+        TimingWheel<String> wheel = new TimingWheel<>(1_000, 8, 4, 10_000);
+
+        //when
+        wheel.schedule("late", 2_000);
+
+        //then
+        Assertions.assertThat(wheel.advance(10_999, (key, deadline) -> { })).isZero();
+        Assertions.assertThat(wheel.advance(11_000, (key, deadline) -> { })).isEqualTo(1);
+    }
+
+    @Test
+    void givenCallbackThatSchedulesAndCancels_whenAdvanced_ShouldApplyItsChanges() {
+        //given
+        TimingWheel<Integer> wheel = new TimingWheel<>(1, 4, 2, 0);
+        for (int key = 0; key < 10; key++) {
+            wheel.schedule(key, 5);
+        }
+        wheel.schedule(100, 6);
+
+        //when
+        List<Integer> fired = new ArrayList<>();
+        wheel.advance(6, (key, deadline) -> {
+            fired.add(key);
+            if (key < 10) {
+                wheel.cancel(100);
+                wheel.schedule(1_000 + key, 6);
+            }
+        });
+
+        //then
+        Assertions.assertThat(fired).hasSize(20).doesNotContain(100);
+        Assertions.assertThat(wheel.size()).isZero();
+    }
+}
@@ -0,0 +1,121 @@
+package ua.azaika.taskmanager.security;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+class PasswordHasherTest {
+    private static final BCryptPasswordEncoder ENCODER = new BCryptPasswordEncoder(4);
+
+    @Test
+    void givenPassword_whenHash_ShouldProduceMatchingHashOffTheCallingThread() throws Exception {
+        //given
+        try (PasswordHasher hasher = new PasswordHasher(ENCODER, 2, 10)) {
+            Thread caller = Thread.currentThread();
+
+            //when
+            CompletableFuture<Thread> hashingThread = hasher.hash("password").thenApply(hash -> {
+                Assertions.assertThat(ENCODER.matches("password", hash)).isTrue();
+                return Thread.currentThread();
+            });
+
+            //then
+            Assertions.assertThat(hashingThread.get(5, TimeUnit.SECONDS)).isNotSameAs(caller);
+            Assertions.assertThat(hasher.hash(null).get()).isNull();
+        }
+    }
+
+    @Test
+    void givenBatch_whenHashAll_ShouldKeepOrderAndNulls() throws Exception {
+        //given
+        try (PasswordHasher hasher = new PasswordHasher(ENCODER, 3, 10)) {
+            List<String> passwords = Arrays.asList("a", null, "b", "c", "d", null, "e");
+
+            //when
+            List<String> hashes = hasher.hashAll(passwords).get(10, TimeUnit.SECONDS);
+
+            //then
+            Assertions.assertThat(hashes).hasSize(passwords.size());
+            for (int i = 0; i < passwords.size(); i++) {
+                if (passwords.get(i) == null) {
+                    Assertions.assertThat(hashes.get(i)).isNull();
+                } else {
+                    Assertions.assertThat(ENCODER.matches(passwords.get(i), hashes.get(i))).isTrue();
+                }
+            }
+        }
+    }
+
+    @Test
+    void givenFullQueue_whenHash_ShouldRejectImmediately() throws Exception {
+        //given
+        CountDownLatch release = new CountDownLatch(1);
+        try (PasswordHasher hasher = new PasswordHasher(new BlockingEncoder(release), 1, 1)) {
+            CompletableFuture<String> running = hasher.hash("running");
+            CompletableFuture<String> queued = hasher.hash("queued");
+
+            //when-then
+            Assertions.assertThatThrownBy(() -> hasher.hash("rejected"))
+                    .isInstanceOf(RejectedExecutionException.class);
+            release.countDown();
+            Assertions.assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo("hash:running");
+            Assertions.assertThat(queued.get(5, TimeUnit.SECONDS)).isEqualTo("hash:queued");
+        }
+    }
+
+    @Test
+    void givenBatchHoldingEveryBatchThread_whenHashSingle_ShouldNotWaitForBatch() throws Exception {
+        //given
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder batchBlockingEncoder = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                return rawPassword.toString().startsWith("batch") ? new BlockingEncoder(release).encode(rawPassword)
+                        : "hash:" + rawPassword;
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return encode(rawPassword).equals(encodedPassword);
+            }
+        };
+        try (PasswordHasher hasher = new PasswordHasher(batchBlockingEncoder, 2, 10)) {
+            CompletableFuture<List<String>> batch = hasher.hashAll(List.of("batch1", "batch2", "batch3", "batch4"));
+
+            //when
+            CompletableFuture<String> single = hasher.hash("single");
+
+            //then
+            Assertions.assertThat(single.get(5, TimeUnit.SECONDS)).isEqualTo("hash:single");
+            Assertions.assertThat(batch).isNotDone();
+            release.countDown();
+            Assertions.assertThat(batch.get(5, TimeUnit.SECONDS)).hasSize(4);
+        }
+    }
+
+    private record BlockingEncoder(CountDownLatch release) implements PasswordEncoder {
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "hash:" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encode(rawPassword).equals(encodedPassword);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package ua.azaika.taskmanager.service;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ua.azaika.taskmanager.model.User;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class CachingUserServiceTest {
+
+    @Test
+    void givenCachedUser_whenFoundAgain_ShouldNotHitBackingStore() {
+        //given
+        SlowUserService backing = new SlowUserService();
+        CachingUserService userService = new CachingUserService(backing, 100, Duration.ZERO, false);
+        User saved = userService.save(newUser("user1"));
+
+        //when
+        userService.findById(saved.getId());
+        User found = userService.findById(saved.getId());
+
+        //then
+        CacheStats stats = userService.byIdCache().stats();
+        Assertions.assertThat(found).isEqualTo(saved);
+        Assertions.assertThat(backing.findByIdCalls.get()).isEqualTo(1);
+        Assertions.assertThat(stats.hitCount()).isEqualTo(1);
+        Assertions.assertThat(stats.missCount()).isEqualTo(1);
+    }
+
+    @Test
+    void givenCachedUser_whenUpdated_ShouldInvalidateIdAndBothEmails() {
+        //given
+        CachingUserService userService = new CachingUserService(new UserServiceImpl(), 100, Duration.ZERO, false);
+        User saved = userService.save(newUser("user1"));
+        userService.findById(saved.getId());
+        userService.findByEmail("user1@god.com");
+
+        //when
+        userService.update(saved.getId(), newUser("renamed"));
+
+        //then
+        Assertions.assertThat(userService.findById(saved.getId()).getUserName()).isEqualTo("renamed");
+        Assertions.assertThat(userService.findByEmail("user1@god.com")).isEmpty();
+        Assertions.assertThat(userService.findByEmail("renamed@god.com")).extracting(User::getId)
+                .containsExactly(saved.getId());
+    }
+
+    @Test
+    void givenCachedUser_whenDeleted_ShouldNotBeFound() {
+        //given
+        CachingUserService userService = new CachingUserService(new UserServiceImpl(), 100, Duration.ZERO, false);
+        User saved = userService.save(newUser("user1"));
+        userService.findById(saved.getId());
+        userService.findByEmail("user1@god.com");
+
+        //when
+        userService.deleteById(saved.getId());
+
+        //then
+        Assertions.assertThat(userService.findById(saved.getId())).isNull();
+        Assertions.assertThat(userService.findByEmail("user1@god.com")).isEmpty();
+    }
+
+    @Test
+    void givenCaseInsensitiveEmails_whenEmailChanges_ShouldInvalidateAnySpelling() {
+        //given
+        CachingUserService userService = new CachingUserService(new UserServiceImpl(true), 100, Duration.ZERO, true);
+        User saved = userService.save(newUser("user1"));
+        Assertions.assertThat(userService.findByEmail("USER1@god.com")).hasSize(1);
+
+        //when
+        userService.deleteById(saved.getId());
+
+        //then
+        Assertions.assertThat(userService.findByEmail("User1@God.com")).isEmpty();
+    }
+
+    @Test
+    void givenMoreUsersThanMaximumSize_whenAllRead_ShouldEvict() {
+        //given
+        CachingUserService userService = new CachingUserService(new UserServiceImpl(), 10, Duration.ZERO, false);
+        for (int i = 0; i < 100; i++) {
+            userService.save(newUser("user" + i));
+        }
+
+        //when
+        for (int id = 1; id <= 100; id++) {
+            userService.findById(id);
+        }
+        userService.byIdCache().cleanUp();
+
+        //then
+        Assertions.assertThat(userService.byIdCache().estimatedSize()).isLessThanOrEqualTo(10);
+        Assertions.assertThat(userService.byIdCache().stats().evictionCount()).isGreaterThanOrEqualTo(90);
+    }
+
+    @Test
+    void givenConcurrentMissesOnSameId_whenFound_ShouldLoadOnce() throws Exception {
+        //given
+        SlowUserService backing = new SlowUserService();
+        CachingUserService userService = new CachingUserService(backing, 100, Duration.ZERO, false);
+        User saved = userService.save(newUser("user1"));
+        int readers = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(readers);
+        CountDownLatch start = new CountDownLatch(1);
+
+        //when
+        List<Future<User>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < readers; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return userService.findById(saved.getId());
+                }));
+            }
+            start.countDown();
+            for (Future<User> result : results) {
+                Assertions.assertThat(result.get(10, TimeUnit.SECONDS)).isEqualTo(saved);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        //then
+        Assertions.assertThat(backing.findByIdCalls.get()).isEqualTo(1);
+    }
+
+    private static User newUser(String userName) {
+        return User.builder()
+                .userName(userName)
+                .email(userName + "@god.com")
+                .password("password")
+                .build();
+    }
+
+    private static class SlowUserService extends UserServiceImpl {
+        private final AtomicInteger findByIdCalls = new AtomicInteger();
+
+        @Override
+        public User findById(Integer id) {
+            findByIdCalls.incrementAndGet();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.findById(id);
+        }
+    }
+}
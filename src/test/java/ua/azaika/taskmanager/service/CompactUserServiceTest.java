@@ -0,0 +1,43 @@
+package ua.azaika.taskmanager.service;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ua.azaika.taskmanager.model.User;
+
+/**
+ * Runs the {@link UserServiceTest} contract against the off-heap store.
+ */
+class CompactUserServiceTest extends UserServiceTest {
+
+    @Override
+    UserService createUserService(boolean caseInsensitiveEmail) {
+        return new CompactUserService(caseInsensitiveEmail);
+    }
+
+    @Test
+    void givenManyUpdates_whenSlabIsCompacted_ShouldKeepLatestUsers() {
+        //given
+        CompactUserService userService = new CompactUserService();
+        for (int i = 0; i < 100; i++) {
+            userService.save(User.builder().userName("User" + i).email("user" + i + "@god.com").password("password").build());
+        }
+
+        //when
+        for (int round = 0; round < 200; round++) {
+            for (int id = 1; id <= 100; id++) {
+                userService.update(id, User.builder()
+                        .userName("User" + id + "-" + round)
+                        .email("user" + id + "@god.com")
+                        .password("x".repeat(1000))
+                        .build());
+            }
+        }
+
+        //then
+        Assertions.assertThat(userService.getAll()).hasSize(100)
+                .allSatisfy(user -> Assertions.assertThat(user.getUserName()).endsWith("-199"));
+        Assertions.assertThat(userService.findByUserName("User42-199")).extracting(User::getId).containsExactly(42);
+        Assertions.assertThat(userService.findByUserName("User42-198")).isEmpty();
+        Assertions.assertThat(userService.footprintBytes()).isLessThan(8L * RecordSlab.CHUNK_BYTES);
+    }
+}
@@ -0,0 +1,39 @@
+package ua.azaika.taskmanager.service;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+class IntLongHashMapTest {
+
+    @Test
+    void givenRandomPutsAndRemoves_whenComparedWithHashMap_ShouldHoldSameEntries() {
+        //given
+        IntLongHashMap map = new IntLongHashMap(16);
+        Map<Integer, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        //when
+        for (int i = 0; i < 200_000; i++) {
+            int key = random.nextInt(5_000) - 2_500;
+            if (random.nextInt(3) == 0) {
+                Long previous = expected.remove(key);
+                Assertions.assertThat(map.remove(key)).isEqualTo(previous == null ? IntLongHashMap.MISSING : previous);
+            } else {
+                long value = random.nextLong();
+                Long previous = expected.put(key, value);
+                Assertions.assertThat(map.put(key, value)).isEqualTo(previous == null ? IntLongHashMap.MISSING : previous);
+            }
+        }
+
+        //then
+        Assertions.assertThat(map.size()).isEqualTo(expected.size());
+        for (int key = -2_500; key < 2_500; key++) {
+            Long value = expected.get(key);
+            Assertions.assertThat(map.get(key)).isEqualTo(value == null ? IntLongHashMap.MISSING : value);
+        }
+    }
+}
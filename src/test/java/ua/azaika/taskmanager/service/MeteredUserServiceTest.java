@@ -0,0 +1,119 @@
+package ua.azaika.taskmanager.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ua.azaika.taskmanager.model.User;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+class MeteredUserServiceTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void givenCalls_whenRecorded_ShouldCountEachMethodSeparately() {
+        //given
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MeteredUserService userService = new MeteredUserService(new UserServiceImpl(), registry);
+
+        //when
+        User saved = userService.save(newUser("user1"));
+        userService.save(newUser("user2"));
+        userService.findById(saved.getId());
+        userService.update(saved.getId(), newUser("renamed"), 1);
+
+        //then
+        Assertions.assertThat(registry.get("users.service").tag("method", "save").timer().count()).isEqualTo(2);
+        Assertions.assertThat(registry.get("users.index.lookups").tags("index", "id", "result", "hit").counter().count())
+                .isEqualTo(1);
+        Assertions.assertThat(registry.get("users.service").tag("method", "update").timer().count()).isEqualTo(1);
+        Assertions.assertThat(registry.get("users.service").tag("method", "getAll").timer().count()).isZero();
+        Assertions.assertThat(registry.get("users.size").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    void givenLookups_whenRecorded_ShouldCountIndexHitsAndMisses() {
+        //given
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MeteredUserService userService = new MeteredUserService(new UserServiceImpl(), registry);
+        userService.save(newUser("user1"));
+
+        //when
+        userService.findByUserName("user1");
+        userService.findByUserName("ghost");
+        userService.findByEmail("ghost@god.com");
+
+        //then
+        Assertions.assertThat(registry.get("users.index.lookups").tags("index", "userName", "result", "hit").counter().count())
+                .isEqualTo(1);
+        Assertions.assertThat(registry.get("users.index.lookups").tags("index", "userName", "result", "miss").counter().count())
+                .isEqualTo(1);
+        Assertions.assertThat(registry.get("users.index.lookups").tags("index", "email", "result", "miss").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void givenManyLookups_whenRecorded_ShouldCountAllButTimeOnlyASample() {
+        //given
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MeteredUserService userService = new MeteredUserService(new UserServiceImpl(), registry);
+        User saved = userService.save(newUser("user1"));
+
+        //when
+        for (int i = 0; i < 1_600; i++) {
+            userService.findById(saved.getId());
+        }
+
+        //then
+        Assertions.assertThat(registry.get("users.index.lookups").tags("index", "id", "result", "hit").counter().count())
+                .isEqualTo(1_600);
+        Assertions.assertThat(registry.get("users.service").tag("method", "findById").timer().count())
+                .isBetween(1L, 1_600L / MeteredUserService.LOOKUP_SAMPLE_RATE * 3);
+    }
+
+    @Test
+    void givenFailingCall_whenRecorded_ShouldStillTimeIt() {
+        //given
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MeteredUserService userService = new MeteredUserService(new UserServiceImpl(), registry);
+        User saved = userService.save(newUser("user1"));
+
+        //when
+        Assertions.assertThatThrownBy(() -> userService.update(saved.getId(), newUser("renamed"), 5))
+                .isInstanceOf(VersionConflictException.class);
+
+        //then
+        Assertions.assertThat(registry.get("users.service").tag("method", "update").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void givenPersistentStoreBehindLayers_whenClosed_ShouldCloseItsLog() throws IOException {
+        //given
+        PersistentUserService persistent = new PersistentUserService(new UserServiceImpl(), directory,
+                Duration.ofHours(1), Long.MAX_VALUE);
+        MeteredUserService userService = new MeteredUserService(
+                new CachingUserService(persistent, 100, Duration.ZERO, false), new SimpleMeterRegistry());
+        userService.save(newUser("user1"));
+
+        //when
+        userService.close();
+
+        //then
+        Assertions.assertThatThrownBy(() -> persistent.save(newUser("user2")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("closed");
+    }
+
+    private static User newUser(String userName) {
+        return User.builder()
+                .userName(userName)
+                .email(userName + "@god.com")
+                .password("password")
+                .build();
+    }
+}
@@ -0,0 +1,216 @@
+package ua.azaika.taskmanager.service;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ua.azaika.taskmanager.model.User;
+import ua.azaika.taskmanager.persistence.UserSnapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+class PersistentUserServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private PersistentUserService userService;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (userService != null) userService.close();
+    }
+
+    @Test
+    void givenSavedUpdatedAndDeletedUsers_whenReopened_ShouldRecoverSameState() throws IOException {
+        //given
+        userService = open();
+        User user1 = userService.save(newUser("user1"));
+        User user2 = userService.save(newUser("user2"));
+        userService.save(newUser("user3"));
+        userService.update(user2.getId(), newUser("renamed"));
+        userService.deleteById(3);
+        List<User> before = userService.getAll();
+
+        //when
+        userService.close();
+        userService = open();
+
+        //then
+        Assertions.assertThat(userService.getAll()).isEqualTo(before);
+        Assertions.assertThat(userService.findByUserName("renamed")).extracting(User::getId).containsExactly(user2.getId());
+        Assertions.assertThat(userService.findById(user1.getId())).isEqualTo(user1);
+        Assertions.assertThat(userService.save(newUser("user4")).getId()).isEqualTo(4);
+    }
+
+    @Test
+    void givenSnapshotAndLaterWrites_whenReopened_ShouldRecoverFromSnapshotAndLogTail() throws IOException {
+        //given
+        userService = open();
+        for (int i = 0; i < 100; i++) {
+            userService.save(newUser("user" + i));
+        }
+        userService.snapshot();
+        userService.deleteById(1);
+        userService.save(newUser("afterSnapshot"));
+        List<User> before = userService.getAll();
+
+        //when
+        userService.close();
+        userService = open();
+
+        //then
+        Assertions.assertThat(userService.getAll()).isEqualTo(before);
+        Assertions.assertThat(listFiles("snapshot-")).hasSize(1);
+        Assertions.assertThat(userService.getRecoveryTime()).isPositive();
+    }
+
+    @Test
+    void givenTornLogTail_whenReopened_ShouldKeepCompleteRecordsOnly() throws IOException {
+        //given
+        userService = open();
+        userService.save(newUser("user1"));
+        userService.save(newUser("user2"));
+        userService.close();
+        Path segment = listFiles("wal-").getLast();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        //when
+        userService = open();
+
+        //then
+        Assertions.assertThat(userService.getAll()).extracting(User::getUserName).containsExactly("user1");
+    }
+
+    @Test
+    void givenConcurrentWriters_whenReopened_ShouldRecoverEveryAcknowledgedWrite() throws Exception {
+        //given
+        userService = open();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 200; i++) {
+                    userService.save(newUser("user" + thread + "-" + i));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        //when
+        userService.close();
+        userService = open();
+
+        //then
+        Assertions.assertThat(userService.getAll()).hasSize(1600);
+    }
+
+    @Test
+    void givenSnapshot_whenReopened_ShouldServeAndChangeSnapshotUsersBeforeAndAfterHydration() throws IOException {
+        //given
+        userService = open();
+        for (int i = 0; i < 1000; i++) {
+            userService.save(newUser("user" + i));
+        }
+        userService.snapshot();
+        userService.close();
+
+        //when
+        userService = open();
+        User found = userService.findById(500);
+        userService.deleteById(10);
+        userService.update(20, newUser("renamed"));
+        userService.awaitHydration();
+        userService.close();
+        userService = open();
+
+        //then
+        Assertions.assertThat(found.getUserName()).isEqualTo("user499");
+        Assertions.assertThat(userService.findById(10)).isNull();
+        Assertions.assertThat(userService.findById(20).getUserName()).isEqualTo("renamed");
+        Assertions.assertThat(userService.getAll()).hasSize(999);
+        Assertions.assertThat(userService.findByEmail("user999@god.com")).extracting(User::getId).containsExactly(1000);
+        Assertions.assertThat(userService.save(newUser("next")).getId()).isEqualTo(1001);
+    }
+
+    @Test
+    void givenSnapshotFile_whenMapped_ShouldMaterializeSingleUsersById() throws IOException {
+        //given
+        List<User> users = new ArrayList<>();
+        for (int i = 1; i <= 100; i += 2) {
+            User user = newUser("user" + i);
+            user.setId(i);
+            users.add(user);
+        }
+        UserSnapshot.write(directory, 7, 100, users);
+
+        //when
+        try (UserSnapshot snapshot = UserSnapshot.openLatest(directory).orElseThrow()) {
+
+            //then
+            Assertions.assertThat(snapshot.generation()).isEqualTo(7);
+            Assertions.assertThat(snapshot.lastAssignedId()).isEqualTo(100);
+            Assertions.assertThat(snapshot.size()).isEqualTo(50);
+            Assertions.assertThat(snapshot.get(51)).isEqualTo(users.get(25));
+            Assertions.assertThat(snapshot.get(52)).isNull();
+            Assertions.assertThat(snapshot.get(1000)).isNull();
+            List<User> all = new ArrayList<>();
+            snapshot.forEach(all::add);
+            Assertions.assertThat(all).isEqualTo(users);
+        }
+    }
+
+    @Test
+    void givenDamagedNewestSnapshot_whenReopened_ShouldFailInsteadOfFallingBackToOlderSnapshot() throws IOException {
+        //given
+        User user = newUser("user1");
+        user.setId(1);
+        UserSnapshot.write(directory, 3, 1, List.of(user));
+        Path newest = UserSnapshot.write(directory, 7, 1, List.of(user));
+        try (FileChannel channel = FileChannel.open(newest, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3, 4}), 8);
+        }
+
+        //when-then
+        Assertions.assertThatThrownBy(this::open)
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining(newest.getFileName().toString());
+    }
+
+    private PersistentUserService open() throws IOException {
+        return new PersistentUserService(new UserServiceImpl(), directory, Duration.ofHours(1), 64L << 20);
+    }
+
+    private List<Path> listFiles(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(prefix)).sorted().toList();
+        }
+    }
+
+    private static User newUser(String userName) {
+        return User.builder()
+                .userName(userName)
+                .email(userName + "@god.com")
+                .password("password")
+                .build();
+    }
+}
@@ -0,0 +1,57 @@
+package ua.azaika.taskmanager.service;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+class PostingListTest {
+
+    @Test
+    void givenRandomAddsAndRemoves_whenComparedWithTreeSet_ShouldFindSameNextIds() {
+        //given
+        PostingList postings = new PostingList();
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(42);
+
+        //when
+        // Ids cluster in the first containers, so they switch between array and bitmap
+        // layouts several times during the run.
+        for (int i = 0; i < 300_000; i++) {
+            int id = random.nextInt(3 * 65_536);
+            if (random.nextInt(i < 150_000 ? 4 : 2) == 0) {
+                postings.remove(id);
+                expected.remove(id);
+            } else {
+                postings.add(id);
+                expected.add(id);
+            }
+        }
+
+        //then
+        Assertions.assertThat(postings.cardinality()).isEqualTo(expected.size());
+        for (int id = 0; id <= 3 * 65_536; id += 7) {
+            Integer next = expected.ceiling(id);
+            Assertions.assertThat(postings.nextAtLeast(id)).isEqualTo(next == null ? -1 : next);
+        }
+    }
+
+    @Test
+    void givenAllIdsRemoved_whenNextAtLeast_ShouldReturnNothing() {
+        //given
+        PostingList postings = new PostingList();
+        for (int id = 1; id <= 10_000; id++) {
+            postings.add(id * 13);
+        }
+
+        //when
+        for (int id = 1; id <= 10_000; id++) {
+            postings.remove(id * 13);
+        }
+
+        //then
+        Assertions.assertThat(postings.isEmpty()).isTrue();
+        Assertions.assertThat(postings.nextAtLeast(0)).isEqualTo(-1);
+    }
+}
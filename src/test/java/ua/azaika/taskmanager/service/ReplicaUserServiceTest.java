@@ -0,0 +1,106 @@
+package ua.azaika.taskmanager.service;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ua.azaika.taskmanager.model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+class ReplicaUserServiceTest {
+
+    private final List<String> changes = new ArrayList<>();
+    private ReplicaUserService replica;
+
+    @BeforeEach
+    void setUp() {
+        replica = new ReplicaUserService(new UserServiceImpl());
+        replica.addChangeListener(new UserChangeListener() {
+            @Override
+            public void onSave(User user) {
+                changes.add("saved " + user.getUserName());
+            }
+
+            @Override
+            public void onUpdate(User previous, User current) {
+                changes.add("updated " + previous.getUserName() + " to " + current.getUserName());
+            }
+
+            @Override
+            public void onDelete(User removed) {
+                changes.add("deleted " + removed.getUserName());
+            }
+        });
+    }
+
+    @Test
+    void givenLeaderCopies_whenApply_ShouldKeepLeaderIdsAndSkipCopiesThatAreNotNewer() {
+        //given
+        replica.apply(leaderCopy(7, "user", 2), false);
+
+        //when
+        replica.apply(leaderCopy(7, "older", 1), false);
+        replica.apply(leaderCopy(7, "same", 2), false);
+        replica.apply(leaderCopy(7, "newer", 3), false);
+
+        //then
+        User stored = replica.findById(7);
+        Assertions.assertThat(stored.getUserName()).isEqualTo("newer");
+        Assertions.assertThat(stored.getVersion()).isEqualTo(3);
+        Assertions.assertThat(replica.findByUserName("user")).isEmpty();
+        Assertions.assertThat(changes).containsExactly("saved user", "updated user to newer");
+    }
+
+    @Test
+    void givenForce_whenApplyOlderCopy_ShouldReplaceStoredUser() {
+        //given
+        replica.apply(leaderCopy(1, "user", 5), false);
+
+        //when
+        replica.apply(leaderCopy(1, "snapshot", 4), true);
+
+        //then
+        Assertions.assertThat(replica.findById(1).getUserName()).isEqualTo("snapshot");
+    }
+
+    @Test
+    void givenSnapshotIds_whenRetainOnly_ShouldDeleteOtherUsers() {
+        //given
+        replica.apply(leaderCopy(1, "user1", 1), false);
+        replica.apply(leaderCopy(2, "user2", 1), false);
+        replica.apply(leaderCopy(3, "user3", 1), false);
+
+        //when
+        replica.retainOnly(Set.of(1, 3));
+        replica.applyDeletion(3);
+        replica.applyDeletion(4);
+
+        //then
+        Assertions.assertThat(replica.getAll()).extracting(User::getId).containsExactly(1);
+        Assertions.assertThat(changes).endsWith("deleted user2", "deleted user3");
+    }
+
+    @Test
+    void givenReplica_whenWrite_ShouldRefuse() {
+        //given
+        User user = leaderCopy(null, "user", 0);
+
+        //when //then
+        Assertions.assertThatThrownBy(() -> replica.save(user)).isInstanceOf(UnsupportedOperationException.class);
+        Assertions.assertThatThrownBy(() -> replica.update(1, user)).isInstanceOf(UnsupportedOperationException.class);
+        Assertions.assertThatThrownBy(() -> replica.deleteById(1)).isInstanceOf(UnsupportedOperationException.class);
+        Assertions.assertThat(replica.count()).isZero();
+    }
+
+    private static User leaderCopy(Integer id, String userName, long version) {
+        User user = User.builder()
+                .userName(userName)
+                .email(userName + "@test.com")
+                .build();
+        user.setId(id);
+        user.setVersion(version);
+        return user;
+    }
+}
@@ -0,0 +1,98 @@
+package ua.azaika.taskmanager.service;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ua.azaika.taskmanager.model.User;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Runs the {@link UserServiceTest} contract against the sharded store. Test methods run
+ * on one thread and therefore write to one shard; the tests below spread users over several.
+ */
+class ShardedUserServiceTest extends UserServiceTest {
+
+    @Override
+    UserService createUserService(boolean caseInsensitiveEmail) {
+        return new ShardedUserService(4, caseInsensitiveEmail);
+    }
+
+    @Test
+    void givenUsersSavedOnSeveralShards_whenGetAllAndGetPage_ShouldMergeInIdOrder() throws Exception {
+        //given
+        ShardedUserService userService = new ShardedUserService(4, false);
+        List<User> saved = saveFromThreads(userService, 8, 25, "User");
+        userService.deleteById(saved.get(7).getId());
+
+        //when
+        List<User> all = userService.getAll();
+        List<User> paged = new ArrayList<>();
+        Integer after = null;
+        for (List<User> page = userService.getPage(null, 30); !page.isEmpty(); page = userService.getPage(after, 30)) {
+            paged.addAll(page);
+            after = page.getLast().getId();
+        }
+
+        //then
+        Assertions.assertThat(saved.stream().map(user -> (user.getId() - 1) / ShardedUserService.BLOCK_SIZE).distinct())
+                .hasSizeGreaterThan(1);
+        Assertions.assertThat(all).hasSize(199).isSortedAccordingTo(Comparator.comparing(User::getId));
+        Assertions.assertThat(paged).isEqualTo(all);
+        Assertions.assertThat(userService.count()).isEqualTo(199);
+        Assertions.assertThat(userService.findById(saved.get(3).getId())).isSameAs(saved.get(3));
+        Assertions.assertThat(userService.findById(saved.get(7).getId())).isNull();
+    }
+
+    @Test
+    void givenUsersOnSeveralShards_whenFindAndSearch_ShouldSeeUsersOfEveryShard() throws Exception {
+        //given
+        ShardedUserService userService = new ShardedUserService(4, true);
+        saveFromThreads(userService, 4, 1, "Alice");
+        saveFromThreads(userService, 4, 1, "Malice");
+        List<User> alices = userService.findByUserName("Alice0-0");
+        long versionBefore = userService.collectionVersion();
+
+        //when
+        List<User> found = userService.search("alic", 6);
+        userService.update(alices.getFirst().getId(), User.builder()
+                .userName("Bob").email("bob@test.com").password("password").build());
+
+        //then
+        Assertions.assertThat(found).hasSize(6);
+        Assertions.assertThat(found.subList(0, 4)).extracting(User::getUserName).allMatch(name -> name.startsWith("Alice"))
+                .isSortedAccordingTo(Comparator.naturalOrder());
+        Assertions.assertThat(found.subList(4, 6)).extracting(User::getUserName).allMatch(name -> name.startsWith("Malice"));
+        Assertions.assertThat(userService.findByEmail("MALICE3-0@TEST.COM")).extracting(User::getUserName)
+                .containsExactly("Malice3-0");
+        Assertions.assertThat(userService.findByUserName("Alice0-0")).isEmpty();
+        Assertions.assertThat(userService.findByUserName("Bob")).extracting(User::getId)
+                .containsExactly(alices.getFirst().getId());
+        Assertions.assertThat(userService.collectionVersion()).isGreaterThan(versionBefore);
+    }
+
+    /**
+     * Saves users from {@code threads} threads, which the store maps to different shards.
+     */
+    private static List<User> saveFromThreads(UserService userService, int threads, int usersPerThread,
+                                              String namePrefix) throws InterruptedException {
+        ConcurrentLinkedQueue<User> saved = new ConcurrentLinkedQueue<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            Thread writer = Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < usersPerThread; i++) {
+                    String name = namePrefix + thread + "-" + i;
+                    saved.add(userService.save(User.builder()
+                            .userName(name)
+                            .email(name.toLowerCase() + "@test.com")
+                            .password("password")
+                            .build()));
+                }
+            });
+            writer.join();
+        }
+        return new ArrayList<>(saved);
+    }
+}
@@ -0,0 +1,165 @@
+package ua.azaika.taskmanager.service;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ua.azaika.taskmanager.model.Task;
+import ua.azaika.taskmanager.model.TaskPriority;
+import ua.azaika.taskmanager.model.TaskStatus;
+import ua.azaika.taskmanager.model.User;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+class TaskServiceTest {
+    private static final LocalDate TODAY = LocalDate.of(2025, 1, 10);
+
+    private UserService userService;
+    private TaskService taskService;
+
+    @BeforeEach
+    void setUp() {
+        userService = new UserServiceImpl();
+        taskService = new TaskServiceImpl(userService);
+    }
+
+    @Test
+    void givenTaskWithoutStatusAndPriority_whenSave_ShouldApplyDefaults() {
+        //given
+        Task task = newTask(1, "write docs", null, null);
+
+        //when
+        Task saved = taskService.save(task);
+
+        //then
+        Assertions.assertThat(saved.getId()).isEqualTo(1);
+        Assertions.assertThat(saved.getStatus()).isEqualTo(TaskStatus.TODO);
+        Assertions.assertThat(saved.getPriority()).isEqualTo(TaskPriority.MEDIUM);
+        Assertions.assertThat(taskService.findById(1)).isEqualTo(saved);
+    }
+
+    @Test
+    void givenTasksOfSeveralOwners_whenFindByOwnerAndStatus_ShouldReturnMatchingSortedByDueDate() {
+        //given
+        taskService.save(newTask(1, "later", TaskStatus.TODO, TODAY.plusDays(5)));
+        taskService.save(newTask(1, "undated", TaskStatus.TODO, null));
+        taskService.save(newTask(1, "sooner", TaskStatus.TODO, TODAY.plusDays(1)));
+        taskService.save(newTask(1, "done", TaskStatus.DONE, TODAY));
+        taskService.save(newTask(2, "other owner", TaskStatus.TODO, TODAY));
+
+        //when
+        List<Task> todo = taskService.findByOwner(1, TaskStatus.TODO);
+        List<Task> all = taskService.findByOwner(1, null);
+
+        //then
+        Assertions.assertThat(todo).extracting(Task::getTitle).containsExactly("sooner", "later", "undated");
+        Assertions.assertThat(all).extracting(Task::getTitle).containsExactly("done", "sooner", "later", "undated");
+        Assertions.assertThat(taskService.findByOwner(3, null)).isEmpty();
+    }
+
+    @Test
+    void givenTask_whenUpdateStatusAndDueDate_ShouldMoveItInListings() {
+        //given
+        Task first = taskService.save(newTask(1, "first", TaskStatus.TODO, TODAY));
+        taskService.save(newTask(1, "second", TaskStatus.TODO, TODAY.plusDays(1)));
+
+        //when
+        Task updated = taskService.update(first.getId(), newTask(99, "first", TaskStatus.IN_PROGRESS, TODAY.plusDays(2)));
+
+        //then
+        Assertions.assertThat(updated.getOwnerId()).isEqualTo(1);
+        Assertions.assertThat(taskService.findByOwner(1, TaskStatus.TODO)).extracting(Task::getTitle).containsExactly("second");
+        Assertions.assertThat(taskService.findByOwner(1, TaskStatus.IN_PROGRESS)).containsExactly(updated);
+        Assertions.assertThat(taskService.findByOwner(1, null)).extracting(Task::getTitle).containsExactly("second", "first");
+        Assertions.assertThat(taskService.update(42, newTask(1, "missing", null, null))).isNull();
+    }
+
+    @Test
+    void givenTask_whenDeleteById_ShouldRemoveItFromListings() {
+        //given
+        Task task = taskService.save(newTask(1, "task", TaskStatus.TODO, TODAY));
+
+        //when
+        taskService.deleteById(task.getId());
+
+        //then
+        Assertions.assertThat(taskService.findById(task.getId())).isNull();
+        Assertions.assertThat(taskService.findByOwner(1, null)).isEmpty();
+        Assertions.assertThat(taskService.findByOwner(1, TaskStatus.TODO)).isEmpty();
+    }
+
+    @Test
+    void givenUserWithTasks_whenUserDeleted_ShouldDeleteOnlyTheirTasks() {
+        //given
+        User owner = userService.save(User.builder().userName("owner").build());
+        User other = userService.save(User.builder().userName("other").build());
+        Task ownerTask = taskService.save(newTask(owner.getId(), "owner task", TaskStatus.TODO, TODAY));
+        Task otherTask = taskService.save(newTask(other.getId(), "other task", TaskStatus.TODO, TODAY));
+
+        //when
+        userService.deleteById(owner.getId());
+
+        //then
+        Assertions.assertThat(taskService.findById(ownerTask.getId())).isNull();
+        Assertions.assertThat(taskService.findByOwner(owner.getId(), null)).isEmpty();
+        Assertions.assertThat(taskService.findByOwner(other.getId(), null)).containsExactly(otherTask);
+    }
+
+    @Test
+    void givenOwnerDeletedBeforeFirstTask_whenSave_ShouldFailWithoutKeepingTask() {
+        //given
+        User owner = userService.save(User.builder().userName("owner").build());
+        userService.deleteById(owner.getId());
+
+        //when
+        Task saved = taskService.save(newTask(owner.getId(), "late task", TaskStatus.TODO, TODAY));
+
+        //then
+        Assertions.assertThat(saved).isNull();
+        Assertions.assertThat(taskService.findByOwner(owner.getId(), null)).isEmpty();
+    }
+
+    @Test
+    void givenConcurrentUpdates_whenListing_ShouldNeverMissOrDuplicateTask() throws Exception {
+        //given
+        Task task = taskService.save(newTask(1, "task", TaskStatus.TODO, TODAY));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        //when
+        List<Integer> listingSizes = new ArrayList<>();
+        try {
+            Future<?> writer = executor.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    TaskStatus status = i % 2 == 0 ? TaskStatus.IN_PROGRESS : TaskStatus.TODO;
+                    taskService.update(task.getId(), newTask(1, "task", status, TODAY.plusDays(i % 7)));
+                }
+            });
+            Future<?> reader = executor.submit(() -> {
+                while (!writer.isDone()) {
+                    listingSizes.add(taskService.findByOwner(1, null).size());
+                }
+            });
+            writer.get(30, TimeUnit.SECONDS);
+            reader.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        //then
+        Assertions.assertThat(listingSizes).containsOnly(1);
+    }
+
+    private static Task newTask(Integer ownerId, String title, TaskStatus status, LocalDate dueDate) {
+        return Task.builder()
+                .ownerId(ownerId)
+                .title(title)
+                .status(status)
+                .dueDate(dueDate)
+                .build();
+    }
+}
@@ -6,7 +6,10 @@ import org.junit.jupiter.api.Test;
 import ua.azaika.taskmanager.model.User;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
 
 class UserServiceTest {
 
@@ -14,7 +17,11 @@ class UserServiceTest {
 
     @BeforeEach
     void setUp() {
-        this.userService = new UserServiceImpl();
+        this.userService = createUserService(false);
+    }
+
+    UserService createUserService(boolean caseInsensitiveEmail) {
+        return new UserServiceImpl(caseInsensitiveEmail);
     }
 
     @Test
@@ -189,5 +196,346 @@ class UserServiceTest {
         Assertions.assertThat(userService.findById(id)).isNull();
     }
 
+    @Test
+    void givenManyConcurrentWriters_whenSave_ShouldAssignUniqueIdsWithoutLostWrites() throws Exception {
+        //given
+        int threads = 16;
+        int usersPerThread = 2_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<Integer>>> futures = new ArrayList<>();
+
+        //when
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                List<Integer> ids = new ArrayList<>();
+                for (int i = 0; i < usersPerThread; i++) {
+                    User user = User.builder()
+                            .userName("User" + thread + "-" + i)
+                            .email("testMail" + thread + "-" + i)
+                            .password("password")
+                            .build();
+                    ids.add(userService.save(user).getId());
+                }
+                return ids;
+            }));
+        }
+        start.countDown();
+        Set<Integer> ids = new HashSet<>();
+        for (Future<List<Integer>> future : futures) {
+            ids.addAll(future.get(30, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        //then
+        Assertions.assertThat(ids).hasSize(threads * usersPerThread);
+        Assertions.assertThat(userService.getAll()).hasSize(threads * usersPerThread);
+    }
+
+    @Test
+    void givenConcurrentUpdatesAndDeletes_whenApplied_ShouldKeepStoreConsistent() throws Exception {
+        //given
+        int userCount = 1_000;
+        for (int i = 0; i < userCount; i++) {
+            userService.save(User.builder()
+                    .userName("User" + i)
+                    .email("testMail" + i)
+                    .password("password")
+                    .build());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        //when
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int id = 1; id <= userCount; id++) {
+                    if (id % 2 == 0) {
+                        userService.deleteById(id);
+                    } else {
+                        userService.update(id, User.builder()
+                                .userName("Updated" + thread)
+                                .email("updated" + thread)
+                                .password("password")
+                                .build());
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        //then
+        List<User> remaining = userService.getAll();
+        Assertions.assertThat(remaining).hasSize(userCount / 2);
+        Assertions.assertThat(remaining)
+                .allSatisfy(user -> {
+                    Assertions.assertThat(user.getId() % 2).isEqualTo(1);
+                    Assertions.assertThat(user.getUserName()).startsWith("Updated");
+                });
+    }
+
+    @Test
+    void givenNonExistingId_whenUpdate_ShouldReturnNull() {
+        //given
+        User updatesUser = User.builder()
+                .userName("NewUserName")
+                .email("newEmail@god.com")
+                .password("newPassword")
+                .build();
+
+        //when
+        User updated = userService.update(999, updatesUser);
+
+        //then
+        Assertions.assertThat(updated).isNull();
+        Assertions.assertThat(userService.getAll()).isEmpty();
+    }
+
+    @Test
+    void givenUpdatedUser_whenFindByOldUserNameAndEmail_ShouldReturnNothing() {
+        //given
+        User user = User.builder()
+                .userName("user1")
+                .email("testMail@god.com")
+                .password("password")
+                .build();
+        int id = userService.save(user).getId();
+        User updatesUser = User.builder()
+                .userName("NewUserName")
+                .email("newEmail@god.com")
+                .password("newPassword")
+                .build();
+
+        //when
+        userService.update(id, updatesUser);
+
+        //then
+        Assertions.assertThat(userService.findByUserName("user1")).isEmpty();
+        Assertions.assertThat(userService.findByEmail("testMail@god.com")).isEmpty();
+        Assertions.assertThat(userService.findByUserName("NewUserName")).containsExactly(updatesUser);
+        Assertions.assertThat(userService.findByEmail("newEmail@god.com")).containsExactly(updatesUser);
+    }
+
+    @Test
+    void givenDeletedUser_whenFindByUserNameAndEmail_ShouldReturnNothing() {
+        //given
+        User user = User.builder()
+                .userName("user1")
+                .email("testMail@god.com")
+                .password("password")
+                .build();
+        int id = userService.save(user).getId();
+
+        //when
+        userService.deleteById(id);
+
+        //then
+        Assertions.assertThat(userService.findByUserName("user1")).isEmpty();
+        Assertions.assertThat(userService.findByEmail("testMail@god.com")).isEmpty();
+    }
 
+    @Test
+    void givenCaseInsensitiveEmails_whenFindByEmailInOtherCase_ShouldReturnUser() {
+        //given
+        UserService caseInsensitiveService = createUserService(true);
+        User user = User.builder()
+                .userName("user1")
+                .email("TestMail@God.com")
+                .password("password")
+                .build();
+        caseInsensitiveService.save(user);
+
+        //when
+        List<User> foundUsers = caseInsensitiveService.findByEmail("testmail@GOD.COM");
+
+        //then
+        Assertions.assertThat(foundUsers).containsExactly(user);
+        Assertions.assertThat(userService.findByEmail("testmail@GOD.COM")).isEmpty();
+    }
+
+    @Test
+    void givenSavedUsers_whenGetPageAfterCursor_ShouldReturnNextUsersInIdOrder() {
+        //given
+        for (int i = 0; i < 10; i++) {
+            userService.save(User.builder()
+                    .userName("User" + i)
+                    .email("testMail" + i)
+                    .password("password" + i)
+                    .build());
+        }
+        userService.deleteById(5);
+
+        //when
+        List<User> firstPage = userService.getPage(null, 4);
+        List<User> secondPage = userService.getPage(firstPage.getLast().getId(), 4);
+
+        //then
+        Assertions.assertThat(firstPage).extracting(User::getId).containsExactly(1, 2, 3, 4);
+        Assertions.assertThat(secondPage).extracting(User::getId).containsExactly(6, 7, 8, 9);
+        Assertions.assertThat(userService.getPage(9, 4)).extracting(User::getId).containsExactly(10);
+    }
+
+    @Test
+    void givenBatchOfUsers_whenSaveAll_ShouldAssignConsecutiveIds() {
+        //given
+        userService.save(User.builder().userName("first").email("first@god.com").password("password").build());
+        List<User> batch = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            batch.add(User.builder()
+                    .userName("User" + i)
+                    .email("testMail" + i)
+                    .password("password" + i)
+                    .build());
+        }
+
+        //when
+        List<User> savedUsers = userService.saveAll(batch);
+
+        //then
+        Assertions.assertThat(savedUsers).extracting(User::getId).containsExactly(2, 3, 4, 5, 6);
+        Assertions.assertThat(userService.findByUserName("User4")).containsExactly(batch.get(4));
+        Assertions.assertThat(userService.getAll()).hasSize(6);
+    }
+
+    @Test
+    void givenBatchOfUpdates_whenUpdateAll_ShouldReturnNullForUnknownIds() {
+        //given
+        int id = userService.save(User.builder().userName("user1").email("testMail@god.com").password("password").build()).getId();
+        User knownUpdate = User.builder().id(id).userName("NewUserName").email("newEmail@god.com").password("newPassword").build();
+        User unknownUpdate = User.builder().id(999).userName("Ghost").email("ghost@god.com").password("password").build();
+
+        //when
+        List<User> updatedUsers = userService.updateAll(List.of(knownUpdate, unknownUpdate));
+
+        //then
+        Assertions.assertThat(updatedUsers).containsExactly(knownUpdate, null);
+        Assertions.assertThat(userService.findById(id)).isEqualTo(knownUpdate);
+        Assertions.assertThat(userService.findById(999)).isNull();
+    }
+
+    @Test
+    void givenSavedUsers_whenDeleteAllById_ShouldDeleteOnlyThoseUsers() {
+        //given
+        for (int i = 0; i < 4; i++) {
+            userService.save(User.builder().userName("User" + i).email("testMail" + i).password("password").build());
+        }
+
+        //when
+        userService.deleteAllById(List.of(1, 3, 999));
+
+        //then
+        Assertions.assertThat(userService.getAll()).extracting(User::getId).containsExactly(2, 4);
+    }
+
+    @Test
+    void givenSavedUser_whenUpdate_ShouldIncrementUserAndCollectionVersions() {
+        //given
+        int id = userService.save(User.builder().userName("user1").email("testMail@god.com").password("password").build()).getId();
+        long collectionVersion = userService.collectionVersion();
+
+        //when
+        User updated = userService.update(id, User.builder().userName("NewUserName").email("newEmail@god.com").password("password").build());
+
+        //then
+        Assertions.assertThat(updated.getVersion()).isEqualTo(2);
+        Assertions.assertThat(userService.findById(id).getVersion()).isEqualTo(2);
+        Assertions.assertThat(userService.collectionVersion()).isGreaterThan(collectionVersion);
+    }
+
+    @Test
+    void givenStaleVersion_whenUpdate_ShouldThrowAndKeepStoredUser() {
+        //given
+        int id = userService.save(User.builder().userName("user1").email("testMail@god.com").password("password").build()).getId();
+        userService.update(id, User.builder().userName("Winner").email("testMail@god.com").password("password").build(), 1);
+
+        //when-then
+        Assertions.assertThatThrownBy(() -> userService.update(id,
+                        User.builder().userName("Loser").email("testMail@god.com").password("password").build(), 1))
+                .isInstanceOf(VersionConflictException.class)
+                .extracting("currentVersion").isEqualTo(2L);
+        Assertions.assertThat(userService.findById(id).getUserName()).isEqualTo("Winner");
+        Assertions.assertThat(userService.findByUserName("Loser")).isEmpty();
+    }
+
+
+    @Test
+    void givenUsers_whenSearch_ShouldReturnPrefixMatchesBeforeSubstringMatchesIgnoringCase() {
+        //given
+        User annaSmith = userService.save(User.builder().userName("AnnaSmith").email("anna@god.com").password("p").build());
+        User joanna = userService.save(User.builder().userName("Joanna").email("jo@god.com").password("p").build());
+        User annie = userService.save(User.builder().userName("Annie").email("a.smith@god.com").password("p").build());
+        userService.save(User.builder().userName("Bob").email("bob@god.com").password("p").build());
+
+        //when
+        List<User> byPrefix = userService.search("ANN", 10);
+        List<User> bySubstring = userService.search("smith", 10);
+        List<User> byShortPrefix = userService.search("j", 10);
+
+        //then
+        Assertions.assertThat(byPrefix).extracting(User::getId)
+                .containsExactly(annaSmith.getId(), annie.getId(), joanna.getId());
+        Assertions.assertThat(bySubstring).extracting(User::getId).containsExactly(annaSmith.getId(), annie.getId());
+        Assertions.assertThat(byShortPrefix).extracting(User::getId).containsExactly(joanna.getId());
+        Assertions.assertThat(userService.search("ann", 2)).extracting(User::getId)
+                .containsExactly(annaSmith.getId(), annie.getId());
+        Assertions.assertThat(userService.search("xyz", 10)).isEmpty();
+    }
+
+    @Test
+    void givenUpdatedAndDeletedUsers_whenSearch_ShouldMatchOnlyCurrentState() {
+        //given
+        User renamed = userService.save(User.builder().userName("Oldname").email("old@god.com").password("p").build());
+        User deleted = userService.save(User.builder().userName("Oldtimer").email("timer@god.com").password("p").build());
+
+        //when
+        userService.update(renamed.getId(), User.builder().userName("Newname").email("new@god.com").password("p").build());
+        userService.deleteById(deleted.getId());
+
+        //then
+        Assertions.assertThat(userService.search("old", 10)).isEmpty();
+        Assertions.assertThat(userService.search("newn", 10)).extracting(User::getId).containsExactly(renamed.getId());
+        Assertions.assertThat(userService.search("name", 10)).extracting(User::getUserName).containsExactly("Newname");
+    }
+
+    @Test
+    void givenListenerWaitingOnWriteToAnotherUser_whenUpdate_ShouldNotBlockThatWrite() throws Exception {
+        //given
+        UserServiceImpl store = new UserServiceImpl();
+        store.replicate(User.builder().id(1).version(1).userName("first").email("first@god.com").password("p").build(), false);
+        store.replicate(User.builder().id(17).version(1).userName("second").email("second@god.com").password("p").build(), false);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        store.addChangeListener(new UserChangeListener() {
+            @Override
+            public void onUpdate(User previous, User current) {
+                if (current.getId() != 1) return;
+                try {
+                    executor.submit(() -> store.update(17, User.builder().userName("renamed").email("second@god.com").password("p").build()))
+                            .get(5, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+
+        //when
+        try {
+            store.update(1, User.builder().userName("first").email("first@god.com").password("p").build());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        //then
+        Assertions.assertThat(store.findById(1).getVersion()).isEqualTo(2);
+        Assertions.assertThat(store.findById(17).getUserName()).isEqualTo("renamed");
+    }
 }